@@ -440,6 +440,20 @@ bool FilePath::isDirectory() const
    }
 }
 
+bool FilePath::isSymlink() const
+{
+   try
+   {
+      return boost::filesystem::is_symlink(
+                           boost::filesystem::symlink_status(pImpl_->path)) ;
+   }
+   catch(const boost::filesystem::filesystem_error& e)
+   {
+      logError(pImpl_->path, e, ERROR_LOCATION) ;
+      return false;
+   }
+}
+
    
 Error FilePath::ensureDirectory() const
 {
@@ -113,6 +113,9 @@ public:
    // is this a directory?
    bool isDirectory() const ;
 
+   // is this a symbolic link? (as opposed to what it links to)
+   bool isSymlink() const ;
+
    // create this directory if it doesn't already exist
    Error ensureDirectory() const ;
 
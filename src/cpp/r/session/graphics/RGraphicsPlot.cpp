@@ -193,6 +193,15 @@ std::string Plot::imageFilename() const
    return imageFilePath(storageUuid()).filename();
 }
 
+// is our image file up to date and rendered at the current device size
+// (if it is then the client can display it without a re-render)
+bool Plot::hasCurrentImage() const
+{
+   return hasStorage() &&
+          !needsUpdate_ &&
+          (renderedSize() == graphicsDevice_.displaySize());
+}
+
 Error Plot::renderToDisplay()
 {
    Error error = graphicsDevice_.restoreSnapshot(snapshotFilePath());
@@ -104,7 +104,12 @@ Error PlotManager::plotImageFilename(int index,
    }
    else
    {
-      *pImageFilename = plots_[index]->imageFilename();
+      // only return the filename if the image is current (otherwise
+      // the caller would display a stale or wrongly sized image)
+      if (plots_[index]->hasCurrentImage())
+         *pImageFilename = plots_[index]->imageFilename();
+      else
+         *pImageFilename = std::string();
       return Success();
    }
 }      
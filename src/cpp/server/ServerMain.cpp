@@ -122,6 +122,8 @@ void httpServerAddHandlers()
    // establish content handlers
    uri_handlers::add("/graphics", secureAsyncHttpHandler(proxyContentRequest));
    uri_handlers::add("/upload", secureAsyncUploadHandler(proxyContentRequest));
+   uri_handlers::add("/chunk_upload",
+                     secureAsyncJsonRpcHandler(proxyContentRequest));
    uri_handlers::add("/export", secureAsyncHttpHandler(proxyContentRequest));
    uri_handlers::add("/source", secureAsyncHttpHandler(proxyContentRequest));
    uri_handlers::add("/content", secureAsyncHttpHandler(proxyContentRequest));
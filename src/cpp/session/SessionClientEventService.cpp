@@ -14,6 +14,8 @@
 #include "SessionClientEventService.hpp"
 
 #include <algorithm>
+#include <iterator>
+#include <sstream>
 
 #include <boost/function.hpp>
 
@@ -26,6 +28,7 @@
 
 
 #include <core/http/Request.hpp>
+#include <core/http/Response.hpp>
 
 #include <session/SessionOptions.hpp>
 #include <session/SessionHttpConnectionListener.hpp>
@@ -178,6 +181,129 @@ void ClientEventService::setClientEventResult(
 }
 
 
+void ClientEventService::setClientEventResult(
+                                       int firstEventId,
+                                       core::json::JsonRpcResponse* pResponse)
+{
+   LOCK_MUTEX(mutex_)
+   {
+      json::Array events;
+      std::remove_copy_if(clientEvents_.begin(),
+                          clientEvents_.end(),
+                          std::back_inserter(events),
+                          boost::bind(hasEventIdLessThanOrEqualTo,
+                                      _1,
+                                      firstEventId - 1));
+      pResponse->setResult(events);
+   }
+   END_LOCK_MUTEX
+}
+
+void ClientEventService::dequeClientEvents(int* pNextEventId)
+{
+   // deque the events
+   std::vector<ClientEvent> events;
+   clientEventQueue().remove(&events);
+
+   // convert to json and add event id
+   for (std::vector<ClientEvent>::const_iterator
+        it = events.begin(); it != events.end(); ++it)
+   {
+      json::Object event ;
+      it->asJsonObject((*pNextEventId)++, &event);
+      addClientEvent(event);
+   }
+}
+
+// stream events to the client over a single long-lived connection. each
+// batch of events is written as a newline terminated json-rpc response. the
+// stream ends after the maximum request time, when the active client
+// changes, or when another events request is waiting to be handled (e.g.
+// because the client reconnected). returns true if we were interrupted.
+bool ClientEventService::streamClientEvents(
+                           boost::shared_ptr<HttpConnection> ptrConnection,
+                           const std::string& clientId,
+                           int* pNextEventId)
+{
+   using namespace boost::posix_time;
+   ClientEventQueue& clientEventQueue = session::clientEventQueue();
+
+   // send the header
+   http::Response response;
+   response.setContentType(json::kJsonContentType);
+   response.setNoCacheHeaders();
+   if (!ptrConnection->sendStreamingResponseHeader(response))
+      return false;
+
+   // events not yet acknowledged by the client are sent first
+   int firstEventId = *pNextEventId;
+   bool sendUnacknowledged = havePendingClientEvents();
+
+   bool interrupted = false;
+   boost::system_time endTime = boost::get_system_time() + seconds(50);
+   while (!interrupted && (boost::get_system_time() < endTime))
+   {
+      // end the stream if the client changed or another request is waiting
+      if (clientId != this->clientId())
+         break;
+      if (!httpConnectionListener().eventsConnectionQueue()
+                                          .peekNextConnectionUri().empty())
+      {
+         break;
+      }
+
+      // wait for events (then wait for additional events that occur in
+      // rapid succession but don't wait for more than 2 seconds)
+      bool haveEvents = sendUnacknowledged;
+      try
+      {
+         if (!haveEvents)
+         {
+            haveEvents = clientEventQueue.hasEvents() ||
+                         clientEventQueue.waitForEvent(seconds(1));
+         }
+
+         if (haveEvents)
+         {
+            boost::system_time maxBatchDelayTime =
+                                 boost::get_system_time() + seconds(2);
+            while ( clientEventQueue.waitForEvent(milliseconds(20)) &&
+                    (boost::get_system_time() < maxBatchDelayTime) )
+            {
+            }
+         }
+      }
+      catch(const boost::thread_interrupted& e)
+      {
+         // still allow the events to be sent (e.g. the quit event)
+         interrupted = true;
+      }
+
+      // send the events (the client will acknowledge them via the last
+      // event id of its next events request)
+      if (haveEvents)
+      {
+         dequeClientEvents(pNextEventId);
+
+         json::JsonRpcResponse frame;
+         setClientEventResult(firstEventId, &frame);
+         frame.setField(kEventsPending, "false");
+         firstEventId = *pNextEventId;
+         sendUnacknowledged = false;
+
+         std::ostringstream ostr;
+         frame.write(ostr);
+         ostr << std::endl;
+         if (!ptrConnection->sendStreamingData(ostr.str()))
+            break;
+      }
+   }
+
+   ptrConnection->endStreamingResponse();
+
+   return interrupted;
+}
+
 void ClientEventService::run()
 {
    try
@@ -263,6 +389,22 @@ void ClientEventService::run()
          // would never see any events!)
          nextEventId = lastClientEventIdSeen + 1;
 
+         // check whether the client requested a streaming response
+         bool stream = false;
+         if (request.params.size() > 1)
+         {
+            Error streamError = json::readParam(request.params, 1, &stream);
+            if (streamError)
+               LOG_ERROR(streamError);
+         }
+         if (stream)
+         {
+            stopServer = streamClientEvents(ptrConnection,
+                                            request.clientId,
+                                            &nextEventId);
+            continue;
+         }
+
          // check for events (and wait a specified internal if there are none)
          try
          {
@@ -300,17 +442,7 @@ void ClientEventService::run()
          if (request.clientId == clientId())
          {
             // deque the events
-            std::vector<ClientEvent> events;
-            clientEventQueue.remove(&events);
-            
-            // convert to json and add event id
-            for (std::vector<ClientEvent>::const_iterator 
-                 it = events.begin(); it != events.end(); ++it)
-            {
-               json::Object event ;
-               it->asJsonObject(nextEventId++, &event);
-               addClientEvent(event);
-            }
+            dequeClientEvents(&nextEventId);
 
             // send them (pass false for kEventsPending b/c responses from the
             // event service shouldn't interact with automatic event service
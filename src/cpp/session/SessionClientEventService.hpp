@@ -17,6 +17,7 @@
 #include <string>
 
 #include <boost/utility.hpp>
+#include <boost/shared_ptr.hpp>
 
 #include <core/BoostThread.hpp>
 
@@ -29,6 +30,8 @@ namespace core {
 
 namespace session {
 
+class HttpConnection;
+
 // singleton
 class ClientEventService;
 ClientEventService& clientEventService();
@@ -53,10 +56,17 @@ private:
 
    void run();
 
+   bool streamClientEvents(boost::shared_ptr<HttpConnection> ptrConnection,
+                           const std::string& clientId,
+                           int* pNextEventId);
+   void dequeClientEvents(int* pNextEventId);
+
    void erasePreviouslyDeliveredEvents(int lastClientEventIdSeen);
    bool havePendingClientEvents();
    void addClientEvent(const core::json::Object& eventObject);
    void setClientEventResult(core::json::JsonRpcResponse* pResponse);
+   void setClientEventResult(int firstEventId,
+                             core::json::JsonRpcResponse* pResponse);
 
   
 private:
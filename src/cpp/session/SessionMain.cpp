@@ -80,6 +80,7 @@
 #include "modules/SessionConsole.hpp"
 #include "modules/SessionDiff.hpp"
 #include "modules/SessionFiles.hpp"
+#include "modules/SessionFind.hpp"
 #include "modules/SessionWorkspace.hpp"
 #include "modules/SessionWorkbench.hpp"
 #include "modules/SessionData.hpp"
@@ -129,14 +130,21 @@ bool s_rProcessingInput = false;
 
 std::queue<r::session::RConsoleInput> s_consoleInputBuffer;
 
+// console actions as of the most recent staged client_init (the client
+// fetches these separately via get_console_actions once its ui is up)
+json::Object s_initConsoleActions;
+
 // json rpc methods we handle (the rest are delegated to the HttpServer)
 const char * const kClientInit = "client_init" ;
 const char * const kConsoleInput = "console_input" ;
+const char * const kGetConsoleActions = "get_console_actions";
+const char * const kGetConsoleHistory = "get_console_history";
 const char * const kEditCompleted = "edit_completed";
 const char * const kChooseFileCompleted = "choose_file_completed";
 const char * const kLocatorCompleted = "locator_completed";
 const char * const kQuitSession = "quit_session" ;   
 const char * const kInterrupt = "interrupt";
+const char * const kMultiCall = "multi_call";
 
 // convenience function for disallowing suspend (note still doesn't override
 // the presence of s_forceSuspend = 1)
@@ -247,6 +255,20 @@ void handleClientInit(const boost::function<void()>& initFunction,
    std::string clientId = session::persistentState().newActiveClientId();
    bool resumed = s_rSessionResumed || s_sessionInitialized;
 
+   // staged clients fetch the potentially large console history, console
+   // actions, and source documents after the workbench is shown rather
+   // than waiting on them here (older clients send no params)
+   bool staged = false;
+   json::JsonRpcRequest request;
+   Error error = json::parseJsonRpcRequest(ptrConnection->request().body(),
+                                           &request);
+   if (!error && !request.params.empty())
+   {
+      error = json::readParam(request.params, 0, &staged);
+      if (error)
+         LOG_ERROR(error);
+   }
+
    // if we are resuming then we don't need to worry about events queued up
    // by R during startup (e.g. printing of the banner) being sent to the
    // client. so, clear out the events which might be pending in the
@@ -285,10 +307,16 @@ void handleClientInit(const boost::function<void()>& initFunction,
    // default prompt
    sessionInfo["prompt"] = r::options::getOption<std::string>("prompt");
 
+   // staged init
+   sessionInfo["staged"] = staged;
+
    // console history
-   json::Array historyArray;
-   r::session::consoleHistory().asJson(&historyArray);
-   sessionInfo["console_history"] = historyArray;
+   if (!staged)
+   {
+      json::Array historyArray;
+      r::session::consoleHistory().asJson(&historyArray);
+      sessionInfo["console_history"] = historyArray;
+   }
    
    // client state
    json::Object clientStateObject;
@@ -296,11 +324,14 @@ void handleClientInit(const boost::function<void()>& initFunction,
    sessionInfo["client_state"] = clientStateObject;
    
    // source documents
-   json::Array jsonDocs;
-   Error error = source_database::getSourceDocumentsJson(&jsonDocs);
-   if (error)
-      LOG_ERROR(error);
-   sessionInfo["source_documents"] = jsonDocs;
+   if (!staged)
+   {
+      json::Array jsonDocs;
+      error = source_database::getSourceDocumentsJson(&jsonDocs);
+      if (error)
+         LOG_ERROR(error);
+      sessionInfo["source_documents"] = jsonDocs;
+   }
    
    // agreement
    sessionInfo["hasAgreement"] = modules::agreement::hasAgreement();
@@ -313,14 +344,26 @@ void handleClientInit(const boost::function<void()>& initFunction,
    r::session::ConsoleActions& consoleActions = r::session::consoleActions();
    sessionInfo["console_actions_limit"] = consoleActions.capacity();
 
+   // streaming of client events is only supported when the client connects
+   // directly to the session (in server mode responses are buffered by the
+   // proxy so the client uses long-polling instead)
+   sessionInfo["event_streaming"] =
+         options.programMode() == kSessionProgramModeDesktop;
+
    // resumed
    sessionInfo["resumed"] = resumed; 
+   s_initConsoleActions.clear();
    if (resumed)
    {
-      // console actions
+      // console actions. for staged clients we take a snapshot now (so
+      // that it lines up with the console events which will follow) and
+      // hand it over when the client asks for it
       json::Object actionsObject;
       consoleActions.asJson(&actionsObject);
-      sessionInfo["console_actions"] = actionsObject;
+      if (staged)
+         s_initConsoleActions = actionsObject;
+      else
+         sessionInfo["console_actions"] = actionsObject;
    }
 
    bool texInstalled;
@@ -357,35 +400,152 @@ enum ConnectionType
    BackgroundConnection
 };
 
-void handleRpcRequest(const core::json::JsonRpcRequest& request,
-                      boost::shared_ptr<HttpConnection> ptrConnection,
-                      ConnectionType connectionType)
+Error executeRpcMethod(const core::json::JsonRpcRequest& request,
+                       core::json::JsonRpcResponse* pResponse)
 {
-   // record the time just prior to execution of the event
-   // (so we can determine if any events were added during execution)
-   using namespace boost::posix_time; 
-   ptime executeStartTime = microsec_clock::universal_time();
-   
-   // execute the method
-   Error executeError;
-   core::json::JsonRpcResponse jsonRpcResponse ;
-   if (connectionType == BackgroundConnection)
-      jsonRpcResponse.setSuppressDetectChanges(true);
    json::JsonRpcMethods::const_iterator it = s_jsonRpcMethods.find(request.method);
    if (it != s_jsonRpcMethods.end())
    {
       json::JsonRpcFunction handlerFunction = it->second ;
-      executeError = handlerFunction(request, &jsonRpcResponse) ;
+      return handlerFunction(request, pResponse) ;
    }
    else
    {
-      executeError = Error(json::errc::MethodNotFound, ERROR_LOCATION);
+      Error executeError(json::errc::MethodNotFound, ERROR_LOCATION);
       executeError.addProperty("method", request.method);
 
       // we need to know about these because they represent unexpected
       // application states
       LOG_ERROR(executeError);
+
+      return executeError;
    }
+}
+
+// multi_call bundles several independent rpc calls (issued by the client
+// within the same event loop turn) into a single http request. each call
+// is executed in order and its response (result, error, or async handle)
+// is returned at the corresponding index of the result array
+void handleMultiCallRequest(const core::json::JsonRpcRequest& request,
+                            boost::shared_ptr<HttpConnection> ptrConnection,
+                            ConnectionType connectionType)
+{
+   // record the time just prior to execution of the calls
+   using namespace boost::posix_time;
+   ptime executeStartTime = microsec_clock::universal_time();
+
+   // execute each call
+   std::vector<core::json::JsonRpcResponse> callResponses;
+   bool detectCallChanges = false;
+   for (json::Array::const_iterator it = request.params.begin();
+        it != request.params.end();
+        ++it)
+   {
+      core::json::JsonRpcResponse callResponse;
+      if (connectionType == BackgroundConnection)
+         callResponse.setSuppressDetectChanges(true);
+
+      // read the method and params of the call (clientId and version
+      // were already validated for the enclosing request)
+      core::json::JsonRpcRequest callRequest;
+      callRequest.clientId = request.clientId;
+      callRequest.version = request.version;
+      Error callError;
+      if (json::isType<json::Object>(*it))
+      {
+         callError = json::readObject(it->get_obj(),
+                                      "method", &callRequest.method,
+                                      "params", &callRequest.params);
+      }
+      else
+      {
+         callError = Error(json::errc::InvalidRequest, ERROR_LOCATION);
+      }
+
+      // execute the call (special methods handled directly by the main
+      // loop are never batched by the client so they aren't valid here)
+      if (!callError)
+      {
+         if (callRequest.method == kMultiCall ||
+             callRequest.method == kQuitSession ||
+             callRequest.method == kInterrupt)
+         {
+            callError = Error(json::errc::MethodUnexpected, ERROR_LOCATION);
+            callError.addProperty("method", callRequest.method);
+         }
+         else
+         {
+            callError = executeRpcMethod(callRequest, &callResponse);
+         }
+      }
+
+      if (callError)
+         callResponse.setError(callError);
+      else if (!callResponse.suppressDetectChanges())
+         detectCallChanges = true;
+
+      callResponses.push_back(callResponse);
+   }
+
+   // allow modules to detect changes after rpc calls
+   if (detectCallChanges)
+      detectChanges(module_context::ChangeSourceRPC);
+
+   // are there (or will there likely be) events pending?
+   bool eventsPending = clientEventQueue().eventAddedSince(executeStartTime);
+
+   // collect the individual responses
+   json::Array responsesArray;
+   for (std::vector<core::json::JsonRpcResponse>::iterator
+         it = callResponses.begin(); it != callResponses.end(); ++it)
+   {
+      if (!eventsPending && !it->hasAfterResponse())
+         it->setField(kEventsPending, "false");
+      responsesArray.push_back(it->getRawResponse());
+   }
+
+   // send the response
+   core::json::JsonRpcResponse jsonRpcResponse;
+   jsonRpcResponse.setResult(responsesArray);
+   ptrConnection->sendJsonRpcResponse(jsonRpcResponse);
+
+   // run after responses if we have them (then detect changes again)
+   bool ranAfterResponse = false;
+   for (std::vector<core::json::JsonRpcResponse>::iterator
+         it = callResponses.begin(); it != callResponses.end(); ++it)
+   {
+      if (it->hasAfterResponse())
+      {
+         it->runAfterResponse();
+         if (!it->suppressDetectChanges())
+            ranAfterResponse = true;
+      }
+   }
+   if (ranAfterResponse)
+      detectChanges(module_context::ChangeSourceRPC);
+}
+
+void handleRpcRequest(const core::json::JsonRpcRequest& request,
+                      boost::shared_ptr<HttpConnection> ptrConnection,
+                      ConnectionType connectionType)
+{
+   // multi_call has its own response handling
+   if (request.method == kMultiCall)
+   {
+      handleMultiCallRequest(request, ptrConnection, connectionType);
+      return;
+   }
+
+   // record the time just prior to execution of the event
+   // (so we can determine if any events were added during execution)
+   using namespace boost::posix_time; 
+   ptime executeStartTime = microsec_clock::universal_time();
+   
+   // execute the method
+   core::json::JsonRpcResponse jsonRpcResponse ;
+   if (connectionType == BackgroundConnection)
+      jsonRpcResponse.setSuppressDetectChanges(true);
+   Error executeError = executeRpcMethod(request, &jsonRpcResponse);
 
    // return error or result then continue waiting for requests
    if (executeError)
@@ -859,6 +1019,29 @@ Error bufferConsoleInput(const core::json::JsonRpcRequest& request,
    return extractConsoleInput(request);
 }
 
+// console actions snapshot taken by the last staged client_init. the
+// snapshot is handed over only once (subsequent output reaches the
+// client as console events)
+Error getConsoleActions(const core::json::JsonRpcRequest& request,
+                        json::JsonRpcResponse* pResponse)
+{
+   if (!s_initConsoleActions.empty())
+      pResponse->setResult(s_initConsoleActions);
+   else
+      pResponse->setResult(json::Value());
+   s_initConsoleActions.clear();
+   return Success();
+}
+
+Error getConsoleHistory(const core::json::JsonRpcRequest& request,
+                        json::JsonRpcResponse* pResponse)
+{
+   json::Array historyArray;
+   r::session::consoleHistory().asJson(&historyArray);
+   pResponse->setResult(historyArray);
+   return Success();
+}
+
 Error startHttpConnectionListener()
 {
    initializeHttpConnectionListener();
@@ -964,6 +1147,8 @@ Error rInit(const r::session::RInitInfo& rInitInfo)
 
       // json-rpc listeners
       (bind(registerRpcMethod, kConsoleInput, bufferConsoleInput))
+      (bind(registerRpcMethod, kGetConsoleActions, getConsoleActions))
+      (bind(registerRpcMethod, kGetConsoleHistory, getConsoleHistory))
 
       // signal handlers
       (registerSignalHandlers)
@@ -981,6 +1166,7 @@ Error rInit(const r::session::RInitInfo& rInitInfo)
       (modules::console::initialize)
       (modules::diff::initialize)
       (modules::files::initialize)
+      (modules::find::initialize)
       (modules::workspace::initialize)
       (modules::workbench::initialize)
       (modules::data::initialize)
@@ -15,6 +15,8 @@
 #define SESSION_HTTP_CONNECTION_IMPL_HPP
 
 
+#include <vector>
+
 #include <boost/array.hpp>
 
 #include <boost/utility.hpp>
@@ -148,6 +150,33 @@ public:
       sendResponse(response);
    }
 
+   virtual bool sendStreamingResponseHeader(
+                              const core::http::Response& response)
+   {
+      return writeStreamingBuffers(
+               response.toBuffers(core::http::Header::connectionClose()));
+   }
+
+   virtual bool sendStreamingData(const std::string& data)
+   {
+      std::vector<boost::asio::const_buffer> buffers;
+      buffers.push_back(boost::asio::buffer(data));
+      return writeStreamingBuffers(buffers);
+   }
+
+   virtual void endStreamingResponse()
+   {
+      try
+      {
+         // log it
+         httpLog().addEntry(HttpLog::ConnectionResponded, requestId_);
+
+         // close
+         close();
+      }
+      CATCH_UNEXPECTED_EXCEPTION
+   }
+
    // close (occurs automatically after writeResponse, here in case it
    // need to be closed in other circumstances
    virtual void close()
@@ -174,6 +203,27 @@ public:
 
 private:
 
+   bool writeStreamingBuffers(
+                  const std::vector<boost::asio::const_buffer>& buffers)
+   {
+      try
+      {
+         boost::asio::write(socket_, buffers);
+         return true;
+      }
+      catch(const boost::system::system_error& e)
+      {
+         // log the error if it wasn't connection terminated
+         core::Error error = core::Error(e.code(), ERROR_LOCATION);
+         error.addProperty("request-uri", request_.uri());
+         if (!core::http::isConnectionTerminatedError(error))
+            LOG_ERROR(error);
+      }
+      CATCH_UNEXPECTED_EXCEPTION
+
+      return false;
+   }
+
    // async request reading interface
    void readSome()
    {
@@ -61,6 +61,15 @@ public:
    virtual void sendJsonRpcResponse(
                   const core::json::JsonRpcResponse& jsonRpcResponse) = 0;
 
+   // streaming responses: the header is sent immediately and data is then
+   // written incrementally until endStreamingResponse is called. the send
+   // methods return false if the data could not be written (e.g. because
+   // the client has gone away)
+   virtual bool sendStreamingResponseHeader(
+                  const core::http::Response& response) = 0;
+   virtual bool sendStreamingData(const std::string& data) = 0;
+   virtual void endStreamingResponse() = 0;
+
 
    // close (occurs automatically after writeResponse, here in case it
    // need to be closed in other circumstances
@@ -239,6 +239,15 @@ SEXP dataViewerHook(SEXP call, SEXP op, SEXP args, SEXP rho)
       // append document footer
       html += "</body></html>\n";
 
+      // keep the data so the viewer can page through all of its rows
+      std::string cacheKey;
+      r::exec::RFunction cacheFx(".rs.cacheDataView");
+      cacheFx.addParam(dataSEXP);
+      cacheFx.addParam(displayedColumns);
+      error = cacheFx.call(&cacheKey);
+      if (error)
+         LOG_ERROR(error);
+
       // fire show data event
       json::Object dataItem;
       dataItem["title"] = title;
@@ -247,6 +256,8 @@ SEXP dataViewerHook(SEXP call, SEXP op, SEXP args, SEXP rho)
       dataItem["variables"] = columnCount;
       dataItem["displayedVariables"] = displayedColumns;
       dataItem["contentUrl"] = content_urls::provision(title, html, ".htm");
+      if (!cacheKey.empty())
+         dataItem["cacheKey"] = cacheKey;
       ClientEvent event(client_events::kShowData, dataItem);
       module_context::enqueClientEvent(event);
 
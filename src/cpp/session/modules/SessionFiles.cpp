@@ -14,6 +14,7 @@
 #include "SessionFiles.hpp"
 
 #include <vector>
+#include <map>
 #include <iostream>
 #include <fstream>
 #include <sstream>
@@ -26,11 +27,13 @@
 #include <core/Log.hpp>
 #include <core/FileSerializer.hpp>
 #include <core/FilePath.hpp>
+#include <core/Hash.hpp>
 #include <core/FileInfo.hpp>
 #include <core/Settings.hpp>
 #include <core/Exec.hpp>
 #include <core/DateTime.hpp>
 
+#include <core/system/System.hpp>
 #include <core/system/DirectoryMonitor.hpp>
 
 #include <core/http/Util.hpp>
@@ -244,7 +247,6 @@ core::Error listFiles(const json::JsonRpcRequest& request,
    // success
    return Success();
 }
-   
 
 // IN: String path
 core::Error createFile(const core::json::JsonRpcRequest& request, 
@@ -734,6 +736,304 @@ void handleFileUploadRequest(const http::Request& request,
    json::setJsonRpcResult(uploadJson, pResponse);   
 }
    
+// Chunked uploads: the client splits the file into fixed size chunks and
+// posts them (several at a time, in any order) to /chunk_upload along
+// with a CRC32 of each chunk. Chunks are written in place into the temp
+// file, so a chunk which fails (or arrives corrupted) can simply be sent
+// again, and an upload interrupted part way through can be resumed by
+// beginning it again with the same file (same name, target directory, size
+// and modification time). Since that doesn't guarantee the contents are
+// the same, begin_chunked_upload returns the checksum of each chunk already
+// received and the client only skips the chunks whose checksums still
+// match (the others are sent again). complete_chunked_upload produces the same
+// token as a form upload so the rest of the process (confirm overwrites,
+// complete_upload) is shared. An upload which isn't resumed (or added to)
+// within kChunkedUploadExpiryMinutes is discarded along with its temp file,
+// as are all outstanding uploads when the session shuts down or suspends.
+
+const int kUploadChunkSize = 4 * 1024 * 1024;
+const int kChunkedUploadExpiryMinutes = 60;
+
+struct ChunkedUpload
+{
+   std::string filename;
+   FilePath tempFile;
+   FilePath destDir;
+   boost::uint64_t size;
+   double lastModified;
+   // checksums of the chunks received, by index
+   std::map<int, std::string> received;
+   // when the upload was last begun (or resumed) or received a chunk
+   boost::posix_time::ptime lastActivity;
+
+   int chunkCount() const
+   {
+      return static_cast<int>((size + kUploadChunkSize - 1) / kUploadChunkSize);
+   }
+
+   boost::uint64_t chunkLength(int index) const
+   {
+      boost::uint64_t offset = static_cast<boost::uint64_t>(index) *
+                               kUploadChunkSize;
+      return std::min(static_cast<boost::uint64_t>(kUploadChunkSize),
+                      size - offset);
+   }
+};
+
+std::map<std::string, ChunkedUpload> s_chunkedUploads;
+
+void removeChunkedUploadTempFile(const ChunkedUpload& upload)
+{
+   // merely log failures to remove the temp file
+   Error error = upload.tempFile.removeIfExists();
+   if (error)
+      LOG_ERROR(error);
+}
+
+// discard uploads which have been idle for longer than the expiry (or all
+// of them if requested)
+void removeChunkedUploads(bool all)
+{
+   using namespace boost::posix_time;
+   ptime expiry = second_clock::universal_time() -
+                  minutes(kChunkedUploadExpiryMinutes);
+
+   std::map<std::string, ChunkedUpload>::iterator it =
+                                                   s_chunkedUploads.begin();
+   while (it != s_chunkedUploads.end())
+   {
+      if (all || it->second.lastActivity < expiry)
+      {
+         removeChunkedUploadTempFile(it->second);
+         s_chunkedUploads.erase(it++);
+      }
+      else
+      {
+         ++it;
+      }
+   }
+}
+
+void onChunkedUploadsShutdown(bool terminatedNormally)
+{
+   // uploads can't be resumed once the process exits (this includes
+   // suspending the session)
+   removeChunkedUploads(true);
+}
+
+json::Object chunkedUploadJson(const std::string& id,
+                               const ChunkedUpload& upload)
+{
+   json::Array received, checksums;
+   for (std::map<int, std::string>::const_iterator it =
+           upload.received.begin();
+        it != upload.received.end();
+        ++it)
+   {
+      received.push_back(it->first);
+      checksums.push_back(it->second);
+   }
+
+   json::Object status;
+   status["id"] = id;
+   status["chunk_size"] = kUploadChunkSize;
+   status["received"] = received;
+   status["checksums"] = checksums;
+   return status;
+}
+
+Error beginChunkedUpload(const core::json::JsonRpcRequest& request,
+                         json::JsonRpcResponse* pResponse)
+{
+   std::string filename, targetDirectory;
+   double size, lastModified;
+   Error error = json::readParams(request.params,
+                                  &filename,
+                                  &targetDirectory,
+                                  &size,
+                                  &lastModified);
+   if (error)
+      return error;
+
+   if (filename.empty() || targetDirectory.empty() || size < 0)
+      return Error(json::errc::ParamInvalid, ERROR_LOCATION);
+
+   // enforce the upload size limit (if any)
+   double mbLimit = session::options().limitFileUploadSizeMb();
+   if (mbLimit > 0 && size > mbLimit * 1024 * 1024)
+      return systemError(boost::system::errc::file_too_large, ERROR_LOCATION);
+
+   FilePath destDir = module_context::resolveAliasedPath(targetDirectory);
+
+   // resume an interrupted upload of the same file
+   for (std::map<std::string, ChunkedUpload>::iterator it =
+           s_chunkedUploads.begin();
+        it != s_chunkedUploads.end();
+        ++it)
+   {
+      ChunkedUpload& upload = it->second;
+      if (upload.filename == filename &&
+          upload.destDir == destDir &&
+          upload.size == static_cast<boost::uint64_t>(size) &&
+          upload.lastModified == lastModified &&
+          upload.tempFile.exists())
+      {
+         upload.lastActivity =
+                     boost::posix_time::second_clock::universal_time();
+         pResponse->setResult(chunkedUploadJson(it->first, upload));
+         return Success();
+      }
+   }
+
+   ChunkedUpload upload;
+   upload.filename = filename;
+   upload.destDir = destDir;
+   upload.size = static_cast<boost::uint64_t>(size);
+   upload.lastModified = lastModified;
+   upload.lastActivity = boost::posix_time::second_clock::universal_time();
+   bool isZip = destDir.childPath(filename).extensionLowerCase() == ".zip";
+   upload.tempFile = module_context::tempFile("upload", isZip ? "zip" : "bin");
+
+   // create the (empty) temp file; chunks are written into it in place
+   error = core::writeStringToFile(upload.tempFile, "");
+   if (error)
+      return error;
+
+   std::string id = core::system::generateUuid(false);
+   s_chunkedUploads[id] = upload;
+
+   pResponse->setResult(chunkedUploadJson(id, upload));
+   return Success();
+}
+
+void handleUploadChunkRequest(const http::Request& request,
+                              http::Response* pResponse)
+{
+   std::string id = request.queryParamValue("id");
+   std::string checksum = request.queryParamValue("checksum");
+   int index = -1;
+   try
+   {
+      index = boost::lexical_cast<int>(request.queryParamValue("index"));
+   }
+   catch(const boost::bad_lexical_cast&)
+   {
+   }
+
+   std::map<std::string, ChunkedUpload>::iterator it =
+                                             s_chunkedUploads.find(id);
+   if (it == s_chunkedUploads.end() ||
+       index < 0 ||
+       index >= it->second.chunkCount())
+   {
+      json::setJsonRpcError(json::errc::ParamInvalid, pResponse);
+      return;
+   }
+   ChunkedUpload& upload = it->second;
+
+   // verify the chunk arrived intact (the client resends it if not)
+   const std::string& contents = request.body();
+   if (contents.size() != upload.chunkLength(index) ||
+       core::hash::crc32Hash(contents) != checksum)
+   {
+      Error error = systemError(boost::system::errc::illegal_byte_sequence,
+                                ERROR_LOCATION);
+      error.addProperty("chunk", index);
+      json::setJsonRpcError(error, pResponse);
+      return;
+   }
+
+   std::fstream ofs(upload.tempFile.absolutePath().c_str(),
+                    std::ios_base::in | std::ios_base::out |
+                    std::ios_base::binary);
+   if (ofs)
+   {
+      ofs.seekp(static_cast<std::streamoff>(index) * kUploadChunkSize);
+      ofs.write(contents.data(), contents.size());
+   }
+   if (!ofs)
+   {
+      Error error = systemError(boost::system::errc::io_error,
+                                ERROR_LOCATION);
+      error.addProperty("path", upload.tempFile);
+      LOG_ERROR(error);
+      json::setJsonRpcError(error, pResponse);
+      return;
+   }
+
+   upload.received[index] = checksum;
+   upload.lastActivity = boost::posix_time::second_clock::universal_time();
+   json::setJsonRpcResult(static_cast<int>(upload.received.size()), pResponse);
+}
+
+Error completeChunkedUpload(const core::json::JsonRpcRequest& request,
+                            json::JsonRpcResponse* pResponse)
+{
+   std::string id;
+   Error error = json::readParam(request.params, 0, &id);
+   if (error)
+      return error;
+
+   std::map<std::string, ChunkedUpload>::iterator it =
+                                             s_chunkedUploads.find(id);
+   if (it == s_chunkedUploads.end())
+      return Error(json::errc::ParamInvalid, ERROR_LOCATION);
+   ChunkedUpload upload = it->second;
+
+   if (static_cast<int>(upload.received.size()) != upload.chunkCount())
+   {
+      error = systemError(boost::system::errc::no_message_available,
+                          ERROR_LOCATION);
+      error.addProperty("received", static_cast<int>(upload.received.size()));
+      return error;
+   }
+   s_chunkedUploads.erase(it);
+
+   // detect any potential overwrites
+   FilePath destPath = upload.destDir.childPath(upload.filename);
+   json::Array overwritesJson;
+   if (destPath.extensionLowerCase() == ".zip")
+   {
+      error = detectZipFileOverwrites(upload.tempFile,
+                                      upload.destDir,
+                                      &overwritesJson);
+      if (error)
+         return error;
+   }
+   else if (destPath.exists())
+   {
+      overwritesJson.push_back(module_context::createFileSystemItem(destPath));
+   }
+
+   json::Object uploadTokenJson;
+   uploadTokenJson[kUploadFilename] = upload.filename;
+   uploadTokenJson[kUploadedTempFile] = upload.tempFile.absolutePath();
+   uploadTokenJson[kUploadTargetDirectory] = upload.destDir.absolutePath();
+   json::Object uploadJson;
+   uploadJson["token"] = uploadTokenJson;
+   uploadJson["overwrites"] = overwritesJson;
+   pResponse->setResult(uploadJson);
+   return Success();
+}
+
+Error cancelChunkedUpload(const core::json::JsonRpcRequest& request,
+                          json::JsonRpcResponse* pResponse)
+{
+   std::string id;
+   Error error = json::readParam(request.params, 0, &id);
+   if (error)
+      return error;
+
+   std::map<std::string, ChunkedUpload>::iterator it =
+                                             s_chunkedUploads.find(id);
+   if (it != s_chunkedUploads.end())
+   {
+      removeChunkedUploadTempFile(it->second);
+      s_chunkedUploads.erase(it);
+   }
+   return Success();
+}
+
 void setAttachmentResponse(const http::Request& request,
                            const std::string& filename,
                            const FilePath& attachmentPath,
@@ -912,6 +1212,10 @@ Error initialize()
    events().onClientInit.connect(bind(onClientInit));
    events().onDetectChanges.connect(bind(onDetectChanges, _1));
    events().onShutdown.connect(bind(onShutdown, _1));
+   events().onShutdown.connect(bind(onChunkedUploadsShutdown, _1));
+   
+   // expire chunked uploads which were interrupted and never resumed
+   events().onDetectChanges.connect(bind(removeChunkedUploads, false));
 
    // register path info function
    R_CallMethodDef pathInfoMethodDef ;
@@ -933,8 +1237,12 @@ Error initialize()
       (bind(registerRpcMethod, "rename_file", renameFile))
       (bind(registerUriHandler, "/files", handleFilesRequest))
       (bind(registerUriHandler, "/upload", handleFileUploadRequest))
+      (bind(registerUriHandler, "/chunk_upload", handleUploadChunkRequest))
       (bind(registerUriHandler, "/export", handleFileExportRequest))
       (bind(registerRpcMethod, "complete_upload", completeUpload))
+      (bind(registerRpcMethod, "begin_chunked_upload", beginChunkedUpload))
+      (bind(registerRpcMethod, "complete_chunked_upload", completeChunkedUpload))
+      (bind(registerRpcMethod, "cancel_chunked_upload", cancelChunkedUpload))
       (bind(sourceModuleRFile, "SessionFiles.R"))
       (bind(quotas::initialize));
    return initBlock.execute();
@@ -0,0 +1,393 @@
+/*
+ * SessionFind.cpp
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+
+#include "SessionFind.hpp"
+
+#include <set>
+#include <algorithm>
+#include <fstream>
+
+#include <boost/bind.hpp>
+#include <boost/regex.hpp>
+#include <boost/date_time/posix_time/posix_time.hpp>
+
+#include <core/Error.hpp>
+#include <core/Log.hpp>
+#include <core/Exec.hpp>
+#include <core/FilePath.hpp>
+#include <core/Thread.hpp>
+#include <core/BoostThread.hpp>
+#include <core/system/System.hpp>
+
+#include <session/SessionModuleContext.hpp>
+
+using namespace core ;
+
+namespace session {
+namespace modules { 
+namespace find {
+
+namespace {
+
+// stop a search once it has found this many matches
+const int kMaxResults = 1000;
+
+// send results to the client once this many have accumulated (or once
+// kBatchIntervalMs has passed since the last batch)
+const std::size_t kBatchSize = 50;
+const long kBatchIntervalMs = 250;
+
+// don't search files bigger than this (they are almost certainly data)
+const uintmax_t kMaxFileSize = 2 * 1024 * 1024;
+
+// longest line value returned to the client
+const std::size_t kMaxLineValueLength = 300;
+
+// handles of the searches which are running. searches run on a background
+// thread and stop as soon as their handle is removed from this set.
+boost::mutex s_searchesMutex;
+std::set<std::string> s_searches;
+
+bool isSearchRunning(const std::string& handle)
+{
+   LOCK_MUTEX(s_searchesMutex)
+   {
+      return s_searches.find(handle) != s_searches.end();
+   }
+   END_LOCK_MUTEX
+
+   return false;
+}
+
+void setSearchRunning(const std::string& handle, bool running)
+{
+   LOCK_MUTEX(s_searchesMutex)
+   {
+      if (running)
+         s_searches.insert(handle);
+      else
+         s_searches.erase(handle);
+   }
+   END_LOCK_MUTEX
+}
+
+struct Search
+{
+   std::string handle;
+   FilePath directory;
+   FilePath homePath;
+   boost::regex pattern;
+   boost::regex filePattern;
+   bool matchAllFiles;
+};
+
+// convert a list of wildcards (e.g. "*.R, *.Rnw") into a regex
+std::string wildcardsToRegex(const std::string& wildcards)
+{
+   std::string regex;
+   std::string::size_type start = 0;
+   while (start <= wildcards.size())
+   {
+      std::string::size_type end = wildcards.find_first_of(",;", start);
+      if (end == std::string::npos)
+         end = wildcards.size();
+
+      std::string wildcard;
+      for (std::string::size_type i = start; i < end; i++)
+      {
+         char ch = wildcards[i];
+         if (ch == '*')
+            wildcard.append(".*");
+         else if (ch == '?')
+            wildcard.append(".");
+         else if (ch == ' ' || ch == '\t')
+            continue;
+         else if (std::string("\\^$.|+()[]{}").find(ch) != std::string::npos)
+            wildcard.append(1, '\\').append(1, ch);
+         else
+            wildcard.append(1, ch);
+      }
+
+      if (!wildcard.empty())
+      {
+         if (!regex.empty())
+            regex.append("|");
+         regex.append("(" + wildcard + ")");
+      }
+
+      start = end + 1;
+   }
+   return regex;
+}
+
+class SearchResults : boost::noncopyable
+{
+public:
+   explicit SearchResults(const std::string& handle)
+      : handle_(handle), count_(0), filesSearched_(0),
+        lastBatchTime_(boost::posix_time::microsec_clock::universal_time())
+   {
+   }
+
+   void add(const std::string& file, int line, const std::string& lineValue)
+   {
+      files_.push_back(file);
+      lines_.push_back(line);
+      if (lineValue.size() > kMaxLineValueLength)
+         lineValues_.push_back(lineValue.substr(0, kMaxLineValueLength));
+      else
+         lineValues_.push_back(lineValue);
+      count_++;
+
+      if (files_.size() >= kBatchSize)
+         send(false, false);
+   }
+
+   void onFileSearched()
+   {
+      filesSearched_++;
+
+      // let the client know the search is progressing even when there
+      // are no new matches
+      using namespace boost::posix_time;
+      if (microsec_clock::universal_time() - lastBatchTime_ >
+          milliseconds(kBatchIntervalMs))
+      {
+         send(false, false);
+      }
+   }
+
+   bool isFull() const { return count_ >= kMaxResults; }
+
+   void send(bool complete, bool truncated)
+   {
+      json::Object results;
+      results["file"] = files_;
+      results["line"] = lines_;
+      results["line_value"] = lineValues_;
+
+      json::Object data;
+      data["handle"] = handle_;
+      data["results"] = results;
+      data["files_searched"] = filesSearched_;
+      data["complete"] = complete;
+      data["truncated"] = truncated;
+
+      module_context::enqueClientEvent(
+                     ClientEvent(client_events::kFindResult, data));
+
+      files_.clear();
+      lines_.clear();
+      lineValues_.clear();
+      lastBatchTime_ = boost::posix_time::microsec_clock::universal_time();
+   }
+
+private:
+   std::string handle_;
+   json::Array files_;
+   json::Array lines_;
+   json::Array lineValues_;
+   int count_;
+   int filesSearched_;
+   boost::posix_time::ptime lastBatchTime_;
+};
+
+bool isBinary(const std::string& line)
+{
+   return line.find('\0') != std::string::npos;
+}
+
+void searchFile(const Search& search,
+                const FilePath& filePath,
+                SearchResults* pResults)
+{
+   std::ifstream ifs(filePath.absolutePath().c_str());
+   if (!ifs)
+      return;
+
+   std::string aliasedPath = FilePath::createAliasedPath(filePath,
+                                                         search.homePath);
+   std::string line;
+   int lineNumber = 0;
+   while (std::getline(ifs, line))
+   {
+      lineNumber++;
+
+      // skip files which turn out to be binary
+      if (lineNumber == 1 && isBinary(line))
+         return;
+
+      if (!line.empty() && line[line.size() - 1] == '\r')
+         line.erase(line.size() - 1);
+
+      if (boost::regex_search(line, search.pattern))
+      {
+         pResults->add(aliasedPath, lineNumber, line);
+         if (pResults->isFull())
+            return;
+      }
+   }
+}
+
+// walk the directory tree (depth first, skipping hidden files and
+// directories), stopping early if the search is cancelled or full.
+// symlinked directories aren't followed since they can form cycles (e.g.
+// a link to an ancestor directory)
+void searchDirectory(const Search& search,
+                     const FilePath& directory,
+                     SearchResults* pResults)
+{
+   std::vector<FilePath> children;
+   Error error = directory.children(&children);
+   if (error)
+   {
+      LOG_ERROR(error);
+      return;
+   }
+
+   std::sort(children.begin(), children.end());
+
+   for (std::vector<FilePath>::const_iterator it = children.begin();
+        it != children.end();
+        ++it)
+   {
+      if (!isSearchRunning(search.handle) || pResults->isFull())
+         return;
+
+      if (it->filename().empty() || it->filename()[0] == '.')
+         continue;
+
+      if (it->isDirectory())
+      {
+         if (!it->isSymlink())
+            searchDirectory(search, *it, pResults);
+      }
+      else
+      {
+         if (!search.matchAllFiles &&
+             !boost::regex_match(it->filename(), search.filePattern))
+         {
+            continue;
+         }
+
+         if (it->size() > kMaxFileSize)
+            continue;
+
+         searchFile(search, *it, pResults);
+         pResults->onFileSearched();
+      }
+   }
+}
+
+void runSearch(Search search)
+{
+   try
+   {
+      SearchResults results(search.handle);
+      searchDirectory(search, search.directory, &results);
+
+      // a cancelled search doesn't report back (the client has already
+      // moved on)
+      if (isSearchRunning(search.handle))
+         results.send(true, results.isFull());
+
+      setSearchRunning(search.handle, false);
+   }
+   CATCH_UNEXPECTED_EXCEPTION
+}
+
+Error beginFind(const json::JsonRpcRequest& request,
+                json::JsonRpcResponse* pResponse)
+{
+   std::string searchString, directory, filePattern;
+   bool isRegex, ignoreCase;
+   Error error = json::readParams(request.params,
+                                  &searchString,
+                                  &isRegex,
+                                  &ignoreCase,
+                                  &directory,
+                                  &filePattern);
+   if (error)
+      return error;
+
+   Search search;
+   search.handle = core::system::generateUuid(false);
+   search.directory = module_context::resolveAliasedPath(directory);
+   search.homePath = module_context::userHomePath();
+
+   if (!search.directory.exists() || !search.directory.isDirectory())
+   {
+      return systemError(boost::system::errc::no_such_file_or_directory,
+                         ERROR_LOCATION);
+   }
+
+   // the search string and file patterns are validated here (rather than
+   // on the search thread) so that errors go back to the caller
+   try
+   {
+      boost::regex::flag_type flags = boost::regex::ECMAScript;
+      if (ignoreCase)
+         flags |= boost::regex::icase;
+      if (!isRegex)
+         flags |= boost::regex::literal;
+      search.pattern = boost::regex(searchString, flags);
+
+      std::string fileRegex = wildcardsToRegex(filePattern);
+      search.matchAllFiles = fileRegex.empty();
+      if (!search.matchAllFiles)
+         search.filePattern = boost::regex(fileRegex, boost::regex::icase);
+   }
+   catch(const boost::regex_error& e)
+   {
+      return systemError(boost::system::errc::invalid_argument,
+                         e.what(),
+                         ERROR_LOCATION);
+   }
+
+   setSearchRunning(search.handle, true);
+   core::thread::safeLaunchThread(boost::bind(runSearch, search));
+
+   pResponse->setResult(search.handle);
+   return Success();
+}
+
+Error stopFind(const json::JsonRpcRequest& request,
+               json::JsonRpcResponse* pResponse)
+{
+   std::string handle;
+   Error error = json::readParam(request.params, 0, &handle);
+   if (error)
+      return error;
+
+   setSearchRunning(handle, false);
+   return Success();
+}
+
+} // anonymous namespace
+
+Error initialize()
+{
+   using boost::bind;
+   using namespace module_context;
+   ExecBlock initBlock ;
+   initBlock.addFunctions()
+      (bind(registerRpcMethod, "begin_find", beginFind))
+      (bind(registerRpcMethod, "stop_find", stopFind));
+   return initBlock.execute();
+}
+
+
+} // namespace find
+} // namespace modules
+} // namesapce session
+
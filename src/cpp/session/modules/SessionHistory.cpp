@@ -405,6 +405,16 @@ Error searchHistory(const json::JsonRpcRequest& request,
    if (error)
       return error;
    
+   // optional end index (exclusive) -- the client may have already searched
+   // the entries at or beyond it locally
+   int endIndex = -1;
+   if (request.params.size() > 2)
+   {
+      error = json::readParam(request.params, 2, &endIndex);
+      if (error)
+         return error;
+   }
+   
    // convert the query into a list of search terms
    std::vector<std::string> searchTerms;
    boost::char_separator<char> sep;
@@ -423,6 +433,10 @@ Error searchHistory(const json::JsonRpcRequest& request,
       if (matchingEntries.size() >= static_cast<std::size_t>(maxEntries))
          break;
 
+      // skip entries beyond the end index
+      if (endIndex >= 0 && it->index >= endIndex)
+         continue;
+      
       // look for match
       if (matches(*it, searchTerms))
       {
@@ -333,6 +333,25 @@ void handleGraphicsRequest(const http::Request& request,
    }
 }
 
+
+// image filename for a neighbor of the active plot (empty if there is no
+// such plot or its image hasn't been rendered at the current size). the
+// client uses these to prefetch images for history navigation
+std::string neighborImageFilename(int index)
+{
+   using namespace r::session;
+   if (index < 0 || index >= graphics::display().plotCount())
+      return std::string();
+
+   std::string filename;
+   Error error = graphics::display().plotImageFilename(index, &filename);
+   if (error)
+   {
+      LOG_ERROR(error);
+      return std::string();
+   }
+   return filename;
+}
    
 void enquePlotsChanged(const r::session::graphics::DisplayState& displayState,
                        bool activatePlots, bool showManipulator)
@@ -347,6 +366,10 @@ void enquePlotsChanged(const r::session::graphics::DisplayState& displayState,
    jsonPlotsState["plotCount"] = displayState.plotCount;
    jsonPlotsState["activatePlots"] = activatePlots;
    jsonPlotsState["showManipulator"] = showManipulator;
+   jsonPlotsState["previousFilename"] =
+               neighborImageFilename(displayState.activePlotIndex - 1);
+   jsonPlotsState["nextFilename"] =
+               neighborImageFilename(displayState.activePlotIndex + 1);
    ClientEvent plotsStateChangedEvent(client_events::kPlotsStateChanged, 
                                       jsonPlotsState);
       
@@ -14,6 +14,7 @@
 #include "SessionSource.hpp"
 
 #include <string>
+#include <map>
 
 #include <boost/bind.hpp>
 
@@ -72,6 +73,56 @@ Error newDocument(const json::JsonRpcRequest& request,
    return Success();
 }
 
+// contents of documents which are being streamed to the client in chunks
+// (saves re-reading the document from the database for each chunk)
+std::map<std::string, std::string> s_streamingContents;
+
+// Returns the end of the chunk of contents starting at offset. The chunk is
+// at most maxBytes long and ends at a line boundary where possible (a line
+// longer than maxBytes is split, but never within a UTF-8 character).
+std::size_t chunkEnd(const std::string& contents,
+                     std::size_t offset,
+                     std::size_t maxBytes)
+{
+   if (maxBytes == 0 || contents.size() - offset <= maxBytes)
+      return contents.size();
+
+   std::size_t end = contents.rfind('\n', offset + maxBytes - 1);
+   if (end != std::string::npos && end >= offset)
+      return end + 1;
+
+   end = offset + maxBytes;
+   while (end > offset &&
+          (static_cast<unsigned char>(contents[end]) & 0xC0) == 0x80)
+   {
+      end--;
+   }
+   return end > offset ? end : offset + maxBytes;
+}
+
+// Writes the chunk of contents starting at offset to the json object, along
+// with the offset of the next chunk (null if this is the last chunk).
+// Returns true if there are more chunks.
+bool writeChunkToJson(const std::string& contents,
+                      std::size_t offset,
+                      std::size_t maxBytes,
+                      json::Object* pJson)
+{
+   std::size_t end = chunkEnd(contents, offset, maxBytes);
+   (*pJson)["contents"] = contents.substr(offset, end - offset);
+   (*pJson)["size"] = static_cast<int>(contents.size());
+   if (end < contents.size())
+   {
+      (*pJson)["next_chunk_offset"] = static_cast<int>(end);
+      return true;
+   }
+   else
+   {
+      (*pJson)["next_chunk_offset"] = json::Value();
+      return false;
+   }
+}
+
 Error openDocument(const json::JsonRpcRequest& request,
                    json::JsonRpcResponse* pResponse)
 {
@@ -85,6 +136,16 @@ Error openDocument(const json::JsonRpcRequest& request,
    error = json::readParam(request.params, 1, &type);
    if (error)
       return error ;
+
+   // optional size of the first chunk (the rest of the document is then
+   // retrieved using get_document_chunk); 0 means the whole document
+   int chunkSize = 0;
+   if (request.params.size() > 2)
+   {
+      error = json::readParam(request.params, 2, &chunkSize);
+      if (error)
+         return error;
+   }
    
    // ensure the file exists
    FilePath documentPath = module_context::resolveAliasedPath(path);
@@ -116,9 +177,48 @@ Error openDocument(const json::JsonRpcRequest& request,
    // return the doc
    json::Object jsonDoc;
    doc.writeToJson(&jsonDoc);
+   if (chunkSize > 0 &&
+       writeChunkToJson(doc.contents(), 0, chunkSize, &jsonDoc))
+   {
+      s_streamingContents[doc.id()] = doc.contents();
+   }
    pResponse->setResult(jsonDoc);
    return Success();
-} 
+}
+
+Error getDocumentChunk(const json::JsonRpcRequest& request,
+                       json::JsonRpcResponse* pResponse)
+{
+   std::string id;
+   int offset, chunkSize;
+   Error error = json::readParams(request.params, &id, &offset, &chunkSize);
+   if (error)
+      return error;
+
+   // read the document if it isn't already being streamed (e.g. if the
+   // session was restarted)
+   if (s_streamingContents.find(id) == s_streamingContents.end())
+   {
+      SourceDocument doc;
+      error = source_database::get(id, &doc);
+      if (error)
+         return error;
+      s_streamingContents[id] = doc.contents();
+   }
+
+   const std::string& contents = s_streamingContents[id];
+   if (offset < 0 || static_cast<std::size_t>(offset) > contents.size() ||
+       chunkSize <= 0)
+   {
+      return Error(json::errc::ParamInvalid, ERROR_LOCATION);
+   }
+
+   json::Object chunkJson;
+   if (!writeChunkToJson(contents, offset, chunkSize, &chunkJson))
+      s_streamingContents.erase(id);
+   pResponse->setResult(chunkJson);
+   return Success();
+}
    
 Error listDocuments(const json::JsonRpcRequest& request,
                     json::JsonRpcResponse* pResponse)
@@ -290,6 +390,123 @@ Error saveDocumentDiff(const json::JsonRpcRequest& request,
    return Success();
 }
 
+// Applies a patch made up of hunks (sorted by offset and non-overlapping)
+// to contents. Each hunk replaces the range [offset, offset+length) of the
+// original contents with its replacement; offsets and lengths are specified
+// in characters. Returns false if the patch can't be applied.
+bool applyPatch(const std::string& contents,
+                const json::Array& offsets,
+                const json::Array& lengths,
+                const json::Array& replacements,
+                std::string* pPatched)
+{
+   using namespace core::string_utils;
+
+   if (offsets.size() != lengths.size() ||
+       offsets.size() != replacements.size())
+   {
+      return false;
+   }
+
+   pPatched->clear();
+   pPatched->reserve(contents.size());
+
+   // walk the contents once, copying the unchanged text between hunks
+   std::string::const_iterator pos = contents.begin();
+   int posChars = 0;
+   for (std::size_t i = 0; i < offsets.size(); i++)
+   {
+      if (!json::isType<int>(offsets[i]) ||
+          !json::isType<int>(lengths[i]) ||
+          !json::isType<std::string>(replacements[i]))
+      {
+         return false;
+      }
+
+      int offset = offsets[i].get_int();
+      int length = lengths[i].get_int();
+      if (offset < posChars || length < 0)
+         return false;
+
+      // Offset and length are specified in characters, but contents
+      // is in UTF8 bytes. Convert before using.
+      std::string::const_iterator hunkBegin;
+      Error error = utf8Advance(pos, offset - posChars, contents.end(),
+                                &hunkBegin);
+      if (error)
+         return false;
+
+      std::string::const_iterator hunkEnd;
+      error = utf8Advance(hunkBegin, length, contents.end(), &hunkEnd);
+      if (error)
+         return false;
+
+      pPatched->append(pos, hunkBegin);
+      pPatched->append(replacements[i].get_str());
+      pos = hunkEnd;
+      posChars = offset + length;
+   }
+   pPatched->append(pos, contents.end());
+
+   return true;
+}
+
+Error saveDocumentPatch(const json::JsonRpcRequest& request,
+                        json::JsonRpcResponse* pResponse)
+{
+   pResponse->setSuppressDetectChanges(true);
+
+   // unique id and jsonPath (can be null for auto-save)
+   std::string id;
+   json::Value jsonPath, jsonType;
+
+   // The hunks of the patch, as parallel arrays (see applyPatch)
+   json::Array offsets, lengths, replacements;
+
+   // This is the expected hash of the current document. If the
+   // current hash value is different than this value, then the
+   // document cannot be patched and the request should be discarded.
+   std::string hash;
+
+   // read params
+   Error error = json::readParams(request.params,
+                                  &id,
+                                  &jsonPath,
+                                  &jsonType,
+                                  &offsets,
+                                  &lengths,
+                                  &replacements,
+                                  &hash);
+   if (error)
+      return error ;
+
+   // get the doc
+   SourceDocument doc;
+   error = source_database::get(id, &doc);
+   if (error)
+      return error ;
+
+   // Don't even attempt anything if we're not working off the same original
+   if (doc.hash() == hash)
+   {
+      std::string contents;
+      if (!applyPatch(doc.contents(), offsets, lengths, replacements, &contents))
+         return Success(); // Malformed patch. Abort differential save.
+
+      error = saveDocumentCore(contents, jsonPath, jsonType, &doc);
+      if (error)
+         return error;
+
+      error = source_database::put(doc);
+      if (error)
+         return error;
+
+      pResponse->setResult(doc.hash());
+   }
+
+   return Success();
+}
+
 Error checkForExternalEdit(const json::JsonRpcRequest& request,
                            json::JsonRpcResponse* pResponse)
 {
@@ -446,7 +663,8 @@ Error closeDocument(const json::JsonRpcRequest& request,
    Error error = json::readParam(request.params, 0, &id);
    if (error)
       return error ;
-   
+
+   s_streamingContents.erase(id);
    return source_database::remove(id);
 }
    
@@ -523,9 +741,11 @@ Error initialize()
       (bind(registerReplaceHook, "file.edit", fileEditHook, (CCODE*)NULL))
       (bind(registerRpcMethod, "new_document", newDocument))
       (bind(registerRpcMethod, "open_document", openDocument))
+      (bind(registerRpcMethod, "get_document_chunk", getDocumentChunk))
       (bind(registerRpcMethod, "list_documents", listDocuments))
       (bind(registerRpcMethod, "save_document", saveDocument))
       (bind(registerRpcMethod, "save_document_diff", saveDocumentDiff))
+      (bind(registerRpcMethod, "save_document_patch", saveDocumentPatch))
       (bind(registerRpcMethod, "check_for_external_edit", checkForExternalEdit))
       (bind(registerRpcMethod, "ignore_external_edit", ignoreExternalEdit))
       (bind(registerRpcMethod, "set_source_document_on_save", setSourceDocumentOnSave))
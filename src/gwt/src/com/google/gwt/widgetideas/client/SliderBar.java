@@ -412,6 +412,16 @@ public class SliderBar extends FocusPanel implements ResizableWidget,
     }
   }
 
+  /**
+   * Return true if the user is currently dragging the knob with the mouse
+   * or moving it with the keyboard.
+   * 
+   * @return true if sliding
+   */
+  public boolean isSliding() {
+    return slidingMouse || slidingKeyboard;
+  }
+
   /**
    * @return Gets whether this widget is enabled
    */
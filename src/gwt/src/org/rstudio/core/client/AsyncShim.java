@@ -79,6 +79,20 @@ public abstract class AsyncShim<TTarget>
    {
    }
 
+   /**
+    * [DON'T call this, it will be called by the generated code]
+    *
+    * Records how long the split point took to return the first time it
+    * was requested (i.e. the time taken to download the fragment)
+    */
+   protected final void reportFragmentLoad(String name, long millis)
+   {
+      if (fragmentLoadReported_)
+         return;
+      fragmentLoadReported_ = true;
+      Diagnostics.reportTime("Fragment: " + name, millis);
+   }
+
    /**
     * You can override this to do something asynchronous between when the
     * code loads and when the instance is created.
@@ -106,4 +120,6 @@ public abstract class AsyncShim<TTarget>
    protected void onDelayLoadFailure(Throwable reason)
    {
    }
+
+   private boolean fragmentLoadReported_;
 }
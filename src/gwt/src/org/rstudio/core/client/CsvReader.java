@@ -14,14 +14,171 @@ package org.rstudio.core.client;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
+/**
+ * Parses delimited text. Rows can either be iterated over as arrays of
+ * strings, or streamed through a RowHandler: call parse() with each chunk
+ * of input as it arrives and then finish(). Streamed rows expose their
+ * fields as ranges of the input, so no strings are created unless the
+ * handler asks for them.
+ *
+ * Rows end with LF, CRLF or CR. Fields may be enclosed in quotes (which
+ * are escaped within the field by doubling them), in which case they can
+ * contain separators and line breaks.
+ */
 public class CsvReader implements Iterable<String[]>
 {
+   public interface RowHandler
+   {
+      /**
+       * @return False to stop parsing
+       */
+      boolean onRow(Row row);
+   }
+
+   /**
+    * A row of fields, each of which is a range of getBuffer(). The row (and
+    * its buffer) is only valid during the call to RowHandler.onRow.
+    */
+   public static class Row
+   {
+      public String getBuffer()
+      {
+         return buffer_;
+      }
+
+      public int getFieldCount()
+      {
+         return count_;
+      }
+
+      /**
+       * @return The offset of the field's contents (inside any quotes)
+       */
+      public int getFieldOffset(int field)
+      {
+         return offsets_[field];
+      }
+
+      public int getFieldLength(int field)
+      {
+         return lengths_[field];
+      }
+
+      public String getField(int field)
+      {
+         String value = buffer_.substring(offsets_[field],
+                                          offsets_[field] + lengths_[field]);
+         if (escaped_[field])
+            value = value.replace(doubledQuote_, singleQuote_);
+         return value;
+      }
+
+      public String[] toArray()
+      {
+         String[] values = new String[count_];
+         for (int i = 0; i < count_; i++)
+            values[i] = getField(i);
+         return values;
+      }
+
+      private void reset(String buffer)
+      {
+         buffer_ = buffer;
+         count_ = 0;
+      }
+
+      private void addField(int offset, int length, boolean escaped)
+      {
+         if (count_ == offsets_.length)
+         {
+            offsets_ = grow(offsets_);
+            lengths_ = grow(lengths_);
+            boolean[] newEscaped = new boolean[count_ * 2];
+            System.arraycopy(escaped_, 0, newEscaped, 0, count_);
+            escaped_ = newEscaped;
+         }
+         offsets_[count_] = offset;
+         lengths_[count_] = length;
+         escaped_[count_] = escaped;
+         count_++;
+      }
+
+      private static int[] grow(int[] values)
+      {
+         int[] newValues = new int[values.length * 2];
+         System.arraycopy(values, 0, newValues, 0, values.length);
+         return newValues;
+      }
+
+      private String buffer_;
+      private int count_;
+      private int[] offsets_ = new int[16];
+      private int[] lengths_ = new int[16];
+      private boolean[] escaped_ = new boolean[16];
+      private String singleQuote_;
+      private String doubledQuote_;
+   }
+
+   /**
+    * Creates a reader of comma separated values quoted with '"'
+    */
    public CsvReader(String data)
    {
+      this(data, ',', '"');
+   }
+
+   /**
+    * @param quote The quote character, or 0 if fields can't be quoted
+    */
+   public CsvReader(String data, char separator, char quote)
+   {
+      this(separator, quote);
       data_ = data;
    }
 
+   /**
+    * Creates a reader for streaming input through parse()
+    */
+   public CsvReader(char separator, char quote)
+   {
+      separator_ = separator;
+      quote_ = quote;
+      row_.singleQuote_ = String.valueOf(quote);
+      row_.doubledQuote_ = row_.singleQuote_ + row_.singleQuote_;
+   }
+
+   /**
+    * Parses the next chunk of input, passing each complete row to handler.
+    * An incomplete row at the end of the chunk is kept until the next
+    * call (or finish).
+    *
+    * @return False if the handler stopped parsing
+    */
+   public boolean parse(String chunk, RowHandler handler)
+   {
+      // until the pending input contains the end of a row only the new
+      // chunk is scanned (rather than the row being re-parsed from its
+      // start), so a row which spans many chunks is still parsed in time
+      // linear to its length
+      pending_.add(chunk);
+      if (!scan(chunk))
+         return true;
+
+      return parseBuffer(takePending(), false, handler);
+   }
+
+   /**
+    * Parses whatever remains of the input after the last chunk
+    *
+    * @return False if the handler stopped parsing
+    */
+   public boolean finish(RowHandler handler)
+   {
+      return parseBuffer(takePending(), true, handler);
+   }
+
    public Iterator<String[]> iterator()
    {
       return new Iterator<String[]>()
@@ -35,73 +192,232 @@ public class CsvReader implements Iterable<String[]>
 
          public String[] next()
          {
-            ArrayList<String> list = new ArrayList<String>();
-            StringBuilder chunk = new StringBuilder();
+            if (!hasNext())
+               throw new NoSuchElementException();
 
-            final int START = 0;
-            final int IN_UNQUOTED = 1;
-            final int IN_QUOTE = 2;
-            final int QUOTE_ENDED = 3;
+            pos = parseRow(data_, pos, true);
+            return row_.toArray();
+         }
 
-            int state = START;
-            for ( ; pos < data_.length(); pos++)
-            {
-               char c = data_.charAt(pos);
+         public void remove()
+         {
+            throw new UnsupportedOperationException();
+         }
+      };
+   }
+
+   /**
+    * @return The number of characters of streamed input examined so far,
+    * by scanning for the ends of rows and by parsing them (each buffer
+    * parsed is counted in full)
+    */
+   long getScannedCount()
+   {
+      return scanned_;
+   }
 
-               if (c == '\n' && state != IN_QUOTE)
+   private boolean parseBuffer(String buffer, boolean last, RowHandler handler)
+   {
+      scanned_ += buffer.length();
+      int pos = 0;
+      while (pos < buffer.length())
+      {
+         int next = parseRow(buffer, pos, last);
+         if (next < 0)
+            break;
+
+         pos = next;
+         if (!handler.onRow(row_))
+            return false;
+      }
+
+      // the rest is an incomplete row
+      if (pos < buffer.length())
+      {
+         String rest = buffer.substring(pos);
+         pending_.add(rest);
+         scan(rest);
+      }
+      return true;
+   }
+
+   private String takePending()
+   {
+      String buffer;
+      if (pending_.size() == 1)
+      {
+         buffer = pending_.get(0);
+      }
+      else
+      {
+         StringBuilder builder = new StringBuilder();
+         for (String chunk : pending_)
+            builder.append(chunk);
+         buffer = builder.toString();
+      }
+
+      pending_.clear();
+      scanState_ = SCAN_FIELD_START;
+      return buffer;
+   }
+
+   /**
+    * Continues scanning the pending input (which starts at the beginning of
+    * a row) for the end of the row. A row is only considered complete once
+    * parseRow would be able to parse it without more input.
+    *
+    * @return True if the row ends within chunk
+    */
+   private boolean scan(String chunk)
+   {
+      int length = chunk.length();
+      for (int i = 0; i < length; i++)
+      {
+         char c = chunk.charAt(i);
+         switch (scanState_)
+         {
+            case SCAN_AFTER_CR:
+               // CR or CRLF, either way the row has ended
+               scanned_ += i;
+               return true;
+
+            case SCAN_QUOTED:
+               if (c == quote_)
+                  scanState_ = SCAN_QUOTE_IN_QUOTED;
+               continue;
+
+            case SCAN_QUOTE_IN_QUOTED:
+               if (c == quote_)
                {
-                  pos++;
-                  break;
+                  // doubled quote
+                  scanState_ = SCAN_QUOTED;
+                  continue;
                }
-               if (c == ',' && state != IN_QUOTE)
+               // the quote closed the field
+               break;
+
+            case SCAN_FIELD_START:
+               if (quote_ != 0 && c == quote_)
                {
-                  if (state != QUOTE_ENDED)
-                     list.add(chunk.toString());
-                  chunk = new StringBuilder();
-                  state = START;
+                  scanState_ = SCAN_QUOTED;
                   continue;
                }
-               if (c == '"' && state == START)
+               break;
+         }
+
+         if (c == separator_)
+            scanState_ = SCAN_FIELD_START;
+         else if (c == '\n')
+         {
+            scanned_ += i + 1;
+            return true;
+         }
+         else if (c == '\r')
+            scanState_ = SCAN_AFTER_CR;
+         else
+            scanState_ = SCAN_UNQUOTED;
+      }
+      scanned_ += length;
+      return false;
+   }
+
+   /**
+    * Parses the row starting at pos into row_.
+    *
+    * @param last Whether the data is the end of the input; if not, a row
+    * that isn't terminated is left for the next chunk
+    * @return The start of the next row, or -1 if the row isn't complete
+    */
+   private int parseRow(String data, int pos, boolean last)
+   {
+      int end = data.length();
+      row_.reset(data);
+
+      while (true)
+      {
+         if (quote_ != 0 && pos < end && data.charAt(pos) == quote_)
+         {
+            int start = ++pos;
+            boolean escaped = false;
+            while (true)
+            {
+               if (pos >= end)
                {
-                  state = IN_QUOTE;
-                  continue;
+                  if (!last)
+                     return -1;
+                  break; // unterminated quote
                }
-               if (c == '"' && state == IN_QUOTE)
+
+               if (data.charAt(pos) == quote_)
                {
-                  int lookahead = (pos < data_.length() - 1)
-                                  ? data_.charAt(pos+1)
-                                  : -1;
-                  if (lookahead == '"')
+                  if (pos + 1 < end && data.charAt(pos + 1) == quote_)
                   {
-                     chunk.append((char)lookahead);
-                     pos++;
+                     escaped = true;
+                     pos += 2;
                      continue;
                   }
-                  list.add(chunk.toString());
-                  chunk = new StringBuilder();
-                  state = QUOTE_ENDED;
-                  continue;
+                  if (pos + 1 >= end && !last)
+                     return -1; // can't tell whether the quote is doubled
+                  break;
                }
-
-               if (state == START)
-                  state = IN_UNQUOTED;
-               chunk.append(c);
+               pos++;
             }
+            row_.addField(start, pos - start, escaped);
 
-            if (state != QUOTE_ENDED)
-            {
-               list.add(chunk.toString());
-            }
+            // skip the closing quote, and ignore anything between it and
+            // the end of the field
+            while (pos < end && !isFieldEnd(data.charAt(pos)))
+               pos++;
+         }
+         else
+         {
+            int start = pos;
+            while (pos < end && !isFieldEnd(data.charAt(pos)))
+               pos++;
+            row_.addField(start, pos - start, false);
+         }
+
+         if (pos >= end)
+            return last ? end : -1;
 
-            return list.toArray(new String[0]);
+         char c = data.charAt(pos);
+         if (c == separator_)
+         {
+            pos++;
+            continue;
          }
 
-         public void remove()
+         // line break
+         if (c == '\r')
          {
-            throw new UnsupportedOperationException();
+            if (pos + 1 >= end && !last)
+               return -1; // can't tell whether this is CRLF
+            if (pos + 1 < end && data.charAt(pos + 1) == '\n')
+               pos++;
          }
-      };
+         return pos + 1;
+      }
+   }
+
+   private boolean isFieldEnd(char c)
+   {
+      return c == separator_ || c == '\n' || c == '\r';
    }
 
-   private final String data_;
+   private final char separator_;
+   private final char quote_;
+   private final Row row_ = new Row();
+   private String data_;
+
+   // input which doesn't yet contain a complete row, and the state of the
+   // scan for the end of that row
+   private final ArrayList<String> pending_ = new ArrayList<String>();
+   private int scanState_ = SCAN_FIELD_START;
+   private long scanned_ = 0;
+
+   private static final int SCAN_FIELD_START = 0;
+   private static final int SCAN_UNQUOTED = 1;
+   private static final int SCAN_QUOTED = 2;
+   private static final int SCAN_QUOTE_IN_QUOTED = 3;
+   private static final int SCAN_AFTER_CR = 4;
 }
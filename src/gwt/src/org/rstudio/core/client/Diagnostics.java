@@ -0,0 +1,47 @@
+/*
+ * Diagnostics.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named values (timings, counters, etc.) reported by client components so
+ * that they can be inspected in the request log (Help | Diagnostics | 
+ * Request Log, then 'M' to show them alongside the rpc metrics or 'X' to 
+ * export them). The most recently reported value for each name is retained.
+ */
+public class Diagnostics
+{
+   public static void report(String name, String value)
+   {
+      values_.put(name, value);
+      if (TRACE)
+         Debug.log("[Diagnostics] " + name + ": " + value);
+   }
+
+   public static void reportTime(String name, long ms)
+   {
+      report(name, ms + " ms");
+   }
+
+   public static Map<String, String> getValues()
+   {
+      return new LinkedHashMap<String, String>(values_);
+   }
+
+   private static final LinkedHashMap<String, String> values_ =
+                                       new LinkedHashMap<String, String>();
+
+   private static final boolean TRACE = false;
+}
@@ -0,0 +1,40 @@
+/*
+ * StartupTimeline.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client;
+
+/**
+ * Records the time (relative to the start of application initialization)
+ * at which each phase of startup completed. Phases are reported to
+ * Diagnostics in the order they occur so the whole timeline can be read
+ * from the request log viewer.
+ */
+public class StartupTimeline
+{
+   public static void start()
+   {
+      stopwatch_.reset();
+      started_ = true;
+   }
+
+   public static void mark(String phase)
+   {
+      if (!started_)
+         return;
+
+      Diagnostics.reportTime("Startup: " + phase, stopwatch_.getElapsed());
+      stopwatch_.mark("Startup: " + phase);
+   }
+
+   private static final Stopwatch stopwatch_ = new Stopwatch();
+   private static boolean started_ = false;
+}
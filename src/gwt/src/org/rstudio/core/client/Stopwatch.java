@@ -26,8 +26,12 @@ public class Stopwatch
 
    public void mark(String label)
    {
-      long stopTime = System.currentTimeMillis();
-      Debug.log("[Stopwatch] " + label + ": " + (stopTime - startTime_) + " ms");
+      Debug.log("[Stopwatch] " + label + ": " + getElapsed() + " ms");
+   }
+
+   public long getElapsed()
+   {
+      return System.currentTimeMillis() - startTime_;
    }
 
    private long startTime_;
@@ -0,0 +1,125 @@
+/*
+ * LatencyHistogram.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client.jsonrpc;
+
+/**
+ * Fixed size histogram of millisecond latencies. Buckets are laid out
+ * HDR-style: values below SUB_BUCKETS are counted exactly and above that
+ * each power of two is split into SUB_BUCKETS linear buckets, so every
+ * recorded value is accurate to within 1/SUB_BUCKETS (~6%) no matter how
+ * many values are recorded. Values above MAX_VALUE are counted in the
+ * last bucket.
+ */
+public class LatencyHistogram
+{
+   public void record(long millis)
+   {
+      int value = (int) Math.max(0, Math.min(millis, MAX_VALUE));
+      counts_[bucketIndex(value)]++;
+      count_++;
+      sum_ += value;
+      max_ = Math.max(max_, value);
+   }
+
+   public int getCount()
+   {
+      return count_;
+   }
+
+   public int getMax()
+   {
+      return max_;
+   }
+
+   public double getMean()
+   {
+      return count_ > 0 ? sum_ / count_ : 0;
+   }
+
+   /**
+    * Returns the value at the given percentile (0-100). The result is the
+    * highest value that falls in the same bucket as the requested one
+    * (but never more than the largest value recorded).
+    */
+   public int getPercentile(double percentile)
+   {
+      if (count_ == 0)
+         return 0;
+
+      long target = (long) Math.ceil((percentile / 100.0) * count_);
+      target = Math.max(1, Math.min(target, count_));
+
+      long seen = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++)
+      {
+         seen += counts_[i];
+         if (seen >= target)
+            return Math.min(bucketUpperBound(i), max_);
+      }
+      return max_;
+   }
+
+   public int getBucketCount()
+   {
+      return BUCKET_COUNT;
+   }
+
+   public int getBucketLowerBound(int index)
+   {
+      if (index < SUB_BUCKETS)
+         return index;
+      int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+      int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+      return (SUB_BUCKETS + sub) << shift;
+   }
+
+   public int getBucketValueCount(int index)
+   {
+      return counts_[index];
+   }
+
+   private int bucketUpperBound(int index)
+   {
+      if (index < SUB_BUCKETS)
+         return index;
+      int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+      return getBucketLowerBound(index) + (1 << shift) - 1;
+   }
+
+   private static int bucketIndex(int value)
+   {
+      if (value < SUB_BUCKETS)
+         return value;
+
+      // shift is how many low order bits we discard to bring the value
+      // into [SUB_BUCKETS, 2 * SUB_BUCKETS)
+      int shift = 31 - Integer.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+      int sub = (value >> shift) - SUB_BUCKETS;
+      return Math.min(SUB_BUCKETS + (shift * SUB_BUCKETS) + sub,
+                      BUCKET_COUNT - 1);
+   }
+
+   private static final int SUB_BUCKET_BITS = 4;
+   private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+   // 2^24 ms is about 4.6 hours
+   private static final int MAX_VALUE_BITS = 24;
+   private static final int MAX_VALUE = (1 << MAX_VALUE_BITS) - 1;
+   private static final int BUCKET_COUNT =
+         SUB_BUCKETS + (MAX_VALUE_BITS - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+   private final int[] counts_ = new int[BUCKET_COUNT];
+   private int count_;
+   private double sum_;
+   private int max_;
+}
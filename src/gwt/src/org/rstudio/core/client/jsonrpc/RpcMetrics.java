@@ -0,0 +1,234 @@
+/*
+ * RpcMetrics.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client.jsonrpc;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONNumber;
+import com.google.gwt.json.client.JSONObject;
+
+import org.rstudio.core.client.jsonrpc.RequestLogEntry.ResponseType;
+
+/**
+ * Aggregate statistics for json-rpc methods and client events over the
+ * life of the session. Unlike the RequestLog (which keeps only the most
+ * recent requests) nothing is ever dropped; each method or event type
+ * uses a fixed amount of memory regardless of how often it is called.
+ */
+public class RpcMetrics
+{
+   public static class Metrics
+   {
+      Metrics(String name)
+      {
+         name_ = name;
+      }
+
+      public String getName()
+      {
+         return name_;
+      }
+
+      public int getCount()
+      {
+         return count_;
+      }
+
+      public int getErrorCount()
+      {
+         return errors_;
+      }
+
+      public int getCancelledCount()
+      {
+         return cancelled_;
+      }
+
+      public double getRequestBytes()
+      {
+         return requestBytes_;
+      }
+
+      public double getResponseBytes()
+      {
+         return responseBytes_;
+      }
+
+      public LatencyHistogram getLatency()
+      {
+         return latency_;
+      }
+
+      JSONObject toJson()
+      {
+         JSONObject json = new JSONObject();
+         json.put("count", new JSONNumber(count_));
+         json.put("errors", new JSONNumber(errors_));
+         json.put("cancelled", new JSONNumber(cancelled_));
+         json.put("requestBytes", new JSONNumber(requestBytes_));
+         json.put("responseBytes", new JSONNumber(responseBytes_));
+         json.put("meanMs", new JSONNumber(latency_.getMean()));
+         json.put("p50Ms", new JSONNumber(latency_.getPercentile(50)));
+         json.put("p90Ms", new JSONNumber(latency_.getPercentile(90)));
+         json.put("p99Ms", new JSONNumber(latency_.getPercentile(99)));
+         json.put("maxMs", new JSONNumber(latency_.getMax()));
+
+         // non-empty buckets as [lowerBoundMs, count] pairs
+         JSONArray buckets = new JSONArray();
+         for (int i = 0; i < latency_.getBucketCount(); i++)
+         {
+            int count = latency_.getBucketValueCount(i);
+            if (count > 0)
+            {
+               JSONArray bucket = new JSONArray();
+               bucket.set(0, new JSONNumber(latency_.getBucketLowerBound(i)));
+               bucket.set(1, new JSONNumber(count));
+               buckets.set(buckets.size(), bucket);
+            }
+         }
+         json.put("buckets", buckets);
+         return json;
+      }
+
+      private final String name_;
+      private int active_;
+      private double lastActivity_;
+      private int count_;
+      private int errors_;
+      private int cancelled_;
+      private double requestBytes_;
+      private double responseBytes_;
+      private final LatencyHistogram latency_ = new LatencyHistogram();
+   }
+
+   public static void requestStarted(String method)
+   {
+      Metrics metrics = get(methods_, method);
+      metrics.active_++;
+      metrics.lastActivity_ = System.currentTimeMillis();
+   }
+
+   public static void recordRequest(String method,
+                                    int responseType,
+                                    long latencyMillis,
+                                    int requestBytes,
+                                    int responseBytes)
+   {
+      Metrics metrics = get(methods_, method);
+      metrics.active_ = Math.max(0, metrics.active_ - 1);
+      metrics.lastActivity_ = System.currentTimeMillis();
+      metrics.count_++;
+      if (responseType == ResponseType.Cancelled)
+         metrics.cancelled_++;
+      else if (responseType != ResponseType.Normal)
+         metrics.errors_++;
+      metrics.requestBytes_ += requestBytes;
+      metrics.responseBytes_ += responseBytes;
+
+      // cancelled requests don't tell us anything about latency
+      if (responseType != ResponseType.Cancelled)
+         metrics.latency_.record(latencyMillis);
+   }
+
+   public static void recordEvent(String type, long dispatchMillis)
+   {
+      Metrics metrics = get(events_, type);
+      metrics.count_++;
+      metrics.latency_.record(dispatchMillis);
+   }
+
+   /**
+    * Returns true if no requests are in flight and none have been sent or
+    * completed within the last quietMillis. Long running methods (e.g. the
+    * long poll for client events) can be excluded.
+    */
+   public static boolean isNetworkIdle(long quietMillis,
+                                       String... ignoredMethods)
+   {
+      double now = System.currentTimeMillis();
+      for (Metrics metrics : methods_.values())
+      {
+         if (isIgnored(metrics.getName(), ignoredMethods))
+            continue;
+         if (metrics.active_ > 0 || now - metrics.lastActivity_ < quietMillis)
+            return false;
+      }
+      return true;
+   }
+
+   public static Metrics[] getMethodMetrics()
+   {
+      return methods_.values().toArray(new Metrics[methods_.size()]);
+   }
+
+   public static Metrics[] getEventMetrics()
+   {
+      return events_.values().toArray(new Metrics[events_.size()]);
+   }
+
+   public static JSONObject toJson()
+   {
+      JSONObject json = new JSONObject();
+      json.put("since", new JSONNumber(since_));
+      json.put("now", new JSONNumber(System.currentTimeMillis()));
+      json.put("methods", toJson(methods_));
+      json.put("events", toJson(events_));
+      return json;
+   }
+
+   public static void reset()
+   {
+      methods_.clear();
+      events_.clear();
+      since_ = System.currentTimeMillis();
+   }
+
+   private static JSONObject toJson(Map<String, Metrics> metrics)
+   {
+      JSONObject json = new JSONObject();
+      for (Metrics m : metrics.values())
+         json.put(m.getName(), m.toJson());
+      return json;
+   }
+
+   private static boolean isIgnored(String method, String[] ignoredMethods)
+   {
+      for (String ignored : ignoredMethods)
+      {
+         if (ignored.equals(method))
+            return true;
+      }
+      return false;
+   }
+
+   private static Metrics get(Map<String, Metrics> metrics, String name)
+   {
+      if (name == null)
+         name = "(unknown)";
+      Metrics m = metrics.get(name);
+      if (m == null)
+      {
+         m = new Metrics(name);
+         metrics.put(name, m);
+      }
+      return m;
+   }
+
+   private static final TreeMap<String, Metrics> methods_ =
+                                             new TreeMap<String, Metrics>();
+   private static final TreeMap<String, Metrics> events_ =
+                                             new TreeMap<String, Metrics>();
+   private static double since_ = System.currentTimeMillis();
+}
@@ -84,6 +84,10 @@ public class RpcRequest
             Debug.log("Request: " + requestString) ;
 
          requestLogEntry_ = RequestLog.log(requestId, requestString);
+         requestStartTime_ = System.currentTimeMillis();
+         requestBytes_ = requestString.length();
+         metricsRecorded_ = false;
+         RpcMetrics.requestStarted(method_);
 
          request_ = builder.sendRequest(requestString, new RequestCallback() {
             
@@ -91,6 +95,7 @@ public class RpcRequest
             {      
                requestLogEntry_.logResponse(ResponseType.Error,
                                            exception.getLocalizedMessage());
+               recordMetrics(ResponseType.Error, 0);
                // ERROR: Request failed
                RpcError error = RpcError.create(
                                           RpcError.TRANSMISSION_ERROR,
@@ -114,6 +119,8 @@ public class RpcRequest
                         Debug.log("Response: " + responseText) ;
                      requestLogEntry_.logResponse(ResponseType.Normal,
                                                  responseText);
+                     recordMetrics(ResponseType.Normal, 
+                                   responseText.length());
                      rpcResponse = RpcResponse.parse(responseText);
                      
                      // response received and validated, process it!
@@ -148,6 +155,7 @@ public class RpcRequest
                  
                   requestLogEntry_.logResponse(ResponseType.Unknown,
                                               message);
+                  recordMetrics(ResponseType.Unknown, 0);
                   RpcError error = RpcError.create(
                                              RpcError.TRANSMISSION_ERROR,
                                              message) ;
@@ -164,6 +172,7 @@ public class RpcRequest
         
          if (requestLogEntry_ != null)
             requestLogEntry_.logResponse(ResponseType.Unknown, message);
+         recordMetrics(ResponseType.Unknown, 0);
          
          RpcError error = RpcError.create(RpcError.TRANSMISSION_ERROR,
                                           message);
@@ -171,8 +180,24 @@ public class RpcRequest
       }
    }
    
+   public String getMethod()
+   {
+      return method_;
+   }
+   
+   public JSONArray getParams()
+   {
+      return params_;
+   }
+   
    public void cancel()
    {
+      if (batch_ != null)
+      {
+         batch_.cancel(this);
+         batch_ = null;
+      }
+      
       if (request_ != null)
       {
          request_.cancel();
@@ -183,8 +208,56 @@ public class RpcRequest
       {
          requestLogEntry_.logResponse(ResponseType.Cancelled, "Cancelled");
          requestLogEntry_ = null;
+         recordMetrics(ResponseType.Cancelled, 0);
       }
    }
+   
+   // requests sent as part of a multi-call are logged and measured as if
+   // they had been sent on their own (RpcRequestBatch reports the outcome
+   // of each call) and cancelling them cancels them within the batch
+   
+   void setBatch(RpcRequestBatch batch)
+   {
+      batch_ = batch;
+   }
+   
+   void onBatchSent(String callData)
+   {
+      requestLogEntry_ = RequestLog.log(Integer.toString(Random.nextInt()),
+                                        callData);
+      requestStartTime_ = System.currentTimeMillis();
+      requestBytes_ = callData.length();
+      metricsRecorded_ = false;
+      RpcMetrics.requestStarted(method_);
+   }
+   
+   void onBatchResponse(int responseType, String responseData)
+   {
+      batch_ = null;
+      if (requestLogEntry_ != null)
+      {
+         requestLogEntry_.logResponse(responseType, responseData);
+         requestLogEntry_ = null;
+      }
+      recordMetrics(responseType, 
+                    responseType == ResponseType.Normal ? 
+                                    responseData.length() : 0);
+   }
+   
+   private void recordMetrics(int responseType, int responseBytes)
+   {
+      // only the first outcome of each send counts (e.g. a request can be
+      // cancelled after its response has already been received)
+      if (metricsRecorded_)
+         return;
+      metricsRecorded_ = true;
+      
+      RpcMetrics.recordRequest(method_,
+                               responseType,
+                               System.currentTimeMillis() - requestStartTime_,
+                               requestBytes_,
+                               responseBytes);
+   }
      
    final private String url_ ;
    final private String method_ ;
@@ -194,6 +267,10 @@ public class RpcRequest
    final private JSONNumber clientVersion_;
    private Request request_ = null;
    private RequestLogEntry requestLogEntry_ = null;
+   private long requestStartTime_;
+   private int requestBytes_;
+   private boolean metricsRecorded_ = true;
+   private RpcRequestBatch batch_ = null;
    
      
 }
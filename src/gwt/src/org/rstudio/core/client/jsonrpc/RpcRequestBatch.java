@@ -0,0 +1,198 @@
+/*
+ * RpcRequestBatch.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+
+package org.rstudio.core.client.jsonrpc;
+
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONString;
+import org.rstudio.core.client.jsonrpc.RequestLogEntry.ResponseType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+// Bundles several independent RpcRequests into a single multi-call request.
+// The params of the multi-call are the method/params of each request and the
+// result is an array containing the raw response of each call (in order),
+// which is dispatched to the callback of the corresponding request. Errors
+// which apply to the entire batch (transmission errors or an error response
+// to the multi-call itself) are dispatched to the callback of every request.
+// Each call is also logged and measured (RpcMetrics) under its own method,
+// and can be cancelled individually (via RpcRequest.cancel).
+public class RpcRequestBatch
+{
+   public RpcRequestBatch(String url,
+                          String method,
+                          String clientId,
+                          double clientVersion)
+   {
+      url_ = url;
+      method_ = method;
+      clientId_ = clientId;
+      clientVersion_ = clientVersion;
+   }
+   
+   public void add(RpcRequest request, RpcRequestCallback callback)
+   {
+      request.setBatch(this);
+      requests_.add(request);
+      callbacks_.add(callback);
+   }
+   
+   public int size()
+   {
+      return requests_.size();
+   }
+   
+   public void send()
+   {
+      // requests cancelled before the batch was sent have already been
+      // removed from it
+      if (requests_.size() == 0)
+         return;
+      
+      // no need for a multi-call if there is only a single request
+      if (requests_.size() == 1)
+      {
+         RpcRequest request = requests_.get(0);
+         request.setBatch(null);
+         request.send(callbacks_.get(0));
+         return;
+      }
+      
+      // build params (one object per call)
+      sent_ = true;
+      JSONArray params = new JSONArray();
+      for (int i = 0; i < requests_.size(); i++)
+      {
+         RpcRequest request = requests_.get(i);
+         JSONObject call = new JSONObject();
+         call.put("method", new JSONString(request.getMethod()));
+         call.put("params", request.getParams() != null ? 
+                                          request.getParams() : 
+                                          new JSONArray());
+         params.set(i, call);
+         request.onBatchSent(call.toString());
+      }
+      
+      batchRequest_ = new RpcRequest(url_, 
+                                     method_, 
+                                     params, 
+                                     null, 
+                                     clientId_, 
+                                     clientVersion_);
+      
+      batchRequest_.send(new RpcRequestCallback() {
+         public void onError(RpcRequest request, RpcError error)
+         {
+            for (int i = 0; i < requests_.size(); i++)
+            {
+               if (isCancelled(i))
+                  continue;
+               requests_.get(i).onBatchResponse(ResponseType.Error, 
+                                                error.getMessage());
+               callbacks_.get(i).onError(requests_.get(i), error);
+            }
+         }
+
+         public void onResponseReceived(RpcRequest request, 
+                                        RpcResponse response)
+         {
+            // error which applies to the entire batch
+            if (response.getError() != null)
+            {
+               for (int i = 0; i < requests_.size(); i++)
+               {
+                  if (isCancelled(i))
+                     continue;
+                  requests_.get(i).onBatchResponse(
+                                    ResponseType.Error,
+                                    response.getError().getMessage());
+                  callbacks_.get(i).onResponseReceived(requests_.get(i),
+                                                       response);
+               }
+               return;
+            }
+            
+            // dispatch the individual responses
+            JsArray<RpcResponse> responses = response.getResult();
+            for (int i = 0; i < requests_.size(); i++)
+            {
+               if (isCancelled(i))
+                  continue;
+               
+               if (responses != null && i < responses.length())
+               {
+                  RpcResponse callResponse = responses.get(i);
+                  requests_.get(i).onBatchResponse(
+                                    ResponseType.Normal,
+                                    new JSONObject(callResponse).toString());
+                  callbacks_.get(i).onResponseReceived(requests_.get(i),
+                                                       callResponse);
+               }
+               else
+               {
+                  // ERROR: no response for this call
+                  RpcError error = RpcError.create(
+                                    RpcError.TRANSMISSION_ERROR,
+                                    "No response received for batched call");
+                  requests_.get(i).onBatchResponse(ResponseType.Error,
+                                                   error.getMessage());
+                  callbacks_.get(i).onError(requests_.get(i), error);
+               }
+            }
+         }
+      });
+   }
+   
+   // called by RpcRequest.cancel for requests within the batch
+   void cancel(RpcRequest request)
+   {
+      int index = requests_.indexOf(request);
+      if (index == -1)
+         return;
+      
+      if (!sent_)
+      {
+         // not sent yet so just leave it out
+         requests_.remove(index);
+         callbacks_.remove(index);
+      }
+      else
+      {
+         // the call is already on its way, so ignore its response (and if
+         // every call in the batch has been cancelled then the batch 
+         // request itself can be cancelled)
+         cancelled_.add(index);
+         if (cancelled_.size() == requests_.size() && batchRequest_ != null)
+            batchRequest_.cancel();
+      }
+   }
+   
+   private boolean isCancelled(int index)
+   {
+      return cancelled_.contains(index);
+   }
+   
+   private final String url_;
+   private final String method_;
+   private final String clientId_;
+   private final double clientVersion_;
+   private final ArrayList<RpcRequest> requests_ = new ArrayList<RpcRequest>();
+   private final ArrayList<RpcRequestCallback> callbacks_ = 
+                                          new ArrayList<RpcRequestCallback>();
+   private final HashSet<Integer> cancelled_ = new HashSet<Integer>();
+   private boolean sent_ = false;
+   private RpcRequest batchRequest_ = null;
+}
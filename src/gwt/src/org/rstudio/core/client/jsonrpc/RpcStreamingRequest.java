@@ -0,0 +1,213 @@
+/*
+ * RpcStreamingRequest.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+
+package org.rstudio.core.client.jsonrpc;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONNumber;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONString;
+import com.google.gwt.user.client.Random;
+import org.rstudio.core.client.Debug;
+import org.rstudio.core.client.jsonrpc.RequestLogEntry.ResponseType;
+
+// A json-rpc request whose response is streamed back by the server as a 
+// sequence of newline terminated json-rpc responses over a single http
+// connection. Each response is dispatched to the callback as soon as it
+// has been fully received (XMLHttpRequest makes partial response text
+// available while readyState is LOADING).
+public class RpcStreamingRequest
+{
+   public RpcStreamingRequest(String url, 
+                              String method, 
+                              JSONArray params, 
+                              String clientId,
+                              double clientVersion)
+   {
+      url_ = url;
+      method_ = method;
+      params_ = params;
+      clientId_ = clientId;
+      clientVersion_ = clientVersion;
+   }
+   
+   public void send(RpcStreamingRequestCallback callback)
+   {
+      callback_ = callback;
+      
+      // build json request object
+      JSONObject request = new JSONObject() ;
+      request.put("method", new JSONString(method_)) ;
+      if (params_ != null)
+         request.put("params", params_);  
+      if (clientId_ != null)
+         request.put("clientId", new JSONString(clientId_));
+      request.put("version", new JSONNumber(clientVersion_));
+      
+      String requestId = Integer.toString(Random.nextInt());
+      String requestString = request.toString();
+      if (RpcRequest.TRACE)
+         Debug.log("Streaming Request: " + requestString) ;
+      requestLogEntry_ = RequestLog.log(requestId, requestString);
+      
+      try
+      {
+         xhr_ = sendNative(url_, requestId, requestString);
+      }
+      catch(Exception e)
+      {
+         onTransmissionError(e.getMessage());
+      }
+   }
+   
+   public void cancel()
+   {
+      callback_ = null;
+      
+      if (xhr_ != null)
+      {
+         abortNative(xhr_);
+         xhr_ = null;
+      }
+      
+      if (requestLogEntry_ != null)
+      {
+         requestLogEntry_.logResponse(ResponseType.Cancelled, "Cancelled");
+         requestLogEntry_ = null;
+      }
+   }
+   
+   private native JavaScriptObject sendNative(String url,
+                                              String requestId,
+                                              String body) /*-{
+      var self = this;
+      var xhr = new XMLHttpRequest();
+      var offset = 0;
+      
+      var readFrames = function() {
+         var text = xhr.responseText;
+         if (!text)
+            return;
+         var idx;
+         while ((idx = text.indexOf("\n", offset)) != -1) {
+            var frame = text.substring(offset, idx);
+            offset = idx + 1;
+            if (frame.length > 0)
+               self.@org.rstudio.core.client.jsonrpc.RpcStreamingRequest::onFrame(Ljava/lang/String;)(frame);
+         }
+      };
+      
+      xhr.onreadystatechange = $entry(function() {
+         if (xhr.readyState == 3) {
+            // some browsers throw if status is accessed while loading
+            var status = 0;
+            try { status = xhr.status; } catch(e) {}
+            if (status == 200)
+               readFrames();
+         }
+         else if (xhr.readyState == 4) {
+            if (xhr.status == 200)
+               readFrames();
+            self.@org.rstudio.core.client.jsonrpc.RpcStreamingRequest::onDone(I)(xhr.status);
+         }
+      });
+      
+      xhr.open("POST", url, true);
+      xhr.setRequestHeader("Content-Type", "application/json");
+      xhr.setRequestHeader("Accept", "application/json");
+      xhr.setRequestHeader("X-RS-RID", requestId);
+      xhr.send(body);
+      return xhr;
+   }-*/;
+   
+   private static native void abortNative(JavaScriptObject xhr) /*-{
+      xhr.onreadystatechange = function() {};
+      xhr.abort();
+   }-*/;
+   
+   private void onFrame(String frame)
+   {
+      if (callback_ == null)
+         return;
+      
+      if (RpcRequest.TRACE)
+         Debug.log("Streaming Response: " + frame) ;
+      
+      RpcResponse response = RpcResponse.parse(frame);
+      if (response != null)
+      {
+         callback_.onResponseReceived(this, response);
+      }
+      else
+      {
+         // ERROR: Unable to parse JSON (abort the stream)
+         RpcStreamingRequestCallback callback = callback_;
+         cancel();
+         callback.onError(this, RpcError.create(RpcError.TRANSMISSION_ERROR,
+                                                "Invalid streaming response"));
+      }
+   }
+   
+   private void onDone(int status)
+   {
+      xhr_ = null;
+      if (callback_ == null)
+         return;
+      
+      if (status == 200)
+      {
+         requestLogEntry_.logResponse(ResponseType.Normal, "Stream ended");
+         requestLogEntry_ = null;
+         callback_.onCompleted(this);
+      }
+      else
+      {
+         // ERROR: Non-200 response from server
+         String message = "Status code " + 
+                          Integer.toString(status) + 
+                          " returned";
+         if (status == 0)
+         {
+            message = "Unable to reach RStudio server " +
+                      "(Internet connection may be offline)";
+         }
+         onTransmissionError(message);
+      }
+   }
+   
+   private void onTransmissionError(String message)
+   {
+      if (requestLogEntry_ != null)
+      {
+         requestLogEntry_.logResponse(ResponseType.Unknown, message);
+         requestLogEntry_ = null;
+      }
+      
+      if (callback_ != null)
+      {
+         RpcError error = RpcError.create(RpcError.TRANSMISSION_ERROR,
+                                          message);
+         callback_.onError(this, error);
+      }
+   }
+   
+   final private String url_ ;
+   final private String method_ ;
+   final private JSONArray params_ ;
+   final private String clientId_;
+   final private double clientVersion_;
+   private RpcStreamingRequestCallback callback_ = null;
+   private JavaScriptObject xhr_ = null;
+   private RequestLogEntry requestLogEntry_ = null;
+}
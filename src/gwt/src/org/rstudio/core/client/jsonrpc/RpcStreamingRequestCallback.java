@@ -0,0 +1,24 @@
+/*
+ * RpcStreamingRequestCallback.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client.jsonrpc;
+
+public interface RpcStreamingRequestCallback
+{
+   void onError(RpcStreamingRequest request, RpcError error);
+   
+   // called once for each response written to the stream
+   void onResponseReceived(RpcStreamingRequest request, RpcResponse response);
+   
+   // called when the server ends the stream
+   void onCompleted(RpcStreamingRequest request);
+}
@@ -0,0 +1,216 @@
+/*
+ * TextPatch.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client.patch;
+
+import java.util.ArrayList;
+
+/**
+ * Accumulates the edits made to a document (as reported by the editor)
+ * since some base version, as a sorted list of non-overlapping hunks.
+ * Unlike SubstringDiff, edits at several places in the document result in
+ * several small hunks rather than one large replacement.
+ */
+public class TextPatch
+{
+   /**
+    * Provides ranges of the current version of the document (so that
+    * building the hunks doesn't require the text of the whole document)
+    */
+   public interface Source
+   {
+      String getText(int start, int end);
+   }
+
+   public static class Hunk
+   {
+      private Hunk(int offset, int length, String replacement)
+      {
+         offset_ = offset;
+         length_ = length;
+         replacement_ = replacement;
+      }
+
+      // offset into the base version
+      public int getOffset()
+      {
+         return offset_;
+      }
+
+      // length of the replaced range in the base version
+      public int getLength()
+      {
+         return length_;
+      }
+
+      public String getReplacement()
+      {
+         return replacement_;
+      }
+
+      private final int offset_;
+      private final int length_;
+      private final String replacement_;
+   }
+
+   // a changed region, in the coordinates of the current version
+   private static class Region
+   {
+      Region(int start, int length, int baseLength)
+      {
+         this.start = start;
+         this.length = length;
+         this.baseLength = baseLength;
+      }
+
+      int end()
+      {
+         return start + length;
+      }
+
+      int start;
+      int length;
+      int baseLength;
+   }
+
+   /**
+    * Records that, in the current version, the range [offset,
+    * offset+removed) was replaced by inserted characters.
+    */
+   public void replace(int offset, int removed, int inserted)
+   {
+      if (overflowed_ || (removed == 0 && inserted == 0))
+         return;
+
+      // find the regions touching [offset, offset+removed]
+      int first = 0;
+      while (first < regions_.size() && regions_.get(first).end() < offset)
+         first++;
+      int last = first;
+      while (last < regions_.size()
+             && regions_.get(last).start <= offset + removed)
+         last++;
+
+      // merge them (along with the edit) into a single region; text in
+      // between the merged regions is unchanged from the base version
+      int start = offset;
+      int end = offset + removed;
+      int length = 0;
+      int baseLength = 0;
+      for (int i = first; i < last; i++)
+      {
+         Region region = regions_.get(i);
+         start = Math.min(start, region.start);
+         end = Math.max(end, region.end());
+         length += region.length;
+         baseLength += region.baseLength;
+      }
+      baseLength += (end - start) - length;
+
+      for (int i = first; i < last; i++)
+         regions_.remove(first);
+      regions_.add(first, new Region(start,
+                                     (end - start) - removed + inserted,
+                                     baseLength));
+
+      int shift = inserted - removed;
+      for (int i = first + 1; i < regions_.size(); i++)
+         regions_.get(i).start += shift;
+
+      if (regions_.size() > MAX_REGIONS)
+      {
+         overflowed_ = true;
+         regions_.clear();
+      }
+   }
+
+   public void clear()
+   {
+      regions_.clear();
+      overflowed_ = false;
+   }
+
+   public boolean isEmpty()
+   {
+      return !overflowed_ && regions_.isEmpty();
+   }
+
+   /**
+    * @return True if the edits were too scattered to be tracked, in which
+    * case the patch can't be used
+    */
+   public boolean isOverflowed()
+   {
+      return overflowed_;
+   }
+
+   /**
+    * @param contents The current version of the document
+    * @return The hunks (sorted by offset) which transform the base version
+    * into the current version
+    */
+   public ArrayList<Hunk> getHunks(final String contents)
+   {
+      return getHunks(new Source()
+      {
+         public String getText(int start, int end)
+         {
+            return contents.substring(start, end);
+         }
+      });
+   }
+
+   /**
+    * @param source Provides the text of the current version
+    * @return The hunks (sorted by offset) which transform the base version
+    * into the current version
+    */
+   public ArrayList<Hunk> getHunks(Source source)
+   {
+      if (overflowed_)
+         throw new IllegalStateException("Patch has overflowed");
+
+      ArrayList<Hunk> hunks = new ArrayList<Hunk>();
+      int skew = 0;
+      for (Region region : regions_)
+      {
+         hunks.add(new Hunk(region.start - skew,
+                            region.baseLength,
+                            source.getText(region.start, region.end())));
+         skew += region.length - region.baseLength;
+      }
+      return hunks;
+   }
+
+   /**
+    * Applies hunks (sorted by offset) to the base version. This is the same
+    * operation the server performs for save_document_patch.
+    */
+   public static String apply(String base, ArrayList<Hunk> hunks)
+   {
+      StringBuilder result = new StringBuilder();
+      int pos = 0;
+      for (Hunk hunk : hunks)
+      {
+         result.append(base.substring(pos, hunk.getOffset()));
+         result.append(hunk.getReplacement());
+         pos = hunk.getOffset() + hunk.getLength();
+      }
+      result.append(base.substring(pos));
+      return result.toString();
+   }
+
+   private final ArrayList<Region> regions_ = new ArrayList<Region>();
+   private boolean overflowed_;
+
+   private static final int MAX_REGIONS = 100;
+}
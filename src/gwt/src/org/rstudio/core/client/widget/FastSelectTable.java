@@ -16,6 +16,8 @@ import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.dom.client.*;
 import com.google.gwt.dom.client.Style.Cursor;
+import com.google.gwt.dom.client.Style.Display;
+import com.google.gwt.dom.client.Style.Unit;
 import com.google.gwt.event.dom.client.*;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.user.client.DOM;
@@ -43,6 +45,8 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
       void onRowsInserted(TableSectionElement tbody);
       TItemOutput getOutputForRow(TableRowElement row);
       TItemOutput2 getOutputForRow2(TableRowElement row);
+      TItemOutput getOutputForItem(T entry);
+      TItemOutput2 getOutputForItem2(T entry);
       boolean isValueRow(TableRowElement row);
       boolean hasNonValueRows();
 
@@ -116,7 +120,48 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public void setOwningScrollPanel(ScrollPanel scrollPanel)
    {
+      if (scrollHandlerReg_ != null)
+      {
+         scrollHandlerReg_.removeHandler();
+         scrollHandlerReg_ = null;
+      }
+
       scrollPanel_ = scrollPanel;
+      if (virtual_ && scrollPanel_ != null)
+         scrollHandlerReg_ = scrollPanel_.addScrollHandler(virtualScrollHandler_);
+   }
+
+   /**
+    * In virtualized mode the items are held in a model list and only the
+    * rows near the visible region of the owning scroll panel are present
+    * in the DOM; selection is tracked as ranges of item indexes. Must be
+    * called before any items are added.
+    */
+   public void setVirtualized(boolean virtualized)
+   {
+      assert items_.isEmpty() : "setVirtualized called after items added";
+      virtual_ = virtualized;
+      setOwningScrollPanel(scrollPanel_);
+   }
+
+   public boolean isVirtualized()
+   {
+      return virtual_;
+   }
+
+   public int getItemCount()
+   {
+      if (virtual_)
+         return items_.size();
+      else
+         return table_.getRows().getLength();
+   }
+
+   @Override
+   protected void onLoad()
+   {
+      super.onLoad();
+      renderVirtualRows(true);
    }
 
    private void handleRowClick(MouseDownEvent event, TableRowElement row)
@@ -132,6 +177,12 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
          modifiers |= KeyboardShortcut.CTRL;
       modifiers &= ~KeyboardShortcut.META;
 
+      if (virtual_)
+      {
+         handleVirtualRowClick(modifiers, row);
+         return;
+      }
+
       if (modifiers == KeyboardShortcut.NONE)
       {
          // Select only the target row
@@ -157,47 +208,86 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
             max = selectedRow.getRowIndex();
          }
 
-         int offset; // selection offset
-         int length;   // selection length
+         int[] range = getShiftSelectRange(target, min, max, modifiers);
+         int offset = range[0]; // selection offset
+         int length = range[1]; // selection length
 
-         if (min == null)
-         {
-            // Nothing is selected
-            offset = target;
-            length = 1;
-         }
-         else if (target < min)
+         clearSelection();
+         if (length > 0)
          {
-            // Select target..max
-            offset = target;
-            length = max - target + 1;
+            setSelectedPhysical(offset, length, true);
          }
-         else if (target > max)
+      }
+   }
+
+   private void handleVirtualRowClick(int modifiers, TableRowElement row)
+   {
+      int target = getVirtualRowIndex(row);
+      if (target < 0)
+         return;
+
+      if (modifiers == KeyboardShortcut.NONE)
+      {
+         clearSelection();
+         setSelected(target, 1, true);
+      }
+      else if (modifiers == KeyboardShortcut.CTRL)
+      {
+         setSelected(target, 1, !selection_.contains(target));
+      }
+      else
+      {
+         int[] range = getShiftSelectRange(target,
+                                           selection_.getMin(),
+                                           selection_.getMax(),
+                                           modifiers);
+         clearSelection();
+         if (range[1] > 0)
+            setSelected(range[0], range[1], true);
+      }
+   }
+
+   private int[] getShiftSelectRange(int target,
+                                     Integer min,
+                                     Integer max,
+                                     int modifiers)
+   {
+      int offset; // selection offset
+      int length; // selection length
+
+      if (min == null)
+      {
+         // Nothing is selected
+         offset = target;
+         length = 1;
+      }
+      else if (target < min)
+      {
+         // Select target..max
+         offset = target;
+         length = max - target + 1;
+      }
+      else if (target > max)
+      {
+         offset = min;
+         length = target - min + 1;
+      }
+      else
+      {
+         // target is in between min and max
+         if (modifiers == (KeyboardShortcut.CTRL | KeyboardShortcut.SHIFT))
          {
             offset = min;
             length = target - min + 1;
          }
          else
          {
-            // target is in between min and max
-            if (modifiers == (KeyboardShortcut.CTRL | KeyboardShortcut.SHIFT))
-            {
-               offset = min;
-               length = target - min + 1;
-            }
-            else
-            {
-               offset = target;
-               length = 1;
-            }
-         }
-
-         clearSelection();
-         if (length > 0)
-         {
-            setSelectedPhysical(offset, length, true);
+            offset = target;
+            length = 1;
          }
       }
+
+      return new int[] {offset, length};
    }
 
    private void handleKeyDown(KeyDownEvent event)
@@ -227,6 +317,12 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
             return;
       }
 
+      if (virtual_)
+      {
+         handleVirtualKeyDown(event.getNativeKeyCode(), modifiers);
+         return;
+      }
+
       sortSelectedRows();
       int min = table_.getRows().getLength();
       int max = -1;
@@ -265,6 +361,49 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
       }
    }
 
+   private void handleVirtualKeyDown(int keyCode, int modifiers)
+   {
+      Integer row = null;
+      if (keyCode == KeyCodes.KEY_UP)
+      {
+         int min = selection_.isEmpty() ? items_.size() : selection_.getMin();
+         if (min > 0)
+            row = min - 1;
+      }
+      else
+      {
+         int max = selection_.isEmpty() ? -1 : selection_.getMax();
+         if (max + 1 < items_.size())
+            row = max + 1;
+      }
+
+      if (row != null)
+      {
+         if (modifiers != KeyboardShortcut.SHIFT)
+            clearSelection();
+         setSelected(row, 1, true);
+         ensureItemVisible(row);
+      }
+   }
+
+   private void ensureItemVisible(int index)
+   {
+      if (scrollPanel_ == null)
+         return;
+
+      TableRowElement row = getRenderedRow(index);
+      if (row == null)
+      {
+         scrollPanel_.setScrollPosition(getTableContentTop() +
+                                        index * rowHeight_);
+         renderVirtualRows(false);
+         row = getRenderedRow(index);
+      }
+
+      if (row != null)
+         DomUtils.ensureVisibleVert(scrollPanel_.getElement(), row, 0);
+   }
+
    private void ensureRowVisible(final int row)
    {
       if (scrollPanel_ != null)
@@ -285,12 +424,38 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public void clearSelection()
    {
+      if (virtual_)
+      {
+         if (!selection_.isEmpty())
+         {
+            selection_.clear();
+            for (TableRowElement row : renderedRows_)
+               setStyleName(row, selectedClassName_, false);
+         }
+         return;
+      }
+
       while (selectedRows_.size() > 0)
          setSelected(selectedRows_.get(0), false);
    }
 
    public void addItems(ArrayList<TItemInput> items, boolean top)
    {
+      if (virtual_)
+      {
+         if (top)
+         {
+            items_.addAll(0, items);
+            selection_.shift(items.size());
+         }
+         else
+         {
+            items_.addAll(items);
+         }
+         renderVirtualRows(true);
+         return;
+      }
+
       TableSectionElement tbody = Document.get().createTBodyElement();
       for (TItemInput item : items)
          tbody.appendChild(codec_.getRowForItem(item));
@@ -311,6 +476,15 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
    {
       table_.setInnerText("");
       selectedRows_.clear();
+
+      items_.clear();
+      selection_.clear();
+      renderedRows_.clear();
+      renderFirst_ = 0;
+      renderLast_ = 0;
+      topSpacer_ = null;
+      contentBody_ = null;
+      bottomSpacer_ = null;
    }
 
    private boolean isSelected(TableRowElement tr)
@@ -321,11 +495,20 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
    @Deprecated
    public void setSelected(int row, boolean selected)
    {
-      setSelected(getRow(row), selected);
+      if (virtual_)
+         setSelected(row, 1, selected);
+      else
+         setSelected(getRow(row), selected);
    }
 
    public void setSelected(int offset, int length, boolean selected)
    {
+      if (virtual_)
+      {
+         setSelectedVirtual(offset, length, selected);
+         return;
+      }
+
       if (codec_.hasNonValueRows())
       {
          // If the codec might have stuck in some non-value rows, we need
@@ -354,8 +537,39 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
          setSelected(getRow(offset + i), selected);
    }
 
+   private void setSelectedVirtual(int offset, int length, boolean selected)
+   {
+      int start = Math.max(0, offset);
+      int end = Math.min(items_.size(), offset + length);
+      if (start >= end)
+         return;
+
+      if (selected)
+         selection_.add(start, end);
+      else
+         selection_.remove(start, end);
+
+      for (int i = Math.max(start, renderFirst_);
+           i < Math.min(end, renderLast_);
+           i++)
+      {
+         setStyleName(getRenderedRow(i), selectedClassName_, selected);
+      }
+
+      if (selected && !allowMultiSelect_)
+         fireSelectionChangedDeferred();
+   }
+
    public void setSelected(TableRowElement row, boolean selected)
    {
+      if (virtual_)
+      {
+         int index = getVirtualRowIndex(row);
+         if (index >= 0)
+            setSelected(index, 1, selected);
+         return;
+      }
+
       try
       {
          if (row.getParentElement().getParentElement() != table_)
@@ -380,22 +594,32 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
          selectedRows_.remove(row);
 
       if (selected && !allowMultiSelect_)
+         fireSelectionChangedDeferred();
+   }
+
+   private void fireSelectionChangedDeferred()
+   {
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
       {
-         Scheduler.get().scheduleDeferred(new ScheduledCommand()
+         public void execute()
          {
-            public void execute()
-            {
-               fireEvent(new SelectionChangedEvent());
-            }
-         });
-      }
+            fireEvent(new SelectionChangedEvent());
+         }
+      });
    }
 
    public ArrayList<TItemOutput> getSelectedValues()
    {
-      sortSelectedRows();
-
       ArrayList<TItemOutput> results = new ArrayList<TItemOutput>();
+      if (virtual_)
+      {
+         for (int[] range : selection_.getRanges())
+            for (int i = range[0]; i < range[1]; i++)
+               results.add(codec_.getOutputForItem(items_.get(i)));
+         return results;
+      }
+
+      sortSelectedRows();
       for (TableRowElement row : selectedRows_)
          results.add(codec_.getOutputForRow(row));
       return results;
@@ -414,9 +638,16 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public ArrayList<TItemOutput2> getSelectedValues2()
    {
-      sortSelectedRows();
-
       ArrayList<TItemOutput2> results = new ArrayList<TItemOutput2>();
+      if (virtual_)
+      {
+         for (int[] range : selection_.getRanges())
+            for (int i = range[0]; i < range[1]; i++)
+               results.add(codec_.getOutputForItem2(items_.get(i)));
+         return results;
+      }
+
+      sortSelectedRows();
       for (TableRowElement row : selectedRows_)
          results.add(codec_.getOutputForRow2(row));
       return results;
@@ -424,6 +655,16 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public boolean moveSelectionUp()
    {
+      if (virtual_)
+      {
+         if (selection_.isEmpty() || selection_.getMin() == 0)
+            return false;
+         int index = selection_.getMin() - 1;
+         clearSelection();
+         setSelected(index, 1, true);
+         return true;
+      }
+
       if (selectedRows_.size() == 0)
          return false;
 
@@ -451,6 +692,16 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public boolean moveSelectionDown()
    {
+      if (virtual_)
+      {
+         if (selection_.isEmpty() || selection_.getMax() + 1 >= items_.size())
+            return false;
+         int index = selection_.getMax() + 1;
+         clearSelection();
+         setSelected(index, 1, true);
+         return true;
+      }
+
       if (selectedRows_.size() == 0)
          return false;
 
@@ -483,6 +734,9 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public TableRowElement getTopRow()
    {
+      if (virtual_)
+         return renderFirst_ == 0 ? getRenderedRow(0) : null;
+
       if (table_.getRows().getLength() > 0)
          return getRow(0);
       else
@@ -491,6 +745,28 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public Rectangle getSelectionRect()
    {
+      if (virtual_)
+      {
+         if (selection_.isEmpty())
+            return null;
+
+         // rows which aren't rendered are positioned using the estimated
+         // row height (which is also what the spacers are sized with). The
+         // rect is in the coordinates of the scroll panel's content so
+         // callers can scroll to it directly
+         int min = selection_.getMin();
+         int max = selection_.getMax();
+         TableRowElement first = getRenderedRow(min);
+         TableRowElement last = getRenderedRow(max);
+         int top = first != null ? first.getOffsetTop() : min * rowHeight_;
+         int bottom = last != null
+                      ? last.getOffsetTop() + last.getOffsetHeight()
+                      : (max + 1) * rowHeight_;
+         int tableTop = scrollPanel_ != null ? getTableContentTop() : 0;
+         int width = table_.getOffsetWidth();
+         return new Rectangle(0, tableTop + top, width, bottom - top);
+      }
+
       if (selectedRows_.size() == 0)
          return null;
 
@@ -505,6 +781,128 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
       return new Rectangle(left, top, width, bottom - top);
    }
 
+   private void renderVirtualRows(boolean force)
+   {
+      if (!virtual_ || scrollPanel_ == null)
+         return;
+
+      int viewportHeight = scrollPanel_.getOffsetHeight();
+      if (viewportHeight <= 0)
+         viewportHeight = DEFAULT_VIEWPORT_HEIGHT;
+      int visibleTop = scrollPanel_.getScrollPosition() - getTableContentTop();
+
+      int firstVisible = Math.min(items_.size(),
+                                  Math.max(0, visibleTop / rowHeight_));
+      int lastVisible = Math.min(items_.size(),
+                                 firstVisible + viewportHeight/rowHeight_ + 1);
+      if (!force && firstVisible >= renderFirst_ && lastVisible <= renderLast_)
+         return;
+
+      int first = Math.max(0, firstVisible - MARGIN_ROWS);
+      int last = Math.min(items_.size(), lastVisible + MARGIN_ROWS);
+
+      TableSectionElement body = Document.get().createTBodyElement();
+      renderedRows_.clear();
+      for (int i = first; i < last; i++)
+      {
+         TableRowElement row = codec_.getRowForItem(items_.get(i));
+         if (selection_.contains(i))
+            setStyleName(row, selectedClassName_, true);
+         body.appendChild(row);
+         renderedRows_.add(row);
+      }
+
+      // let the codec decorate the rows before they are attached, so it
+      // doesn't mistake the spacers for value rows. Codecs look at the
+      // preceding tbody for context (e.g. the timestamp of the previous
+      // entry) so give it one holding the item just above the window
+      if (first > 0)
+      {
+         TableElement context = Document.get().createTableElement();
+         TableSectionElement prevBody = Document.get().createTBodyElement();
+         prevBody.appendChild(codec_.getRowForItem(items_.get(first - 1)));
+         context.appendChild(prevBody);
+         context.appendChild(body);
+         codec_.onRowsInserted(body);
+         context.removeChild(body);
+      }
+      else
+      {
+         codec_.onRowsInserted(body);
+      }
+
+      if (topSpacer_ == null)
+      {
+         topSpacer_ = createSpacer();
+         contentBody_ = Document.get().createTBodyElement();
+         bottomSpacer_ = createSpacer();
+         table_.appendChild(topSpacer_);
+         table_.appendChild(contentBody_);
+         table_.appendChild(bottomSpacer_);
+      }
+      table_.replaceChild(body, contentBody_);
+      contentBody_ = body;
+      renderFirst_ = first;
+      renderLast_ = last;
+
+      // measure only the item rows (any rows the codec added, such as
+      // timestamps, aren't items and would skew the estimate)
+      int renderedHeight = 0;
+      for (TableRowElement row : renderedRows_)
+         renderedHeight += row.getOffsetHeight();
+      if (renderedHeight > 0 && last > first)
+         rowHeight_ = Math.max(1, renderedHeight / (last - first));
+
+      setSpacerHeight(topSpacer_, first * rowHeight_);
+      setSpacerHeight(bottomSpacer_, (items_.size() - last) * rowHeight_);
+   }
+
+   private TableSectionElement createSpacer()
+   {
+      TableSectionElement spacer = Document.get().createTBodyElement();
+      TableRowElement row = Document.get().createTRElement();
+      TableCellElement cell = Document.get().createTDElement();
+      cell.setColSpan(100);
+      row.appendChild(cell);
+      spacer.appendChild(row);
+      return spacer;
+   }
+
+   private void setSpacerHeight(TableSectionElement spacer, int height)
+   {
+      if (height <= 0)
+      {
+         spacer.getStyle().setDisplay(Display.NONE);
+      }
+      else
+      {
+         spacer.getStyle().clearDisplay();
+         spacer.getRows().getItem(0).getCells().getItem(0)
+               .getStyle().setHeight(height, Unit.PX);
+      }
+   }
+
+   // offset of the table within the scrollable content of the scroll panel
+   private int getTableContentTop()
+   {
+      return table_.getAbsoluteTop()
+             - scrollPanel_.getElement().getAbsoluteTop()
+             + scrollPanel_.getScrollPosition();
+   }
+
+   private int getVirtualRowIndex(TableRowElement row)
+   {
+      int index = renderedRows_.indexOf(row);
+      return index < 0 ? -1 : renderFirst_ + index;
+   }
+
+   private TableRowElement getRenderedRow(int index)
+   {
+      if (index < renderFirst_ || index >= renderLast_)
+         return null;
+      return renderedRows_.get(index - renderFirst_);
+   }
+
    protected Element getEventTargetCell(Event event) {
      Element td = DOM.eventGetTarget(event);
      for (; td != null; td = DOM.getParent(td)) {
@@ -585,10 +983,146 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
       return addHandler(handler, SelectionChangedEvent.TYPE);
    }
 
+   /**
+    * Sorted, non-overlapping [start, end) ranges of selected item indexes
+    */
+   private static class SelectionRanges
+   {
+      public void clear()
+      {
+         ranges_.clear();
+      }
+
+      public boolean isEmpty()
+      {
+         return ranges_.isEmpty();
+      }
+
+      public Integer getMin()
+      {
+         return ranges_.isEmpty() ? null : ranges_.get(0)[0];
+      }
+
+      public Integer getMax()
+      {
+         return ranges_.isEmpty() ? null : ranges_.get(ranges_.size()-1)[1]-1;
+      }
+
+      public ArrayList<int[]> getRanges()
+      {
+         return ranges_;
+      }
+
+      public boolean contains(int index)
+      {
+         int low = 0;
+         int high = ranges_.size() - 1;
+         while (low <= high)
+         {
+            int mid = (low + high) >>> 1;
+            int[] range = ranges_.get(mid);
+            if (index < range[0])
+               high = mid - 1;
+            else if (index >= range[1])
+               low = mid + 1;
+            else
+               return true;
+         }
+         return false;
+      }
+
+      public void add(int start, int end)
+      {
+         ArrayList<int[]> result = new ArrayList<int[]>();
+         boolean inserted = false;
+         for (int[] range : ranges_)
+         {
+            if (range[1] < start)
+            {
+               result.add(range);
+            }
+            else if (range[0] > end)
+            {
+               if (!inserted)
+               {
+                  result.add(new int[] {start, end});
+                  inserted = true;
+               }
+               result.add(range);
+            }
+            else
+            {
+               // overlapping or adjacent--merge
+               start = Math.min(start, range[0]);
+               end = Math.max(end, range[1]);
+            }
+         }
+         if (!inserted)
+            result.add(new int[] {start, end});
+         ranges_ = result;
+      }
+
+      public void remove(int start, int end)
+      {
+         ArrayList<int[]> result = new ArrayList<int[]>();
+         for (int[] range : ranges_)
+         {
+            if (range[1] <= start || range[0] >= end)
+            {
+               result.add(range);
+            }
+            else
+            {
+               if (range[0] < start)
+                  result.add(new int[] {range[0], start});
+               if (range[1] > end)
+                  result.add(new int[] {end, range[1]});
+            }
+         }
+         ranges_ = result;
+      }
+
+      public void shift(int count)
+      {
+         for (int[] range : ranges_)
+         {
+            range[0] += count;
+            range[1] += count;
+         }
+      }
+
+      private ArrayList<int[]> ranges_ = new ArrayList<int[]>();
+   }
+
    private final ArrayList<TableRowElement> selectedRows_ = new ArrayList<TableRowElement>();
    private final ItemCodec<TItemInput, TItemOutput, TItemOutput2> codec_;
    private final TableElement table_;
    private final String selectedClassName_;
    private final boolean allowMultiSelect_;
    private ScrollPanel scrollPanel_;
+
+   // virtualized mode
+   private boolean virtual_;
+   private final ArrayList<TItemInput> items_ = new ArrayList<TItemInput>();
+   private final SelectionRanges selection_ = new SelectionRanges();
+   private final ArrayList<TableRowElement> renderedRows_ =
+                                             new ArrayList<TableRowElement>();
+   private int renderFirst_;
+   private int renderLast_;
+   private int rowHeight_ = DEFAULT_ROW_HEIGHT;
+   private TableSectionElement topSpacer_;
+   private TableSectionElement contentBody_;
+   private TableSectionElement bottomSpacer_;
+   private HandlerRegistration scrollHandlerReg_;
+   private final ScrollHandler virtualScrollHandler_ = new ScrollHandler()
+   {
+      public void onScroll(ScrollEvent event)
+      {
+         renderVirtualRows(false);
+      }
+   };
+
+   private static final int DEFAULT_ROW_HEIGHT = 16;
+   private static final int DEFAULT_VIEWPORT_HEIGHT = 1000;
+   private static final int MARGIN_ROWS = 50;
 }
\ No newline at end of file
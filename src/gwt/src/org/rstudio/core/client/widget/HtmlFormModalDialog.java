@@ -48,7 +48,7 @@ public abstract class HtmlFormModalDialog<T> extends ModalDialogBase
          public void onClick(ClickEvent event) {
             try
             {
-               formPanel.submit();
+               submit(formPanel, progressIndicator, operation);
             }
             catch (final JavaScriptException e)
             {
@@ -125,6 +125,16 @@ public abstract class HtmlFormModalDialog<T> extends ModalDialogBase
       });
    }   
    
+   // subclasses can override to send the form's contents some other way,
+   // in which case they are responsible for reporting progress and
+   // executing the operation with the results
+   protected void submit(FormPanel formPanel,
+                         ProgressIndicator progressIndicator,
+                         OperationWithInput<T> operation)
+   {
+      formPanel.submit();
+   }
+   
    protected void setFormPanelEncodingAndMethod(FormPanel formPanel)
    {
       formPanel.setEncoding(FormPanel.ENCODING_URLENCODED);
@@ -35,6 +35,7 @@ public class AsyncShimGenerator extends Generator
          context_ = context;
          baseType_ = context_.getTypeOracle().getType(typeName);
          packageName_ = baseType_.getPackage().getName();
+         shimName_ = baseType_.getName();
 
       }
 
@@ -178,6 +179,7 @@ public class AsyncShimGenerator extends Generator
 
          w.println("private void load(final int method, final Object[] args) {");
          w.indent();
+         w.println("final long loadStart = System.currentTimeMillis();");
          w.println("GWT.runAsync(new RunAsyncCallback() {");
          w.indent();
          w.println("public void onFailure(Throwable reason) {");
@@ -191,6 +193,8 @@ public class AsyncShimGenerator extends Generator
          w.println("}");
          w.println("public void onSuccess() {");
          w.indent();
+         w.println("reportFragmentLoad(\"" + shimName_ + "\", "
+                   + "System.currentTimeMillis() - loadStart);");
          w.println("preInstantiationHook(new Command() {");
          w.indent();
          w.println("public void execute() {");
@@ -227,12 +231,21 @@ public class AsyncShimGenerator extends Generator
          w.println("});");
          w.outdent();
          w.println("}");
+
+         // per-shim report. the size of each fragment is in the compile
+         // report (-compileReport) under this split point; load times are
+         // reported to Diagnostics at runtime as "Fragment: <shim>"
+         logger_.log(TreeLogger.Type.INFO,
+                     "AsyncShim " + shimName_ + ": split point for "
+                     + delayedType.getQualifiedSourceName() + " with "
+                     + methodNum + " async method(s)");
       }
 
       private final TreeLogger logger_;
       private final GeneratorContext context_;
       private final JClassType baseType_;
       private final String packageName_;
+      private final String shimName_;
    }
 
    @Override
@@ -39,6 +39,7 @@ import org.rstudio.studio.client.common.StudioResources;
 import org.rstudio.studio.client.impl.BrowserFence;
 import org.rstudio.studio.client.workbench.prefs.views.PreferencesDialog;
 import org.rstudio.studio.client.workbench.views.console.ConsoleResources;
+import org.rstudio.studio.client.workbench.views.files.ui.FindInFilesDialog;
 import org.rstudio.studio.client.workbench.views.history.view.HistoryPane;
 import org.rstudio.studio.client.workbench.views.history.view.Shelf;
 import org.rstudio.studio.client.workbench.views.packages.ui.InstallPackageDialog;
@@ -131,6 +132,7 @@ public class RStudio implements EntryPoint
       ImportFileSettingsDialog.ensureStylesInjected();
       ImportGoogleSpreadsheetDialog.ensureStylesInjected();
       FindReplaceBar.ensureStylesInjected();
+      FindInFilesDialog.ensureStylesInjected();
       FontSizer.ensureStylesInjected();
       PreferencesDialog.ensureStylesInjected();
 
@@ -31,6 +31,7 @@ import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import org.rstudio.core.client.CsvWriter;
 import org.rstudio.core.client.Debug;
+import org.rstudio.core.client.StartupTimeline;
 import org.rstudio.core.client.command.CommandBinder;
 import org.rstudio.core.client.command.Handler;
 import org.rstudio.core.client.dom.DomUtils;
@@ -51,6 +52,7 @@ import org.rstudio.studio.client.workbench.events.SessionInitEvent;
 import org.rstudio.studio.client.workbench.model.Agreement;
 import org.rstudio.studio.client.workbench.model.Session;
 import org.rstudio.studio.client.workbench.model.SessionInfo;
+import org.rstudio.studio.client.workbench.model.SessionStartupQueue;
 
 @Singleton
 public class Application implements ApplicationEventHandlers,
@@ -69,7 +71,8 @@ public class Application implements ApplicationEventHandlers,
                       Provider<Workbench> workbench,
                       Provider<EventBus> eventBusProvider,
                       Provider<ClientStateUpdater> clientStateUpdater,
-                      Provider<ApplicationClientInit> pClientInit)
+                      Provider<ApplicationClientInit> pClientInit,
+                      Provider<SessionStartupQueue> pStartupQueue)
    {
       // save references
       view_ = view ;
@@ -82,6 +85,7 @@ public class Application implements ApplicationEventHandlers,
       workbench_ = workbench;
       eventBusProvider_ = eventBusProvider;
       pClientInit_ = pClientInit;
+      pStartupQueue_ = pStartupQueue;
 
       // bind to commands
       binder.bind(commands_, this);
@@ -111,11 +115,14 @@ public class Application implements ApplicationEventHandlers,
       rootPanel.setWidgetLeftRight(w, 0, Style.Unit.PX, 0, Style.Unit.PX);
 
       // attempt init
+      StartupTimeline.start();
       pClientInit_.get().execute(
                               new ServerRequestCallback<SessionInfo>() {
 
          public void onResponseReceived(final SessionInfo sessionInfo)
          {
+            StartupTimeline.mark("client_init received");
+
             // initialize workbench after verifying agreement
             verifyAgreement(sessionInfo, new Operation() {
                public void execute()
@@ -508,8 +515,13 @@ public class Application implements ApplicationEventHandlers,
       
       // show workbench
       view_.showWorkbenchView(wb.getMainView().toWidget());
+      StartupTimeline.mark("workbench shown");
 
       clientStateUpdaterInstance_ = clientStateUpdater_.get();
+
+      // now that the workbench is visible fetch the session state which
+      // was left out of client_init
+      pStartupQueue_.get().start();
    }
       
    private void cleanupWorkbench()
@@ -536,6 +548,7 @@ public class Application implements ApplicationEventHandlers,
    private final Provider<Workbench> workbench_;
    private final Provider<EventBus> eventBusProvider_;
    private final Provider<ApplicationClientInit> pClientInit_;
+   private final Provider<SessionStartupQueue> pStartupQueue_;
 
    private ClientStateUpdater clientStateUpdaterInstance_;
    
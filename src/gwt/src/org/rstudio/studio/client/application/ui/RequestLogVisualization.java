@@ -23,6 +23,8 @@ import com.google.gwt.event.logical.shared.CloseEvent;
 import com.google.gwt.event.logical.shared.CloseHandler;
 import com.google.gwt.event.logical.shared.HasCloseHandlers;
 import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONString;
 import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.DeferredCommand;
 import com.google.gwt.user.client.Event;
@@ -32,10 +34,12 @@ import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.ui.*;
 import org.rstudio.core.client.CsvReader;
 import org.rstudio.core.client.CsvWriter;
+import org.rstudio.core.client.Diagnostics;
 import org.rstudio.core.client.command.KeyboardShortcut;
 import org.rstudio.core.client.jsonrpc.RequestLog;
 import org.rstudio.core.client.jsonrpc.RequestLogEntry;
 import org.rstudio.core.client.jsonrpc.RequestLogEntry.ResponseType;
+import org.rstudio.core.client.jsonrpc.RpcMetrics;
 import org.rstudio.core.client.widget.ModalDialog;
 import org.rstudio.core.client.widget.OperationWithInput;
 import org.rstudio.core.client.widget.ScrollPanelWithClick;
@@ -43,6 +47,7 @@ import org.rstudio.studio.client.application.model.ApplicationServerOperations;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.Map;
 
 public class RequestLogVisualization extends Composite
    implements HasCloseHandlers<RequestLogVisualization>, NativePreviewHandler
@@ -114,6 +119,8 @@ public class RequestLogVisualization extends Composite
                             "<li>P: Play/pause</li>" +
                             "<li>E: Export</li>" +
                             "<li>I: Import</li>" +
+                            "<li>M: Show RPC metrics and diagnostics</li>" +
+                            "<li>X: Export RPC metrics as JSON</li>" +
                             "<li>+/-: Zoom in/out</li>" +
                             "</ul>");
       detail_.setWidget(instructions_);
@@ -290,6 +297,29 @@ public class RequestLogVisualization extends Composite
                                                      null);
             dialog.showModal();
          }
+         else if (keyCode == 'M')
+         {
+            RequestMetricsDetail metricsDetail = new RequestMetricsDetail();
+            metricsDetail.setSize("100%", "100%");
+            detail_.setWidget(metricsDetail);
+         }
+         else if (keyCode == 'X')
+         {
+            JSONObject diagnostics = new JSONObject();
+            for (Map.Entry<String, String> entry :
+                                       Diagnostics.getValues().entrySet())
+            {
+               diagnostics.put(entry.getKey(), 
+                               new JSONString(entry.getValue()));
+            }
+            JSONObject metrics = RpcMetrics.toJson();
+            metrics.put("diagnostics", diagnostics);
+
+            TextBoxDialog dialog = new TextBoxDialog("Export Metrics",
+                                                     metrics.toString(),
+                                                     null);
+            dialog.showModal();
+         }
          else if (keyCode == 'I')
          {
             TextBoxDialog dialog = new TextBoxDialog(
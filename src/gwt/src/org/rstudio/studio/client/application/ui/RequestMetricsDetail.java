@@ -0,0 +1,109 @@
+/*
+ * RequestMetricsDetail.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.application.ui;
+
+import com.google.gwt.dom.client.Style.Overflow;
+import com.google.gwt.user.client.ui.Composite;
+import com.google.gwt.user.client.ui.HTML;
+import org.rstudio.core.client.Diagnostics;
+import org.rstudio.core.client.jsonrpc.LatencyHistogram;
+import org.rstudio.core.client.jsonrpc.RpcMetrics;
+import org.rstudio.core.client.jsonrpc.RpcMetrics.Metrics;
+
+import java.util.Map;
+
+/**
+ * Plain text summary of the per-method RPC metrics, client event dispatch
+ * times, and diagnostics values
+ */
+public class RequestMetricsDetail extends Composite
+{
+   public RequestMetricsDetail()
+   {
+      StringBuilder text = new StringBuilder();
+
+      text.append("== RPC METHODS (latency in ms) ======\n");
+      appendHeader(text, "Method", true);
+      for (Metrics metrics : RpcMetrics.getMethodMetrics())
+         appendMetrics(text, metrics, true);
+
+      text.append("\n== CLIENT EVENTS (dispatch time) ======\n");
+      appendHeader(text, "Event", false);
+      for (Metrics metrics : RpcMetrics.getEventMetrics())
+         appendMetrics(text, metrics, false);
+
+      text.append("\n== DIAGNOSTICS ======\n");
+      for (Map.Entry<String, String> entry : Diagnostics.getValues().entrySet())
+         text.append(entry.getKey() + ": " + entry.getValue() + "\n");
+
+      HTML html = new HTML();
+      html.setText(text.toString());
+      html.getElement().getStyle().setProperty("whiteSpace", "pre");
+      html.getElement().getStyle().setProperty("fontFamily", "monospace");
+      html.getElement().getStyle().setOverflow(Overflow.AUTO);
+      initWidget(html);
+   }
+
+   private void appendHeader(StringBuilder text, String name, boolean bytes)
+   {
+      text.append(pad(name, NAME_WIDTH, false));
+      for (String column : new String[] {"count", "errors", "mean", "p50",
+                                         "p90", "p99", "max"})
+         text.append(pad(column, COLUMN_WIDTH, true));
+      if (bytes)
+      {
+         text.append(pad("KB sent", COLUMN_WIDTH, true));
+         text.append(pad("KB recv", COLUMN_WIDTH, true));
+      }
+      text.append("\n");
+   }
+
+   private void appendMetrics(StringBuilder text,
+                              Metrics metrics,
+                              boolean bytes)
+   {
+      LatencyHistogram latency = metrics.getLatency();
+      text.append(pad(metrics.getName(), NAME_WIDTH, false));
+      text.append(pad(metrics.getCount() + "", COLUMN_WIDTH, true));
+      text.append(pad(metrics.getErrorCount() + "", COLUMN_WIDTH, true));
+      text.append(pad(Math.round(latency.getMean()) + "", COLUMN_WIDTH, true));
+      text.append(pad(latency.getPercentile(50) + "", COLUMN_WIDTH, true));
+      text.append(pad(latency.getPercentile(90) + "", COLUMN_WIDTH, true));
+      text.append(pad(latency.getPercentile(99) + "", COLUMN_WIDTH, true));
+      text.append(pad(latency.getMax() + "", COLUMN_WIDTH, true));
+      if (bytes)
+      {
+         text.append(pad(kilobytes(metrics.getRequestBytes()),
+                         COLUMN_WIDTH, true));
+         text.append(pad(kilobytes(metrics.getResponseBytes()),
+                         COLUMN_WIDTH, true));
+      }
+      text.append("\n");
+   }
+
+   private static String kilobytes(double bytes)
+   {
+      return Math.round(bytes / 1024) + "";
+   }
+
+   private static String pad(String value, int width, boolean right)
+   {
+      StringBuilder padding = new StringBuilder();
+      for (int i = value.length(); i < width; i++)
+         padding.append(' ');
+      return right ? padding + value : value + padding + " ";
+   }
+
+   private static final int NAME_WIDTH = 32;
+   private static final int COLUMN_WIDTH = 9;
+}
@@ -17,6 +17,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.rstudio.core.client.files.FileSystemItem;
 import org.rstudio.studio.client.application.events.EventBus;
+import org.rstudio.studio.client.common.filetypes.events.OpenSourceFileEvent;
 import org.rstudio.studio.client.common.reditor.EditorLanguage;
 
 import java.util.HashMap;
@@ -125,6 +126,20 @@ public class FileTypeRegistry
          fileType.openFile(file, eventBus_);
    }
 
+   /**
+    * Edit the file as text and move to the given (1-based) line
+    */
+   public void editFile(FileSystemItem file, int line)
+   {
+      FileType fileType = getTypeForFile(file);
+      if (!(fileType instanceof TextFileType))
+         fileType = TEXT;
+
+      eventBus_.fireEvent(new OpenSourceFileEvent(file,
+                                                  (TextFileType) fileType,
+                                                  line));
+   }
+
    public FileType getTypeByTypeName(String name)
    {
       return fileTypesByTypeName_.get(name);
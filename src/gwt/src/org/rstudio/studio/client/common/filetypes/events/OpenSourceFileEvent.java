@@ -22,9 +22,20 @@ public class OpenSourceFileEvent extends GwtEvent<OpenSourceFileHandler>
       new GwtEvent.Type<OpenSourceFileHandler>();
    
    public OpenSourceFileEvent(FileSystemItem file, TextFileType fileType)
+   {
+      this(file, fileType, -1);
+   }
+
+   /**
+    * @param line 1-based line to move to once the file is open (or -1)
+    */
+   public OpenSourceFileEvent(FileSystemItem file,
+                              TextFileType fileType,
+                              int line)
    {
       file_ = file;
       fileType_ = fileType;
+      line_ = line;
    }
    
    public FileSystemItem getFile()
@@ -37,6 +48,11 @@ public class OpenSourceFileEvent extends GwtEvent<OpenSourceFileHandler>
       return fileType_;
    }
 
+   public int getLine()
+   {
+      return line_;
+   }
+
    @Override
    protected void dispatch(OpenSourceFileHandler handler)
    {
@@ -51,4 +67,5 @@ public class OpenSourceFileEvent extends GwtEvent<OpenSourceFileHandler>
    
    private final FileSystemItem file_;
    private final TextFileType fileType_;
+   private final int line_;
 }
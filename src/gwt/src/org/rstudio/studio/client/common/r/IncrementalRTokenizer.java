@@ -0,0 +1,94 @@
+/*
+ * IncrementalRTokenizer.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.r;
+
+import java.util.ArrayList;
+
+/**
+ * Tokenizes successive versions of the same code (e.g. the contents of an
+ * editor as it's edited), re-tokenizing only from the first line that
+ * changed since the previous version.
+ */
+public class IncrementalRTokenizer
+{
+   /**
+    * @return The tokens for code. The list is owned by the tokenizer and
+    * must not be modified; it's only valid until the next call.
+    */
+   public ArrayList<RToken> tokenize(String code)
+   {
+      int resumePos = 0 ;
+      rescanned_ = 0 ;
+      if (code_ != null)
+      {
+         if (code_.equals(code))
+            return tokens_ ;
+
+         // Tokens which end before the edited line can be kept, as the
+         // tokenizer never looks past the end of the line to decide where
+         // a token ends (strings, which can span lines, are only kept if
+         // they end before the edited line too).
+         int lineStart = code.lastIndexOf('\n', commonPrefixLength(code_, code) - 1) + 1 ;
+         int kept = tokens_.size() ;
+         while (kept > 0 && end(tokens_.get(kept - 1)) >= lineStart)
+            kept-- ;
+         while (tokens_.size() > kept)
+            tokens_.remove(tokens_.size() - 1) ;
+
+         if (kept > 0)
+            resumePos = end(tokens_.get(kept - 1)) ;
+      }
+      else
+      {
+         tokens_.clear() ;
+      }
+
+      RTokenizer rt = new RTokenizer(code, resumePos) ;
+      RToken t ;
+      while (null != (t = rt.nextToken()))
+      {
+         tokens_.add(t) ;
+         rescanned_++ ;
+      }
+
+      code_ = code ;
+      return tokens_ ;
+   }
+
+   /**
+    * @return The number of tokens the last call to tokenize scanned (the
+    * rest were kept from the previous version)
+    */
+   int getRescannedCount()
+   {
+      return rescanned_ ;
+   }
+
+   private static int end(RToken token)
+   {
+      return token.getOffset() + token.getLength() ;
+   }
+
+   private static int commonPrefixLength(String a, String b)
+   {
+      int length = Math.min(a.length(), b.length()) ;
+      int i = 0 ;
+      while (i < length && a.charAt(i) == b.charAt(i))
+         i++ ;
+      return i ;
+   }
+
+   private String code_ ;
+   private int rescanned_ = 0 ;
+   private final ArrayList<RToken> tokens_ = new ArrayList<RToken>() ;
+}
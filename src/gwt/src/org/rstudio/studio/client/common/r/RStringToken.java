@@ -24,6 +24,17 @@ public class RStringToken extends RToken
 
       wellFormed_ = wellFormed ;
    }
+
+   RStringToken(String source,
+                int tokenType,
+                int offset,
+                int length,
+                boolean wellFormed)
+   {
+      super(source, tokenType, offset, length) ;
+
+      wellFormed_ = wellFormed ;
+   }
    
    public boolean isWellFormed()
    {
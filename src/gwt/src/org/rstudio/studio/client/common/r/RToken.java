@@ -22,6 +22,19 @@ public class RToken
       this.offset_ = offset ;
       this.length_ = length ;
    }
+
+   /**
+    * Creates a token whose content is a range of source, which is only
+    * extracted if getContent() is called.
+    */
+   RToken(String source, int tokenType, int offset, int length)
+   {
+      super() ;
+      this.tokenType_ = tokenType ;
+      this.source_ = source ;
+      this.offset_ = offset ;
+      this.length_ = length ;
+   }
    
    public int getTokenType()
    {
@@ -29,6 +42,11 @@ public class RToken
    }
    public String getContent()
    {
+      if (content_ == null && source_ != null)
+      {
+         content_ = source_.substring(offset_, offset_ + length_) ;
+         source_ = null ;
+      }
       return content_ ;
    }
    public int getOffset()
@@ -45,7 +63,8 @@ public class RToken
    {
       final int prime = 31 ;
       int result = 1 ;
-      result = prime * result + ((content_ == null) ? 0 : content_.hashCode()) ;
+      String content = getContent() ;
+      result = prime * result + ((content == null) ? 0 : content.hashCode()) ;
       result = prime * result + length_ ;
       result = prime * result + offset_ ;
       result = prime * result + tokenType_ ;
@@ -62,11 +81,12 @@ public class RToken
       if (getClass() != obj.getClass())
          return false ;
       RToken other = (RToken) obj ;
-      if (content_ == null)
+      String content = getContent() ;
+      if (content == null)
       {
-         if (other.content_ != null)
+         if (other.getContent() != null)
             return false ;
-      } else if (!content_.equals(other.content_))
+      } else if (!content.equals(other.getContent()))
          return false ;
       if (length_ != other.length_)
          return false ;
@@ -96,7 +116,8 @@ public class RToken
    public static final int RDBRACKET      = 0x1009 ; // ]]
 
    private final int tokenType_ ;
-   private final String content_ ;
+   private String content_ ;
+   private String source_ ;
    private final int offset_ ;
    private final int length_ ;
 }
\ No newline at end of file
@@ -12,19 +12,31 @@
  */
 package org.rstudio.studio.client.common.r;
 
-import org.rstudio.core.client.regex.Match;
-import org.rstudio.core.client.regex.Pattern;
-
 import java.util.ArrayList;
 
+/**
+ * Scans R code by character class (no regular expressions are involved).
+ * Tokens can either be retrieved as RToken objects using nextToken(), or
+ * without any allocation using advance() and the getToken*() accessors.
+ */
 public class RTokenizer
 {
    public RTokenizer(String data)
+   {
+      this(data, 0) ;
+   }
+
+   /**
+    * Creates a tokenizer which starts at the given offset. The offset must
+    * be a token boundary (e.g. the end of a token previously returned for
+    * the same data).
+    */
+   public RTokenizer(String data, int pos)
    {
       this.data_ = data ;
-      this.pos_ = 0 ;
+      this.pos_ = pos ;
    }
-   
+
    public static ArrayList<RToken> asTokens(String code)
    {
       ArrayList<RToken> results = new ArrayList<RToken>() ;
@@ -37,27 +49,77 @@ public class RTokenizer
 
    public RToken nextToken()
    {
-      if (eol())
+      if (!advance())
          return null ;
-      
+
+      if (tokenType_ == RToken.STRING)
+         return new RStringToken(data_, tokenType_, tokenStart_,
+                                 pos_ - tokenStart_, wellFormed_) ;
+      else
+         return new RToken(data_, tokenType_, tokenStart_, pos_ - tokenStart_) ;
+   }
+
+   /**
+    * Moves to the next token.
+    *
+    * @return False if there are no more tokens
+    */
+   public boolean advance()
+   {
+      if (eol())
+         return false ;
+
+      tokenStart_ = pos_ ;
+      wellFormed_ = false ;
+      tokenType_ = scanToken() ;
+
+      assert pos_ > tokenStart_ : "Zero-length token" ;
+      return true ;
+   }
+
+   public int getTokenType()
+   {
+      return tokenType_ ;
+   }
+
+   public int getTokenOffset()
+   {
+      return tokenStart_ ;
+   }
+
+   public int getTokenLength()
+   {
+      return pos_ - tokenStart_ ;
+   }
+
+   /**
+    * @return For STRING tokens, whether the string is terminated
+    */
+   public boolean isTokenWellFormed()
+   {
+      return wellFormed_ ;
+   }
+
+   private int scanToken()
+   {
       char c = peek() ;
-      
+
       switch (c)
       {
       case '(': case ')':
       case '{': case '}':
       case ';': case ',':
-         return consumeToken(c, 1) ;
+         return consume(c, 1) ;
       case '[':
-         if (peek(1, false) == '[')
-            return consumeToken(RToken.LDBRACKET, 2) ;
+         if (peek(1) == '[')
+            return consume(RToken.LDBRACKET, 2) ;
          else
-            return consumeToken(c, 1) ;
+            return consume(c, 1) ;
       case ']':
-         if (peek(1, false) == ']')
-            return consumeToken(RToken.RDBRACKET, 2) ;
+         if (peek(1) == ']')
+            return consume(RToken.RDBRACKET, 2) ;
          else
-            return consumeToken(c, 1) ;
+            return consume(c, 1) ;
       case '"':
       case '\'':
          return matchStringLiteral() ;
@@ -65,20 +127,13 @@ public class RTokenizer
       case '\u00A0': case '\u3000':
          return matchWhitespace() ;
       }
-      
-      char cNext = peek(1, false) ;
-      
-      if ((c >= '0' && c <= '9')
-            || (c == '.' && cNext >= '0' && cNext <= '9'))
-      {
-         RToken numberToken = matchNumber() ;
-         if (numberToken.getLength() > 0)
-            return numberToken ;
-         
-         assert false : "matchNumber() returned a zero-length token" ;
-      }
-      
-      if (Character.isLetter(c) || c == '.')
+
+      char cNext = peek(1) ;
+
+      if (isDigit(c) || (c == '.' && isDigit(cNext)))
+         return matchNumber() ;
+
+      if (c == '.' || isLetter(c))
       {
          // From Section 10.3.2, identifiers must not start with
          // a period followed by a digit.
@@ -88,198 +143,243 @@ public class RTokenizer
          // already tried to match on number.
          return matchIdentifier() ;
       }
-      
+
       if (c == '%')
          return matchUserOperator() ;
-      
-      RToken oper = matchOperator() ;
-      if (oper != null)
+
+      int oper = matchOperator(c, cNext) ;
+      if (oper != 0)
          return oper ;
-      
+
       // Error!!
-      return consumeToken(RToken.ERROR, 1) ;
+      return consume(RToken.ERROR, 1) ;
    }
-   
-   private RToken matchWhitespace()
+
+   private int matchWhitespace()
    {
-      String whitespace = peek("[\\s\\u00A0]+") ;
-      assert whitespace != null ;
-      return consumeToken(RToken.WHITESPACE, whitespace.length()) ;
+      while (!eol() && isWhitespace(data_.charAt(pos_)))
+         pos_++ ;
+      return RToken.WHITESPACE ;
    }
-   
-   private RToken matchStringLiteral()
+
+   private int matchStringLiteral()
    {
-      int start = pos_ ;
-      char quot = eat() ;
-      
-      assert quot == '"' || quot == '\'' ;
-      
-      boolean wellFormed = false ;
-      
+      char quot = data_.charAt(pos_++) ;
+
       while (!eol())
       {
-         eatUntil("[\\\\\'\"]", true) ;
-         if (eol())
-            break ;
-         
-         char c = eat() ;
+         char c = data_.charAt(pos_++) ;
          if (c == quot)
          {
-            wellFormed = true ;
+            wellFormed_ = true ;
             break ;
          }
 
          if (c == '\\')
          {
             if (!eol())
-               eat() ;
+               pos_++ ;
             // Actually the escape expression can be longer than
             // just the backslash plus one character--but we don't
-            // need to distinguish escape expressions from other 
+            // need to distinguish escape expressions from other
             // literal text other than for the purposes of breaking
             // out of the string
          }
       }
-      
-      return new RStringToken(RToken.STRING, 
-                        data_.substring(start, pos_), 
-                        start, 
-                        pos_-start, wellFormed) ;
+
+      return RToken.STRING ;
    }
-   
-   private RToken matchNumber()
+
+   private int matchNumber()
    {
-      String num = peek("0x[0-9a-fA-F]*L?") ;
-      if (num == null)
-         num = peek("[0-9]*(\\.[0-9]*)?([eE][+-]?[0-9]*)?[Li]?") ;
+      if (peek() == '0' && peek(1) == 'x')
+      {
+         // 0x[0-9a-fA-F]*L?
+         pos_ += 2 ;
+         while (isHexDigit(peek()))
+            pos_++ ;
+         if (peek() == 'L')
+            pos_++ ;
+         return RToken.NUMBER ;
+      }
 
-      // We should only be in this method if 0-9 was matched, so this should
-      // be a safe assumption
-      assert num != null ;
+      // [0-9]*(\.[0-9]*)?([eE][+-]?[0-9]*)?[Li]?
+      skipDigits() ;
+      if (peek() == '.')
+      {
+         pos_++ ;
+         skipDigits() ;
+      }
+      char c = peek() ;
+      if (c == 'e' || c == 'E')
+      {
+         pos_++ ;
+         c = peek() ;
+         if (c == '+' || c == '-')
+            pos_++ ;
+         skipDigits() ;
+      }
+      c = peek() ;
+      if (c == 'L' || c == 'i')
+         pos_++ ;
 
-      return consumeToken(RToken.NUMBER, num.length()) ;
+      return RToken.NUMBER ;
    }
-   
-   private RToken matchIdentifier()
+
+   private int matchIdentifier()
    {
-      int start = pos_ ;
-      eat() ;
-      String rest = peek("[\\w.]*") ;
-      pos_ += (rest != null ? rest : "").length() ;
-      return new RToken(RToken.ID, 
-                        data_.substring(start, pos_), 
-                        start, 
-                        pos_ - start) ;
+      pos_++ ;
+      while (!eol() && isIdentifierChar(data_.charAt(pos_)))
+         pos_++ ;
+      return RToken.ID ;
    }
-   
-   private RToken matchUserOperator()
+
+   private int matchUserOperator()
    {
-      String oper = peek("%[^%]*%") ;
-      if (oper == null)
-         return consumeToken(RToken.ERROR, 1) ;
-      else
-         return consumeToken(RToken.UOPER, oper.length()) ;
+      // %[^%]*% (not spanning lines, as in R)
+      for (int i = pos_ + 1; i < data_.length(); i++)
+      {
+         char c = data_.charAt(i) ;
+         if (c == '%')
+            return consume(RToken.UOPER, i + 1 - pos_) ;
+         if (c == '\n')
+            break ;
+      }
+      return consume(RToken.ERROR, 1) ;
    }
-   
-   private RToken matchOperator()
+
+   private int matchOperator(char c, char cNext)
    {
-      char cNext = peek(1, false) ;
-      
-      switch (peek())
+      switch (c)
       {
       case '+': case '*': case '/':
       case '^': case '&': case '|':
       case '~': case '$': case ':':
          // single-character operators
-         return consumeToken(RToken.OPER, 1) ;
+         return consume(RToken.OPER, 1) ;
       case '-': // also ->
-         return consumeToken(RToken.OPER, cNext == '>' ? 2 : 1) ;
+         return consume(RToken.OPER, cNext == '>' ? 2 : 1) ;
       case '>': // also >=
-         return consumeToken(RToken.OPER, cNext == '=' ? 2 : 1) ;
+         return consume(RToken.OPER, cNext == '=' ? 2 : 1) ;
       case '<': // also <- and <=
-         return consumeToken(RToken.OPER, cNext == '=' ? 2 :
-                                          cNext == '-' ? 2 :
-                                          1) ;
+         return consume(RToken.OPER, cNext == '=' ? 2 :
+                                     cNext == '-' ? 2 :
+                                     1) ;
       case '=': // also ==
-         return consumeToken(RToken.OPER, cNext == '=' ? 2 : 1) ;
+         return consume(RToken.OPER, cNext == '=' ? 2 : 1) ;
       case '!': // also !=
-         return consumeToken(RToken.OPER, cNext == '=' ? 2 : 1) ;
+         return consume(RToken.OPER, cNext == '=' ? 2 : 1) ;
       default:
-         return null ;
+         return 0 ;
       }
    }
 
+   private void skipDigits()
+   {
+      while (isDigit(peek()))
+         pos_++ ;
+   }
+
    private boolean eol()
    {
       return pos_ >= data_.length() ;
    }
-   
+
    private char peek()
    {
-      return peek(0, true) ;
+      return peek(0) ;
    }
-   
-   private char peek(int lookahead, boolean throwOnEOL)
+
+   private char peek(int lookahead)
    {
-      if (!throwOnEOL && (pos_ + lookahead) >= data_.length())
+      if ((pos_ + lookahead) >= data_.length())
          return 0 ;
       return data_.charAt(pos_ + lookahead) ;
    }
-   
-   private char eat()
+
+   private int consume(int tokenType, int length)
    {
-      char result = data_.charAt(pos_) ;
-      pos_++ ; // don't inline--we want the previous line to throw if EOL
-      return result ;
+      if (pos_ + length > data_.length())
+         throw new IllegalArgumentException("Premature EOF") ;
+
+      pos_ += length ;
+      return tokenType ;
    }
-   
-   private String peek(String regex)
+
+   private static boolean isDigit(char c)
    {
-      Match match = Pattern.create(regex).match(data_, pos_) ;
-      if (match == null)
-         return null ;
-      int idx = match.getIndex() ;
-      if (idx != pos_)
-         return null ;
-      
-      return match.getValue() ;
+      return c < 128 && (CHAR_CLASS[c] & DIGIT) != 0 ;
    }
-   
-   private String eatUntil(String regex, boolean eatAllOnFailure)
+
+   private static boolean isHexDigit(char c)
    {
-      int start = pos_ ;
-      Match match = Pattern.create(regex).match(data_, pos_) ;
-      if (match == null)
-      {
-         if (eatAllOnFailure)
-         {
-            pos_ = data_.length() ;
-            return data_.substring(start) ;
-         }
-         else
-         {
-            return null ;
-         }
-      }
-      else
+      return c < 128 && (CHAR_CLASS[c] & HEX_DIGIT) != 0 ;
+   }
+
+   private static boolean isIdentifierChar(char c)
+   {
+      return c < 128 && (CHAR_CLASS[c] & IDENTIFIER) != 0 ;
+   }
+
+   private static boolean isLetter(char c)
+   {
+      if (c < 128)
+         return (CHAR_CLASS[c] & LETTER) != 0 ;
+      return Character.isLetter(c) ;
+   }
+
+   private static boolean isWhitespace(char c)
+   {
+      if (c < 128)
+         return (CHAR_CLASS[c] & WHITESPACE) != 0 ;
+
+      // the non-ASCII characters matched by \s
+      switch (c)
       {
-         pos_ = match.getIndex() ;
-         return data_.substring(start, pos_) ;
+      case '\u00A0': case '\u1680': case '\u180E':
+      case '\u2028': case '\u2029': case '\u202F':
+      case '\u205F': case '\u3000': case '\uFEFF':
+         return true ;
+      default:
+         return c >= '\u2000' && c <= '\u200A' ;
       }
    }
-   
-   private RToken consumeToken(int tokenType, int length)
+
+   private static final int DIGIT      = 0x01 ;
+   private static final int HEX_DIGIT  = 0x02 ;
+   private static final int LETTER     = 0x04 ;
+   private static final int IDENTIFIER = 0x08 ;
+   private static final int WHITESPACE = 0x10 ;
+
+   // classes of the ASCII characters
+   private static final byte[] CHAR_CLASS = new byte[128] ;
+   static
    {
-      if (length == 0)
-         throw new IllegalArgumentException("Can't create zero-length token") ;
-      if (pos_ + length > data_.length())
-         throw new IllegalArgumentException("Premature EOF") ;
-      
-      int start = pos_ ;
-      pos_ += length ;
-      return new RToken(tokenType, data_.substring(start, pos_), start, length) ;
+      for (char c = '0'; c <= '9'; c++)
+         CHAR_CLASS[c] = DIGIT | HEX_DIGIT | IDENTIFIER ;
+      for (char c = 'a'; c <= 'z'; c++)
+      {
+         CHAR_CLASS[c] = LETTER | IDENTIFIER ;
+         CHAR_CLASS[Character.toUpperCase(c)] = LETTER | IDENTIFIER ;
+      }
+      for (char c = 'a'; c <= 'f'; c++)
+      {
+         CHAR_CLASS[c] |= HEX_DIGIT ;
+         CHAR_CLASS[Character.toUpperCase(c)] |= HEX_DIGIT ;
+      }
+      CHAR_CLASS['_'] = IDENTIFIER ;
+      CHAR_CLASS['.'] = IDENTIFIER ;
+      CHAR_CLASS[' '] = WHITESPACE ;
+      CHAR_CLASS['\t'] = WHITESPACE ;
+      CHAR_CLASS['\n'] = WHITESPACE ;
+      CHAR_CLASS['\r'] = WHITESPACE ;
+      CHAR_CLASS['\f'] = WHITESPACE ;
+      CHAR_CLASS[0x0B] = WHITESPACE ;
    }
-   
+
    private final String data_ ;
    private int pos_ ;
+   private int tokenStart_ ;
+   private int tokenType_ ;
+   private boolean wellFormed_ ;
 }
@@ -31,4 +31,11 @@ public interface Server extends ApplicationServerOperations,
    void log(int logEntryType, 
             String logEntry,
             ServerRequestCallback<Void> requestCallback);
+
+   /**
+    * Returns true if there are no outstanding requests (other than the
+    * long poll for events) and there has been no request activity for at
+    * least quietMillis
+    */
+   boolean isNetworkIdle(int quietMillis);
 }
@@ -0,0 +1,38 @@
+/*
+ * EventServer.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import com.google.gwt.core.client.JsArray;
+import org.rstudio.core.client.jsonrpc.RpcRequest;
+import org.rstudio.core.client.jsonrpc.RpcStreamingRequest;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.server.Void;
+import org.rstudio.studio.client.server.remote.RemoteServerEventListener.ClientEvent;
+
+// The get_events requests made by the event transports (RemoteServer)
+interface EventServer
+{
+   // long-poll for the events which occur after lastEventId
+   RpcRequest getEvents(
+                  int lastEventId, 
+                  ServerRequestCallback<JsArray<ClientEvent>> requestCallback,
+                  RetryHandler retryHandler);
+   
+   // stream the events which occur after lastEventId (eventsCallback is 
+   // invoked for each batch, completedCallback once the stream ends)
+   RpcStreamingRequest streamEvents(
+                  int lastEventId,
+                  ServerRequestCallback<JsArray<ClientEvent>> eventsCallback,
+                  ServerRequestCallback<Void> completedCallback,
+                  RetryHandler retryHandler);
+}
@@ -0,0 +1,40 @@
+/*
+ * EventTransport.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import com.google.gwt.core.client.JsArray;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.remote.RemoteServerEventListener.ClientEvent;
+
+// Transport used by RemoteServerEventListener to receive client events
+interface EventTransport
+{
+   interface Handler
+   {
+      // events received (may be called more than once per listen request
+      // for transports which stream events)
+      void onEvents(JsArray<ClientEvent> events);
+      
+      // the listen request completed normally (listen again)
+      void onCompleted();
+      
+      void onError(ServerError error);
+   }
+   
+   // listen for events which occur after lastEventId. only one listen 
+   // request is active at a time
+   void listen(int lastEventId, Handler handler, RetryHandler retryHandler);
+   
+   // cancel the active listen request (if any)
+   void cancel();
+}
@@ -0,0 +1,104 @@
+/*
+ * FallbackEventTransport.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import com.google.gwt.core.client.JsArray;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.remote.RemoteServerEventListener.ClientEvent;
+
+// Listens with the preferred transport (streaming) and falls back to the
+// other one (long-polling) when it fails. A failure can be transient (e.g.
+// a proxy which dropped a long-lived connection) so the preferred transport
+// is tried again once a retry delay has passed. The delay doubles with each
+// consecutive failure (up to MAX_RETRY_DELAY_MS) and is reset once the 
+// preferred transport delivers events again.
+class FallbackEventTransport implements EventTransport
+{
+   public FallbackEventTransport(EventTransport preferred,
+                                 EventTransport fallback)
+   {
+      this(preferred, fallback, RETRY_DELAY_MS, MAX_RETRY_DELAY_MS);
+   }
+   
+   FallbackEventTransport(EventTransport preferred,
+                          EventTransport fallback,
+                          int retryDelayMs,
+                          int maxRetryDelayMs)
+   {
+      preferred_ = preferred;
+      fallback_ = fallback;
+      retryDelayMs_ = retryDelayMs;
+      maxRetryDelayMs_ = maxRetryDelayMs;
+   }
+   
+   public void listen(int lastEventId, 
+                      final Handler handler, 
+                      RetryHandler retryHandler)
+   {
+      if (System.currentTimeMillis() < retryPreferredAt_)
+      {
+         activeTransport_ = fallback_;
+         fallback_.listen(lastEventId, handler, retryHandler);
+         return;
+      }
+      
+      activeTransport_ = preferred_;
+      preferred_.listen(lastEventId, new Handler() 
+      {
+         public void onEvents(JsArray<ClientEvent> events)
+         {
+            failures_ = 0;
+            handler.onEvents(events);
+         }
+         
+         public void onCompleted()
+         {
+            failures_ = 0;
+            handler.onCompleted();
+         }
+         
+         public void onError(ServerError error)
+         {
+            // the error is still reported (the listener restarts, at which
+            // point we listen with the fallback transport)
+            long delay = Math.min((long) retryDelayMs_ << failures_, 
+                                  maxRetryDelayMs_);
+            failures_ = Math.min(failures_ + 1, MAX_BACKOFF_SHIFT);
+            retryPreferredAt_ = System.currentTimeMillis() + delay;
+            handler.onError(error);
+         }
+      }, 
+      retryHandler);
+   }
+   
+   public void cancel()
+   {
+      if (activeTransport_ != null)
+      {
+         activeTransport_.cancel();
+         activeTransport_ = null;
+      }
+   }
+   
+   private final EventTransport preferred_;
+   private final EventTransport fallback_;
+   private final int retryDelayMs_;
+   private final int maxRetryDelayMs_;
+   private EventTransport activeTransport_;
+   private int failures_ = 0;
+   private long retryPreferredAt_ = 0;
+   
+   private static final int RETRY_DELAY_MS = 30 * 1000;
+   private static final int MAX_RETRY_DELAY_MS = 10 * 60 * 1000;
+   private static final int MAX_BACKOFF_SHIFT = 16;
+}
@@ -0,0 +1,76 @@
+/*
+ * LongPollEventTransport.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import com.google.gwt.core.client.JsArray;
+import org.rstudio.core.client.jsonrpc.RpcRequest;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.server.remote.RemoteServerEventListener.ClientEvent;
+
+// Receives events by polling get_events (the server holds each request open
+// until events are available)
+class LongPollEventTransport implements EventTransport
+{
+   public LongPollEventTransport(EventServer server)
+   {
+      server_ = server;
+   }
+   
+   public void listen(int lastEventId, 
+                      final Handler handler, 
+                      RetryHandler retryHandler)
+   {
+      // setup request callback (save reference for cancellation)
+      activeRequestCallback_ = new ServerRequestCallback<JsArray<ClientEvent>>() 
+      {
+         @Override
+         public void onResponseReceived(JsArray<ClientEvent> events)
+         {
+            activeRequest_ = null;
+            handler.onEvents(events);
+            handler.onCompleted();
+         }
+         
+         @Override
+         public void onError(ServerError error)
+         {
+            activeRequest_ = null;
+            handler.onError(error);
+         }
+      };
+      
+      // send request
+      activeRequest_ = server_.getEvents(lastEventId, 
+                                         activeRequestCallback_,
+                                         retryHandler);
+   }
+   
+   public void cancel()
+   {
+      if (activeRequestCallback_ != null)
+      {
+         activeRequestCallback_.cancel();
+         activeRequestCallback_ = null;
+      }
+      if (activeRequest_ != null)
+      {
+         activeRequest_.cancel();
+         activeRequest_ = null;
+      }
+   }
+   
+   private final EventServer server_;
+   private RpcRequest activeRequest_ ;
+   private ServerRequestCallback<JsArray<ClientEvent>> activeRequestCallback_;
+}
@@ -14,17 +14,22 @@
 package org.rstudio.studio.client.server.remote;
 
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.core.client.JsArray;
 import com.google.gwt.core.client.JsArrayString;
 import com.google.gwt.http.client.URL;
 import com.google.gwt.json.client.*;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 import com.google.inject.Singleton;
+import org.rstudio.core.client.CommandWithArg;
 import org.rstudio.core.client.Debug;
 import org.rstudio.core.client.files.FileSystemItem;
 import org.rstudio.core.client.js.JsObject;
 import org.rstudio.core.client.jsonrpc.*;
+import org.rstudio.core.client.patch.TextPatch;
 import org.rstudio.studio.client.application.Desktop;
 import org.rstudio.studio.client.application.events.*;
 import org.rstudio.studio.client.application.model.HttpLogEntry;
@@ -33,11 +38,16 @@ import org.rstudio.studio.client.server.*;
 import org.rstudio.studio.client.server.Void;
 import org.rstudio.studio.client.server.remote.RemoteServerEventListener.ClientEvent;
 import org.rstudio.studio.client.workbench.model.Agreement;
+import org.rstudio.studio.client.workbench.model.ConsoleAction;
 import org.rstudio.studio.client.workbench.model.Session;
 import org.rstudio.studio.client.workbench.model.SessionInfo;
 import org.rstudio.studio.client.workbench.model.WorkbenchMetrics;
 import org.rstudio.studio.client.workbench.prefs.model.RPrefs;
+import org.rstudio.studio.client.workbench.prefs.model.UIPrefs;
+import org.rstudio.studio.client.workbench.views.data.model.DataViewRows;
+import org.rstudio.studio.client.workbench.views.files.model.ChunkedUploadStatus;
 import org.rstudio.studio.client.workbench.views.files.model.FileUploadToken;
+import org.rstudio.studio.client.workbench.views.files.model.PendingFileUpload;
 import org.rstudio.studio.client.workbench.views.help.model.HelpInfo;
 import org.rstudio.studio.client.workbench.views.help.model.Link;
 import org.rstudio.studio.client.workbench.views.history.model.HistoryEntry;
@@ -46,6 +56,7 @@ import org.rstudio.studio.client.workbench.views.plots.model.Point;
 import org.rstudio.studio.client.workbench.views.source.model.CheckForExternalEditResult;
 import org.rstudio.studio.client.workbench.views.source.model.PublishPdfResult;
 import org.rstudio.studio.client.workbench.views.source.model.SourceDocument;
+import org.rstudio.studio.client.workbench.views.source.model.SourceDocumentChunk;
 import org.rstudio.studio.client.workbench.views.workspace.model.DataPreviewResult;
 import org.rstudio.studio.client.workbench.views.workspace.model.DownloadInfo;
 import org.rstudio.studio.client.workbench.views.workspace.model.GoogleSpreadsheetImportSpec;
@@ -57,16 +68,20 @@ import java.util.HashMap;
 import java.util.Map;
 
 @Singleton
-public class RemoteServer implements Server
+public class RemoteServer implements Server, EventServer
 { 
    @Inject
-   public RemoteServer(Session session, EventBus eventBus)
+   public RemoteServer(Session session, 
+                       EventBus eventBus,
+                       Provider<UIPrefs> pUIPrefs)
    {
       clientId_ = null;
       disconnected_ = false;
       workbenchReady_ = false;
+      batchRequests_ = false;
       session_ = session;
       eventBus_ = eventBus;
+      pUIPrefs_ = pUIPrefs;
       serverAuth_ = new RemoteServerAuth(this);
       serverEventListener_ = new RemoteServerEventListener(this);
    }
@@ -81,6 +96,16 @@ public class RemoteServer implements Server
       if (session_.getSessionInfo().getMode().equals(SessionInfo.SERVER_MODE))
          serverAuth_.schedulePeriodicCredentialsUpdate();
       
+      // batch rpc requests if requested by the user (we don't do this
+      // until the workbench is ready so that client_init and other 
+      // startup requests are never held up)
+      pUIPrefs_.get().batchRpcRequests().bind(new CommandWithArg<Boolean>() {
+         public void execute(Boolean batch)
+         {
+            batchRequests_ = batch;
+         }
+      });
+      
       // start event listener
       serverEventListener_.start();
    }
@@ -115,12 +140,23 @@ public class RemoteServer implements Server
       sendRequest(LOG_SCOPE , LOG, params, requestCallback);
    }
     
+   public boolean isNetworkIdle(int quietMillis)
+   {
+      return RpcMetrics.isNetworkIdle(quietMillis, GET_EVENTS);
+   }
+
    public void clientInit(
                      final ServerRequestCallback<SessionInfo> requestCallback)
    {      
-      // send init request (record clientId and version contained in response)
+      // send init request (record clientId and version contained in response).
+      // we ask for a staged init so the response leaves out the console
+      // history, console actions, and source documents (they are fetched
+      // separately once the workbench is up)
+      JSONArray params = new JSONArray();
+      params.set(0, JSONBoolean.getInstance(true));
       sendRequest(RPC_SCOPE, 
                   CLIENT_INIT, 
+                  params,
                   new ServerRequestCallback<SessionInfo>() {
 
          public void onResponseReceived(SessionInfo sessionInfo)
@@ -245,6 +281,18 @@ public class RemoteServer implements Server
    {
       sendRequest(RPC_SCOPE, RESET_CONSOLE_ACTIONS, requestCallback);
    }
+
+   public void getConsoleActions(
+         ServerRequestCallback<RpcObjectList<ConsoleAction>> requestCallback)
+   {
+      sendRequest(RPC_SCOPE, GET_CONSOLE_ACTIONS, requestCallback);
+   }
+
+   public void getConsoleHistory(
+                        ServerRequestCallback<JsArrayString> requestCallback)
+   {
+      sendRequest(RPC_SCOPE, GET_CONSOLE_HISTORY, requestCallback);
+   }
    
    public void interrupt(ServerRequestCallback<Void> requestCallback)
    {
@@ -373,24 +421,6 @@ public class RemoteServer implements Server
                   requestCallback);
    }
 
-   public void getOutputPreview(String dataFilePath,
-                                boolean heading,
-                                String separator,
-                                String quote,
-                                ServerRequestCallback<DataPreviewResult> requestCallback)
-   {
-      JSONArray params = new JSONArray();
-      params.set(0, new JSONString(dataFilePath));
-      params.set(1, JSONBoolean.getInstance(heading));
-      params.set(2, new JSONString(separator));
-      params.set(3, new JSONString(quote));
-
-      sendRequest(RPC_SCOPE,
-                  GET_OUTPUT_PREVIEW,
-                  params,
-                  requestCallback);
-   }
-
    public void editCompleted(String text,
                              ServerRequestCallback<Void> requestCallback)
    {
@@ -536,6 +566,28 @@ public class RemoteServer implements Server
                   requestCallback);    
    }
 
+   public void beginFind(String searchString,
+                         boolean isRegex,
+                         boolean ignoreCase,
+                         FileSystemItem directory,
+                         String filePattern,
+                         ServerRequestCallback<String> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONString(searchString));
+      params.set(1, JSONBoolean.getInstance(isRegex));
+      params.set(2, JSONBoolean.getInstance(ignoreCase));
+      params.set(3, new JSONString(directory.getPath()));
+      params.set(4, new JSONString(filePattern));
+      sendRequest(RPC_SCOPE, BEGIN_FIND, params, requestCallback);
+   }
+
+   public void stopFind(String handle,
+                        ServerRequestCallback<Void> requestCallback)
+   {
+      sendRequest(RPC_SCOPE, STOP_FIND, handle, requestCallback);
+   }
+
    public void listAllFiles(String path,
                             String pattern,
                             ServerRequestCallback<JsArrayString> requestCallback)
@@ -657,6 +709,55 @@ public class RemoteServer implements Server
       sendRequest(RPC_SCOPE, COMPLETE_UPLOAD, paramArray, requestCallback);
    }
    
+   public void beginChunkedUpload(
+                  String filename,
+                  FileSystemItem targetDirectory,
+                  double size,
+                  double lastModified,
+                  ServerRequestCallback<ChunkedUploadStatus> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONString(filename));
+      params.set(1, new JSONString(targetDirectory.getPath()));
+      params.set(2, new JSONNumber(size));
+      params.set(3, new JSONNumber(lastModified));
+      sendRequest(RPC_SCOPE, BEGIN_CHUNKED_UPLOAD, params, requestCallback);
+   }
+   
+   public String getFileUploadChunkUrl(String id, int index, String checksum)
+   {
+      return getFileUploadChunkUrl(getApplicationURL(UPLOAD_CHUNK_SCOPE),
+                                   id,
+                                   index,
+                                   checksum);
+   }
+
+   // the query params read by handleUploadChunkRequest in SessionFiles.cpp
+   // (static so tests can post chunks to a stand-in for the endpoint)
+   public static String getFileUploadChunkUrl(String chunkUploadUrl,
+                                              String id,
+                                              int index,
+                                              String checksum)
+   {
+      return chunkUploadUrl + "?" +
+         "id=" + URL.encodeComponent(id, true) + "&" +
+         "index=" + index + "&" +
+         "checksum=" + URL.encodeComponent(checksum, true);
+   }
+   
+   public void completeChunkedUpload(
+                  String id,
+                  ServerRequestCallback<PendingFileUpload> requestCallback)
+   {
+      sendRequest(RPC_SCOPE, COMPLETE_CHUNKED_UPLOAD, id, requestCallback);
+   }
+   
+   public void cancelChunkedUpload(String id,
+                                   ServerRequestCallback<Void> requestCallback)
+   {
+      sendRequest(RPC_SCOPE, CANCEL_CHUNKED_UPLOAD, id, requestCallback);
+   }
+   
    public String getFileExportUrl(String name, FileSystemItem file)
    {
       return getApplicationURL(EXPORT_SCOPE) + "?" +
@@ -692,6 +793,14 @@ public class RemoteServer implements Server
       return getApplicationURL(GRAPHICS_SCOPE) + "/" + filename;
    }
    
+   public void setActivePlot(int index,
+                             ServerRequestCallback<Void> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONNumber(index));
+      sendRequest(RPC_SCOPE, SET_ACTIVE_PLOT, params, requestCallback);
+   }
+   
    public void nextPlot(ServerRequestCallback<Void> requestCallback)
    {
       sendRequest(RPC_SCOPE, NEXT_PLOT, requestCallback);
@@ -758,12 +867,56 @@ public class RemoteServer implements Server
       sendRequest(RPC_SCOPE, OPEN_DOCUMENT, params, requestCallback);
    }
 
+   public void openDocument(String path,
+                            String filetype,
+                            int chunkSize,
+                            ServerRequestCallback<SourceDocument> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONString(path));
+      params.set(1, new JSONString(filetype));
+      params.set(2, new JSONNumber(chunkSize));
+      sendRequest(RPC_SCOPE, OPEN_DOCUMENT, params, requestCallback);
+   }
+
+   public void getDocumentChunk(
+         String id,
+         int offset,
+         int chunkSize,
+         ServerRequestCallback<SourceDocumentChunk> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONString(id));
+      params.set(1, new JSONNumber(offset));
+      params.set(2, new JSONNumber(chunkSize));
+      sendRequest(RPC_SCOPE, GET_DOCUMENT_CHUNK, params, requestCallback);
+   }
+
    public void listDocuments(
          ServerRequestCallback<JsArray<SourceDocument>> requestCallback)
    {
       sendRequest(RPC_SCOPE, LIST_DOCUMENTS, requestCallback);
    }
 
+   public void getDataViewRows(
+         String cacheKey,
+         int startRow,
+         int rowCount,
+         int sortColumn,
+         boolean sortAscending,
+         String filter,
+         ServerRequestCallback<DataViewRows> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONString(cacheKey));
+      params.set(1, new JSONNumber(startRow));
+      params.set(2, new JSONNumber(rowCount));
+      params.set(3, new JSONNumber(sortColumn));
+      params.set(4, JSONBoolean.getInstance(sortAscending));
+      params.set(5, new JSONString(filter));
+      sendRequest(RPC_SCOPE, GET_DATA_VIEW_ROWS, params, requestCallback);
+   }
+
    public void saveDocument(String id,
                             String path,
                             String fileType,
@@ -797,6 +950,34 @@ public class RemoteServer implements Server
       sendRequest(RPC_SCOPE, SAVE_DOCUMENT_DIFF, params, requestCallback);
    }
 
+   public void saveDocumentPatch(String id,
+                                 String path,
+                                 String fileType,
+                                 ArrayList<TextPatch.Hunk> hunks,
+                                 String hash,
+                                 ServerRequestCallback<String> requestCallback)
+   {
+      JSONArray offsets = new JSONArray();
+      JSONArray lengths = new JSONArray();
+      JSONArray replacements = new JSONArray();
+      for (int i = 0; i < hunks.size(); i++)
+      {
+         offsets.set(i, new JSONNumber(hunks.get(i).getOffset()));
+         lengths.set(i, new JSONNumber(hunks.get(i).getLength()));
+         replacements.set(i, new JSONString(hunks.get(i).getReplacement()));
+      }
+
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONString(id));
+      params.set(1, path == null ? JSONNull.getInstance() : new JSONString(path));
+      params.set(2, fileType == null ? JSONNull.getInstance() : new JSONString(fileType));
+      params.set(3, offsets);
+      params.set(4, lengths);
+      params.set(5, replacements);
+      params.set(6, new JSONString(hash));
+      sendRequest(RPC_SCOPE, SAVE_DOCUMENT_PATCH, params, requestCallback);
+   }
+
    public void checkForExternalEdit(
          String id,
          ServerRequestCallback<CheckForExternalEditResult> requestCallback)
@@ -940,11 +1121,13 @@ public class RemoteServer implements Server
    public void searchHistory(
          String query, 
          long maxEntries,
+         long endIndex,
          ServerRequestCallback<RpcObjectList<HistoryEntry>> requestCallback)
    {
       JSONArray params = new JSONArray();
       params.set(0, new JSONString(query));
       params.set(1, new JSONNumber(maxEntries));
+      params.set(2, new JSONNumber(endIndex));
       sendRequest(RPC_SCOPE, SEARCH_HISTORY, params, requestCallback);
    }
    
@@ -968,7 +1151,7 @@ public class RemoteServer implements Server
       return eventBus_;
    }
 
-   RpcRequest getEvents(
+   public RpcRequest getEvents(
                   int lastEventId, 
                   ServerRequestCallback<JsArray<ClientEvent>> requestCallback,
                   RetryHandler retryHandler)
@@ -976,12 +1159,86 @@ public class RemoteServer implements Server
       JSONArray params = new JSONArray();
       params.set(0, new JSONNumber(lastEventId));
       return sendRequest(EVENTS_SCOPE, 
-                         "get_events", 
+                         GET_EVENTS, 
                          params, 
                          requestCallback,
                          retryHandler);
    }
    
+   boolean isEventStreamingSupported()
+   {
+      SessionInfo sessionInfo = session_.getSessionInfo();
+      return sessionInfo != null && sessionInfo.isEventStreamingSupported();
+   }
+   
+   public RpcStreamingRequest streamEvents(
+         int lastEventId,
+         final ServerRequestCallback<JsArray<ClientEvent>> eventsCallback,
+         final ServerRequestCallback<Void> completedCallback,
+         final RetryHandler retryHandler)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONNumber(lastEventId));
+      params.set(1, JSONBoolean.getInstance(true));
+      
+      String url = getApplicationURL(EVENTS_SCOPE) + "/" + GET_EVENTS;
+      RpcStreamingRequest request = new RpcStreamingRequest(url,
+                                                            GET_EVENTS,
+                                                            params,
+                                                            clientId_,
+                                                            clientVersion_);
+      request.send(new RpcStreamingRequestCallback() {
+         
+         public void onError(RpcStreamingRequest request, RpcError error)
+         {
+            if (disconnected_ || completedCallback.cancelled())
+               return;
+            
+            // same error handling as send (resolve and retry if we can)
+            if (resolveRpcErrorAndRetry(error, retryHandler))
+               return;
+            
+            if (!handleRpcErrorInternally(error))
+               completedCallback.onError(new RemoteServerError(error));
+         }
+         
+         public void onResponseReceived(RpcStreamingRequest request,
+                                        RpcResponse response)
+         {
+            if (disconnected_ || eventsCallback.cancelled())
+               return;
+            
+            if (response.getError() != null)
+            {
+               // errors end the stream (resolve and retry if we can, 
+               // otherwise give first crack to internal handlers, then 
+               // forward to caller)
+               RpcError error = response.getError();
+               request.cancel();
+               if (resolveRpcErrorAndRetry(error, retryHandler))
+                  return;
+               if (!handleRpcErrorInternally(error))
+                  completedCallback.onError(new RemoteServerError(error));
+            }
+            else
+            {
+               JsArray<ClientEvent> events = response.getResult();
+               eventsCallback.onResponseReceived(events);
+            }
+         }
+         
+         public void onCompleted(RpcStreamingRequest request)
+         {
+            if (disconnected_ || completedCallback.cancelled())
+               return;
+            
+            completedCallback.onResponseReceived(null);
+         }
+      });
+      
+      return request;
+   }
+   
    void handleUnauthorizedError()
    {
       // disconnect
@@ -1099,8 +1356,26 @@ public class RemoteServer implements Server
                                              clientId_,
                                              clientVersion_);
       
-      // send the request
-      rpcRequest.send(new RpcRequestCallback() {
+      // create the callback
+      RpcRequestCallback rpcCallback = createRpcRequestCallback(
+                                                         requestCallback,
+                                                         retryHandler);
+      
+      // send the request (as part of a batch if we can)
+      if (isBatchable(scope, method))
+         addToPendingBatch(rpcRequest, rpcCallback);
+      else
+         rpcRequest.send(rpcCallback);
+      
+      // return the request
+      return rpcRequest;
+   }
+   
+   private <T> RpcRequestCallback createRpcRequestCallback(
+                              final ServerRequestCallback<T> requestCallback,
+                              final RetryHandler retryHandler)
+   {
+      return new RpcRequestCallback() {
          public void onError(RpcRequest request, RpcError error)
          {
             // ignore errors if:
@@ -1178,10 +1453,48 @@ public class RemoteServer implements Server
                   serverEventListener_.ensureEvents();
             }
          }
-      });
+      };
+   }
+   
+   private boolean isBatchable(String scope, String method)
+   {
+      // methods which are handled specially by the server's main loop 
+      // (or which are waited on by it) are always sent on their own
+      return batchRequests_ &&
+             scope.equals(RPC_SCOPE) &&
+             !method.equals(CLIENT_INIT) &&
+             !method.equals(CONSOLE_INPUT) &&
+             !method.equals(INTERRUPT) &&
+             !method.equals(QUIT_SESSION) &&
+             !method.equals(EDIT_COMPLETED) &&
+             !method.equals(CHOOSE_FILE_COMPLETED) &&
+             !method.equals(LOCATOR_COMPLETED);
+   }
+   
+   // requests issued within the same event loop turn are coalesced into
+   // a single multi_call request which is sent at the end of the turn
+   private void addToPendingBatch(RpcRequest request, 
+                                  RpcRequestCallback callback)
+   {
+      if (pendingBatch_ == null)
+      {
+         pendingBatch_ = new RpcRequestBatch(
+                              getApplicationURL(RPC_SCOPE) + "/" + MULTI_CALL,
+                              MULTI_CALL,
+                              clientId_,
+                              clientVersion_);
+         
+         Scheduler.get().scheduleFinally(new ScheduledCommand() {
+            public void execute()
+            {
+               RpcRequestBatch batch = pendingBatch_;
+               pendingBatch_ = null;
+               batch.send();
+            }
+         });
+      }
       
-      // return the request
-      return rpcRequest;
+      pendingBatch_.add(request, callback);
    }
      
    private boolean eventsPending(RpcResponse response)
@@ -1302,12 +1615,15 @@ public class RemoteServer implements Server
    private double clientVersion_ = 0;
    private boolean workbenchReady_;
    private boolean disconnected_;
+   private boolean batchRequests_;
+   private RpcRequestBatch pendingBatch_ = null;
    
    private final RemoteServerAuth serverAuth_;
    private final RemoteServerEventListener serverEventListener_ ;
   
    private final Session session_;
    private final EventBus eventBus_;
+   private final Provider<UIPrefs> pUIPrefs_;
   
    // url scopes
    private static final String RPC_SCOPE = "rpc";
@@ -1315,6 +1631,7 @@ public class RemoteServer implements Server
    private static final String EVENTS_SCOPE = "events";
    private static final String HELP_SCOPE = "help";
    private static final String UPLOAD_SCOPE = "upload";
+   private static final String UPLOAD_CHUNK_SCOPE = "chunk_upload";
    private static final String EXPORT_SCOPE = "export";
    private static final String GRAPHICS_SCOPE = "graphics";   
    private static final String SOURCE_SCOPE = "source";
@@ -1326,6 +1643,8 @@ public class RemoteServer implements Server
    private static final String ACCEPT_AGREEMENT = "accept_agreement";
    private static final String SUSPEND_SESSION = "suspend_session";
    private static final String QUIT_SESSION = "quit_session";
+   private static final String MULTI_CALL = "multi_call";
+   private static final String GET_EVENTS = "get_events";
    
    private static final String SET_WORKBENCH_METRICS = "set_workbench_metrics";
    private static final String SET_UI_PREFS = "set_ui_prefs";
@@ -1336,6 +1655,8 @@ public class RemoteServer implements Server
    
    private static final String CONSOLE_INPUT = "console_input";
    private static final String RESET_CONSOLE_ACTIONS = "reset_console_actions";
+   private static final String GET_CONSOLE_ACTIONS = "get_console_actions";
+   private static final String GET_CONSOLE_HISTORY = "get_console_history";
    private static final String INTERRUPT = "interrupt";
    private static final String ABORT = "abort";
    private static final String HTTP_LOG = "http_log";
@@ -1351,7 +1672,6 @@ public class RemoteServer implements Server
    private static final String IMPORT_GOOGLE_SPREADSHEET = "import_google_spreadsheet";
    private static final String DOWNLOAD_DATA_FILE = "download_data_file";
    private static final String GET_DATA_PREVIEW = "get_data_preview";
-   private static final String GET_OUTPUT_PREVIEW = "get_output_preview";
 
    private static final String EDIT_COMPLETED = "edit_completed";
    private static final String CHOOSE_FILE_COMPLETED = "choose_file_completed";
@@ -1371,6 +1691,8 @@ public class RemoteServer implements Server
 
    private static final String LIST_FILES = "list_files";
    private static final String LIST_ALL_FILES = "list_all_files";
+   private static final String BEGIN_FIND = "begin_find";
+   private static final String STOP_FIND = "stop_find";
    private static final String CREATE_FILE = "create_file";
    private static final String CREATE_FOLDER = "create_folder";
    private static final String DELETE_FILES = "delete_files";
@@ -1378,7 +1700,11 @@ public class RemoteServer implements Server
    private static final String MOVE_FILES = "move_files";
    private static final String RENAME_FILE = "rename_file";
    private static final String COMPLETE_UPLOAD = "complete_upload";
+   private static final String BEGIN_CHUNKED_UPLOAD = "begin_chunked_upload";
+   private static final String COMPLETE_CHUNKED_UPLOAD = "complete_chunked_upload";
+   private static final String CANCEL_CHUNKED_UPLOAD = "cancel_chunked_upload";
 
+   private static final String SET_ACTIVE_PLOT = "set_active_plot";
    private static final String NEXT_PLOT = "next_plot";
    private static final String PREVIOUS_PLOT = "previous_plot";
    private static final String CLEAR_PLOTS = "clear_plots";
@@ -1389,9 +1715,12 @@ public class RemoteServer implements Server
 
    private static final String NEW_DOCUMENT = "new_document";
    private static final String OPEN_DOCUMENT = "open_document";
+   private static final String GET_DOCUMENT_CHUNK = "get_document_chunk";
    private static final String LIST_DOCUMENTS = "list_documents";
+   private static final String GET_DATA_VIEW_ROWS = "get_data_view_rows";
    private static final String SAVE_DOCUMENT = "save_document";
    private static final String SAVE_DOCUMENT_DIFF = "save_document_diff";
+   private static final String SAVE_DOCUMENT_PATCH = "save_document_patch";
    private static final String CHECK_FOR_EXTERNAL_EDIT = "check_for_external_edit";
    private static final String IGNORE_EXTERNAL_EDIT = "ignore_external_edit";
    private static final String CLOSE_DOCUMENT = "close_document";
@@ -21,6 +21,7 @@ import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.Window.ClosingEvent;
 import com.google.gwt.user.client.Window.ClosingHandler;
 import org.rstudio.core.client.files.FileSystemItem;
+import org.rstudio.core.client.jsonrpc.RpcMetrics;
 import org.rstudio.core.client.jsonrpc.RpcObjectList;
 import org.rstudio.core.client.jsonrpc.RpcRequest;
 import org.rstudio.core.client.jsonrpc.RpcRequestCallback;
@@ -29,7 +30,6 @@ import org.rstudio.studio.client.application.events.*;
 import org.rstudio.studio.client.application.model.SessionSerializationAction;
 import org.rstudio.studio.client.server.Bool;
 import org.rstudio.studio.client.server.ServerError;
-import org.rstudio.studio.client.server.ServerRequestCallback;
 import org.rstudio.studio.client.workbench.events.*;
 import org.rstudio.studio.client.workbench.model.BrowseUrlInfo;
 import org.rstudio.studio.client.workbench.model.ErrorMessage;
@@ -42,7 +42,9 @@ import org.rstudio.studio.client.workbench.views.data.events.ViewDataEvent;
 import org.rstudio.studio.client.workbench.views.data.model.DataView;
 import org.rstudio.studio.client.workbench.views.edit.events.ShowEditorEvent;
 import org.rstudio.studio.client.workbench.views.files.events.FileChangeEvent;
+import org.rstudio.studio.client.workbench.views.files.events.FindResultEvent;
 import org.rstudio.studio.client.workbench.views.files.model.FileChange;
+import org.rstudio.studio.client.workbench.views.files.model.FindResults;
 import org.rstudio.studio.client.workbench.views.help.events.ShowHelpEvent;
 import org.rstudio.studio.client.workbench.views.history.events.HistoryEntriesAddedEvent;
 import org.rstudio.studio.client.workbench.views.history.model.HistoryEntry;
@@ -102,6 +104,7 @@ class RemoteServerEventListener
       public static final String ShowContent = "show_content";
       public static final String ShowData = "show_data";
       public static final String AsyncCompletion = "async_completion";
+      public static final String FindResult = "find_result";
 
       protected ClientEvent()
       {
@@ -143,6 +146,10 @@ class RemoteServerEventListener
       listenErrorCount_ = 0;
       isListening_ = false;
       sessionWasQuit_ = false;
+      longPollTransport_ = new LongPollEventTransport(server);
+      streamingTransport_ = new FallbackEventTransport(
+                                    new StreamingEventTransport(server),
+                                    longPollTransport_);
       
       // we take the liberty of stopping ourselves if the window is on 
       // the verge of being closed. this allows us to prevent the scenario:
@@ -213,15 +220,10 @@ class RemoteServerEventListener
    {        
       isListening_ = false;
       listenCount_ = 0;
-      if (activeRequestCallback_ != null)
+      if (activeTransport_ != null)
       {
-         activeRequestCallback_.cancel();
-         activeRequestCallback_ = null;
-      }
-      if (activeRequest_ != null)
-      {
-         activeRequest_.cancel();
-         activeRequest_ = null;
+         activeTransport_.cancel();
+         activeTransport_ = null;
       }
    }
    
@@ -331,11 +333,17 @@ class RemoteServerEventListener
       if (!isListening_)
          return;
           
-      // setup request callback (save reference for cancellation)
-      activeRequestCallback_ = new ServerRequestCallback<JsArray<ClientEvent>>() 
+      // use the streaming transport if the server supports it (it falls
+      // back to long-polling for a while whenever streaming fails)
+      if (server_.isEventStreamingSupported())
+         activeTransport_ = streamingTransport_;
+      else
+         activeTransport_ = longPollTransport_;
+      
+      // setup transport handler
+      EventTransport.Handler handler = new EventTransport.Handler() 
       {
-         @Override
-         public void onResponseReceived(JsArray<ClientEvent> events)
+         public void onEvents(JsArray<ClientEvent> events)
          {
             // keep watchdog appraised of successful receipt of events
             watchdog_.notifyResponseReceived();
@@ -356,23 +364,29 @@ class RemoteServerEventListener
                      
                      // disppatch event
                      ClientEvent event = events.get(i);
+                     long dispatchStart = System.currentTimeMillis();
                      dispatchEvent(event);
+                     RpcMetrics.recordEvent(
+                           event.getType(),
+                           System.currentTimeMillis() - dispatchStart);
                      lastEventId_ = event.getId();
                   }   
                }
             }
-            // catch all here to make sure that in all cases we call
-            // listen() again after processing
+            // catch all here to make sure that processing errors don't
+            // prevent us from listening again
             catch(Throwable e)
             {
                GWT.log("ERROR: Processing client events", e);
             }
-            
+         }
+         
+         public void onCompleted()
+         {
             // listen for more events
             listen();
          }
          
-         @Override
          public void onError(ServerError error)
          {           
             // stop listening for events
@@ -433,10 +447,8 @@ class RemoteServerEventListener
          }
       };
       
-      // send request
-      activeRequest_ = server_.getEvents(lastEventId_, 
-                                         activeRequestCallback_,
-                                         retryHandler);                             
+      // listen
+      activeTransport_.listen(lastEventId_, handler, retryHandler);
    }  
    
    private void dispatchEvent(ClientEvent event) 
@@ -582,6 +594,11 @@ class RemoteServerEventListener
             DataItem data = event.getData();
             eventBus.fireEvent(new ShowDataEvent(data));
          }
+         else if (type.equals(ClientEvent.FindResult))
+         {
+            FindResults results = event.getData();
+            eventBus.fireEvent(new FindResultEvent(results));
+         }
          else if (type.equals(ClientEvent.AbendWarning))
          {            
             eventBus.fireEvent(new SessionAbendWarningEvent());
@@ -733,8 +750,9 @@ class RemoteServerEventListener
    private int listenErrorCount_ ;
    private boolean sessionWasQuit_ ;
    
-   private RpcRequest activeRequest_ ;
-   private ServerRequestCallback<JsArray<ClientEvent>> activeRequestCallback_;
+   private final EventTransport longPollTransport_;
+   private final EventTransport streamingTransport_;
+   private EventTransport activeTransport_;
    
    private Watchdog watchdog_ = new Watchdog();
 
@@ -0,0 +1,99 @@
+/*
+ * StreamingEventTransport.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import com.google.gwt.core.client.JsArray;
+import org.rstudio.core.client.jsonrpc.RpcStreamingRequest;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.server.Void;
+import org.rstudio.studio.client.server.remote.RemoteServerEventListener.ClientEvent;
+
+// Receives events over a single long-lived get_events connection to which
+// the server writes each batch of events as it occurs (avoids a new http 
+// request and listen bounce per batch of events). The server ends the 
+// stream periodically, at which point we listen again.
+class StreamingEventTransport implements EventTransport
+{
+   public StreamingEventTransport(EventServer server)
+   {
+      server_ = server;
+   }
+   
+   public void listen(int lastEventId, 
+                      final Handler handler, 
+                      RetryHandler retryHandler)
+   {
+      // setup callbacks (save references for cancellation)
+      eventsCallback_ = new ServerRequestCallback<JsArray<ClientEvent>>() 
+      {
+         @Override
+         public void onResponseReceived(JsArray<ClientEvent> events)
+         {
+            handler.onEvents(events);
+         }
+         
+         @Override
+         public void onError(ServerError error)
+         {
+            handler.onError(error);
+         }
+      };
+      
+      completedCallback_ = new ServerRequestCallback<Void>()
+      {
+         @Override
+         public void onResponseReceived(Void response)
+         {
+            activeRequest_ = null;
+            handler.onCompleted();
+         }
+         
+         @Override
+         public void onError(ServerError error)
+         {
+            activeRequest_ = null;
+            handler.onError(error);
+         }
+      };
+      
+      activeRequest_ = server_.streamEvents(lastEventId,
+                                            eventsCallback_,
+                                            completedCallback_,
+                                            retryHandler);
+   }
+   
+   public void cancel()
+   {
+      if (eventsCallback_ != null)
+      {
+         eventsCallback_.cancel();
+         eventsCallback_ = null;
+      }
+      if (completedCallback_ != null)
+      {
+         completedCallback_.cancel();
+         completedCallback_ = null;
+      }
+      if (activeRequest_ != null)
+      {
+         activeRequest_.cancel();
+         activeRequest_ = null;
+      }
+   }
+   
+   private final EventServer server_;
+   private RpcStreamingRequest activeRequest_;
+   private ServerRequestCallback<JsArray<ClientEvent>> eventsCallback_;
+   private ServerRequestCallback<Void> completedCallback_;
+}
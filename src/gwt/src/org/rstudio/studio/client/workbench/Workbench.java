@@ -12,7 +12,9 @@
  */
 package org.rstudio.studio.client.workbench;
 
+import com.google.gwt.user.client.Timer;
 import com.google.inject.Inject;
+import org.rstudio.core.client.StartupTimeline;
 import org.rstudio.core.client.StringUtil;
 import org.rstudio.core.client.TimeBufferedCommand;
 import org.rstudio.core.client.widget.Operation;
@@ -64,6 +66,15 @@ public class Workbench implements BusyHandler,
                                         new VoidServerRequestCallback());
          }
       };
+      
+      graphicsResizeTimer_ = new Timer()
+      {
+         @Override
+         public void run()
+         {
+            metricsChangedCommand_.nudge();
+         }
+      };
    }
 
    public WorkbenchMainView getMainView()
@@ -74,6 +85,7 @@ public class Workbench implements BusyHandler,
    public void onWorkbenchLoaded(WorkbenchLoadedEvent event)
    {
       server_.onWorkbenchReady();
+      StartupTimeline.mark("workbench ready");
    }
    
    public void onBusy(BusyEvent event)
@@ -99,8 +111,25 @@ public class Workbench implements BusyHandler,
      
    public void onWorkbenchMetricsChanged(WorkbenchMetricsChangedEvent event)
    {
-      lastWorkbenchMetrics_ = event.getWorkbenchMetrics();
-      metricsChangedCommand_.nudge();
+      WorkbenchMetrics metrics = event.getWorkbenchMetrics();
+      WorkbenchMetrics previous = lastWorkbenchMetrics_;
+      boolean graphicsResized = previous != null &&
+            (metrics.getGraphicsWidth() != previous.getGraphicsWidth() ||
+             metrics.getGraphicsHeight() != previous.getGraphicsHeight());
+      lastWorkbenchMetrics_ = metrics;
+      
+      // each new graphics size causes the server to re-render the active 
+      // plot, so while the plots pane is being resized wait for the size 
+      // to settle rather than rendering every intermediate size
+      if (graphicsResized)
+      {
+         graphicsResizeTimer_.schedule(GRAPHICS_RESIZE_DELAY_MS);
+      }
+      else
+      {
+         graphicsResizeTimer_.cancel();
+         metricsChangedCommand_.nudge();
+      }
    }
    
    public void onQuotaStatus(QuotaStatusEvent event)
@@ -170,6 +199,8 @@ public class Workbench implements BusyHandler,
    GlobalDisplay globalDisplay_;
 
    private final TimeBufferedCommand metricsChangedCommand_;
+   private final Timer graphicsResizeTimer_;
+   private static final int GRAPHICS_RESIZE_DELAY_MS = 400;
    private WorkbenchMetrics lastWorkbenchMetrics_;
    private boolean nearQuotaWarningShown_ = false; 
 }
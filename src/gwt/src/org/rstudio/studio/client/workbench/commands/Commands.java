@@ -57,6 +57,7 @@ public abstract class Commands extends CommandBundle
    public abstract AppCommand quickOpen();
    public abstract AppCommand activateFiles();
    public abstract AppCommand syncWorkingDir();
+   public abstract AppCommand findInFiles();
    public abstract AppCommand showFolder();
 
    // View
@@ -24,6 +24,7 @@ import org.rstudio.studio.client.common.filetypes.FileTypeRegistry;
 import org.rstudio.studio.client.server.ServerError;
 import org.rstudio.studio.client.server.ServerRequestCallback;
 import org.rstudio.studio.client.server.Void;
+import org.rstudio.studio.client.workbench.views.files.model.DirectoryListingCache;
 import org.rstudio.studio.client.workbench.views.files.model.FilesServerOperations;
 
 import java.util.ArrayList;
@@ -32,11 +33,13 @@ public class RemoteFileSystemContext extends PosixFileSystemContext
 {
    @Inject
    public RemoteFileSystemContext(FilesServerOperations server,
+                                  DirectoryListingCache listingCache,
                                   FileTypeRegistry fileTypeRegistry,
                                   GlobalDisplay globalDisplay)
    {
       super();
       server_ = server;
+      listingCache_ = listingCache;
       fileTypeRegistry_ = fileTypeRegistry;
       globalDisplay_ = globalDisplay;
    }
@@ -54,7 +57,7 @@ public class RemoteFileSystemContext extends PosixFileSystemContext
       
       final ArrayList<FileSystemItem> fsi = new ArrayList<FileSystemItem>();
 
-      server_.listFiles(
+      listingCache_.listFiles(
             newPathEntry,
             false, // since this is used for the file dialog don't 
                    // cause the call to reset the server monitoring state
@@ -81,6 +84,7 @@ public class RemoteFileSystemContext extends PosixFileSystemContext
 
    public void refresh()
    {
+      listingCache_.invalidate(FileSystemItem.createDir(workingDir_));
       cd(workingDir_);
    }
 
@@ -109,6 +113,9 @@ public class RemoteFileSystemContext extends PosixFileSystemContext
                @Override
                public void onResponseReceived(Void response)
                {
+                  // the directory may not be monitored
+                  listingCache_.invalidate(FileSystemItem.createDir(baseDir));
+
                   if (baseDir.equals(workingDir_))
                   {
                      progress.onCompleted();
@@ -124,6 +131,7 @@ public class RemoteFileSystemContext extends PosixFileSystemContext
    }
 
    private final FilesServerOperations server_;
+   private final DirectoryListingCache listingCache_;
    private final FileTypeRegistry fileTypeRegistry_;
    private final GlobalDisplay globalDisplay_;
 }
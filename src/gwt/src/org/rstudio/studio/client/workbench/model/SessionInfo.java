@@ -63,6 +63,19 @@ public class SessionInfo extends JavaScriptObject
       return this.mode;
    }-*/;
 
+   public final native boolean isEventStreamingSupported() /*-{
+      return !!this.event_streaming;
+   }-*/;
+
+   /**
+    * True if the console history, console actions, and source documents
+    * were left out of the client_init response (they are fetched
+    * separately via the SessionStartupQueue)
+    */
+   public final native boolean isStaged() /*-{
+      return !!this.staged;
+   }-*/;
+
    public final native boolean getResumed() /*-{
       return this.resumed;
    }-*/;
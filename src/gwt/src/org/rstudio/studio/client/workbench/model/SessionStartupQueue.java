@@ -0,0 +1,100 @@
+/*
+ * SessionStartupQueue.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.model;
+
+import com.google.gwt.user.client.Command;
+import com.google.inject.Singleton;
+import org.rstudio.core.client.SerializedCommand;
+import org.rstudio.core.client.SerializedCommandQueue;
+import org.rstudio.core.client.StartupTimeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Session state which a staged client_init leaves out of SessionInfo
+ * (console backlog, source documents, console history) is fetched after
+ * the workbench is shown. Components register their fetches while the
+ * workbench is being created; once it is on screen the fetches are run
+ * one at a time in priority order (fetches with the same priority run in
+ * the order they were added).
+ */
+@Singleton
+public class SessionStartupQueue
+{
+   public static final int PRIORITY_HIGH = 0;
+   public static final int PRIORITY_NORMAL = 1;
+   public static final int PRIORITY_LOW = 2;
+
+   public void addFetch(int priority, String name, SerializedCommand fetch)
+   {
+      Fetch entry = new Fetch(priority, name, fetch);
+      if (started_)
+         queue_.addCommand(entry);
+      else
+         pending_.add(entry);
+   }
+
+   /**
+    * Called once the workbench is visible
+    */
+   public void start()
+   {
+      if (started_)
+         return;
+      started_ = true;
+
+      Collections.sort(pending_, new Comparator<Fetch>()
+      {
+         public int compare(Fetch a, Fetch b)
+         {
+            return a.priority_ - b.priority_;
+         }
+      });
+
+      for (Fetch fetch : pending_)
+         queue_.addCommand(fetch);
+      pending_.clear();
+   }
+
+   private static class Fetch implements SerializedCommand
+   {
+      Fetch(int priority, String name, SerializedCommand fetch)
+      {
+         priority_ = priority;
+         name_ = name;
+         fetch_ = fetch;
+      }
+
+      public void onExecute(final Command continuation)
+      {
+         fetch_.onExecute(new Command()
+         {
+            public void execute()
+            {
+               StartupTimeline.mark(name_ + " loaded");
+               continuation.execute();
+            }
+         });
+      }
+
+      private final int priority_;
+      private final String name_;
+      private final SerializedCommand fetch_;
+   }
+
+   private boolean started_ = false;
+   private final ArrayList<Fetch> pending_ = new ArrayList<Fetch>();
+   private final SerializedCommandQueue queue_ = new SerializedCommandQueue();
+}
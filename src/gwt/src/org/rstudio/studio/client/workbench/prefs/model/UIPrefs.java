@@ -74,4 +74,14 @@ public class UIPrefs extends Prefs
    {
       return string("theme", null);
    }
+
+   public PrefValue<Boolean> batchRpcRequests()
+   {
+      return bool("batch_rpc_requests", false);
+   }
+
+   public PrefValue<Boolean> virtualizeConsoleOutput()
+   {
+      return bool("virtualize_console_output", false);
+   }
 }
@@ -13,6 +13,7 @@ import com.google.inject.name.Named;
 import org.rstudio.core.client.Debug;
 import org.rstudio.core.client.Triad;
 import org.rstudio.core.client.events.WindowStateChangeEvent;
+import org.rstudio.core.client.js.JsObject;
 import org.rstudio.core.client.layout.DualWindowLayoutPanel;
 import org.rstudio.core.client.layout.LogicalWindow;
 import org.rstudio.core.client.layout.WindowState;
@@ -22,14 +23,18 @@ import org.rstudio.core.client.theme.PrimaryWindowFrame;
 import org.rstudio.core.client.theme.WindowFrame;
 import org.rstudio.studio.client.application.events.EventBus;
 import org.rstudio.studio.client.workbench.model.Session;
+import org.rstudio.studio.client.workbench.model.SessionInfo;
 import org.rstudio.studio.client.workbench.model.WorkbenchServerOperations;
 import org.rstudio.studio.client.workbench.model.helper.IntStateValue;
+import org.rstudio.studio.client.workbench.model.helper.JSObjectStateValue;
 import org.rstudio.studio.client.workbench.prefs.model.UIPrefs;
 import org.rstudio.studio.client.workbench.views.console.ConsoleInterruptButton;
 import org.rstudio.studio.client.workbench.views.console.ConsolePane;
 import org.rstudio.studio.client.workbench.views.source.SourceShim;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 
 /*
@@ -66,6 +71,48 @@ public class PaneManager
       private final WorkbenchTabPanel tabPanel_;
    }
 
+   /**
+    * Number of times each tab has been selected (across sessions)
+    */
+   class TabUsageStateValue extends JSObjectStateValue
+   {
+      TabUsageStateValue()
+      {
+         super("workbenchp", "tabUsage", true,
+               session_.getSessionInfo().getClientState(), false);
+      }
+
+      @Override
+      protected void onInit(JsObject value)
+      {
+         if (value == null)
+            return;
+         for (Tab tab : Tab.values())
+         {
+            Integer count = value.getInteger(tab.name());
+            if (count != null)
+               tabUsage_.put(tab, count);
+         }
+      }
+
+      @Override
+      protected JsObject getValue()
+      {
+         JsObject value = JsObject.createJsObject();
+         for (Tab tab : tabUsage_.keySet())
+            value.setInteger(tab.name(), tabUsage_.get(tab));
+         return value;
+      }
+
+      @Override
+      protected boolean hasChanged()
+      {
+         boolean changed = tabUsageChanged_;
+         tabUsageChanged_ = false;
+         return changed;
+      }
+   }
+
    @Inject
    public PaneManager(Provider<MainSplitPanel> pSplitPanel,
                       WorkbenchServerOperations server,
@@ -94,6 +141,8 @@ public class PaneManager
       packagesTab_ = packagesTab;
       helpTab_ = helpTab;
 
+      new TabUsageStateValue();
+
       PaneConfig config = validateConfig(uiPrefs.paneConfig().getValue());
       initPanes(config);
 
@@ -104,7 +153,11 @@ public class PaneManager
       panel_ = pSplitPanel.get();
       panel_.initialize(left_, right_);
 
-      if (session_.getSessionInfo().getSourceDocuments().length() == 0
+      // for staged inits the source documents haven't been fetched yet (the
+      // Source module shows the pane again if there are any)
+      SessionInfo sessionInfo = session_.getSessionInfo();
+      if ((sessionInfo.isStaged() ||
+           sessionInfo.getSourceDocuments().length() == 0)
             && sourceLogicalWindow_.getState() != WindowState.HIDE)
       {
          sourceLogicalWindow_.onWindowStateChange(
@@ -128,6 +181,8 @@ public class PaneManager
                              tabSet2TabPanel_, tabSet2MinPanel_);
          }
       });
+
+      trackTabUsage_ = true;
    }
 
    private ArrayList<LogicalWindow> createPanes(PaneConfig config)
@@ -214,6 +269,33 @@ public class PaneManager
                                   plotsTab_, packagesTab_, helpTab_ };
    }
 
+   /**
+    * Returns all tabs ordered by how soon they are likely to be needed:
+    * tabs in tab sets which are on screen come before those in minimized
+    * tab sets, and within that the most used tabs come first.
+    */
+   public ArrayList<WorkbenchTab> getTabsInPrefetchOrder()
+   {
+      ArrayList<Tab> tabs = new ArrayList<Tab>();
+      Collections.addAll(tabs, Tab.values());
+      Collections.sort(tabs, new Comparator<Tab>()
+      {
+         public int compare(Tab a, Tab b)
+         {
+            boolean aVisible = isTabSetVisible(a);
+            boolean bVisible = isTabSetVisible(b);
+            if (aVisible != bVisible)
+               return aVisible ? -1 : 1;
+            return getTabUsage(b) - getTabUsage(a);
+         }
+      });
+
+      ArrayList<WorkbenchTab> results = new ArrayList<WorkbenchTab>();
+      for (Tab tab : tabs)
+         results.add(getTab(tab));
+      return results;
+   }
+
    public void activateTab(Tab tab)
    {
       tabToPanel_.get(tab).selectTab(tabToIndex_.get(tab));
@@ -239,6 +321,37 @@ public class PaneManager
       return consoleWindowFrame_;
    }
 
+   private boolean isTabSetVisible(Tab tab)
+   {
+      String tabSet = tabToPanel_.get(tab) == tabSet1TabPanel_ ? "TabSet1"
+                                                               : "TabSet2";
+      WindowState state = panesByName_.get(tabSet).getState();
+      return state != WindowState.MINIMIZE && state != WindowState.HIDE;
+   }
+
+   private int getTabUsage(Tab tab)
+   {
+      Integer count = tabUsage_.get(tab);
+      return count != null ? count : 0;
+   }
+
+   private void recordTabUsage(WorkbenchTabPanel tabPanel, int index)
+   {
+      // ignore selections made while restoring the layout
+      if (!trackTabUsage_)
+         return;
+
+      for (Tab tab : tabToPanel_.keySet())
+      {
+         if (tabToPanel_.get(tab) == tabPanel && tabToIndex_.get(tab) == index)
+         {
+            tabUsage_.put(tab, getTabUsage(tab) + 1);
+            tabUsageChanged_ = true;
+            return;
+         }
+      }
+   }
+
    private DualWindowLayoutPanel createSplitWindow(LogicalWindow top,
                                                    LogicalWindow bottom,
                                                    String name)
@@ -298,6 +411,8 @@ public class PaneManager
       {
          public void onSelection(SelectionEvent<Integer> integerSelectionEvent)
          {
+            recordTabUsage(tabPanel,
+                           integerSelectionEvent.getSelectedItem());
             session_.persistClientState();
          }
       });
@@ -369,6 +484,9 @@ public class PaneManager
    private final HashMap<Tab, Integer> tabToIndex_ =
          new HashMap<Tab, Integer>();
    private HashMap<String, LogicalWindow> panesByName_;
+   private final HashMap<Tab, Integer> tabUsage_ = new HashMap<Tab, Integer>();
+   private boolean tabUsageChanged_;
+   private boolean trackTabUsage_;
    private DualWindowLayoutPanel left_;
    private DualWindowLayoutPanel right_;
    private ArrayList<LogicalWindow> panes_;
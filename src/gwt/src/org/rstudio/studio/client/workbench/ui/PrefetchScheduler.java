@@ -0,0 +1,154 @@
+/*
+ * PrefetchScheduler.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.ui;
+
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Command;
+import com.google.gwt.user.client.Event;
+import com.google.gwt.user.client.Event.NativePreviewEvent;
+import com.google.gwt.user.client.Event.NativePreviewHandler;
+import com.google.gwt.user.client.Timer;
+import com.google.inject.Inject;
+import org.rstudio.core.client.Diagnostics;
+import org.rstudio.core.client.SerializedCommand;
+import org.rstudio.studio.client.application.events.EventBus;
+import org.rstudio.studio.client.server.Server;
+import org.rstudio.studio.client.workbench.views.console.events.ConsolePromptEvent;
+import org.rstudio.studio.client.workbench.views.console.events.ConsolePromptHandler;
+
+import java.util.ArrayList;
+
+/**
+ * Downloads code fragments in the background without competing with the
+ * startup of the workbench or with the user. Nothing is fetched until the
+ * console has shown its first prompt; after that each fragment waits until
+ * there has been no request activity (other than the event long poll) and
+ * no keyboard or mouse input for a short while. Fragments are fetched one
+ * at a time in the order they were added.
+ */
+public class PrefetchScheduler
+{
+   @Inject
+   public PrefetchScheduler(EventBus eventBus, Server server)
+   {
+      server_ = server;
+
+      promptRegistration_ = eventBus.addHandler(ConsolePromptEvent.TYPE,
+                                                new ConsolePromptHandler()
+      {
+         public void onConsolePrompt(ConsolePromptEvent event)
+         {
+            interactive_ = true;
+            promptRegistration_.removeHandler();
+         }
+      });
+   }
+
+   public void add(String name, SerializedCommand prefetch)
+   {
+      pending_.add(new Prefetch(name, prefetch));
+   }
+
+   public void start()
+   {
+      if (started_)
+         return;
+      started_ = true;
+
+      lastUserActivity_ = System.currentTimeMillis();
+      activityRegistration_ = Event.addNativePreviewHandler(
+                                                   new NativePreviewHandler()
+      {
+         public void onPreviewNativeEvent(NativePreviewEvent event)
+         {
+            if ((event.getTypeInt() & USER_ACTIVITY_EVENTS) != 0)
+               lastUserActivity_ = System.currentTimeMillis();
+         }
+      });
+
+      timer_.schedule(CHECK_INTERVAL_MS);
+   }
+
+   private void runNextIfIdle()
+   {
+      if (pending_.isEmpty())
+      {
+         activityRegistration_.removeHandler();
+         return;
+      }
+
+      if (!interactive_ ||
+          !server_.isNetworkIdle(NETWORK_QUIET_MS) ||
+          System.currentTimeMillis() - lastUserActivity_ < USER_QUIET_MS)
+      {
+         timer_.schedule(CHECK_INTERVAL_MS);
+         return;
+      }
+
+      pending_.remove(0).execute(new Command()
+      {
+         public void execute()
+         {
+            timer_.schedule(CHECK_INTERVAL_MS);
+         }
+      });
+   }
+
+   private static class Prefetch
+   {
+      Prefetch(String name, SerializedCommand command)
+      {
+         name_ = name;
+         command_ = command;
+      }
+
+      void execute(final Command continuation)
+      {
+         final long start = System.currentTimeMillis();
+         command_.onExecute(new Command()
+         {
+            public void execute()
+            {
+               Diagnostics.reportTime("Prefetch: " + name_,
+                                      System.currentTimeMillis() - start);
+               continuation.execute();
+            }
+         });
+      }
+
+      private final String name_;
+      private final SerializedCommand command_;
+   }
+
+   private final Server server_;
+   private final ArrayList<Prefetch> pending_ = new ArrayList<Prefetch>();
+   private final Timer timer_ = new Timer()
+   {
+      @Override
+      public void run()
+      {
+         runNextIfIdle();
+      }
+   };
+   private HandlerRegistration promptRegistration_;
+   private HandlerRegistration activityRegistration_;
+   private boolean started_;
+   private boolean interactive_;
+   private long lastUserActivity_;
+
+   private static final int CHECK_INTERVAL_MS = 500;
+   private static final int NETWORK_QUIET_MS = 1000;
+   private static final int USER_QUIET_MS = 2000;
+   private static final int USER_ACTIVITY_EVENTS =
+         Event.KEYEVENTS | Event.ONMOUSEDOWN | Event.ONMOUSEWHEEL;
+}
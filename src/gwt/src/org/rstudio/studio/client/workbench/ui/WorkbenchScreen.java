@@ -74,7 +74,8 @@ public class WorkbenchScreen extends Composite
                           FontSizeManager fontSizeManager,
                           WorkbenchServerOperations server,
                           GlobalDisplay globalDisplay,
-                          OptionsLoader.Shim optionsLoader)
+                          OptionsLoader.Shim optionsLoader,
+                          PrefetchScheduler prefetchScheduler)
    {
       eventBus_ = eventBus;
       session_ = session;
@@ -82,6 +83,7 @@ public class WorkbenchScreen extends Composite
       server_ = server;
       globalDisplay_ = globalDisplay;
       optionsLoader_ = optionsLoader;
+      prefetchScheduler_ = prefetchScheduler;
 
       eventBus_.addHandler(ShowEditorEvent.TYPE, edit);
       eventBus_.addHandler(ChangeFontSizeEvent.TYPE, new ChangeFontSizeHandler()
@@ -174,7 +176,6 @@ public class WorkbenchScreen extends Composite
 
    private void prefetch()
    {
-      final SerializedCommandQueue prefetchQueue = new SerializedCommandQueue();
       DeferredCommand.addCommand(new Command() {
          public void execute()
          {
@@ -182,41 +183,38 @@ public class WorkbenchScreen extends Composite
          }
       });
 
-      DeferredCommand.addCommand(new Command()
-      {
-         public void execute()
+      // tabs are ordered by layout and usage. the editor, options, and
+      // session ended fragments are rarely needed so they come last
+      for (final WorkbenchTab tab : paneManager_.getTabsInPrefetchOrder())
+         prefetchScheduler_.add(tab.getTitle(), new SerializedCommand()
          {
-            for (final WorkbenchTab tab : paneManager_.getAllTabs())
-               prefetchQueue.addCommand(new SerializedCommand()
-               {
-                  public void onExecute(Command continuation)
-                  {
-                     tab.prefetch(continuation);
-                  }
-               });
-            prefetchQueue.addCommand(new SerializedCommand()
-            {
-               public void onExecute(Command continuation)
-               {
-                  ApplicationEndedPopupPanel.prefetch(continuation);
-               }
-            });
-            prefetchQueue.addCommand(new SerializedCommand()
-            {
-               public void onExecute(Command continuation)
-               {
-                  edit_.forceLoad(true, continuation);
-               }
-            });
-            prefetchQueue.addCommand(new SerializedCommand()
+            public void onExecute(Command continuation)
             {
-               public void onExecute(Command continuation)
-               {
-                  optionsLoader_.forceLoad(true, continuation);
-               }
-            });
+               tab.prefetch(continuation);
+            }
+         });
+      prefetchScheduler_.add("Edit", new SerializedCommand()
+      {
+         public void onExecute(Command continuation)
+         {
+            edit_.forceLoad(true, continuation);
+         }
+      });
+      prefetchScheduler_.add("Options", new SerializedCommand()
+      {
+         public void onExecute(Command continuation)
+         {
+            optionsLoader_.forceLoad(true, continuation);
+         }
+      });
+      prefetchScheduler_.add("Application ended", new SerializedCommand()
+      {
+         public void onExecute(Command continuation)
+         {
+            ApplicationEndedPopupPanel.prefetch(continuation);
          }
       });
+      prefetchScheduler_.start();
    }
 
    private void updateWorkingDirectory(String path)
@@ -314,6 +312,7 @@ public class WorkbenchScreen extends Composite
    private final WorkbenchServerOperations server_;
    private final GlobalDisplay globalDisplay_;
    private final org.rstudio.studio.client.workbench.ui.OptionsLoader.Shim optionsLoader_;
+   private final PrefetchScheduler prefetchScheduler_;
 
    private final MainSplitPanel tabsPanel_ ;
    private PaneManager paneManager_;
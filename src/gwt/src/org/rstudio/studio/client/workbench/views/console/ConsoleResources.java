@@ -40,5 +40,7 @@ public interface ConsoleResources extends ClientBundle
       String promptFullHelp();
       String error();
       String selected();
+      String virtualOutput();
+      String findMatch();
    }
 }
@@ -12,9 +12,12 @@
  */
 package org.rstudio.studio.client.workbench.views.console.model;
 
+import com.google.gwt.core.client.JsArrayString;
+import org.rstudio.core.client.jsonrpc.RpcObjectList;
 import org.rstudio.studio.client.common.codetools.CodeToolsServerOperations;
 import org.rstudio.studio.client.server.ServerRequestCallback;
 import org.rstudio.studio.client.server.Void;
+import org.rstudio.studio.client.workbench.model.ConsoleAction;
 import org.rstudio.studio.client.workbench.views.history.model.HistoryServerOperations;
 
 public interface ConsoleServerOperations extends CodeToolsServerOperations,
@@ -28,4 +31,10 @@ public interface ConsoleServerOperations extends CodeToolsServerOperations,
                      ServerRequestCallback<Void> requestCallback);
    
    void resetConsoleActions(ServerRequestCallback<Void> requestCallback);
+
+   // console backlog as of a staged client_init
+   void getConsoleActions(
+         ServerRequestCallback<RpcObjectList<ConsoleAction>> requestCallback);
+
+   void getConsoleHistory(ServerRequestCallback<JsArrayString> requestCallback);
 }
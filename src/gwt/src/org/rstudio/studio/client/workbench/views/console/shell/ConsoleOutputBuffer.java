@@ -0,0 +1,249 @@
+/*
+ * ConsoleOutputBuffer.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.console.shell;
+
+import java.util.ArrayList;
+
+/**
+ * Console output held in memory as a ring buffer of lines, each of which
+ * is a sequence of style runs. Once the buffer is full the oldest lines
+ * are dropped as new lines are added.
+ */
+public class ConsoleOutputBuffer
+{
+   public static class Run
+   {
+      Run(String text, String className)
+      {
+         this.text = text;
+         this.className = className;
+      }
+
+      public final String text;
+      public final String className;
+   }
+
+   public static class Line
+   {
+      public int getRunCount()
+      {
+         return classNames_.size();
+      }
+
+      public Run getRun(int index)
+      {
+         return new Run(texts_.get(index).toString(), classNames_.get(index));
+      }
+
+      public String getText()
+      {
+         if (text_ == null)
+         {
+            StringBuilder text = new StringBuilder();
+            for (StringBuilder run : texts_)
+               text.append(run);
+            text_ = text.toString();
+         }
+         return text_;
+      }
+
+      private void addRun(String text, String className)
+      {
+         text_ = null;
+
+         // merge with the previous run if it has the same style (appending
+         // to a builder so that a line which arrives in many small pieces
+         // doesn't cost quadratic time)
+         int last = classNames_.size() - 1;
+         if (last >= 0 && classNames_.get(last).equals(className))
+         {
+            texts_.get(last).append(text);
+         }
+         else
+         {
+            texts_.add(new StringBuilder(text));
+            classNames_.add(className);
+         }
+      }
+
+      private final ArrayList<StringBuilder> texts_ =
+                                             new ArrayList<StringBuilder>();
+      private final ArrayList<String> classNames_ = new ArrayList<String>();
+      private String text_ = null;
+   }
+
+   public ConsoleOutputBuffer(int capacity)
+   {
+      lines_ = new Line[normalizeCapacity(capacity)];
+   }
+
+   public void setCapacity(int capacity)
+   {
+      capacity = normalizeCapacity(capacity);
+      if (capacity == lines_.length)
+         return;
+
+      // keep the newest lines
+      int keep = Math.min(count_, capacity);
+      Line[] lines = new Line[capacity];
+      for (int i = 0; i < keep; i++)
+         lines[i] = getLine(count_ - keep + i);
+
+      droppedLines_ += count_ - keep;
+      lines_ = lines;
+      head_ = 0;
+      count_ = keep;
+      version_++;
+   }
+
+   public void append(String text, String className)
+   {
+      int start = 0;
+      int length = text.length();
+      while (start < length)
+      {
+         if (!lastLineOpen_)
+         {
+            addLine(new Line());
+            lastLineOpen_ = true;
+         }
+
+         int newline = text.indexOf('\n', start);
+         int end = newline == -1 ? length : newline;
+         if (end > start)
+            getLine(count_ - 1).addRun(text.substring(start, end), className);
+
+         if (newline == -1)
+            break;
+
+         lastLineOpen_ = false;
+         start = newline + 1;
+      }
+
+      version_++;
+   }
+
+   public void clear()
+   {
+      for (int i = 0; i < lines_.length; i++)
+         lines_[i] = null;
+      droppedLines_ += count_;
+      head_ = 0;
+      count_ = 0;
+      lastLineOpen_ = false;
+      version_++;
+   }
+
+   public int getLineCount()
+   {
+      return count_;
+   }
+
+   public Line getLine(int index)
+   {
+      return lines_[(head_ + index) % lines_.length];
+   }
+
+   // total number of lines ever dropped from the top of the buffer (allows
+   // views to keep their scroll position stable as lines are dropped)
+   public int getDroppedLineCount()
+   {
+      return droppedLines_;
+   }
+
+   // whether the last line is still being written to (i.e. the output so
+   // far doesn't end with a newline)
+   public boolean isLastLineOpen()
+   {
+      return lastLineOpen_;
+   }
+
+   // incremented whenever the contents of the buffer change
+   public int getVersion()
+   {
+      return version_;
+   }
+
+   public String getText()
+   {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < count_; i++)
+      {
+         if (i > 0)
+            text.append('\n');
+         text.append(getLine(i).getText());
+      }
+      return text.toString();
+   }
+
+   /**
+    * Finds the next occurrence of query starting at the specified line and
+    * column (wrapping around to the top of the buffer). Returns the line
+    * and column of the match, or null if there is no match.
+    */
+   public int[] find(String query,
+                     int fromLine,
+                     int fromColumn,
+                     boolean ignoreCase)
+   {
+      if (query.length() == 0 || count_ == 0)
+         return null;
+
+      if (ignoreCase)
+         query = query.toLowerCase();
+
+      fromLine = Math.max(0, Math.min(fromLine, count_ - 1));
+      for (int i = 0; i <= count_; i++)
+      {
+         int line = (fromLine + i) % count_;
+         String text = getLine(line).getText();
+         if (ignoreCase)
+            text = text.toLowerCase();
+
+         int column = text.indexOf(query, i == 0 ? fromColumn : 0);
+         if (column != -1)
+            return new int[] {line, column};
+      }
+
+      return null;
+   }
+
+   private void addLine(Line line)
+   {
+      if (count_ == lines_.length)
+      {
+         lines_[head_] = line;
+         head_ = (head_ + 1) % lines_.length;
+         droppedLines_++;
+      }
+      else
+      {
+         lines_[(head_ + count_) % lines_.length] = line;
+         count_++;
+      }
+   }
+
+   private static int normalizeCapacity(int capacity)
+   {
+      return capacity > 0 ? capacity : DEFAULT_CAPACITY;
+   }
+
+   private Line[] lines_;
+   private int head_ = 0;
+   private int count_ = 0;
+   private int droppedLines_ = 0;
+   private int version_ = 0;
+   private boolean lastLineOpen_ = false;
+
+   private static final int DEFAULT_CAPACITY = 10000;
+}
@@ -0,0 +1,165 @@
+/*
+ * ConsoleOutputQueue.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.console.shell;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+
+import java.util.LinkedList;
+
+/**
+ * Console output and errors arrive as many small events (e.g. when R
+ * prints within a loop) so rather than touching the DOM for each of them
+ * we accumulate them (merging consecutive chunks of the same style) and
+ * write them after the current batch of events is processed. Each write
+ * pass is bounded by a time budget: when a burst of output takes longer
+ * than that to write the rest is written in later passes, yielding to the
+ * browser in between so that it stays responsive.
+ */
+public class ConsoleOutputQueue
+{
+   public interface Sink
+   {
+      void write(String text, String className);
+
+      // called at the end of each write pass
+      void onFlushed();
+   }
+
+   public ConsoleOutputQueue(Sink sink, int budgetMs)
+   {
+      sink_ = sink;
+      budgetMs_ = budgetMs;
+   }
+
+   public void add(String text, String className)
+   {
+      PendingOutput last = pending_.isEmpty() ? null : pending_.getLast();
+      if (last != null && last.className.equals(className))
+         last.text.append(text);
+      else
+         pending_.add(new PendingOutput(text, className));
+
+      scheduleFlush();
+   }
+
+   public boolean isEmpty()
+   {
+      return pending_.isEmpty();
+   }
+
+   // write everything that is pending right now (e.g. output which
+   // precedes a prompt)
+   public void flush()
+   {
+      if (pending_.isEmpty())
+         return;
+
+      while (!pending_.isEmpty())
+      {
+         PendingOutput pending = pending_.removeFirst();
+         sink_.write(pending.remaining(), pending.className);
+      }
+      sink_.onFlushed();
+   }
+
+   public void clear()
+   {
+      pending_.clear();
+   }
+
+   // write pending output until the budget is used up (large chunks are
+   // written a slice at a time so that the budget can be checked)
+   private void flushSome()
+   {
+      flushScheduled_ = false;
+      if (pending_.isEmpty())
+         return;
+
+      long start = System.currentTimeMillis();
+      do
+      {
+         PendingOutput pending = pending_.getFirst();
+         sink_.write(pending.take(SLICE_CHARS), pending.className);
+         if (pending.isEmpty())
+            pending_.removeFirst();
+      }
+      while (!pending_.isEmpty() &&
+             System.currentTimeMillis() - start < budgetMs_);
+
+      sink_.onFlushed();
+
+      if (!pending_.isEmpty())
+         scheduleFlush();
+   }
+
+   private void scheduleFlush()
+   {
+      if (flushScheduled_)
+         return;
+
+      flushScheduled_ = true;
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
+      {
+         public void execute()
+         {
+            flushSome();
+         }
+      });
+   }
+
+   private static class PendingOutput
+   {
+      PendingOutput(String text, String className)
+      {
+         this.text = new StringBuilder(text);
+         this.className = className;
+      }
+
+      String take(int maxChars)
+      {
+         int end = Math.min(text.length(), offset + maxChars);
+
+         // don't split a line if we can avoid it
+         int newline = text.lastIndexOf("\n", end - 1);
+         if (end < text.length() && newline >= offset)
+            end = newline + 1;
+
+         String slice = text.substring(offset, end);
+         offset = end;
+         return slice;
+      }
+
+      String remaining()
+      {
+         return text.substring(offset);
+      }
+
+      boolean isEmpty()
+      {
+         return offset >= text.length();
+      }
+
+      final StringBuilder text;
+      final String className;
+      private int offset = 0;
+   }
+
+   private final Sink sink_;
+   private final int budgetMs_;
+   private final LinkedList<PendingOutput> pending_ =
+                                             new LinkedList<PendingOutput>();
+   private boolean flushScheduled_ = false;
+
+   private static final int SLICE_CHARS = 8192;
+}
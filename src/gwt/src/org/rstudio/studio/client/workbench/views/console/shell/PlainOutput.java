@@ -0,0 +1,128 @@
+/*
+ * PlainOutput.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.console.shell;
+
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
+import com.google.gwt.dom.client.SpanElement;
+import org.rstudio.core.client.StringUtil;
+import org.rstudio.core.client.dom.DomUtils;
+
+/**
+ * Console output written directly into the DOM (the non-virtualized mode
+ * of ShellPane): plain output as text nodes and everything else as spans
+ * with the given class name. Keeps count of the lines it holds so that
+ * the oldest can be trimmed when there are more than maxLines.
+ */
+class PlainOutput implements ConsoleOutputQueue.Sink
+{
+   public PlainOutput(Element element, String outputClassName)
+   {
+      element_ = element;
+      outputClassName_ = outputClassName;
+   }
+
+   public void write(String text, String className)
+   {
+      append(text, className, false);
+   }
+
+   public void onFlushed()
+   {
+      trimExcess();
+   }
+
+   public void append(String text, String className, boolean addToTop)
+   {
+      Node node = createNode(text, className);
+      if (addToTop)
+         element_.insertFirst(node);
+      else
+         element_.appendChild(node);
+
+      lines_ += DomUtils.countLines(node, true);
+   }
+
+   // insert output which was built up in a fragment (lines is the number
+   // of lines it holds) above the existing output
+   public void insertFirst(Node fragment, int lines)
+   {
+      element_.insertFirst(fragment);
+      lines_ += lines;
+   }
+
+   // replace the output with that in the fragment
+   public void replace(Node fragment)
+   {
+      clear();
+      element_.appendChild(fragment);
+      lines_ = countNewlines(element_.getInnerText());
+   }
+
+   public Node createNode(String text, String className)
+   {
+      if (StringUtil.isNullOrEmpty(className)
+          || className.equals(outputClassName_))
+      {
+         return Document.get().createTextNode(text);
+      }
+      else
+      {
+         SpanElement span = Document.get().createSpanElement();
+         span.setClassName(className);
+         span.setInnerText(text);
+         return span;
+      }
+   }
+
+   public void setMaxLines(int maxLines)
+   {
+      maxLines_ = maxLines;
+   }
+
+   // returns true if any lines were trimmed
+   public boolean trimExcess()
+   {
+      if (maxLines_ <= 0)
+         return false;  // No limit in effect
+
+      int linesToTrim = lines_ - maxLines_;
+      if (linesToTrim > 0)
+      {
+         lines_ -= DomUtils.trimLines(element_, linesToTrim);
+         return true;
+      }
+
+      return false;
+   }
+
+   public void clear()
+   {
+      element_.setInnerText("");
+      lines_ = 0;
+   }
+
+   static int countNewlines(String text)
+   {
+      int count = 0;
+      for (int i = text.indexOf('\n'); i != -1; i = text.indexOf('\n', i + 1))
+         count++;
+      return count;
+   }
+
+   private final Element element_;
+   private final String outputClassName_;
+   private int lines_ = 0;
+   private int maxLines_ = -1;
+}
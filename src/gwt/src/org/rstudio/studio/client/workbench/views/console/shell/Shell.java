@@ -21,10 +21,12 @@ import com.google.gwt.user.client.DeferredCommand;
 import com.google.inject.Inject;
 import org.rstudio.core.client.BrowseCap;
 import org.rstudio.core.client.Debug;
+import org.rstudio.core.client.SerializedCommand;
 import org.rstudio.core.client.command.CommandBinder;
 import org.rstudio.core.client.command.Handler;
 import org.rstudio.core.client.command.KeyboardShortcut;
 import org.rstudio.core.client.jsonrpc.RpcObjectList;
+import org.rstudio.core.client.widget.OperationWithInput;
 import org.rstudio.studio.client.application.events.EventBus;
 import org.rstudio.studio.client.common.GlobalDisplay;
 import org.rstudio.studio.client.server.ServerError;
@@ -38,6 +40,7 @@ import org.rstudio.studio.client.workbench.model.ClientInitState;
 import org.rstudio.studio.client.workbench.model.ConsoleAction;
 import org.rstudio.studio.client.workbench.model.Session;
 import org.rstudio.studio.client.workbench.model.SessionInfo;
+import org.rstudio.studio.client.workbench.model.SessionStartupQueue;
 import org.rstudio.studio.client.workbench.model.helper.StringStateValue;
 import org.rstudio.studio.client.workbench.views.console.events.*;
 import org.rstudio.studio.client.workbench.views.console.model.ConsoleServerOperations;
@@ -79,6 +82,11 @@ public class Shell implements ConsoleInputHandler,
       void playbackActions(RpcObjectList<ConsoleAction> actions);
 
       void setMaxOutputLines(int maxLines);
+
+      // searching the output is only supported when it is virtualized (it
+      // is otherwise all in the DOM and can be found by the browser)
+      boolean canFindOutput();
+      boolean findOutput(String query);
    }
 
    @Inject
@@ -87,7 +95,8 @@ public class Shell implements ConsoleInputHandler,
                 Display display,
                 Session session,
                 GlobalDisplay globalDisplay,
-                Commands commands)
+                Commands commands,
+                SessionStartupQueue startupQueue)
    {
       super() ;
 
@@ -127,10 +136,10 @@ public class Shell implements ConsoleInputHandler,
       addKeyDownPreviewHandler(new HistoryCompletionManager(
             view_.getInputEditorDisplay(), server));
 
-      sessionInit(session);
+      sessionInit(session, startupQueue);
    }
    
-   private void sessionInit(Session session)
+   private void sessionInit(Session session, SessionStartupQueue startupQueue)
    {
       SessionInfo sessionInfo = session.getSessionInfo();
       ClientInitState clientState = sessionInfo.getClientState();
@@ -148,14 +157,79 @@ public class Shell implements ConsoleInputHandler,
          }
       };
 
-      JsArrayString history = sessionInfo.getConsoleHistory();
-      if (history != null)
-         setHistory(history);
+      if (sessionInfo.isStaged())
+      {
+         // the console backlog is fetched ahead of everything else. output
+         // which arrives before it does is held back so that it isn't
+         // written above the backlog
+         if (sessionInfo.getResumed())
+         {
+            pendingOutput_ = new ArrayList<Command>();
+            startupQueue.addFetch(SessionStartupQueue.PRIORITY_HIGH,
+                                  "Console actions",
+                                  new SerializedCommand() {
+               public void onExecute(final Command continuation)
+               {
+                  server_.getConsoleActions(
+                        new ServerRequestCallback<RpcObjectList<ConsoleAction>>() {
+                     @Override
+                     public void onResponseReceived(
+                                       RpcObjectList<ConsoleAction> actions)
+                     {
+                        if (actions != null)
+                           view_.playbackActions(actions);
+                        flushPendingOutput();
+                        continuation.execute();
+                     }
+
+                     @Override
+                     public void onError(ServerError error)
+                     {
+                        Debug.logError(error);
+                        flushPendingOutput();
+                        continuation.execute();
+                     }
+                  });
+               }
+            });
+         }
 
-      RpcObjectList<ConsoleAction> actions = sessionInfo.getConsoleActions();
-      if (actions != null)
+         startupQueue.addFetch(SessionStartupQueue.PRIORITY_LOW,
+                               "Console history",
+                               new SerializedCommand() {
+            public void onExecute(final Command continuation)
+            {
+               server_.getConsoleHistory(
+                                 new ServerRequestCallback<JsArrayString>() {
+                  @Override
+                  public void onResponseReceived(JsArrayString history)
+                  {
+                     if (history != null)
+                        setHistory(history);
+                     continuation.execute();
+                  }
+
+                  @Override
+                  public void onError(ServerError error)
+                  {
+                     Debug.logError(error);
+                     continuation.execute();
+                  }
+               });
+            }
+         });
+      }
+      else
       {
-         view_.playbackActions(actions);
+         JsArrayString history = sessionInfo.getConsoleHistory();
+         if (history != null)
+            setHistory(history);
+
+         RpcObjectList<ConsoleAction> actions = sessionInfo.getConsoleActions();
+         if (actions != null)
+         {
+            view_.playbackActions(actions);
+         }
       }
 
       if (sessionInfo.getResumed())
@@ -220,24 +294,56 @@ public class Shell implements ConsoleInputHandler,
       });
    }
 
-   public void onConsoleWriteOutput(ConsoleWriteOutputEvent event)
+   public void onConsoleWriteOutput(final ConsoleWriteOutputEvent event)
    {
+      if (pendingOutput_ != null)
+      {
+         pendingOutput_.add(new Command() {
+            public void execute()
+            {
+               onConsoleWriteOutput(event);
+            }
+         });
+         return;
+      }
+
       view_.consoleOutput(event.getOutput()) ;
    }
 
-   public void onConsoleWriteError(ConsoleWriteErrorEvent event)
+   public void onConsoleWriteError(final ConsoleWriteErrorEvent event)
    {
+      if (pendingOutput_ != null)
+      {
+         pendingOutput_.add(new Command() {
+            public void execute()
+            {
+               onConsoleWriteError(event);
+            }
+         });
+         return;
+      }
+
       view_.consoleError(event.getError()) ;
    }
    
    public void onConsolePrompt(ConsolePromptEvent event)
    {
+      // the prompt isn't part of the output so it's shown right away, even
+      // while the backlog is still being fetched
       String prompt = event.getPrompt().getPromptText() ;
       boolean addToHistory = event.getPrompt().getAddToHistory() ;
       
       consolePrompt(prompt, addToHistory) ;
    }
 
+   private void flushPendingOutput()
+   {
+      ArrayList<Command> pending = pendingOutput_;
+      pendingOutput_ = null;
+      for (Command command : pending)
+         command.execute();
+   }
+
    private void consolePrompt(String prompt, boolean addToHistory)
    {
       view_.consolePrompt(prompt) ;
@@ -269,6 +375,24 @@ public class Shell implements ConsoleInputHandler,
 
    private void processCommandEntry()
    {
+      // the command is echoed to the output, so it isn't entered until the
+      // backlog (and any output held back along with it) has been written
+      if (pendingOutput_ != null)
+      {
+         if (!commandEntryPending_)
+         {
+            commandEntryPending_ = true;
+            pendingOutput_.add(new Command() {
+               public void execute()
+               {
+                  commandEntryPending_ = false;
+                  processCommandEntry();
+               }
+            });
+         }
+         return;
+      }
+
       String commandText = view_.processCommandEntry() ;
       if (addToHistory_ && (commandText.length() > 0))
          addToHistory(commandText);
@@ -441,6 +565,13 @@ public class Shell implements ConsoleInputHandler,
                      event.preventDefault();
                      InputEditorUtil.pasteYanked(input_);
                      break;
+                  case 'F':
+                     if (view_.canFindOutput())
+                     {
+                        event.preventDefault();
+                        findOutput();
+                     }
+                     break;
                }
             }
             else if (mod == KeyboardShortcut.META)
@@ -528,6 +659,27 @@ public class Shell implements ConsoleInputHandler,
       input_.setFocus(true);
    }
    
+   private void findOutput()
+   {
+      globalDisplay_.promptForText(
+            "Find in Console",
+            "Find:",
+            lastFindQuery_,
+            new OperationWithInput<String>()
+            {
+               public void execute(String query)
+               {
+                  lastFindQuery_ = query;
+                  if (!view_.findOutput(query))
+                  {
+                     globalDisplay_.showMessage(GlobalDisplay.MSG_INFO,
+                                                "Find in Console",
+                                                "No matches found.");
+                  }
+               }
+            });
+   }
+
    private void setHistory(JsArrayString history)
    {
       history_.clear();
@@ -554,9 +706,15 @@ public class Shell implements ConsoleInputHandler,
    // into/out of that final history position (history_.size()).
    private String historyTail_;
    private String lastPromptText_ ;
+   private String lastFindQuery_ = "";
 
    private String initialInput_ ;
 
+   // console output (and command entry) held back until the backlog has
+   // been played back
+   private ArrayList<Command> pendingOutput_ ;
+   private boolean commandEntryPending_ ;
+
    private boolean serverIsBusy_ ;
 
    private static final String GROUP_CONSOLE = "console";
@@ -13,8 +13,9 @@
 package org.rstudio.studio.client.workbench.views.console.shell;
 
 import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Node;
-import com.google.gwt.dom.client.SpanElement;
+import com.google.gwt.dom.client.NodeList;
 import com.google.gwt.dom.client.Style.Unit;
 import com.google.gwt.event.dom.client.*;
 import com.google.gwt.event.shared.HandlerRegistration;
@@ -23,12 +24,15 @@ import com.google.gwt.user.client.DeferredCommand;
 import com.google.gwt.user.client.IncrementalCommand;
 import com.google.gwt.user.client.ui.*;
 import com.google.inject.Inject;
+import org.rstudio.core.client.CommandWithArg;
+import org.rstudio.core.client.Diagnostics;
 import org.rstudio.core.client.StringUtil;
 import org.rstudio.core.client.dom.DomUtils;
 import org.rstudio.core.client.jsonrpc.RpcObjectList;
 import org.rstudio.core.client.widget.BottomScrollPanel;
 import org.rstudio.core.client.widget.FontSizer;
 import org.rstudio.studio.client.workbench.model.ConsoleAction;
+import org.rstudio.studio.client.workbench.prefs.model.UIPrefs;
 import org.rstudio.studio.client.workbench.views.console.ConsoleResources;
 import org.rstudio.studio.client.workbench.views.console.shell.editor.InputEditorDisplay;
 import org.rstudio.studio.client.workbench.views.console.shell.editor.PlainTextEditor;
@@ -37,7 +41,7 @@ public class ShellPane extends Composite implements Shell.Display,
                                                     RequiresResize
 {
    @Inject
-   public ShellPane(PlainTextEditor editor)
+   public ShellPane(PlainTextEditor editor, UIPrefs uiPrefs)
    {
       styles_ = ConsoleResources.INSTANCE.consoleStyles();
 
@@ -46,6 +50,16 @@ public class ShellPane extends Composite implements Shell.Display,
       output_ = new PreWidget() ;
       output_.setStylePrimaryName(styles_.output()) ;
       output_.addClickHandler(secondaryInputHandler);
+      plainOutput_ = new PlainOutput(output_.getElement(), styles_.output());
+
+      // in virtualized mode output lives in a ring buffer and only the
+      // visible lines are rendered
+      outputBuffer_ = new ConsoleOutputBuffer(maxLines_);
+      virtualOutput_ = new VirtualizedOutput(outputBuffer_,
+                                             styles_.virtualOutput(),
+                                             styles_.output(),
+                                             styles_.findMatch());
+      virtualOutput_.addClickHandler(secondaryInputHandler);
 
       prompt_ = new HTML() ;
       prompt_.setStylePrimaryName(styles_.prompt()) ;
@@ -80,10 +94,123 @@ public class ShellPane extends Composite implements Shell.Display,
       scrollPanel_.addStyleName("ace_scroller");
       scrollPanel_.addClickHandler(secondaryInputHandler);
       scrollPanel_.addKeyDownHandler(secondaryInputHandler);
+      scrollPanel_.addScrollHandler(new ScrollHandler()
+      {
+         public void onScroll(ScrollEvent event)
+         {
+            renderVirtualOutput();
+         }
+      });
 
       secondaryInputHandler.setInput(editor);
 
       initWidget(scrollPanel_) ;
+
+      uiPrefs.virtualizeConsoleOutput().bind(new CommandWithArg<Boolean>()
+      {
+         public void execute(Boolean value)
+         {
+            setVirtualized(value != null && value);
+         }
+      });
+   }
+
+   /**
+    * Switches between the virtualized and plain output modes, moving the
+    * existing output across to the new representation.
+    */
+   private void setVirtualized(boolean virtualized)
+   {
+      if (virtualized == virtualized_)
+         return;
+
+      outputQueue_.flush();
+
+      if (virtualized)
+      {
+         outputBuffer_.clear();
+         NodeList<Node> nodes = output_.getElement().getChildNodes();
+         for (int i = 0; i < nodes.getLength(); i++)
+         {
+            Node node = nodes.getItem(i);
+            if (node.getNodeType() == Node.ELEMENT_NODE)
+            {
+               Element element = Element.as(node);
+               outputBuffer_.append(element.getInnerText(),
+                                    element.getClassName());
+            }
+            else
+            {
+               outputBuffer_.append(node.getNodeValue(), styles_.output());
+            }
+         }
+         plainOutput_.clear();
+         droppedLines_ = outputBuffer_.getDroppedLineCount();
+
+         verticalPanel_.remove(output_);
+         verticalPanel_.insert(virtualOutput_, 0);
+      }
+      else
+      {
+         Node fragment = createDocumentFragment();
+         int count = outputBuffer_.getLineCount();
+         for (int i = 0; i < count; i++)
+         {
+            ConsoleOutputBuffer.Line line = outputBuffer_.getLine(i);
+            for (int j = 0; j < line.getRunCount(); j++)
+            {
+               ConsoleOutputBuffer.Run run = line.getRun(j);
+               fragment.appendChild(plainOutput_.createNode(run.text, 
+                                                            run.className));
+            }
+            if (i < count - 1 || !outputBuffer_.isLastLineOpen())
+               fragment.appendChild(plainOutput_.createNode("\n", 
+                                                            styles_.output()));
+         }
+         plainOutput_.replace(fragment);
+
+         outputBuffer_.clear();
+         findLine_ = 0;
+         findColumn_ = 0;
+         virtualOutput_.setFindMatchLine(-1);
+
+         verticalPanel_.remove(virtualOutput_);
+         verticalPanel_.insert(output_, 0);
+      }
+
+      virtualized_ = virtualized;
+      trimExcess();
+      scrollToBottomUnlessSelection();
+   }
+
+   // keep the output which is in view steady as lines are dropped from
+   // the top of the virtualized buffer
+   private void adjustForDroppedLines()
+   {
+      if (!virtualized_)
+         return;
+
+      int dropped = outputBuffer_.getDroppedLineCount() - droppedLines_;
+      droppedLines_ = outputBuffer_.getDroppedLineCount();
+      if (dropped <= 0)
+         return;
+
+      scrollPanel_.setScrollPosition(Math.max(
+            0,
+            scrollPanel_.getScrollPosition() - 
+               (dropped * virtualOutput_.getLineHeight())));
+
+      findLine_ -= dropped;
+      if (findLine_ < 0)
+      {
+         findLine_ = 0;
+         findColumn_ = 0;
+         virtualOutput_.setFindMatchLine(-1);
+      }
+      else if (findMatchShown_)
+      {
+         virtualOutput_.setFindMatchLine(findLine_);
+      }
    }
 
    @Override
@@ -101,20 +228,82 @@ public class ShellPane extends Composite implements Shell.Display,
 
    public void consoleError(String error)
    {
-      output(error, styles_.error(), false);
-      if (!DomUtils.selectionExists())
-         scrollPanel_.scrollToBottom();
+      outputQueue_.add(error, styles_.error());
    }
 
    public void consoleOutput(String output)
    {
-      output(output, styles_.output(), false);
+      outputQueue_.add(output, styles_.output());
+   }
+
+   private void scrollToBottomUnlessSelection()
+   {
+      renderVirtualOutput();
       if (!DomUtils.selectionExists())
+      {
          scrollPanel_.scrollToBottom();
+         renderVirtualOutput();
+      }
+   }
+
+   private void renderVirtualOutput()
+   {
+      if (!virtualized_)
+         return;
+
+      int windowTop = scrollPanel_.getAbsoluteTop() - 
+                      virtualOutput_.getAbsoluteTop();
+      virtualOutput_.render(windowTop, scrollPanel_.getOffsetHeight());
+   }
+
+   public boolean canFindOutput()
+   {
+      return virtualized_;
+   }
+
+   /**
+    * Finds the next occurrence of query within the console output (in
+    * virtualized mode this searches the entire buffer rather than just 
+    * the rendered lines) and scrolls it into view. Returns false if
+    * there was no match.
+    */
+   public boolean findOutput(String query)
+   {
+      if (!virtualized_)
+         return false;
+
+      int[] match = outputBuffer_.find(query, 
+                                       findLine_, 
+                                       findColumn_, 
+                                       true);
+      if (match == null)
+      {
+         findMatchShown_ = false;
+         virtualOutput_.setFindMatchLine(-1);
+         renderVirtualOutput();
+         return false;
+      }
+
+      findLine_ = match[0];
+      findColumn_ = match[1] + 1;
+
+      findMatchShown_ = true;
+      virtualOutput_.setFindMatchLine(findLine_);
+      int top = virtualOutput_.getAbsoluteTop() - 
+                scrollPanel_.getAbsoluteTop() +
+                scrollPanel_.getScrollPosition() +
+                virtualOutput_.getLineTop(findLine_);
+      scrollPanel_.setScrollPosition(
+            Math.max(0, top - (scrollPanel_.getOffsetHeight() / 2)));
+      renderVirtualOutput();
+      return true;
    }
 
    public void consolePrompt(String prompt)
    {
+      // output which preceded the prompt must be written first
+      outputQueue_.flush();
+
       prompt_.getElement().setInnerText(prompt);
       //input_.clear() ;
       ensureInputVisible();
@@ -127,106 +316,172 @@ public class ShellPane extends Composite implements Shell.Display,
 
    public void ensureInputVisible()
    {
+      renderVirtualOutput();
       scrollPanel_.scrollToBottom();
+      renderVirtualOutput();
    }
 
    private boolean output(String text,
                           String className,
                           boolean addToTop)
    {
-      Node node;
-      if (StringUtil.isNullOrEmpty(className)
-          || className.equals(styles_.output()))
-      {
-         node = Document.get().createTextNode(text);
-      }
-      else
+      appendOutput(text, className, addToTop);
+      return !trimExcess();
+   }
+
+   private void appendOutput(String text, String className, boolean addToTop)
+   {
+      if (virtualized_)
       {
-         SpanElement span = Document.get().createSpanElement();
-         span.setClassName(className);
-         span.setInnerText(text);
-         node = span;
+         // the virtualized buffer is always appended to in order (see 
+         // playbackActions)
+         outputBuffer_.append(text, className);
+         return;
       }
 
-      if (addToTop)
-         output_.getElement().insertFirst(node);
-      else
-         output_.getElement().appendChild(node);
-      
-      lines_ += DomUtils.countLines(node, true);
-      return !trimExcess();
+      plainOutput_.append(text, className, addToTop);
    }
 
    private boolean trimExcess()
    {
-      if (maxLines_ <= 0)
-         return false;  // No limit in effect
+      // the virtualized buffer trims itself
+      if (virtualized_)
+         return false;
 
-      int linesToTrim = lines_ - maxLines_;
-      if (linesToTrim > 0)
-      {
-         lines_ -= DomUtils.trimLines(output_.getElement(),
-                                      lines_ - maxLines_);
-         return true;
-      }
-
-      return false;
+      return plainOutput_.trimExcess();
    }
 
    public void playbackActions(final RpcObjectList<ConsoleAction> actions)
    {
+      // User hit Ctrl+L before the actions arrived--there's nothing to
+      // restore.
+      if (cleared_)
+         return;
+
+      final long startTime = System.currentTimeMillis();
+      final int firstAction = getFirstPlaybackAction(actions);
+
+      // playback into the virtualized buffer isn't time-sliced: appending
+      // doesn't touch the DOM (only the visible lines are rendered, once,
+      // afterwards), and the work is bounded by the lines the buffer keeps
+      // (and the server's limit on the number of console actions). Doing it
+      // in one pass also means output can't arrive part way through, which
+      // would be appended above older restored output.
+      if (virtualized_)
+      {
+         for (int i = firstAction; i < actions.length(); i++)
+         {
+            ConsoleAction action = actions.get(i);
+            String className = getActionClassName(action);
+            if (className != null)
+               outputBuffer_.append(getActionText(action), className);
+         }
+         adjustForDroppedLines();
+         scrollToBottomUnlessSelection();
+         reportPlayback("virtualized", startTime, firstAction,
+                        actions.length());
+         return;
+      }
+
+      // build the restored output in a detached fragment (yielding to the
+      // browser whenever we exceed our time budget) then insert it above
+      // any output which has arrived in the meantime in a single operation
       DeferredCommand.addCommand(new IncrementalCommand()
       {
-         private int i = actions.length() - 1;
-         private int chunksize = 1000;
+         private int i = firstAction;
+         private int restoredLines = 0;
+         private final Node fragment = createDocumentFragment();
 
          public boolean execute()
          {
-            int end = i - chunksize;
-            chunksize = 10;
-            for (; i > end && i >= 0; i--)
-            {
-               // User hit Ctrl+L at some point--we're done.
-               if (cleared_)
-                  return false;
+            // User hit Ctrl+L at some point--we're done.
+            if (cleared_)
+               return false;
 
-               boolean canContinue = false;
+            long sliceEnd = System.currentTimeMillis() + PLAYBACK_BUDGET_MS;
+            for (; i < actions.length(); i++)
+            {
+               if (System.currentTimeMillis() > sliceEnd)
+                  return true;
 
                ConsoleAction action = actions.get(i);
-               switch (action.getType())
-               {
-                  case ConsoleAction.INPUT:
-                     canContinue = output(action.getData() + "\n",
-                                          styles_.command() + " " + KEYWORD_CLASS_NAME,
-                                          true);
-                     break;
-                  case ConsoleAction.OUTPUT:
-                     canContinue = output(action.getData(),
-                                          styles_.output(),
-                                          true);
-                     break;
-                  case ConsoleAction.ERROR:
-                     canContinue = output(action.getData(),
-                                          styles_.error(),
-                                          true);
-                     break;
-                  case ConsoleAction.PROMPT:
-                     canContinue = output(action.getData(),
-                                          styles_.prompt() + " " + KEYWORD_CLASS_NAME,
-                                          true);
-                     break;
-               }
-               if (!canContinue)
-                  return false;
+               String className = getActionClassName(action);
+               if (className == null)
+                  continue;
+
+               String text = getActionText(action);
+               fragment.appendChild(plainOutput_.createNode(text, className));
+               restoredLines += PlainOutput.countNewlines(text);
             }
-            if (!DomUtils.selectionExists())
-               scrollPanel_.scrollToBottom();
 
-            return i >= 0;
+            plainOutput_.insertFirst(fragment, restoredLines);
+            trimExcess();
+            scrollToBottomUnlessSelection();
+
+            reportPlayback("plain", startTime, firstAction, actions.length());
+            return false;
          }
       });
    }
 
+   // skip actions which would just be trimmed away again (walk back from
+   // the most recent action until we have enough lines)
+   private int getFirstPlaybackAction(RpcObjectList<ConsoleAction> actions)
+   {
+      if (maxLines_ <= 0)
+         return 0;
+
+      int lines = 0;
+      for (int i = actions.length() - 1; i >= 0; i--)
+      {
+         lines += PlainOutput.countNewlines(getActionText(actions.get(i)));
+         if (lines >= maxLines_)
+            return i;
+      }
+      return 0;
+   }
+
+   private void reportPlayback(String mode,
+                               long startTime,
+                               int firstAction,
+                               int count)
+   {
+      Diagnostics.report(
+            "Console restore",
+            (System.currentTimeMillis() - startTime) + " ms (" +
+            (count - firstAction) + " of " + count + " actions, " +
+            mode + ")");
+   }
+
+   private static native Node createDocumentFragment() /*-{
+      return $doc.createDocumentFragment();
+   }-*/;
+
+   private String getActionClassName(ConsoleAction action)
+   {
+      switch (action.getType())
+      {
+         case ConsoleAction.INPUT:
+            return styles_.command() + " " + KEYWORD_CLASS_NAME;
+         case ConsoleAction.OUTPUT:
+            return styles_.output();
+         case ConsoleAction.ERROR:
+            return styles_.error();
+         case ConsoleAction.PROMPT:
+            return styles_.prompt() + " " + KEYWORD_CLASS_NAME;
+         default:
+            return null;
+      }
+   }
+
+   private String getActionText(ConsoleAction action)
+   {
+      if (action.getType() == ConsoleAction.INPUT)
+         return action.getData() + "\n";
+      else
+         return action.getData();
+   }
+
    public void setFocus(boolean focused)
    {
       input_.setFocus(focused) ;
@@ -265,6 +520,16 @@ public class ShellPane extends Composite implements Shell.Display,
          if (event.getSource() == input_)
             return;
 
+         // select all of the virtualized output (not just what's rendered)
+         if (virtualized_ &&
+             event.getNativeKeyCode() == 'A' &&
+             (event.isControlKeyDown() || event.isMetaKeyDown()))
+         {
+            event.preventDefault();
+            virtualOutput_.selectAll();
+            return;
+         }
+
          // Filter out some keystrokes you might reasonably expect to keep
          // focus inside the output pane
          switch (event.getNativeKeyCode())
@@ -350,8 +615,15 @@ public class ShellPane extends Composite implements Shell.Display,
 
    public void clearOutput()
    {
-      output_.setText("") ;
-      lines_ = 0;
+      outputQueue_.clear();
+      plainOutput_.clear();
+      outputBuffer_.clear();
+      droppedLines_ = outputBuffer_.getDroppedLineCount();
+      findLine_ = 0;
+      findColumn_ = 0;
+      findMatchShown_ = false;
+      virtualOutput_.setFindMatchLine(-1);
+      renderVirtualOutput();
       cleared_ = true;
    }
 
@@ -366,6 +638,7 @@ public class ShellPane extends Composite implements Shell.Display,
       String promptText = prompt_.getElement().getInnerText();
       String commandText = input_.getText();
       input_.setText("");
+      outputQueue_.flush();
       prompt_.setHTML("");
       output(promptText, styles_.prompt() + " " + KEYWORD_CLASS_NAME, false);
       output(commandText + "\n",
@@ -433,6 +706,9 @@ public class ShellPane extends Composite implements Shell.Display,
    public void setMaxOutputLines(int maxLines)
    {
       maxLines_ = maxLines;
+      plainOutput_.setMaxLines(maxLines);
+      outputBuffer_.setCapacity(maxLines);
+      adjustForDroppedLines();
       trimExcess();
    }
 
@@ -440,12 +716,36 @@ public class ShellPane extends Composite implements Shell.Display,
    {
       if (getWidget() instanceof RequiresResize)
          ((RequiresResize)getWidget()).onResize();
+      renderVirtualOutput();
    }
 
-   private int lines_ = 0;
+   private final ConsoleOutputQueue outputQueue_ = new ConsoleOutputQueue(
+         new ConsoleOutputQueue.Sink() {
+            public void write(String text, String className)
+            {
+               appendOutput(text, className, false);
+            }
+
+            // trim and scroll once per write pass
+            public void onFlushed()
+            {
+               adjustForDroppedLines();
+               trimExcess();
+               scrollToBottomUnlessSelection();
+            }
+         },
+         OUTPUT_BUDGET_MS);
    private int maxLines_ = -1;
    private boolean cleared_ = false;
    private final PreWidget output_ ;
+   private final PlainOutput plainOutput_ ;
+   private final ConsoleOutputBuffer outputBuffer_ ;
+   private final VirtualizedOutput virtualOutput_ ;
+   private boolean virtualized_ = false;
+   private int droppedLines_ = 0;
+   private int findLine_ = 0;
+   private int findColumn_ = 0;
+   private boolean findMatchShown_ = false;
    private final HTML prompt_ ;
    private final PlainTextEditor input_ ; 
    private final DockPanel inputLine_ ;
@@ -454,4 +754,6 @@ public class ShellPane extends Composite implements Shell.Display,
    private ConsoleResources.ConsoleStyles styles_;
 
    private static final String KEYWORD_CLASS_NAME = " ace_keyword";
+   private static final int PLAYBACK_BUDGET_MS = 20;
+   private static final int OUTPUT_BUDGET_MS = 20;
 }
@@ -0,0 +1,196 @@
+/*
+ * VirtualizedOutput.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.console.shell;
+
+import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.PreElement;
+import com.google.gwt.dom.client.Style.Position;
+import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.dom.client.TextAreaElement;
+import com.google.gwt.event.dom.client.*;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.ui.Widget;
+import org.rstudio.core.client.dom.DomUtils;
+
+/**
+ * Renders a ConsoleOutputBuffer by materializing only the lines which are 
+ * visible (plus a margin above and below) within the enclosing scroller.
+ * The widget's height is that of the entire buffer so that the scroller 
+ * behaves as if all of the lines were present.
+ */
+public class VirtualizedOutput extends Widget
+      implements HasKeyDownHandlers, HasClickHandlers
+{
+   public VirtualizedOutput(ConsoleOutputBuffer buffer,
+                            String className,
+                            String defaultRunClassName,
+                            String findMatchClassName)
+   {
+      buffer_ = buffer;
+      defaultRunClassName_ = defaultRunClassName;
+      findMatchClassName_ = findMatchClassName;
+
+      DivElement root = Document.get().createDivElement();
+      root.setClassName(className);
+      root.getStyle().setPosition(Position.RELATIVE);
+      root.setTabIndex(0);
+
+      lines_ = Document.get().createPreElement();
+      lines_.getStyle().setPosition(Position.ABSOLUTE);
+      lines_.getStyle().setLeft(0, Unit.PX);
+      lines_.getStyle().setRight(0, Unit.PX);
+      lines_.getStyle().setMargin(0, Unit.PX);
+      root.appendChild(lines_);
+
+      setElement(root);
+   }
+
+   public HandlerRegistration addClickHandler(ClickHandler handler)
+   {
+      return addDomHandler(handler, ClickEvent.getType());
+   }
+
+   public HandlerRegistration addKeyDownHandler(KeyDownHandler handler)
+   {
+      return addDomHandler(handler, KeyDownEvent.getType());
+   }
+
+   public int getLineHeight()
+   {
+      if (lineHeight_ <= 0)
+      {
+         // measure using a single line
+         lines_.setInnerText("X");
+         lineHeight_ = lines_.getOffsetHeight();
+         renderedVersion_ = -1;
+      }
+      return lineHeight_ > 0 ? lineHeight_ : DEFAULT_LINE_HEIGHT;
+   }
+
+   /**
+    * Renders the lines visible within the specified window (offsets are
+    * relative to the top of this widget). Does nothing if the lines which 
+    * would be rendered are already rendered.
+    */
+   public void render(int windowTop, int windowHeight)
+   {
+      int lineHeight = getLineHeight();
+      int lineCount = buffer_.getLineCount();
+
+      getElement().getStyle().setHeight(lineCount * lineHeight, Unit.PX);
+
+      int first = Math.max(0, (windowTop / lineHeight) - MARGIN_LINES);
+      int last = Math.min(lineCount,
+                          ((windowTop + windowHeight) / lineHeight) + 
+                          MARGIN_LINES + 1);
+
+      if (first == renderedFirst_ && last == renderedLast_ &&
+          buffer_.getVersion() == renderedVersion_)
+      {
+         return;
+      }
+
+      // don't re-render out from under an active selection unless the
+      // rendered lines no longer cover the window
+      if (buffer_.getVersion() == renderedVersion_ &&
+          DomUtils.isSelectionInElement(getElement()) &&
+          first >= renderedFirst_ && last <= renderedLast_)
+      {
+         return;
+      }
+
+      StringBuilder html = new StringBuilder();
+      for (int i = first; i < last; i++)
+      {
+         if (i == findMatchLine_)
+            html.append("<span class=\"" + findMatchClassName_ + "\">");
+         appendLineHtml(buffer_.getLine(i), html);
+         if (i == findMatchLine_)
+            html.append("</span>");
+         html.append('\n');
+      }
+
+      lines_.getStyle().setTop(first * lineHeight, Unit.PX);
+      lines_.setInnerHTML(html.toString());
+
+      renderedFirst_ = first;
+      renderedLast_ = last;
+      renderedVersion_ = buffer_.getVersion();
+   }
+
+   public int getLineTop(int line)
+   {
+      return line * getLineHeight();
+   }
+
+   public void setFindMatchLine(int line)
+   {
+      findMatchLine_ = line;
+      renderedVersion_ = -1;
+   }
+
+   /**
+    * Selects the full contents of the buffer (not just the rendered lines)
+    * so that it can be copied. The selection lives in a transient textarea
+    * which is removed as soon as it loses focus.
+    */
+   public void selectAll()
+   {
+      final TextAreaElement textArea = Document.get().createTextAreaElement();
+      textArea.getStyle().setPosition(Position.ABSOLUTE);
+      textArea.getStyle().setLeft(-10000, Unit.PX);
+      textArea.getStyle().setTop(0, Unit.PX);
+      textArea.setValue(buffer_.getText());
+      getElement().appendChild(textArea);
+      textArea.focus();
+      textArea.select();
+      addBlurHandler(textArea);
+   }
+
+   private native void addBlurHandler(TextAreaElement textArea) /*-{
+      textArea.onblur = function() {
+         textArea.onblur = null;
+         if (textArea.parentNode)
+            textArea.parentNode.removeChild(textArea);
+      };
+   }-*/;
+
+   private void appendLineHtml(ConsoleOutputBuffer.Line line,
+                               StringBuilder html)
+   {
+      for (int i = 0; i < line.getRunCount(); i++)
+      {
+         ConsoleOutputBuffer.Run run = line.getRun(i);
+         boolean styled = !run.className.equals(defaultRunClassName_);
+         if (styled)
+            html.append("<span class=\"" + run.className + "\">");
+         html.append(DomUtils.textToPreHtml(run.text));
+         if (styled)
+            html.append("</span>");
+      }
+   }
+
+   private final ConsoleOutputBuffer buffer_;
+   private final String defaultRunClassName_;
+   private final String findMatchClassName_;
+   private final PreElement lines_;
+   private int lineHeight_ = 0;
+   private int renderedFirst_ = -1;
+   private int renderedLast_ = -1;
+   private int renderedVersion_ = -1;
+   private int findMatchLine_ = -1;
+
+   private static final int MARGIN_LINES = 50;
+   private static final int DEFAULT_LINE_HEIGHT = 16;
+}
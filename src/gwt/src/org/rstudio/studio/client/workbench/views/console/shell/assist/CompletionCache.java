@@ -0,0 +1,253 @@
+/*
+ * CompletionCache.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.console.shell.assist;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.rstudio.core.client.Diagnostics;
+import org.rstudio.studio.client.application.events.EventBus;
+import org.rstudio.studio.client.workbench.views.console.shell.assist.CompletionRequester.CompletionResult;
+import org.rstudio.studio.client.workbench.views.packages.events.PackageStatusChangedEvent;
+import org.rstudio.studio.client.workbench.views.packages.events.PackageStatusChangedHandler;
+import org.rstudio.studio.client.workbench.views.workspace.events.WorkspaceObjectAssignedEvent;
+import org.rstudio.studio.client.workbench.views.workspace.events.WorkspaceObjectAssignedHandler;
+import org.rstudio.studio.client.workbench.views.workspace.events.WorkspaceObjectRemovedEvent;
+import org.rstudio.studio.client.workbench.views.workspace.events.WorkspaceObjectRemovedHandler;
+import org.rstudio.studio.client.workbench.views.workspace.events.WorkspaceRefreshEvent;
+import org.rstudio.studio.client.workbench.views.workspace.events.WorkspaceRefreshHandler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Completion results received from the server, shared by all completion
+ * requesters. Results are kept per context (a package namespace, the
+ * arguments of a function, or the global environment) in a trie keyed by
+ * the token that was completed, so that results for a token can be
+ * narrowed to serve any longer token in the same context. Results are never
+ * narrowed across a member or namespace operator ($, @, [ or ::) since
+ * what follows one is completed from a different set of names. The least
+ * recently used results are evicted once there are more than MAX_RESULTS.
+ */
+@Singleton
+public class CompletionCache
+{
+   public static final String GLOBAL_CONTEXT = "global";
+
+   public static String namespaceContext(String pkgName)
+   {
+      return NAMESPACE_PREFIX + pkgName;
+   }
+
+   public static String argumentsContext(String functionName)
+   {
+      return "args:" + functionName;
+   }
+
+   @Inject
+   public CompletionCache(EventBus events)
+   {
+      // anything but a package namespace may depend on the workspace
+      events.addHandler(WorkspaceObjectAssignedEvent.TYPE,
+                        new WorkspaceObjectAssignedHandler()
+      {
+         public void onWorkspaceObjectAssigned(WorkspaceObjectAssignedEvent e)
+         {
+            invalidateWorkspace();
+         }
+      });
+      events.addHandler(WorkspaceObjectRemovedEvent.TYPE,
+                        new WorkspaceObjectRemovedHandler()
+      {
+         public void onWorkspaceObjectRemoved(WorkspaceObjectRemovedEvent e)
+         {
+            invalidateWorkspace();
+         }
+      });
+      events.addHandler(WorkspaceRefreshEvent.TYPE,
+                        new WorkspaceRefreshHandler()
+      {
+         public void onWorkspaceRefresh(WorkspaceRefreshEvent event)
+         {
+            invalidateWorkspace();
+         }
+      });
+      events.addHandler(PackageStatusChangedEvent.TYPE,
+                        new PackageStatusChangedHandler()
+      {
+         public void onPackageStatusChanged(PackageStatusChangedEvent event)
+         {
+            invalidate();
+         }
+      });
+   }
+
+   /**
+    * @return The cached results for the longest prefix of token which has
+    * results, or null. The results still need to be narrowed to token.
+    */
+   public CompletionResult get(String context, String token)
+   {
+      // e.g. the results for "df" say nothing about "df$"
+      int minLength = getLastBoundaryEnd(token);
+
+      Node node = roots_.get(context);
+      Node best = null;
+      for (int i = 0; node != null; i++)
+      {
+         // results for an empty token aren't necessarily a superset of the
+         // results for other tokens (e.g. just the arguments of a function)
+         if (node.result != null
+             && i >= minLength
+             && (i > 0 || token.length() == 0))
+         {
+            best = node;
+         }
+         if (i == token.length())
+            break;
+         node = node.children.get(token.charAt(i));
+      }
+
+      if (best != null)
+      {
+         hits_++;
+         lru_.get(best); // mark as recently used
+      }
+      else
+      {
+         misses_++;
+      }
+      reportHitRate();
+
+      return best != null ? best.result : null;
+   }
+
+   /**
+    * @return The offset just past the last member or namespace operator in
+    * token, or 0 if there is none
+    */
+   private static int getLastBoundaryEnd(String token)
+   {
+      int end = 0;
+      for (String op : BOUNDARY_OPERATORS)
+      {
+         int index = token.lastIndexOf(op);
+         if (index >= 0)
+            end = Math.max(end, index + op.length());
+      }
+      return end;
+   }
+
+   public void put(String context, String token, CompletionResult result)
+   {
+      Node node = roots_.get(context);
+      if (node == null)
+      {
+         node = new Node(null, (char) 0, context);
+         roots_.put(context, node);
+      }
+      for (int i = 0; i < token.length(); i++)
+      {
+         char c = token.charAt(i);
+         Node child = node.children.get(c);
+         if (child == null)
+         {
+            child = new Node(node, c, context);
+            node.children.put(c, child);
+         }
+         node = child;
+      }
+
+      node.result = result;
+      lru_.put(node, Boolean.TRUE);
+
+      while (lru_.size() > MAX_RESULTS)
+      {
+         Iterator<Node> it = lru_.keySet().iterator();
+         Node eldest = it.next();
+         it.remove();
+         removeResult(eldest);
+      }
+   }
+
+   public void invalidate()
+   {
+      roots_.clear();
+      lru_.clear();
+   }
+
+   private void invalidateWorkspace()
+   {
+      ArrayList<Node> nodes = new ArrayList<Node>(lru_.keySet());
+      for (Node node : nodes)
+      {
+         if (!node.context.startsWith(NAMESPACE_PREFIX))
+         {
+            lru_.remove(node);
+            removeResult(node);
+         }
+      }
+   }
+
+   private void removeResult(Node node)
+   {
+      node.result = null;
+
+      // prune nodes which no longer lead to any results
+      while (node.result == null && node.children.isEmpty())
+      {
+         if (node.parent == null)
+         {
+            roots_.remove(node.context);
+            break;
+         }
+         node.parent.children.remove(node.c);
+         node = node.parent;
+      }
+   }
+
+   private void reportHitRate()
+   {
+      Diagnostics.report("Completion cache",
+                         hits_ + " hits, " + misses_ + " misses");
+   }
+
+   private static class Node
+   {
+      Node(Node parent, char c, String context)
+      {
+         this.parent = parent;
+         this.c = c;
+         this.context = context;
+      }
+
+      final Node parent;
+      final char c;
+      final String context;
+      final HashMap<Character, Node> children = new HashMap<Character, Node>();
+      CompletionResult result;
+   }
+
+   private final HashMap<String, Node> roots_ = new HashMap<String, Node>();
+   // nodes with results, least recently used first
+   private final LinkedHashMap<Node, Boolean> lru_ =
+                              new LinkedHashMap<Node, Boolean>(16, 0.75f, true);
+   private int hits_;
+   private int misses_;
+
+   private static final String NAMESPACE_PREFIX = "ns:";
+   private static final String[] BOUNDARY_OPERATORS = {"::", "$", "@", "["};
+   private static final int MAX_RESULTS = 50;
+}
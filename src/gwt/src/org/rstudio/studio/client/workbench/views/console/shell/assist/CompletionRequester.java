@@ -14,6 +14,7 @@ package org.rstudio.studio.client.workbench.views.console.shell.assist;
 
 import com.google.gwt.core.client.JsArrayString;
 import org.rstudio.core.client.dom.DomUtils;
+import org.rstudio.studio.client.RStudioGinjector;
 import org.rstudio.studio.client.common.codetools.CodeToolsServerOperations;
 import org.rstudio.studio.client.common.codetools.Completions;
 import org.rstudio.studio.client.common.r.RToken;
@@ -27,13 +28,12 @@ import java.util.ArrayList;
 public class CompletionRequester
 {
    private final CodeToolsServerOperations server_ ;
-   
-   private String cachedLinePrefix_ ;
-   private CompletionResult cachedResult_ ;
+   private final CompletionCache cache_ ;
    
    public CompletionRequester(CodeToolsServerOperations server)
    {
       server_ = server ;
+      cache_ = RStudioGinjector.INSTANCE.getCompletionCache() ;
    }
    
    public void getCompletions(
@@ -41,32 +41,17 @@ public class CompletionRequester
                      final int pos,
                      final ServerRequestCallback<CompletionResult> callback)
    {
-      if (cachedResult_ != null && cachedResult_.guessedFunctionName == null)
+      String linePrefix = line.substring(0, pos) ;
+      final String token = guessToken(linePrefix) ;
+      final String context = getContext(linePrefix, token) ;
+      
+      if (context != null)
       {
-         if (line.substring(0, pos).startsWith(cachedLinePrefix_))
+         CompletionResult cached = cache_.get(context, token) ;
+         if (cached != null)
          {
-            String diff = line.substring(cachedLinePrefix_.length(), pos) ;
-            if (diff.length() > 0)
-            {
-               ArrayList<RToken> tokens = RTokenizer.asTokens("a" + diff) ;
-               
-               // when we cross a :: the list may actually grow, not shrink
-               if (!diff.endsWith("::"))
-               {
-                  while (tokens.size() > 0 
-                        && tokens.get(tokens.size()-1).getContent().equals(":"))
-                  {
-                     tokens.remove(tokens.size()-1) ;
-                  }
-               
-                  if (tokens.size() == 1
-                        && tokens.get(0).getTokenType() == RToken.ID)
-                  {
-                     callback.onResponseReceived(narrow(diff)) ;
-                     return ;
-                  }
-               }
-            }
+            callback.onResponseReceived(narrow(cached, token)) ;
+            return ;
          }
       }
       
@@ -80,8 +65,6 @@ public class CompletionRequester
          @Override
          public void onResponseReceived(Completions response)
          {
-            cachedLinePrefix_ = line.substring(0, pos) ;
-
             JsArrayString comp = response.getCompletions() ;
             JsArrayString pkgs = response.getPackages() ;
             ArrayList<QualifiedName> newComp = new ArrayList<QualifiedName>() ;
@@ -89,35 +72,100 @@ public class CompletionRequester
             for (int i = 0; i < comp.length(); i++)
                newComp.add(new QualifiedName(comp.get(i), pkgs.get(i))) ;
             
-            cachedResult_ = new CompletionResult(
+            CompletionResult result = new CompletionResult(
                                            response.getToken(),
                                            newComp,
                                            response.getGuessedFunctionName()) ;
             
-            callback.onResponseReceived(cachedResult_) ;
+            // only cache if we agree with the server about what's being
+            // completed
+            if (context != null && token.equals(result.token))
+               cache_.put(context, token, result) ;
+            
+            callback.onResponseReceived(result) ;
          }
       }) ;
    }
    
-   public void flushCache()
+   /**
+    * Guesses the token being completed the same way the server does: the
+    * trailing run of identifier characters (including namespace and
+    * member operators)
+    */
+   private static String guessToken(String linePrefix)
    {
-      cachedLinePrefix_ = null ;
-      cachedResult_ = null ;
+      int start = linePrefix.length() ;
+      while (start > 0 && isTokenChar(linePrefix.charAt(start - 1)))
+         start-- ;
+      return linePrefix.substring(start) ;
    }
    
-   private CompletionResult narrow(String diff)
+   private static boolean isTokenChar(char c)
    {
-      assert cachedResult_.guessedFunctionName == null ;
+      return Character.isLetterOrDigit(c) || TOKEN_CHARS.indexOf(c) >= 0 ;
+   }
+   
+   /**
+    * @return The CompletionCache context of the token, or null if its
+    * completions shouldn't be cached (e.g. file names within strings)
+    */
+   private static String getContext(String linePrefix, String token)
+   {
+      int colons = token.indexOf("::") ;
+      if (colons > 0)
+         return CompletionCache.namespaceContext(token.substring(0, colons)) ;
+      
+      // find the function call (if any) we're within
+      String code = linePrefix.substring(0, linePrefix.length() - token.length()) ;
+      ArrayList<String> calls = new ArrayList<String>() ;
+      String lastId = null ;
+      RTokenizer rt = new RTokenizer(code) ;
+      while (rt.advance())
+      {
+         switch (rt.getTokenType())
+         {
+         case RToken.WHITESPACE:
+            continue ;
+         case RToken.STRING:
+            if (!rt.isTokenWellFormed())
+               return null ;
+            break ;
+         case RToken.LPAREN:
+            calls.add(lastId) ;
+            break ;
+         case RToken.RPAREN:
+            if (!calls.isEmpty())
+               calls.remove(calls.size() - 1) ;
+            break ;
+         }
+         lastId = rt.getTokenType() == RToken.ID
+                  ? code.substring(rt.getTokenOffset(),
+                                   rt.getTokenOffset() + rt.getTokenLength())
+                  : null ;
+      }
+      
+      String function = calls.isEmpty() ? null : calls.get(calls.size() - 1) ;
+      return function != null ? CompletionCache.argumentsContext(function)
+                              : CompletionCache.GLOBAL_CONTEXT ;
+   }
+
+   private CompletionResult narrow(CompletionResult result, String token)
+   {
+      if (result.token.equals(token))
+         return result ;
       
-      String token = cachedResult_.token + diff ;
       ArrayList<QualifiedName> newCompletions = new ArrayList<QualifiedName>() ;
-      for (QualifiedName qname : cachedResult_.completions)
+      for (QualifiedName qname : result.completions)
          if (qname.name.startsWith(token))
             newCompletions.add(qname) ;
       
-      return new CompletionResult(token, newCompletions, null) ;
+      return new CompletionResult(token,
+                                  newCompletions,
+                                  result.guessedFunctionName) ;
    }
 
+   private static final String TOKEN_CHARS = "._:?$@[]" ;
+
    public class CompletionResult
    {
       public CompletionResult(String token, ArrayList<QualifiedName> completions,
@@ -248,29 +248,22 @@ public class RCompletionManager implements CompletionManager
    }
 
    private void invalidatePendingRequests()
-   {
-      invalidatePendingRequests(true) ;
-   }
-
-   private void invalidatePendingRequests(boolean flushCache)
    {
       invalidateCount_++ ;
       invalidateCount_ %= 1000000 ;
       if (popup_.isShowing())
          popup_.hide() ;
-      if (flushCache)
-         requester_.flushCache() ;
    }
 
    /**
     * If false, the suggest operation was aborted
     */
-   private boolean beginSuggest(boolean flushCache)
+   private boolean beginSuggest(boolean canAutoAccept)
    {
       if (!input_.isSelectionCollapsed())
          return false ;
       
-      invalidatePendingRequests(flushCache) ;
+      invalidatePendingRequests() ;
 
       String line = input_.getText() ;
       if (!input_.hasSelection())
@@ -282,7 +275,6 @@ public class RCompletionManager implements CompletionManager
       if (selection == null)
          return false;
 
-      boolean canAutoAccept = flushCache;
       context_ = new CompletionRequestContext(invalidateCount_,
                                               selection,
                                               canAutoAccept) ;
@@ -414,7 +406,6 @@ public class RCompletionManager implements CompletionManager
             return ;
          
          popup_.hide() ;
-         requester_.flushCache() ;
          
          if (value == null)
          {
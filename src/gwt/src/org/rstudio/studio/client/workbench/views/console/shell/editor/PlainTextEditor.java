@@ -34,6 +34,7 @@ import org.rstudio.core.client.events.NativeKeyPressHandler;
 import org.rstudio.studio.client.application.events.EventBus;
 import org.rstudio.studio.client.common.r.RStringToken;
 import org.rstudio.studio.client.common.r.RToken;
+import org.rstudio.studio.client.common.r.IncrementalRTokenizer;
 import org.rstudio.studio.client.common.r.RTokenRange;
 import org.rstudio.studio.client.server.Server;
 import org.rstudio.studio.client.workbench.events.SessionInitEvent;
@@ -196,7 +197,7 @@ public class PlainTextEditor
    {
       String text = getText() ;
       int index = selection.getStart().getPosition();
-      RTokenRange range = new RTokenRange(text) ;
+      RTokenRange range = new RTokenRange(tokenizer_.tokenize(text)) ;
 
       // Find the starting token
       RToken orig = null ;
@@ -462,6 +463,7 @@ public class PlainTextEditor
    private final PasteStrategy pasteStrategy_ = GWT.create(PasteStrategy.class);
    private final PlainTextEditorImpl impl = GWT.create(PlainTextEditorImpl.class);
    private ElementEx textContainer_;
+   private final IncrementalRTokenizer tokenizer_ = new IncrementalRTokenizer();
    @SuppressWarnings("unused")
    private final Server server_;
 }
@@ -12,7 +12,20 @@
  */
 package org.rstudio.studio.client.workbench.views.data.model;
 
+import org.rstudio.studio.client.server.ServerRequestCallback;
+
 public interface DataServerOperations
 {
-
+   /**
+    * Gets rowCount rows of a data view, starting at startRow (zero-based)
+    * once the rows matching filter have been sorted by sortColumn (or -1
+    * for the original order)
+    */
+   void getDataViewRows(String cacheKey,
+                        int startRow,
+                        int rowCount,
+                        int sortColumn,
+                        boolean sortAscending,
+                        String filter,
+                        ServerRequestCallback<DataViewRows> requestCallback);
 }
@@ -0,0 +1,61 @@
+/*
+ * DataView.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.data.model;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.JsArrayString;
+
+/**
+ * A window of rows of a data view (after sorting and filtering), with the
+ * values of each column stored contiguously.
+ */
+public class DataViewRows extends JavaScriptObject
+{
+   protected DataViewRows()
+   {
+   }
+
+   /**
+    * @return The number of rows which matched the filter
+    */
+   public final native int getTotalRows() /*-{
+      return this.totalRows;
+   }-*/;
+
+   public final native int getStartRow() /*-{
+      return this.startRow;
+   }-*/;
+
+   /**
+    * @return The (one-based) row numbers of the rows in the original data
+    */
+   public final native JsArrayInteger getRowNumbers() /*-{
+      return this.rowNumbers;
+   }-*/;
+
+   public final native JsArrayString getColumnNames() /*-{
+      return this.columnNames;
+   }-*/;
+
+   public final native int getColumnCount() /*-{
+      return this.columns.length;
+   }-*/;
+
+   /**
+    * @return The formatted values of the column for each row
+    */
+   public final native JsArrayString getColumn(int index) /*-{
+      return this.columns[index];
+   }-*/;
+}
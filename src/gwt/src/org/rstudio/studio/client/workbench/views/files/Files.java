@@ -45,10 +45,12 @@ import org.rstudio.studio.client.workbench.views.console.events.SendToConsoleEve
 import org.rstudio.studio.client.workbench.views.files.events.FileChangeEvent;
 import org.rstudio.studio.client.workbench.views.files.events.FileChangeHandler;
 import org.rstudio.studio.client.workbench.views.files.events.ShowFolderEvent;
+import org.rstudio.studio.client.workbench.views.files.model.DirectoryListingCache;
 import org.rstudio.studio.client.workbench.views.files.model.FileChange;
 import org.rstudio.studio.client.workbench.views.files.model.FileSystemItemAction;
 import org.rstudio.studio.client.workbench.views.files.model.FilesServerOperations;
 import org.rstudio.studio.client.workbench.views.files.model.PendingFileUpload;
+import org.rstudio.studio.client.workbench.views.files.ui.ChunkedFileUploader;
 
 import java.util.ArrayList;
 
@@ -94,6 +96,7 @@ public class Files
       
       void showFileUpload(
                      String targetURL,
+                     ChunkedFileUploader chunkedUploader,
                      FileSystemItem targetDirectory, 
                      RemoteFileSystemContext fileSystemContext,
                      OperationWithInput<PendingFileUpload> completedOperation);
@@ -115,7 +118,9 @@ public class Files
                 Commands commands,
                 Provider<FilesCopy> pFilesCopy,
                 Provider<FilesUpload> pFilesUpload,
-                FileTypeRegistry fileTypeRegistry)
+                Provider<FindInFiles> pFindInFiles,
+                FileTypeRegistry fileTypeRegistry,
+                DirectoryListingCache listingCache)
    {
       super(view);
       view_ = view ;
@@ -124,11 +129,13 @@ public class Files
       
       eventBus_ = eventBus;
       server_ = server;
+      listingCache_ = listingCache;
       fileSystemContext_ = fileSystemContext;
       globalDisplay_ = globalDisplay ;
       session_ = session;
       pFilesCopy_ = pFilesCopy;
       pFilesUpload_ = pFilesUpload;
+      pFindInFiles_ = pFindInFiles;
 
       ((Binder)GWT.create(Binder.class)).bind(commands, this);
 
@@ -203,6 +210,7 @@ public class Files
    @Handler
    void onRefreshFiles()
    {
+      listingCache_.invalidate(currentPath_);
       view_.listDirectory(currentPath_, currentPathFilesDS_);
    }
 
@@ -252,6 +260,11 @@ public class Files
       pFilesUpload_.get().execute(currentPath_, fileSystemContext_);
    }
    
+   void onFindInFiles()
+   {
+      pFindInFiles_.get().execute(currentPath_);
+   }
+
    @Handler
    void onCopyFile()
    {
@@ -567,13 +580,14 @@ public class Files
                ServerRequestCallback<JsArray<FileSystemItem>> requestCallback)
          {
             // pass true to enable monitoring for all calls to list_files
-            server_.listFiles(currentPath_, true, requestCallback);
+            listingCache_.listFiles(currentPath_, true, requestCallback);
          }
       };
 
    private final Display view_ ;
    private final FileTypeRegistry fileTypeRegistry_;
    private final FilesServerOperations server_;
+   private final DirectoryListingCache listingCache_;
    private final EventBus eventBus_;
    private final GlobalDisplay globalDisplay_ ;
    private final RemoteFileSystemContext fileSystemContext_;
@@ -581,6 +595,7 @@ public class Files
    private FileSystemItem currentPath_ = FileSystemItem.home();
    private final Provider<FilesCopy> pFilesCopy_;
    private final Provider<FilesUpload> pFilesUpload_;
+   private final Provider<FindInFiles> pFindInFiles_;
    private static final String MODULE_FILES = "filesp";
    private static final String KEY_PATH = "path";
   
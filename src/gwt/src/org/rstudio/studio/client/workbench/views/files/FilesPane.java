@@ -136,11 +136,13 @@ public class FilesPane extends WorkbenchPane implements Files.Display
    
    public void showFileUpload(
                      String targetURL,
+                     ChunkedFileUploader chunkedUploader,
                      FileSystemItem targetDirectory, 
                      RemoteFileSystemContext fileSystemContext,
                      OperationWithInput<PendingFileUpload> completedOperation)
    {
       FileUploadDialog dlg = new FileUploadDialog(targetURL, 
+                                                  chunkedUploader,
                                                   targetDirectory,
                                                   fileDialogs_,
                                                   fileSystemContext,
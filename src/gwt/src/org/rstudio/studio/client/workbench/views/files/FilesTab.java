@@ -32,6 +32,8 @@ public class FilesTab extends DelayLoadWorkbenchTab<Files>
    {
       @Handler
       public abstract void onUploadFile();
+      @Handler
+      public abstract void onFindInFiles();
    }
 
    @Inject
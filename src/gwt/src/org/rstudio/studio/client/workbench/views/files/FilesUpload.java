@@ -27,6 +27,7 @@ import org.rstudio.studio.client.workbench.model.RemoteFileSystemContext;
 import org.rstudio.studio.client.workbench.views.files.model.FileUploadToken;
 import org.rstudio.studio.client.workbench.views.files.model.FilesServerOperations;
 import org.rstudio.studio.client.workbench.views.files.model.PendingFileUpload;
+import org.rstudio.studio.client.workbench.views.files.ui.ChunkedFileUploader;
 
 public class FilesUpload
 {
@@ -49,6 +50,7 @@ public class FilesUpload
       
       display_.showFileUpload(
          server_.getFileUploadUrl(),
+         new ChunkedFileUploader(server_),
          targetDirectory,
          fileSystemContext,
          new OperationWithInput<PendingFileUpload>() {
@@ -0,0 +1,259 @@
+/*
+ * FindInFiles.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.rstudio.core.client.files.FileSystemItem;
+import org.rstudio.studio.client.application.events.EventBus;
+import org.rstudio.studio.client.common.GlobalDisplay;
+import org.rstudio.studio.client.common.filetypes.FileTypeRegistry;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.server.VoidServerRequestCallback;
+import org.rstudio.studio.client.workbench.views.files.events.FindResultEvent;
+import org.rstudio.studio.client.workbench.views.files.events.FindResultHandler;
+import org.rstudio.studio.client.workbench.views.files.model.FilesServerOperations;
+import org.rstudio.studio.client.workbench.views.files.model.FindServerOperations;
+import org.rstudio.studio.client.workbench.views.files.model.FindResult;
+import org.rstudio.studio.client.workbench.views.files.model.FindResults;
+import org.rstudio.studio.client.workbench.views.files.ui.FindInFilesDialog;
+
+import java.util.ArrayList;
+
+/**
+ * Searches the files beneath a directory. The server walks the tree on a
+ * background thread and sends matches back in batches (as find_result
+ * client events) while it works, so results appear as soon as they're
+ * found and a search can be stopped part way through. The dialog (and its
+ * results) are kept between uses so a result can be opened and the user
+ * can then come back to the rest.
+ */
+@Singleton
+public class FindInFiles implements FindResultHandler
+{
+   public interface Display
+   {
+      void setDirectory(FileSystemItem directory);
+      void showModal();
+      void clearResults();
+      void addResults(ArrayList<FindResult> results);
+      void setStatus(String status);
+      void setSearching(boolean searching);
+   }
+
+   interface DisplayFactory
+   {
+      Display create(FindInFilesDialog.Observer observer);
+   }
+
+   @Inject
+   public FindInFiles(EventBus eventBus,
+                      FilesServerOperations server,
+                      GlobalDisplay globalDisplay,
+                      FileTypeRegistry fileTypeRegistry)
+   {
+      this(eventBus, 
+           server, 
+           globalDisplay, 
+           fileTypeRegistry,
+           new DisplayFactory()
+           {
+              public Display create(FindInFilesDialog.Observer observer)
+              {
+                 return new FindInFilesDialog(observer);
+              }
+           });
+   }
+
+   FindInFiles(EventBus eventBus,
+               FindServerOperations server,
+               GlobalDisplay globalDisplay,
+               FileTypeRegistry fileTypeRegistry,
+               DisplayFactory displayFactory)
+   {
+      server_ = server;
+      globalDisplay_ = globalDisplay;
+      fileTypeRegistry_ = fileTypeRegistry;
+      displayFactory_ = displayFactory;
+
+      eventBus.addHandler(FindResultEvent.TYPE, this);
+   }
+
+   void execute(FileSystemItem directory)
+   {
+      if (dialog_ == null)
+      {
+         dialog_ = displayFactory_.create(new FindInFilesDialog.Observer()
+         {
+            public void onFind(String query,
+                               boolean isRegex,
+                               boolean ignoreCase,
+                               String filePattern)
+            {
+               beginFind(query, isRegex, ignoreCase, filePattern);
+            }
+
+            public void onStop()
+            {
+               stopFind();
+            }
+
+            public void onOpenResult(FindResult result)
+            {
+               fileTypeRegistry_.editFile(
+                     FileSystemItem.createFile(result.getFile()),
+                     result.getLine());
+            }
+         });
+      }
+
+      directory_ = directory;
+      dialog_.setDirectory(directory);
+      dialog_.showModal();
+   }
+
+   public void onFindResult(FindResultEvent event)
+   {
+      FindResults results = event.getResults();
+
+      // the search starts on the server before begin_find returns, so
+      // batches can arrive before we know the handle
+      if (beginPending_)
+      {
+         earlyResults_.add(results);
+         return;
+      }
+
+      onResults(results);
+   }
+
+   private void onResults(FindResults results)
+   {
+      // ignore batches from searches which have been stopped or replaced
+      if (handle_ == null || !handle_.equals(results.getHandle()))
+         return;
+
+      dialog_.addResults(results.getResults());
+      resultCount_ += results.getResults().size();
+
+      if (results.isComplete())
+      {
+         handle_ = null;
+         dialog_.setSearching(false);
+         dialog_.setStatus(formatCount() +
+                           (results.isTruncated()
+                            ? " (search stopped at the maximum number " +
+                              "of results)"
+                            : "") +
+                           " in " + results.getFilesSearched() + " files");
+      }
+      else
+      {
+         dialog_.setStatus("Searching... " + formatCount() + " in " +
+                           results.getFilesSearched() + " files");
+      }
+   }
+
+   private void beginFind(String query,
+                          boolean isRegex,
+                          boolean ignoreCase,
+                          String filePattern)
+   {
+      stopFind();
+
+      dialog_.clearResults();
+      dialog_.setStatus("Searching...");
+      dialog_.setSearching(true);
+      resultCount_ = 0;
+      beginPending_ = true;
+      stopRequested_ = false;
+      final int findId = ++findId_;
+
+      server_.beginFind(query,
+                        isRegex,
+                        ignoreCase,
+                        directory_,
+                        filePattern,
+                        new ServerRequestCallback<String>()
+      {
+         @Override
+         public void onResponseReceived(String handle)
+         {
+            // superseded by a later search
+            if (findId != findId_)
+            {
+               server_.stopFind(handle, new VoidServerRequestCallback());
+               return;
+            }
+
+            beginPending_ = false;
+            handle_ = handle;
+
+            for (FindResults results : earlyResults_)
+               onResults(results);
+            earlyResults_.clear();
+
+            if (stopRequested_)
+               stopFind();
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            if (findId != findId_)
+               return;
+
+            beginPending_ = false;
+            earlyResults_.clear();
+            dialog_.setSearching(false);
+            dialog_.setStatus("");
+            globalDisplay_.showErrorMessage("Find in Files",
+                                            error.getUserMessage());
+         }
+      });
+   }
+
+   private void stopFind()
+   {
+      // stopped before the server has told us the handle
+      stopRequested_ = beginPending_;
+
+      if (handle_ != null)
+      {
+         server_.stopFind(handle_, new VoidServerRequestCallback());
+         handle_ = null;
+         dialog_.setStatus(formatCount() + " (search stopped)");
+      }
+      dialog_.setSearching(false);
+   }
+
+   private String formatCount()
+   {
+      return resultCount_ == 1 ? "1 match" : resultCount_ + " matches";
+   }
+
+   private final FindServerOperations server_;
+   private final GlobalDisplay globalDisplay_;
+   private final FileTypeRegistry fileTypeRegistry_;
+   private final DisplayFactory displayFactory_;
+   private Display dialog_;
+   private FileSystemItem directory_;
+   private String handle_;
+   private boolean beginPending_;
+   private boolean stopRequested_;
+   private int findId_;
+   private final ArrayList<FindResults> earlyResults_ =
+                                             new ArrayList<FindResults>();
+   private int resultCount_;
+}
@@ -0,0 +1,46 @@
+/*
+ * FindResultEvent.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.events;
+
+import com.google.gwt.event.shared.GwtEvent;
+import org.rstudio.studio.client.workbench.views.files.model.FindResults;
+
+public class FindResultEvent extends GwtEvent<FindResultHandler>
+{
+   public static final GwtEvent.Type<FindResultHandler> TYPE =
+      new GwtEvent.Type<FindResultHandler>();
+   
+   public FindResultEvent(FindResults results)
+   {
+      results_ = results;
+   }
+   
+   public FindResults getResults()
+   {
+      return results_;
+   }
+   
+   @Override
+   protected void dispatch(FindResultHandler handler)
+   {
+      handler.onFindResult(this);
+   }
+
+   @Override
+   public GwtEvent.Type<FindResultHandler> getAssociatedType()
+   {
+      return TYPE;
+   }
+   
+   private final FindResults results_;
+}
@@ -0,0 +1,39 @@
+/*
+ * ChunkedUploadServerOperations.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.model;
+
+import org.rstudio.core.client.files.FileSystemItem;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.server.Void;
+
+// chunked uploads: begin (or resume) an upload, post its chunks to the
+// chunk url, then complete it to get the same PendingFileUpload as a form
+// upload
+public interface ChunkedUploadServerOperations
+{
+   // lastModified (in ms) is used, along with the name, target directory
+   // and size, to recognize an interrupted upload of the same file
+   void beginChunkedUpload(String filename,
+                           FileSystemItem targetDirectory,
+                           double size,
+                           double lastModified,
+                           ServerRequestCallback<ChunkedUploadStatus> requestCallback);
+   
+   String getFileUploadChunkUrl(String id, int index, String checksum);
+   
+   void completeChunkedUpload(String id,
+                              ServerRequestCallback<PendingFileUpload> requestCallback);
+   
+   void cancelChunkedUpload(String id,
+                            ServerRequestCallback<Void> requestCallback);
+}
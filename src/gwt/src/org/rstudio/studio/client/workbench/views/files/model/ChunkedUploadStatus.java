@@ -0,0 +1,44 @@
+/*
+ * ChunkedUploadStatus.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.model;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.JsArrayString;
+
+public class ChunkedUploadStatus extends JavaScriptObject
+{
+   protected ChunkedUploadStatus()
+   {
+   }
+   
+   public final native String getId() /*-{
+      return this.id;
+   }-*/;
+   
+   public final native int getChunkSize() /*-{
+      return this.chunk_size;
+   }-*/;
+   
+   // indexes of the chunks the server already has (non-empty when
+   // resuming an interrupted upload)
+   public final native JsArrayInteger getReceived() /*-{
+      return this.received;
+   }-*/;
+
+   // checksums of the chunks the server already has (parallel to
+   // getReceived)
+   public final native JsArrayString getChecksums() /*-{
+      return this.checksums;
+   }-*/;
+}
@@ -0,0 +1,289 @@
+/*
+ * DirectoryListingCache.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.model;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.rstudio.core.client.Diagnostics;
+import org.rstudio.core.client.files.FileSystemItem;
+import org.rstudio.studio.client.application.events.EventBus;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.workbench.views.files.events.FileChangeEvent;
+import org.rstudio.studio.client.workbench.views.files.events.FileChangeHandler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Directory listings shared by the Files pane and the file dialogs. The
+ * server only reports changes (file_changed events) within the monitored
+ * directory, so its listing is kept up to date by applying those changes
+ * and can be used for as long as it's monitored. A cached listing of any
+ * other directory is shown right away and then reconciled with a fresh
+ * listing from the server (the caller is only notified again if the
+ * listing turns out to be different). Listings which file_changed events
+ * show to be obsolete are discarded. The least recently used listings
+ * are evicted once there are more than MAX_LISTINGS.
+ */
+@Singleton
+public class DirectoryListingCache implements FileChangeHandler
+{
+   @Inject
+   public DirectoryListingCache(FilesServerOperations server, EventBus events)
+   {
+      server_ = server;
+      events.addHandler(FileChangeEvent.TYPE, this);
+   }
+
+   /**
+    * Lists the directory. If there is a cached listing the callback is
+    * invoked with it immediately. Unless the directory is being monitored
+    * the server is then asked to list it again, and the callback is
+    * invoked a second time if the listing has changed in the meantime
+    * (and no later listing was requested with the same monitor flag).
+    *
+    * @param monitor Whether the server should monitor the directory for
+    * changes (as it does for list_files)
+    */
+   public void listFiles(
+         final FileSystemItem directory,
+         final boolean monitor,
+         final ServerRequestCallback<JsArray<FileSystemItem>> requestCallback)
+   {
+      final String key = getKey(directory);
+      final Listing cached = listings_.get(key);
+      if (cached != null)
+      {
+         hits_++;
+         reportHitRate();
+         put(key, cached); // mark as recently used
+         requestCallback.onResponseReceived(cached.toJsArray());
+
+         // the monitored listing has all changes applied to it
+         if (key.equals(monitoredKey_))
+            return;
+      }
+      else
+      {
+         misses_++;
+         reportHitRate();
+      }
+
+      // the Files pane (monitor = true) and the file dialogs each only 
+      // care about the last directory they asked for
+      final int requestId = monitor ? ++lastMonitoredRequest_ 
+                                    : ++lastUnmonitoredRequest_;
+
+      server_.listFiles(directory, monitor,
+                        new ServerRequestCallback<JsArray<FileSystemItem>>()
+      {
+         @Override
+         public void onResponseReceived(JsArray<FileSystemItem> response)
+         {
+            Listing listing = new Listing(response);
+            put(key, listing);
+            
+            boolean latest = isLatestRequest(monitor, requestId);
+            if (monitor && latest)
+               monitoredKey_ = key;
+            
+            if (cached == null || (latest && !cached.hasSameFiles(listing)))
+               requestCallback.onResponseReceived(response);
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            // the directory may no longer exist
+            listings_.remove(key);
+            
+            if (cached == null || isLatestRequest(monitor, requestId))
+               requestCallback.onError(error);
+         }
+      });
+   }
+
+   /**
+    * Discards the listing of the directory (e.g. because it was changed in
+    * a way that won't be reported by a file_changed event)
+    */
+   public void invalidate(FileSystemItem directory)
+   {
+      listings_.remove(getKey(directory));
+   }
+
+   public void onFileChange(FileChangeEvent event)
+   {
+      FileChange change = event.getFileChange();
+      FileSystemItem file = change.getFile();
+
+      // listings of a deleted directory and its descendants are obsolete
+      String fileKey = getKey(file);
+      if (change.getType() == FileChange.DELETE)
+      {
+         String prefix = fileKey + "/";
+         Iterator<String> it = listings_.keySet().iterator();
+         while (it.hasNext())
+         {
+            String key = it.next();
+            if (key.equals(fileKey) || key.startsWith(prefix))
+               it.remove();
+         }
+      }
+      // the contents of an added or modified directory may have changed
+      // (we don't get events for what changed unless it's monitored)
+      else if (file.isDirectory() && !fileKey.equals(monitoredKey_))
+      {
+         listings_.remove(fileKey);
+      }
+
+      FileSystemItem parent = file.getParentPath();
+      if (parent == null)
+         return;
+
+      // update the parent's listing in place
+      Listing listing = listings_.get(getKey(parent));
+      if (listing == null)
+         return;
+
+      switch (change.getType())
+      {
+         case FileChange.ADD:
+         case FileChange.MODIFIED:
+            listing.put(file);
+            break;
+         case FileChange.DELETE:
+            listing.remove(file);
+            break;
+      }
+   }
+
+   private boolean isLatestRequest(boolean monitor, int requestId)
+   {
+      return requestId == (monitor ? lastMonitoredRequest_ 
+                                   : lastUnmonitoredRequest_);
+   }
+
+   private void put(String key, Listing listing)
+   {
+      listings_.remove(key);
+      listings_.put(key, listing);
+      while (listings_.size() > MAX_LISTINGS)
+      {
+         Iterator<String> it = listings_.keySet().iterator();
+         it.next();
+         it.remove();
+      }
+   }
+
+   private static String getKey(FileSystemItem directory)
+   {
+      String path = directory.getPath();
+      if (path.length() > 1 && path.endsWith("/"))
+         path = path.substring(0, path.length() - 1);
+      return path;
+   }
+
+   private void reportHitRate()
+   {
+      Diagnostics.report("Directory listing cache",
+                         hits_ + " hits, " + misses_ + " misses");
+   }
+
+   private static class Listing
+   {
+      Listing(JsArray<FileSystemItem> files)
+      {
+         for (int i = 0; i < files.length(); i++)
+            files_.add(files.get(i));
+      }
+
+      JsArray<FileSystemItem> toJsArray()
+      {
+         JsArray<FileSystemItem> files = JavaScriptObject.createArray().cast();
+         for (FileSystemItem file : files_)
+            files.push(file);
+         return files;
+      }
+
+      boolean hasSameFiles(Listing other)
+      {
+         if (files_.size() != other.files_.size())
+            return false;
+
+         for (int i = 0; i < files_.size(); i++)
+         {
+            FileSystemItem file = files_.get(i);
+            FileSystemItem otherFile = other.files_.get(i);
+            if (!file.getPath().equals(otherFile.getPath()) ||
+                file.isDirectory() != otherFile.isDirectory() ||
+                file.getLength() != otherFile.getLength() ||
+                !file.getLastModified().equals(otherFile.getLastModified()))
+            {
+               return false;
+            }
+         }
+         return true;
+      }
+
+      void put(FileSystemItem file)
+      {
+         // keep the server's order (case insensitive by path)
+         String path = file.getPath().toLowerCase();
+         int i = 0;
+         for (; i < files_.size(); i++)
+         {
+            int compare = files_.get(i).getPath().toLowerCase().compareTo(path);
+            if (compare == 0 && files_.get(i).getPath().equals(file.getPath()))
+            {
+               files_.set(i, file);
+               return;
+            }
+            if (compare > 0)
+               break;
+         }
+         files_.add(i, file);
+      }
+
+      void remove(FileSystemItem file)
+      {
+         for (int i = 0; i < files_.size(); i++)
+         {
+            if (files_.get(i).getPath().equals(file.getPath()))
+            {
+               files_.remove(i);
+               return;
+            }
+         }
+      }
+
+      private final ArrayList<FileSystemItem> files_ =
+                                             new ArrayList<FileSystemItem>();
+   }
+
+   private final FilesServerOperations server_;
+   // listings by path, least recently used first
+   private final LinkedHashMap<String, Listing> listings_ =
+                                          new LinkedHashMap<String, Listing>();
+   private String monitoredKey_;
+   private int lastMonitoredRequest_;
+   private int lastUnmonitoredRequest_;
+   private int hits_;
+   private int misses_;
+
+   private static final int MAX_LISTINGS = 50;
+}
@@ -21,7 +21,9 @@ import org.rstudio.studio.client.server.Void;
 
 import java.util.ArrayList;
 
-public interface FilesServerOperations extends ServerEventSource
+public interface FilesServerOperations extends ServerEventSource,
+                                               ChunkedUploadServerOperations,
+                                               FindServerOperations
 {
    // get a file listing
    void listFiles(FileSystemItem directory,
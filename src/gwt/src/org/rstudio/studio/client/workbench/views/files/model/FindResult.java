@@ -0,0 +1,42 @@
+/*
+ * FindResult.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.model;
+
+public class FindResult
+{
+   public FindResult(String file, int line, String lineValue)
+   {
+      file_ = file;
+      line_ = line;
+      lineValue_ = lineValue;
+   }
+
+   public String getFile()
+   {
+      return file_;
+   }
+
+   public int getLine()
+   {
+      return line_;
+   }
+
+   public String getLineValue()
+   {
+      return lineValue_;
+   }
+
+   private final String file_;
+   private final int line_;
+   private final String lineValue_;
+}
@@ -0,0 +1,75 @@
+/*
+ * FindResults.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.model;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.JsArrayString;
+
+import java.util.ArrayList;
+
+/**
+ * A batch of matches from a find-in-files search. The server sends the
+ * matches as parallel arrays (rather than an array of objects) to keep
+ * large batches compact.
+ */
+public class FindResults extends JavaScriptObject
+{
+   protected FindResults()
+   {
+   }
+
+   public final native String getHandle() /*-{
+      return this.handle;
+   }-*/;
+
+   public final native int getFilesSearched() /*-{
+      return this.files_searched;
+   }-*/;
+
+   public final native boolean isComplete() /*-{
+      return this.complete;
+   }-*/;
+
+   public final native boolean isTruncated() /*-{
+      return this.truncated;
+   }-*/;
+
+   public final ArrayList<FindResult> getResults()
+   {
+      JsArrayString files = getFiles();
+      JsArrayInteger lines = getLines();
+      JsArrayString lineValues = getLineValues();
+
+      ArrayList<FindResult> results = new ArrayList<FindResult>();
+      for (int i = 0; i < files.length(); i++)
+      {
+         results.add(new FindResult(files.get(i),
+                                    lines.get(i),
+                                    lineValues.get(i)));
+      }
+      return results;
+   }
+
+   private native JsArrayString getFiles() /*-{
+      return this.results.file;
+   }-*/;
+
+   private native JsArrayInteger getLines() /*-{
+      return this.results.line;
+   }-*/;
+
+   private native JsArrayString getLineValues() /*-{
+      return this.results.line_value;
+   }-*/;
+}
@@ -0,0 +1,33 @@
+/*
+ * FindServerOperations.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.model;
+
+import org.rstudio.core.client.files.FileSystemItem;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.server.Void;
+
+// find in files: the search runs on the server, which delivers its results
+// in batches via FindResultEvent
+public interface FindServerOperations
+{
+   // search the files beneath a directory; the handle identifies the 
+   // search (and the batches of results which belong to it)
+   void beginFind(String searchString,
+                  boolean isRegex,
+                  boolean ignoreCase,
+                  FileSystemItem directory,
+                  String filePattern,
+                  ServerRequestCallback<String> requestCallback);
+
+   void stopFind(String handle, ServerRequestCallback<Void> requestCallback);
+}
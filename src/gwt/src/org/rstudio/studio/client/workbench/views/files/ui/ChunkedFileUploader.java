@@ -0,0 +1,435 @@
+/*
+ * ChunkedFileUploader.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.ui;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.ui.FileUpload;
+import org.rstudio.core.client.files.FileSystemItem;
+import org.rstudio.core.client.jsonrpc.RpcResponse;
+import org.rstudio.studio.client.common.SimpleRequestCallback;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.server.Void;
+import org.rstudio.studio.client.workbench.views.files.model.ChunkedUploadServerOperations;
+import org.rstudio.studio.client.workbench.views.files.model.ChunkedUploadStatus;
+import org.rstudio.studio.client.workbench.views.files.model.PendingFileUpload;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+
+/**
+ * Uploads the file selected in a FileUpload in fixed size chunks using the
+ * browser's File API. Several chunks are sent at once, each along with a
+ * CRC32 the server verifies, and failed chunks are retried with backoff.
+ * If a chunk keeps failing the upload stops; starting it again picks up
+ * from the chunks the server already has rather than from the beginning.
+ * Since a different file can have the same name, size and modification
+ * time, a chunk the server already has is only skipped if its checksum
+ * matches the one computed here (otherwise it's sent again).
+ *
+ * Reading the file and posting chunks are done through the Source and
+ * Sender interfaces (FileApiUploadSource and XhrChunkSender in the
+ * browser), everything else is independent of the File API.
+ */
+public class ChunkedFileUploader
+{
+   public interface Observer
+   {
+      void onProgress(double bytesSent, double totalBytes);
+      void onCompleted(PendingFileUpload pendingUpload);
+      void onError(String message);
+   }
+
+   /**
+    * The file being uploaded
+    */
+   interface Source
+   {
+      String getName();
+      double getSize();
+      // 0 if it isn't known
+      double getLastModified();
+
+      /**
+       * Reads the bytes from start (inclusive) to end (exclusive) and
+       * computes their CRC32 (the same checksum the server computes with
+       * boost::crc_32_type) as an unsigned decimal string. The callback
+       * is always invoked asynchronously.
+       */
+      void read(double start, double end, ReadCallback callback);
+   }
+
+   interface ReadCallback
+   {
+      void onRead(JavaScriptObject data, String checksum);
+      void onError();
+   }
+
+   /**
+    * Posts the data read for a chunk to the chunk url
+    */
+   interface Sender
+   {
+      // the callback is always invoked asynchronously
+      Post post(String url, JavaScriptObject data, PostCallback callback);
+   }
+
+   interface Post
+   {
+      // no further callbacks are made once a post is aborted
+      void abort();
+   }
+
+   interface PostCallback
+   {
+      void onProgress(double loaded);
+      // status is 0 if the server couldn't be reached
+      void onResponse(int status, String responseText);
+   }
+
+   public ChunkedFileUploader(ChunkedUploadServerOperations server)
+   {
+      this(server, new XhrChunkSender());
+   }
+
+   ChunkedFileUploader(ChunkedUploadServerOperations server, Sender sender)
+   {
+      server_ = server;
+      sender_ = sender;
+   }
+
+   public static boolean isSupported(FileUpload fileUpload)
+   {
+      return FileApiUploadSource.isSupported(fileUpload);
+   }
+
+   public void start(FileUpload fileUpload,
+                     FileSystemItem targetDirectory,
+                     Observer observer)
+   {
+      start(FileApiUploadSource.create(fileUpload), 
+            targetDirectory, 
+            observer);
+   }
+
+   void start(Source source,
+              FileSystemItem targetDirectory,
+              Observer observer)
+   {
+      abortAll();
+      final int generation = ++generation_;
+      observer_ = observer;
+      source_ = source;
+      totalBytes_ = source_.getSize();
+      active_ = true;
+
+      server_.beginChunkedUpload(
+            source_.getName(),
+            targetDirectory,
+            totalBytes_,
+            source_.getLastModified(),
+            new ServerRequestCallback<ChunkedUploadStatus>() {
+               @Override
+               public void onResponseReceived(ChunkedUploadStatus status)
+               {
+                  if (generation == generation_ && active_)
+                     onBegin(status);
+               }
+
+               @Override
+               public void onError(ServerError error)
+               {
+                  if (generation == generation_ && active_)
+                     fail(error.getUserMessage());
+               }
+            });
+   }
+
+   // stop the upload and discard whatever the server has received
+   public void cancel()
+   {
+      abortAll();
+      generation_++;
+      if (id_ != null)
+      {
+         server_.cancelChunkedUpload(id_, new SimpleRequestCallback<Void>());
+         id_ = null;
+      }
+   }
+
+   private void onBegin(ChunkedUploadStatus status)
+   {
+      id_ = status.getId();
+      chunkSize_ = status.getChunkSize();
+
+      // chunks the server already has are still read and checksummed, and
+      // only skipped if they match
+      receivedChecksums_.clear();
+      JsArrayInteger received = status.getReceived();
+      JsArrayString checksums = status.getChecksums();
+      for (int i = 0; i < received.length(); i++)
+         receivedChecksums_.put(received.get(i), checksums.get(i));
+
+      pending_.clear();
+      attempts_.clear();
+      bytesCompleted_ = 0;
+      int chunkCount = (int) Math.ceil(totalBytes_ / chunkSize_);
+      for (int i = 0; i < chunkCount; i++)
+         pending_.add(i);
+
+      reportProgress();
+      pump();
+   }
+
+   private void pump()
+   {
+      if (!active_)
+         return;
+
+      if (pending_.isEmpty() && inFlight_.isEmpty() && retrying_ == 0)
+      {
+         complete();
+         return;
+      }
+
+      while (!pending_.isEmpty() && inFlight_.size() < MAX_IN_FLIGHT)
+      {
+         final int index = pending_.removeFirst();
+         final int generation = generation_;
+         double start = (double) index * chunkSize_;
+
+         // the slot is taken while the chunk is read and checksummed
+         inFlight_.put(index, null);
+         chunkProgress_.put(index, 0.0);
+         source_.read(start, start + chunkLength(index), new ReadCallback() 
+         {
+            public void onRead(JavaScriptObject data, String checksum)
+            {
+               onChecksum(data, index, checksum, generation);
+            }
+
+            public void onError()
+            {
+               onChunkResponse(index, 0, null, generation);
+            }
+         });
+      }
+   }
+
+   private void onChecksum(JavaScriptObject data,
+                           final int index,
+                           String checksum,
+                           final int generation)
+   {
+      if (generation != generation_ || !active_)
+         return;
+
+      String received = receivedChecksums_.remove(index);
+      if (checksum.equals(received))
+      {
+         inFlight_.remove(index);
+         chunkProgress_.remove(index);
+         bytesCompleted_ += chunkLength(index);
+         reportProgress();
+         pump();
+         return;
+      }
+
+      String url = server_.getFileUploadChunkUrl(id_, index, checksum);
+      inFlight_.put(index, sender_.post(url, data, new PostCallback()
+      {
+         public void onProgress(double loaded)
+         {
+            onChunkProgress(index, loaded, generation);
+         }
+
+         public void onResponse(int status, String responseText)
+         {
+            onChunkResponse(index, status, responseText, generation);
+         }
+      }));
+   }
+
+   private void onChunkProgress(int index, double loaded, int generation)
+   {
+      if (generation != generation_ || !active_)
+         return;
+
+      chunkProgress_.put(index, loaded);
+      reportProgress();
+   }
+
+   private void onChunkResponse(int index,
+                                int status,
+                                String responseText,
+                                int generation)
+   {
+      if (generation != generation_ || !active_)
+         return;
+
+      inFlight_.remove(index);
+      chunkProgress_.remove(index);
+
+      String error = null;
+      if (status != 200)
+      {
+         error = status == 0 ? "Unable to connect to server" :
+                               "Unexpected response from server (" + status + ")";
+      }
+      else
+      {
+         RpcResponse response = RpcResponse.parse(responseText);
+         if (response == null)
+            error = "Unexpected response from server";
+         else if (response.getError() != null)
+            error = response.getError().getEndUserMessage();
+      }
+
+      if (error == null)
+      {
+         bytesCompleted_ += chunkLength(index);
+         reportProgress();
+         pump();
+      }
+      else
+      {
+         retry(index, error);
+      }
+   }
+
+   private void retry(final int index, String error)
+   {
+      Integer previous = attempts_.get(index);
+      int attempts = (previous == null ? 0 : previous) + 1;
+      if (attempts >= MAX_ATTEMPTS)
+      {
+         fail(error + ". Press OK to resume the upload.");
+         return;
+      }
+      attempts_.put(index, attempts);
+
+      retrying_++;
+      final int generation = generation_;
+      new Timer() {
+         @Override
+         public void run()
+         {
+            if (generation != generation_ || !active_)
+               return;
+            retrying_--;
+            pending_.addFirst(index);
+            pump();
+         }
+      }.schedule(retryDelayMs_ << (attempts - 1));
+
+      // other chunks can keep going meanwhile
+      pump();
+   }
+
+   private void complete()
+   {
+      final int generation = generation_;
+      server_.completeChunkedUpload(
+            id_,
+            new ServerRequestCallback<PendingFileUpload>() {
+               @Override
+               public void onResponseReceived(PendingFileUpload pendingUpload)
+               {
+                  if (generation != generation_ || !active_)
+                     return;
+
+                  // the temp file now belongs to the pending upload
+                  id_ = null;
+                  active_ = false;
+                  observer_.onCompleted(pendingUpload);
+               }
+
+               @Override
+               public void onError(ServerError error)
+               {
+                  if (generation == generation_ && active_)
+                     fail(error.getUserMessage());
+               }
+            });
+   }
+
+   private void fail(String message)
+   {
+      abortAll();
+      generation_++;
+      observer_.onError(message);
+   }
+
+   private void abortAll()
+   {
+      for (Post post : inFlight_.values())
+      {
+         if (post != null)
+            post.abort();
+      }
+      inFlight_.clear();
+      chunkProgress_.clear();
+      pending_.clear();
+      retrying_ = 0;
+      active_ = false;
+   }
+
+   private void reportProgress()
+   {
+      double sent = bytesCompleted_;
+      for (Double loaded : chunkProgress_.values())
+         sent += loaded;
+      observer_.onProgress(Math.min(sent, totalBytes_), totalBytes_);
+   }
+
+   private double chunkLength(int index)
+   {
+      return Math.min(chunkSize_, totalBytes_ - (double) index * chunkSize_);
+   }
+
+   // the delay before the first retry of a chunk (doubled for each 
+   // subsequent retry)
+   void setRetryDelay(int retryDelayMs)
+   {
+      retryDelayMs_ = retryDelayMs;
+   }
+
+   private static final int MAX_IN_FLIGHT = 3;
+   private static final int MAX_ATTEMPTS = 5;
+   private static final int RETRY_DELAY_MS = 500;
+
+   private final ChunkedUploadServerOperations server_;
+   private final Sender sender_;
+   private int retryDelayMs_ = RETRY_DELAY_MS;
+   private Observer observer_;
+   private Source source_;
+   private String id_;
+   private int chunkSize_;
+   private double totalBytes_;
+   private double bytesCompleted_;
+   private boolean active_;
+   private int generation_;
+   private int retrying_;
+   private final LinkedList<Integer> pending_ = new LinkedList<Integer>();
+   private final HashMap<Integer, Post> inFlight_ =
+                                    new HashMap<Integer, Post>();
+   private final HashMap<Integer, Double> chunkProgress_ =
+                                    new HashMap<Integer, Double>();
+   private final HashMap<Integer, Integer> attempts_ =
+                                    new HashMap<Integer, Integer>();
+   private final HashMap<Integer, String> receivedChecksums_ =
+                                    new HashMap<Integer, String>();
+}
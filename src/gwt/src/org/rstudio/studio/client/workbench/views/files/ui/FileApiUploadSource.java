@@ -0,0 +1,158 @@
+/*
+ * FileApiUploadSource.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.ui;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.user.client.ui.FileUpload;
+
+/**
+ * Reads the file selected in a FileUpload using the browser's File API
+ */
+class FileApiUploadSource implements ChunkedFileUploader.Source
+{
+   public static boolean isSupported(FileUpload fileUpload)
+   {
+      return isSupportedNative(fileUpload.getElement());
+   }
+
+   public static FileApiUploadSource create(FileUpload fileUpload)
+   {
+      return new FileApiUploadSource(
+                              getSelectedFile(fileUpload.getElement()));
+   }
+
+   private FileApiUploadSource(JavaScriptObject file)
+   {
+      file_ = file;
+   }
+
+   public String getName()
+   {
+      return getName(file_);
+   }
+
+   public double getSize()
+   {
+      return getSize(file_);
+   }
+
+   public double getLastModified()
+   {
+      return getLastModified(file_);
+   }
+
+   public void read(double start,
+                    double end,
+                    ChunkedFileUploader.ReadCallback callback)
+   {
+      readChecksum(slice(file_, start, end), callback);
+   }
+
+   private static native boolean isSupportedNative(Element input) /*-{
+      return !!($wnd.File && $wnd.FileReader && $wnd.Blob &&
+                $wnd.Uint8Array && input.files &&
+                ($wnd.Blob.prototype.slice ||
+                 $wnd.Blob.prototype.webkitSlice ||
+                 $wnd.Blob.prototype.mozSlice) &&
+                ('upload' in new $wnd.XMLHttpRequest()));
+   }-*/;
+
+   private static native JavaScriptObject getSelectedFile(Element input) /*-{
+      return input.files[0];
+   }-*/;
+
+   private static native String getName(JavaScriptObject file) /*-{
+      return file.name;
+   }-*/;
+
+   private static native double getSize(JavaScriptObject file) /*-{
+      return file.size;
+   }-*/;
+
+   // 0 if the browser doesn't provide it
+   private static native double getLastModified(JavaScriptObject file) /*-{
+      if (file.lastModified)
+         return file.lastModified;
+      else if (file.lastModifiedDate)
+         return file.lastModifiedDate.getTime();
+      else
+         return 0;
+   }-*/;
+
+   private static native JavaScriptObject slice(JavaScriptObject file,
+                                                double start,
+                                                double end) /*-{
+      if (file.webkitSlice)
+         return file.webkitSlice(start, end);
+      else if (file.mozSlice)
+         return file.mozSlice(start, end);
+      else
+         return file.slice(start, end);
+   }-*/;
+
+   // reads the blob and computes its CRC32 (the same checksum the server
+   // computes with boost::crc_32_type) as an unsigned decimal string. the
+   // blob itself is what gets posted
+   private static native void readChecksum(
+                     JavaScriptObject blob,
+                     ChunkedFileUploader.ReadCallback callback) /*-{
+      var table = @org.rstudio.studio.client.workbench.views.files.ui.FileApiUploadSource::crcTable()();
+      var reader = new $wnd.FileReader();
+      reader.onload = $entry(function() {
+         var bytes = new $wnd.Uint8Array(reader.result);
+         var crc = -1;
+         for (var i = 0; i < bytes.length; i++)
+            crc = (crc >>> 8) ^ table[(crc ^ bytes[i]) & 0xFF];
+         var checksum = ((crc ^ -1) >>> 0).toString();
+         @org.rstudio.studio.client.workbench.views.files.ui.FileApiUploadSource::onRead(Lorg/rstudio/studio/client/workbench/views/files/ui/ChunkedFileUploader$ReadCallback;Lcom/google/gwt/core/client/JavaScriptObject;Ljava/lang/String;)(callback, blob, checksum);
+      });
+      reader.onerror = $entry(function() {
+         @org.rstudio.studio.client.workbench.views.files.ui.FileApiUploadSource::onReadError(Lorg/rstudio/studio/client/workbench/views/files/ui/ChunkedFileUploader$ReadCallback;)(callback);
+      });
+      reader.readAsArrayBuffer(blob);
+   }-*/;
+
+   private static void onRead(ChunkedFileUploader.ReadCallback callback,
+                              JavaScriptObject blob,
+                              String checksum)
+   {
+      callback.onRead(blob, checksum);
+   }
+
+   private static void onReadError(ChunkedFileUploader.ReadCallback callback)
+   {
+      callback.onError();
+   }
+
+   private static native JavaScriptObject crcTable() /*-{
+      var table = @org.rstudio.studio.client.workbench.views.files.ui.FileApiUploadSource::crcTable_;
+      if (!table)
+      {
+         table = [];
+         for (var n = 0; n < 256; n++)
+         {
+            var c = n;
+            for (var k = 0; k < 8; k++)
+               c = (c & 1) ? (0xEDB88320 ^ (c >>> 1)) : (c >>> 1);
+            table[n] = c;
+         }
+         @org.rstudio.studio.client.workbench.views.files.ui.FileApiUploadSource::crcTable_ = table;
+      }
+      return table;
+   }-*/;
+
+   private static JavaScriptObject crcTable_;
+
+   private final JavaScriptObject file_;
+}
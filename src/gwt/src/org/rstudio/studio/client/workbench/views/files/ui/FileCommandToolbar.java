@@ -39,6 +39,8 @@ public class FileCommandToolbar extends Toolbar
       moreMenu.addSeparator();
       moreMenu.addItem(commands.exportFiles().createMenuItem(false));
       moreMenu.addSeparator();
+      moreMenu.addItem(commands.findInFiles().createMenuItem(false));
+      moreMenu.addSeparator();
       moreMenu.addItem(commands.syncWorkingDir().createMenuItem(false));
       moreMenu.addItem(commands.showFolder().createMenuItem(false));
 
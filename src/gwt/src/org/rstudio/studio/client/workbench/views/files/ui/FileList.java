@@ -15,12 +15,15 @@ package org.rstudio.studio.client.workbench.views.files.ui;
 import com.google.gwt.core.client.JsArray;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
 import com.google.gwt.event.logical.shared.ValueChangeEvent;
 import com.google.gwt.event.logical.shared.ValueChangeHandler;
 import com.google.gwt.resources.client.ImageResource;
 import com.google.gwt.user.client.ui.*;
 import com.google.gwt.user.client.ui.HTMLTable.CellFormatter;
 import com.google.gwt.user.client.ui.HTMLTable.ColumnFormatter;
+import com.google.gwt.user.client.ui.FlexTable.FlexCellFormatter;
 import org.rstudio.core.client.Debug;
 import org.rstudio.core.client.StringUtil;
 import org.rstudio.core.client.files.FileSystemItem;
@@ -46,6 +49,13 @@ public class FileList extends Composite
       observer_ = observer;
       fileTypeRegistry_ = fileTypeRegistry;
       scrollPanel_ = new ScrollPanel();
+      scrollPanel_.addScrollHandler(new ScrollHandler()
+      {
+         public void onScroll(ScrollEvent event)
+         {
+            renderRows(false);
+         }
+      });
       initWidget(scrollPanel_);
       setStylePrimaryName(ThemeStyles.INSTANCE.fileList());
    }
@@ -54,8 +64,10 @@ public class FileList extends Composite
    {
       containingPath_ = null;
       files_.clear();
+      selected_.clear();
       if (filesTable_ != null)
          filesTable_.removeFromParent();
+      filesTable_ = null;
       scrollPanel_.setWidget(null);
    }
    
@@ -79,14 +91,15 @@ public class FileList extends Composite
       // if there is a navigable parent then create a special parent entry
       FileSystemItem parentPath = containingPath.getParentPath();
       if (parentPath != null)
-         addFile(parentPath, true);
+         addFile(parentPath);
               
-      // add files to table
+      // add files to the list (only the rows in view are rendered)
       for (int i=0; i<files.length(); i++)
          addFile(files.get(i));
          
       // show table in scroll panel
       scrollPanel_.setWidget(filesTable_);
+      renderRows(true);
       
       // fire selection changed
       observer_.onFileSelectionChanged();
@@ -106,10 +119,9 @@ public class FileList extends Composite
    public ArrayList<FileSystemItem> getSelectedFiles()
    {
       ArrayList<FileSystemItem> selectedFiles = new ArrayList<FileSystemItem>() ;
-      for (int i = itemStartIndex(); i<filesTable_.getRowCount();i++)
+      for (int i = itemStartIndex(); i<files_.size();i++)
       {
-         CheckBox checkBox = (CheckBox) filesTable_.getWidget(i, 0);
-         if (checkBox.getValue())
+         if (selected_.get(i))
             selectedFiles.add(files_.get(i));
       }
       
@@ -126,10 +138,11 @@ public class FileList extends Composite
       case FileChange.ADD:
          if (file.getParentPath().equalTo(containingPath_))
          {
-            int row = rowForFile(file);
-            if (row == -1)
+            int index = indexOfFile(file);
+            if (index == -1)
             {
                addFile(file);
+               renderRows(true);
                scrollToBottom();
             }
             else
@@ -139,30 +152,31 @@ public class FileList extends Composite
                // a rename. in this case the file already exists due
                // to the eager rename in the client but still needs its
                // metadata updated
-               files_.set(row, file);
-               setFileWidgets(row, file);
+               files_.set(index, file);
+               renderRows(true);
             }
          }
          break;
          
       case FileChange.MODIFIED:
          {
-            int row = rowForFile(file);
-            if (row != -1)
+            int index = indexOfFile(file);
+            if (index != -1)
             {
-               files_.set(row, file);
-               setFileWidgets(row, file);
+               files_.set(index, file);
+               renderRows(true);
             }
          }
          break;
  
       case FileChange.DELETE:
          {
-            int row = rowForFile(file);
-            if (row != -1)
+            int index = indexOfFile(file);
+            if (index != -1)
             {
-               files_.remove(row);
-               filesTable_.removeRow(row);
+               files_.remove(index);
+               selected_.remove(index);
+               renderRows(true);
             }
          }
          break;
@@ -176,55 +190,93 @@ public class FileList extends Composite
    
    public void renameFile(FileSystemItem from, FileSystemItem to)
    {
-      int row = rowForFile(from);
-      if (row != -1)
+      int index = indexOfFile(from);
+      if (index != -1)
       {
-         files_.set(row, to);
-         setFileWidgets(row, to);
+         files_.set(index, to);
+         renderRows(true);
       }
    }
    
    public void scrollToBottom()
    {
       scrollPanel_.scrollToBottom();
+      renderRows(false);
    }
    
    private void addFile(FileSystemItem file)
    {
-      addFile(file, false);
+      files_.add(file);
+      selected_.add(Boolean.FALSE);
    }
-         
-   private void addFile(FileSystemItem file, boolean isParentItem)
+
+   /**
+    * Renders the rows which are in view (plus a margin on either side), with
+    * spacer rows standing in for the rest
+    */
+   private void renderRows(boolean force)
    {
-      files_.add(file);
-      int row = files_.size()-1;
-      setFileWidgets(row, file, isParentItem);
+      if (filesTable_ == null)
+         return;
+
+      int viewportHeight = scrollPanel_.getOffsetHeight();
+      if (viewportHeight <= 0)
+         viewportHeight = DEFAULT_VIEWPORT_HEIGHT;
+      int scrollTop = scrollPanel_.getScrollPosition();
+
+      int firstVisible = Math.min(files_.size(), scrollTop / rowHeight_);
+      int lastVisible = Math.min(files_.size(),
+                                 firstVisible + viewportHeight/rowHeight_ + 1);
+      if (!force && firstVisible >= renderFirst_ && lastVisible <= renderLast_)
+         return;
+
+      int first = Math.max(0, firstVisible - MARGIN_ROWS);
+      int last = Math.min(files_.size(), lastVisible + MARGIN_ROWS);
+
+      filesTable_.removeAllRows();
+      setSpacer(0, first * rowHeight_);
+      for (int i = first; i < last; i++)
+         setFileWidgets(i - first + 1, i);
+      setSpacer(last - first + 1, (files_.size() - last) * rowHeight_);
+      renderFirst_ = first;
+      renderLast_ = last;
+
+      if (last > first)
+      {
+         int renderedHeight = filesTable_.getRowFormatter().getElement(1)
+                                                           .getOffsetHeight();
+         if (renderedHeight > 0)
+            rowHeight_ = renderedHeight;
+      }
    }
-   
-   private void setFileWidgets(int row, final FileSystemItem file)
+
+   private void setSpacer(int row, int height)
    {
-      setFileWidgets(row, file, false);
+      filesTable_.setHTML(row, 0, "");
+      FlexCellFormatter cellFmt = filesTable_.getFlexCellFormatter();
+      cellFmt.setColSpan(row, 0, COL_TIMESTAMP + 1);
+      cellFmt.setHeight(row, 0, height + "px");
+      filesTable_.getRowFormatter().setVisible(row, height > 0);
    }
    
-   private void setFileWidgets(int row, 
-                               final FileSystemItem file,
-                               boolean isParentItem)
-   {  
+   private void setFileWidgets(int row, final int index)
+   {
+      final FileSystemItem file = files_.get(index);
+      boolean isParentItem = index == 0 && itemStartIndex() == 1;
       CellFormatter cellFmt = filesTable_.getCellFormatter();
       
-      // check box (create only, don't overwrite existing)
-      if (row >= filesTable_.getRowCount())
+      // check box
+      if (!isParentItem)
       {
-         if (!isParentItem)
-         {
-            CheckBox checkBox = new CheckBox();
-            checkBox.addValueChangeHandler(new ValueChangeHandler<Boolean>() {
-                  public void onValueChange(ValueChangeEvent<Boolean> event) {
-                     observer_.onFileSelectionChanged();
-                  }                           
-            });
-            filesTable_.setWidget(row, COL_CHECKBOX, new CheckBox());  
-         }
+         CheckBox checkBox = new CheckBox();
+         checkBox.setValue(selected_.get(index));
+         checkBox.addValueChangeHandler(new ValueChangeHandler<Boolean>() {
+               public void onValueChange(ValueChangeEvent<Boolean> event) {
+                  selected_.set(index, event.getValue());
+                  observer_.onFileSelectionChanged();
+               }                           
+         });
+         filesTable_.setWidget(row, COL_CHECKBOX, checkBox);  
       }
       
       // establish click handler
@@ -285,7 +337,7 @@ public class FileList extends Composite
       }
    }
    
-   private int rowForFile(FileSystemItem file)
+   private int indexOfFile(FileSystemItem file)
    {
       for (int i=0; i<files_.size(); i++)
          if (files_.get(i).equalTo(file))
@@ -304,11 +356,9 @@ public class FileList extends Composite
    
    private void setAllSelections(boolean checked)
    {
-      for (int i=itemStartIndex(); i<filesTable_.getRowCount();i++)
-      {
-         CheckBox checkBox = (CheckBox) filesTable_.getWidget(i, 0);
-         checkBox.setValue(Boolean.valueOf(checked));
-      }
+      for (int i=itemStartIndex(); i<files_.size();i++)
+         selected_.set(i, Boolean.valueOf(checked));
+      renderRows(true);
    }
    
    private int itemStartIndex()
@@ -322,12 +372,19 @@ public class FileList extends Composite
    private FlexTable filesTable_;
    private FileSystemItem containingPath_ = null;
    private ArrayList<FileSystemItem> files_ = new ArrayList<FileSystemItem>();
+   private ArrayList<Boolean> selected_ = new ArrayList<Boolean>();
+   private int renderFirst_;
+   private int renderLast_;
+   private int rowHeight_ = DEFAULT_ROW_HEIGHT;
    
    private static final int COL_CHECKBOX = 0;
    private static final int COL_ICON = 1;
    private static final int COL_NAME = 2;
    private static final int COL_SIZE = 3;
    private static final int COL_TIMESTAMP = 4;
+   private static final int DEFAULT_ROW_HEIGHT = 22;
+   private static final int DEFAULT_VIEWPORT_HEIGHT = 1000;
+   private static final int MARGIN_ROWS = 50;
    private final FileDialogStyles styles_ = FileDialogResources.INSTANCE.styles();
    private FileTypeRegistry fileTypeRegistry_;
 }
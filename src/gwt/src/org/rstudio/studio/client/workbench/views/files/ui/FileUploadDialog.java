@@ -21,6 +21,7 @@ import org.rstudio.core.client.files.filedialog.FileDialogResources;
 import org.rstudio.core.client.jsonrpc.RpcError;
 import org.rstudio.core.client.jsonrpc.RpcResponse;
 import org.rstudio.core.client.theme.res.ThemeStyles;
+import org.rstudio.core.client.StringUtil;
 import org.rstudio.core.client.widget.HtmlFormModalDialog;
 import org.rstudio.core.client.widget.OperationWithInput;
 import org.rstudio.core.client.widget.ProgressIndicator;
@@ -34,6 +35,7 @@ public class FileUploadDialog extends HtmlFormModalDialog<PendingFileUpload>
 {
    public FileUploadDialog(
          String actionURL,
+         ChunkedFileUploader chunkedUploader,
          FileSystemItem targetDirectory,
          FileDialogs fileDialogs,
          RemoteFileSystemContext fileSystemContext,
@@ -43,11 +45,69 @@ public class FileUploadDialog extends HtmlFormModalDialog<PendingFileUpload>
             "Uploading file...", 
             actionURL, 
             completedOperation);
+      chunkedUploader_ = chunkedUploader;
       fileDialogs_ = fileDialogs;
       fileSystemContext_ = fileSystemContext;
       targetDirectory_ = targetDirectory;
    }
    
+   // upload in chunks when the browser supports it (falling back to 
+   // submitting the form) so we can show byte progress, verify and retry
+   // individual chunks, and resume a failed upload
+   @Override
+   protected void submit(
+                  FormPanel formPanel,
+                  final ProgressIndicator progressIndicator,
+                  final OperationWithInput<PendingFileUpload> operation)
+   {
+      if (!ChunkedFileUploader.isSupported(fileUpload_))
+      {
+         super.submit(formPanel, progressIndicator, operation);
+         return;
+      }
+      
+      if (fileUpload_.getFilename().length() == 0)
+      {
+         progressIndicator.onError("You must specify a file to upload.");
+         return;
+      }
+      
+      progressIndicator.onProgress("Uploading file...");
+      chunkedUploader_.start(fileUpload_, 
+                             targetDirectory_, 
+                             new ChunkedFileUploader.Observer() {
+         public void onProgress(double bytesSent, double totalBytes)
+         {
+            int percent = totalBytes > 0 ? 
+                              (int) Math.floor(100 * bytesSent / totalBytes) :
+                              100;
+            progressIndicator.onProgress(
+                  "Uploading file... " + percent + "% (" +
+                  StringUtil.formatFileSize((long) bytesSent) + " of " +
+                  StringUtil.formatFileSize((long) totalBytes) + ")");
+         }
+         
+         public void onCompleted(PendingFileUpload pendingUpload)
+         {
+            progressIndicator.onCompleted();
+            operation.execute(pendingUpload);
+         }
+         
+         public void onError(String message)
+         {
+            progressIndicator.onError(message);
+         }
+      });
+   }
+   
+   @Override
+   protected void closeDialog()
+   {
+      // discard a partial upload (no-op once the upload has completed)
+      chunkedUploader_.cancel();
+      super.closeDialog();
+   }
+   
    @Override
    protected void positionAndShowDialog()
    {
@@ -226,6 +286,7 @@ public class FileUploadDialog extends HtmlFormModalDialog<PendingFileUpload>
       HTML name_ ;
    }
    
+   private final ChunkedFileUploader chunkedUploader_;
    private FileUpload fileUpload_;
    private FileSystemItem targetDirectory_;
    private Hidden targetDirectoryHidden_;
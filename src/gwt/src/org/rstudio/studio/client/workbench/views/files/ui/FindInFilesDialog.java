@@ -0,0 +1,255 @@
+/*
+ * FindInFilesDialog.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.ui;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.FocusEvent;
+import com.google.gwt.event.dom.client.FocusHandler;
+import com.google.gwt.event.dom.client.MouseDownEvent;
+import com.google.gwt.event.dom.client.MouseDownHandler;
+import com.google.gwt.resources.client.ClientBundle;
+import com.google.gwt.resources.client.CssResource;
+import com.google.gwt.user.client.ui.*;
+import org.rstudio.core.client.files.FileSystemItem;
+import org.rstudio.core.client.widget.DoubleClickState;
+import org.rstudio.core.client.widget.FocusHelper;
+import org.rstudio.core.client.widget.ModalDialogBase;
+import org.rstudio.core.client.widget.ThemedButton;
+import org.rstudio.studio.client.workbench.views.files.FindInFiles;
+import org.rstudio.studio.client.workbench.views.files.model.FindResult;
+
+import java.util.ArrayList;
+
+public class FindInFilesDialog extends ModalDialogBase
+                               implements FindInFiles.Display
+{
+   public interface Observer
+   {
+      void onFind(String query,
+                  boolean isRegex,
+                  boolean ignoreCase,
+                  String filePattern);
+      void onStop();
+      void onOpenResult(FindResult result);
+   }
+
+   public FindInFilesDialog(Observer observer)
+   {
+      observer_ = observer;
+      setText("Find in Files");
+
+      ThemedButton findButton = new ThemedButton("Find", new ClickHandler() {
+         public void onClick(ClickEvent event)
+         {
+            String query = txtQuery_.getText();
+            if (query.length() > 0)
+            {
+               observer_.onFind(query,
+                                chkRegex_.getValue(),
+                                !chkCaseSensitive_.getValue(),
+                                txtFilePattern_.getText().trim());
+            }
+         }
+      });
+      addOkButton(findButton);
+
+      stopButton_ = new ThemedButton("Stop", new ClickHandler() {
+         public void onClick(ClickEvent event)
+         {
+            observer_.onStop();
+         }
+      });
+      stopButton_.setEnabled(false);
+      addButton(stopButton_);
+
+      // Enter opens the selected result while the results have focus
+      openButton_ = new ThemedButton("Open", new ClickHandler() {
+         public void onClick(ClickEvent event)
+         {
+            openSelectedResult();
+         }
+      });
+      addLeftButton(openButton_);
+
+      ThemedButton closeButton = new ThemedButton("Close",
+                                                  new ClickHandler() {
+         public void onClick(ClickEvent event)
+         {
+            closeDialog();
+         }
+      });
+      addCancelButton(closeButton);
+   }
+
+   public void setDirectory(FileSystemItem directory)
+   {
+      directory_ = directory;
+      if (lblDirectory_ != null)
+         lblDirectory_.setText("In: " + directory.getPath());
+   }
+
+   public void clearResults()
+   {
+      resultsTable_.clear();
+   }
+
+   public void addResults(ArrayList<FindResult> results)
+   {
+      resultsTable_.addItems(results, false);
+   }
+
+   public void setStatus(String status)
+   {
+      lblStatus_.setText(status);
+   }
+
+   public void setSearching(boolean searching)
+   {
+      stopButton_.setEnabled(searching);
+   }
+
+   @Override
+   protected Widget createMainWidget()
+   {
+      VerticalPanel mainPanel = new VerticalPanel();
+      mainPanel.setSpacing(3);
+      mainPanel.setStylePrimaryName(RESOURCES.styles().mainWidget());
+
+      HorizontalPanel queryPanel = new HorizontalPanel();
+      queryPanel.setSpacing(2);
+      queryPanel.setVerticalAlignment(HasVerticalAlignment.ALIGN_MIDDLE);
+      queryPanel.add(new Label("Find:"));
+      txtQuery_ = new TextBox();
+      txtQuery_.setStylePrimaryName(RESOURCES.styles().queryTextBox());
+      queryPanel.add(txtQuery_);
+      queryPanel.add(new Label("Files:"));
+      txtFilePattern_ = new TextBox();
+      txtFilePattern_.setStylePrimaryName(
+                                    RESOURCES.styles().filePatternTextBox());
+      txtFilePattern_.setTitle("File name patterns, for example: *.R, *.Rnw " +
+                               "(leave empty to search all files)");
+      queryPanel.add(txtFilePattern_);
+      mainPanel.add(queryPanel);
+
+      HorizontalPanel optionsPanel = new HorizontalPanel();
+      optionsPanel.setSpacing(2);
+      chkCaseSensitive_ = new CheckBox("Match case");
+      optionsPanel.add(chkCaseSensitive_);
+      chkRegex_ = new CheckBox("Regular expression");
+      optionsPanel.add(chkRegex_);
+      mainPanel.add(optionsPanel);
+
+      lblDirectory_ = new Label();
+      lblDirectory_.setStylePrimaryName(RESOURCES.styles().directory());
+      if (directory_ != null)
+         setDirectory(directory_);
+      mainPanel.add(lblDirectory_);
+
+      resultsTable_ = new FindResultTable(RESOURCES.styles().resultLocation(),
+                                          RESOURCES.styles().resultLine(),
+                                          RESOURCES.styles().selected());
+      resultsTable_.setStyleName(RESOURCES.styles().resultsTable());
+      resultsTable_.addMouseDownHandler(new MouseDownHandler()
+      {
+         public void onMouseDown(MouseDownEvent event)
+         {
+            setDefaultOverrideButton(openButton_);
+         }
+      });
+      resultsTable_.addClickHandler(new ClickHandler()
+      {
+         public void onClick(ClickEvent event)
+         {
+            if (doubleClick_.checkForDoubleClick(event.getNativeEvent()))
+               openSelectedResult();
+         }
+         private final DoubleClickState doubleClick_ = new DoubleClickState();
+      });
+
+      ScrollPanel resultsPanel = new ScrollPanel(resultsTable_);
+      resultsPanel.setStylePrimaryName(RESOURCES.styles().resultsPanel());
+      resultsTable_.setOwningScrollPanel(resultsPanel);
+      mainPanel.add(resultsPanel);
+
+      lblStatus_ = new Label();
+      lblStatus_.setStylePrimaryName(RESOURCES.styles().status());
+      mainPanel.add(lblStatus_);
+
+      txtQuery_.addFocusHandler(new FocusHandler()
+      {
+         public void onFocus(FocusEvent event)
+         {
+            setDefaultOverrideButton(null);
+         }
+      });
+
+      return mainPanel;
+   }
+
+   @Override
+   protected void onDialogShown()
+   {
+      FocusHelper.setFocusDeferred(txtQuery_);
+      txtQuery_.selectAll();
+   }
+
+   private void openSelectedResult()
+   {
+      ArrayList<FindResult> selected = resultsTable_.getSelectedValues();
+      if (selected.size() == 1)
+      {
+         closeDialog();
+         observer_.onOpenResult(selected.get(0));
+      }
+   }
+
+   static interface Styles extends CssResource
+   {
+      String mainWidget();
+      String queryTextBox();
+      String filePatternTextBox();
+      String directory();
+      String status();
+      String resultsPanel();
+      String resultsTable();
+      String resultLocation();
+      String resultLine();
+      String selected();
+   }
+
+   static interface Resources extends ClientBundle
+   {
+      @Source("FindInFilesDialog.css")
+      Styles styles();
+   }
+
+   static Resources RESOURCES = (Resources)GWT.create(Resources.class) ;
+   public static void ensureStylesInjected()
+   {
+      RESOURCES.styles().ensureInjected();
+   }
+
+   private final Observer observer_;
+   private final ThemedButton stopButton_;
+   private final ThemedButton openButton_;
+   private FileSystemItem directory_;
+   private TextBox txtQuery_;
+   private TextBox txtFilePattern_;
+   private CheckBox chkCaseSensitive_;
+   private CheckBox chkRegex_;
+   private Label lblDirectory_;
+   private Label lblStatus_;
+   private FindResultTable resultsTable_;
+}
@@ -0,0 +1,119 @@
+/*
+ * FindResultTable.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.ui;
+
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.TableCellElement;
+import com.google.gwt.dom.client.TableElement;
+import com.google.gwt.dom.client.TableRowElement;
+import com.google.gwt.dom.client.TableSectionElement;
+import org.rstudio.core.client.files.FileSystemItem;
+import org.rstudio.core.client.widget.FastSelectTable;
+import org.rstudio.studio.client.workbench.views.files.model.FindResult;
+
+/**
+ * Results of a find-in-files search. A search can return many matches so
+ * the table is virtualized (only rows near the visible region are in the
+ * DOM); the owning scroll panel must be set with setOwningScrollPanel.
+ */
+public class FindResultTable extends FastSelectTable<FindResult, FindResult, Integer>
+{
+   public FindResultTable(String locationClassName,
+                          String lineClassName,
+                          String selectedClassName)
+   {
+      super(new FindResultItemCodec(locationClassName, lineClassName),
+            selectedClassName,
+            true,
+            false);
+      setVirtualized(true);
+   }
+
+   private static class FindResultItemCodec
+         implements ItemCodec<FindResult, FindResult, Integer>
+   {
+      public FindResultItemCodec(String locationClassName,
+                                 String lineClassName)
+      {
+         locationClassName_ = locationClassName;
+         lineClassName_ = lineClassName;
+      }
+
+      public TableRowElement getRowForItem(FindResult result)
+      {
+         TableRowElement tr = Document.get().createTRElement();
+         tr.setAttribute("data-file", result.getFile());
+         tr.setAttribute("data-line", result.getLine() + "");
+
+         TableCellElement tdLocation = Document.get().createTDElement();
+         tdLocation.setClassName(locationClassName_);
+         tdLocation.setInnerText(
+               FileSystemItem.getNameFromPath(result.getFile()) + ":" +
+               result.getLine());
+         tdLocation.setTitle(result.getFile());
+         tr.appendChild(tdLocation);
+
+         TableCellElement tdLine = Document.get().createTDElement();
+         tdLine.setClassName(lineClassName_);
+         tdLine.setInnerText(result.getLineValue().trim());
+         tr.appendChild(tdLine);
+
+         return tr;
+      }
+
+      public void onRowsInserted(TableSectionElement tbody)
+      {
+      }
+
+      public FindResult getOutputForRow(TableRowElement row)
+      {
+         return new FindResult(row.getAttribute("data-file"),
+                               getOutputForRow2(row),
+                               row.getCells().getItem(1).getInnerText());
+      }
+
+      public Integer getOutputForRow2(TableRowElement row)
+      {
+         return Integer.parseInt(row.getAttribute("data-line"));
+      }
+
+      public FindResult getOutputForItem(FindResult result)
+      {
+         return result;
+      }
+
+      public Integer getOutputForItem2(FindResult result)
+      {
+         return result.getLine();
+      }
+
+      public boolean isValueRow(TableRowElement row)
+      {
+         return true;
+      }
+
+      public boolean hasNonValueRows()
+      {
+         return false;
+      }
+
+      public Integer logicalOffsetToPhysicalOffset(TableElement table,
+                                                   int offset)
+      {
+         return offset;
+      }
+
+      private final String locationClassName_;
+      private final String lineClassName_;
+   }
+}
@@ -0,0 +1,78 @@
+/*
+ * XhrChunkSender.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.ui;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * Posts chunks with XMLHttpRequest (level 2, for upload progress)
+ */
+class XhrChunkSender implements ChunkedFileUploader.Sender
+{
+   public ChunkedFileUploader.Post post(
+                                 String url,
+                                 JavaScriptObject data,
+                                 ChunkedFileUploader.PostCallback callback)
+   {
+      final JavaScriptObject xhr = postNative(url, data, callback);
+      return new ChunkedFileUploader.Post()
+      {
+         public void abort()
+         {
+            abortNative(xhr);
+         }
+      };
+   }
+
+   private static native JavaScriptObject postNative(
+                     String url,
+                     JavaScriptObject data,
+                     ChunkedFileUploader.PostCallback callback) /*-{
+      var xhr = new $wnd.XMLHttpRequest();
+      xhr.open("POST", url, true);
+      xhr.setRequestHeader("Content-Type", "application/octet-stream");
+      // (progress isn't reported where there's no XHR2 upload object)
+      if (xhr.upload) {
+         xhr.upload.onprogress = $entry(function(e) {
+            if (e.lengthComputable)
+               @org.rstudio.studio.client.workbench.views.files.ui.XhrChunkSender::onProgress(Lorg/rstudio/studio/client/workbench/views/files/ui/ChunkedFileUploader$PostCallback;D)(callback, e.loaded);
+         });
+      }
+      xhr.onreadystatechange = $entry(function() {
+         if (xhr.readyState == 4)
+            @org.rstudio.studio.client.workbench.views.files.ui.XhrChunkSender::onResponse(Lorg/rstudio/studio/client/workbench/views/files/ui/ChunkedFileUploader$PostCallback;ILjava/lang/String;)(callback, xhr.status, xhr.responseText);
+      });
+      xhr.send(data);
+      return xhr;
+   }-*/;
+
+   private static void onProgress(ChunkedFileUploader.PostCallback callback,
+                                  double loaded)
+   {
+      callback.onProgress(loaded);
+   }
+
+   private static void onResponse(ChunkedFileUploader.PostCallback callback,
+                                  int status,
+                                  String responseText)
+   {
+      callback.onResponse(status, responseText);
+   }
+
+   private static native void abortNative(JavaScriptObject xhr) /*-{
+      xhr.onreadystatechange = function() {};
+      if (xhr.upload)
+         xhr.upload.onprogress = null;
+      xhr.abort();
+   }-*/;
+}
@@ -21,6 +21,7 @@ import com.google.gwt.event.logical.shared.ValueChangeHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.user.client.Command;
 import com.google.inject.Inject;
+import org.rstudio.core.client.Diagnostics;
 import org.rstudio.core.client.StringUtil;
 import org.rstudio.core.client.TimeBufferedCommand;
 import org.rstudio.core.client.command.CommandBinder;
@@ -46,6 +47,7 @@ import org.rstudio.studio.client.workbench.views.history.events.FetchCommandsHan
 import org.rstudio.studio.client.workbench.views.history.events.HistoryEntriesAddedEvent;
 import org.rstudio.studio.client.workbench.views.history.events.HistoryEntriesAddedHandler;
 import org.rstudio.studio.client.workbench.views.history.model.HistoryEntry;
+import org.rstudio.studio.client.workbench.views.history.model.HistoryIndex;
 import org.rstudio.studio.client.workbench.views.history.model.HistoryServerOperations;
 import org.rstudio.studio.client.workbench.views.source.events.InsertSourceEvent;
 
@@ -95,6 +97,7 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
       void dismissSearchResults();
       void showSearchResults(String query,
                              ArrayList<HistoryEntry> entries);
+      void addSearchResults(ArrayList<HistoryEntry> entries);
       void showContext(String command,
                        ArrayList<HistoryEntry> entries,
                        long highlightOffset,
@@ -119,6 +122,8 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
          super(200);
       }
 
+      // only invoked when the local index couldn't satisfy the query;
+      // searches the part of the history which hasn't been loaded yet
       @Override
       protected void performAction(boolean shouldSchedulePassive)
       {
@@ -126,7 +131,9 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
          if (searchQuery_ != null && searchQuery_.length() > 0)
          {
             server_.searchHistory(
-                  searchQuery_, COMMAND_CHUNK_SIZE,
+                  searchQuery_,
+                  COMMAND_CHUNK_SIZE - localResultCount_,
+                  serverEndIndex_,
                   new SimpleRequestCallback<RpcObjectList<HistoryEntry>>()
                   {
                      @Override
@@ -137,7 +144,7 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
                            return;
 
                         ArrayList<HistoryEntry> entries = toList(response);
-                        view_.showSearchResults(query, entries);
+                        view_.addSearchResults(entries);
                      }
                   });
          }
@@ -150,11 +157,20 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
          if (searchQuery_.equals(""))
          {
             view_.dismissSearchResults();
+            return;
          }
-         else
-         {
+
+         long start = System.currentTimeMillis();
+         ArrayList<HistoryEntry> entries = index_.search(query,
+                                                         COMMAND_CHUNK_SIZE);
+         view_.showSearchResults(query, entries);
+         Diagnostics.reportTime("History search",
+                                System.currentTimeMillis() - start);
+
+         localResultCount_ = entries.size();
+         serverEndIndex_ = index_.getStartIndex();
+         if (localResultCount_ < COMMAND_CHUNK_SIZE && !index_.isComplete())
             nudge();
-         }
       }
 
       public void dismissResults()
@@ -164,6 +180,8 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
       }
 
       private String searchQuery_;
+      private int localResultCount_;
+      private long serverEndIndex_;
    }
 
    @Inject
@@ -191,7 +209,9 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
       {
          public void onHistoryEntriesAdded(HistoryEntriesAddedEvent event)
          {
-            view_.addRecentCommands(toList(event.getEntries()), false);
+            ArrayList<HistoryEntry> entries = toList(event.getEntries());
+            index_.addEntries(entries);
+            view_.addRecentCommands(entries, false);
          }
       });
 
@@ -240,6 +260,8 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
          public void onResponseReceived(RpcObjectList<HistoryEntry> response)
          {
             ArrayList<HistoryEntry> result = toList(response);
+            index_.clear();
+            index_.addEntries(result);
             view_.setRecentCommands(result);
 
             if (response.length() > 0)
@@ -365,6 +387,14 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
       final long start = Math.max(0, min - CONTEXT_LINES);
       final long end = max + CONTEXT_LINES;
 
+      // the context is usually within the entries we've already loaded
+      ArrayList<HistoryEntry> local = index_.getRange(start, end);
+      if (local != null)
+      {
+         view_.showContext(command, local, min - start, max - min);
+         return;
+      }
+
       server_.getHistory(
             start,
             end,
@@ -414,6 +444,7 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
                public void onResponseReceived(RpcObjectList<HistoryEntry> response)
                {
                   ArrayList<HistoryEntry> entries = toList(response);
+                  index_.addEntries(entries);
                   view_.addRecentCommands(entries, true);
                   fetchingMoreCommands_ = false;
 
@@ -447,5 +478,6 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
    private final EventBus events_;
    private final GlobalDisplay globalDisplay_;
    private final SearchCommand searchCommand_;
+   private final HistoryIndex index_ = new HistoryIndex();
    private HistoryServerOperations server_;
 }
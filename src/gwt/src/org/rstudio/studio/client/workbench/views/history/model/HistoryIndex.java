@@ -0,0 +1,274 @@
+/*
+ * HistoryIndex.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.history.model;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayInteger;
+
+import java.util.ArrayList;
+
+/**
+ * Client-side search index over the contiguous range of history entries
+ * that has been loaded (the most recent entries, extended backwards as
+ * older chunks are fetched and forwards as new entries are added).
+ *
+ * Searches use the same semantics as the server's search_history: the
+ * query is split into terms and an entry matches if its command contains
+ * every term. Candidates are narrowed using a trigram index and then
+ * verified against the command text.
+ */
+public class HistoryIndex
+{
+   public void clear()
+   {
+      entries_.clear();
+      trigrams_ = JavaScriptObject.createObject();
+   }
+
+   /**
+    * Add entries (in index ascending order) which are adjacent to the
+    * entries already in the index.
+    */
+   public void addEntries(ArrayList<HistoryEntry> entries)
+   {
+      if (entries.isEmpty())
+         return;
+
+      if (entries_.isEmpty())
+      {
+         appendEntries(entries);
+         return;
+      }
+
+      ArrayList<HistoryEntry> older = new ArrayList<HistoryEntry>();
+      ArrayList<HistoryEntry> newer = new ArrayList<HistoryEntry>();
+      for (HistoryEntry entry : entries)
+      {
+         if (entry.getIndex() < getStartIndex())
+            older.add(entry);
+         else if (entry.getIndex() >= getEndIndex())
+            newer.add(entry);
+      }
+
+      // older entries which leave a gap are dropped (that range is still
+      // searched on the server); newer entries which leave a gap mean we
+      // missed some, so we start over from the new entries
+      if (!older.isEmpty()
+          && older.get(older.size() - 1).getIndex() + 1 == getStartIndex())
+      {
+         prependEntries(older);
+      }
+
+      if (!newer.isEmpty())
+      {
+         if (newer.get(0).getIndex() != getEndIndex())
+            clear();
+         appendEntries(newer);
+      }
+   }
+
+   /**
+    * @return The index of the oldest entry in the index, or -1 if the
+    * index is empty
+    */
+   public long getStartIndex()
+   {
+      return entries_.isEmpty() ? -1 : entries_.get(0).getIndex();
+   }
+
+   /**
+    * @return One past the index of the newest entry in the index, or -1
+    * if the index is empty
+    */
+   public long getEndIndex()
+   {
+      return entries_.isEmpty()
+             ? -1
+             : entries_.get(entries_.size() - 1).getIndex() + 1;
+   }
+
+   /**
+    * @return True if the index holds the entire history (i.e. it has been
+    * loaded all the way back to the first entry)
+    */
+   public boolean isComplete()
+   {
+      return getStartIndex() == 0;
+   }
+
+   /**
+    * @return The loaded entries between startIndex (inclusive) and
+    * endIndex (exclusive), or null if startIndex has not been loaded
+    */
+   public ArrayList<HistoryEntry> getRange(long startIndex, long endIndex)
+   {
+      if (entries_.isEmpty() || startIndex < getStartIndex())
+         return null;
+
+      int start = (int)(startIndex - getStartIndex());
+      int end = (int)(Math.min(endIndex, getEndIndex()) - getStartIndex());
+      ArrayList<HistoryEntry> results = new ArrayList<HistoryEntry>();
+      for (int i = start; i < end; i++)
+         results.add(entries_.get(i));
+      return results;
+   }
+
+   /**
+    * Search for entries matching the query (up to maxEntries), newest
+    * ones first
+    */
+   public ArrayList<HistoryEntry> search(String query, int maxEntries)
+   {
+      ArrayList<HistoryEntry> results = new ArrayList<HistoryEntry>();
+      scanned_ = 0;
+      ArrayList<String> terms = getSearchTerms(query);
+      if (terms.isEmpty() || entries_.isEmpty())
+         return results;
+
+      // use the shortest posting list of any trigram in the query
+      JsArrayInteger candidates = null;
+      for (String term : terms)
+      {
+         for (int i = 0; i + TRIGRAM_LENGTH <= term.length(); i++)
+         {
+            JsArrayInteger postings = getPostings(
+                  trigrams_, term.substring(i, i + TRIGRAM_LENGTH));
+            if (postings == null)
+               return results;
+            if (candidates == null || postings.length() < candidates.length())
+               candidates = postings;
+         }
+      }
+
+      long startIndex = getStartIndex();
+      int count = candidates != null ? candidates.length() : entries_.size();
+      for (int i = count - 1; i >= 0 && results.size() < maxEntries; i--)
+      {
+         HistoryEntry entry = candidates != null
+               ? entries_.get((int)(candidates.get(i) - startIndex))
+               : entries_.get(i);
+         scanned_++;
+         if (matches(entry.getCommand(), terms))
+            results.add(entry);
+      }
+      return results;
+   }
+
+   /**
+    * @return The number of entries whose commands were checked against
+    * the terms of the last query
+    */
+   int getScannedCount()
+   {
+      return scanned_;
+   }
+
+   private void appendEntries(ArrayList<HistoryEntry> entries)
+   {
+      for (HistoryEntry entry : entries)
+      {
+         entries_.add(entry);
+         addPostings(trigrams_, entry.getCommand(), (int)entry.getIndex());
+      }
+   }
+
+   private void prependEntries(ArrayList<HistoryEntry> entries)
+   {
+      // build the postings for the older entries separately so they can
+      // be put in front of the existing (ascending) posting lists
+      JavaScriptObject older = JavaScriptObject.createObject();
+      for (HistoryEntry entry : entries)
+         addPostings(older, entry.getCommand(), (int)entry.getIndex());
+      mergePostings(older, trigrams_);
+
+      entries_.addAll(0, entries);
+   }
+
+   // mirrors the server's tokenization of queries: terms are separated by
+   // whitespace, and each punctuation character is a term of its own
+   private static ArrayList<String> getSearchTerms(String query)
+   {
+      ArrayList<String> terms = new ArrayList<String>();
+      StringBuilder term = new StringBuilder();
+      for (int i = 0; i < query.length(); i++)
+      {
+         char c = query.charAt(i);
+         boolean space = Character.isSpace(c);
+         boolean punct = PUNCTUATION.indexOf(c) >= 0;
+         if (space || punct)
+         {
+            if (term.length() > 0)
+            {
+               terms.add(term.toString());
+               term.setLength(0);
+            }
+            if (punct)
+               terms.add(String.valueOf(c));
+         }
+         else
+         {
+            term.append(c);
+         }
+      }
+      if (term.length() > 0)
+         terms.add(term.toString());
+      return terms;
+   }
+
+   private static boolean matches(String command, ArrayList<String> terms)
+   {
+      for (String term : terms)
+      {
+         if (command.indexOf(term) < 0)
+            return false;
+      }
+      return true;
+   }
+
+   private static native void addPostings(JavaScriptObject trigrams,
+                                          String text,
+                                          int index) /*-{
+      for (var i = 0; i + 3 <= text.length; i++) {
+         var key = '#' + text.substr(i, 3);
+         var postings = trigrams[key];
+         if (!postings)
+            trigrams[key] = [index];
+         else if (postings[postings.length - 1] !== index)
+            postings.push(index);
+      }
+   }-*/;
+
+   private static native void mergePostings(JavaScriptObject older,
+                                            JavaScriptObject trigrams) /*-{
+      for (var key in older) {
+         if (!older.hasOwnProperty(key))
+            continue;
+         var postings = trigrams[key];
+         trigrams[key] = postings ? older[key].concat(postings) : older[key];
+      }
+   }-*/;
+
+   private static native JsArrayInteger getPostings(JavaScriptObject trigrams,
+                                                    String trigram) /*-{
+      return trigrams['#' + trigram] || null;
+   }-*/;
+
+   private final ArrayList<HistoryEntry> entries_ =
+                                             new ArrayList<HistoryEntry>();
+   private JavaScriptObject trigrams_ = JavaScriptObject.createObject();
+   private int scanned_ = 0;
+
+   private static final int TRIGRAM_LENGTH = 3;
+   private static final String PUNCTUATION =
+                                    "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+}
@@ -38,12 +38,13 @@ public interface HistoryServerOperations
    /*
     *  searchHistory - search the history for the query (return up to
     *  maxEntries). the search is conducted beginning with the most recent
-    *  history items and returned in index decsending order i.e. newest
-    *  ones first)
+    *  history items before endIndex (or all items if endIndex is -1) and
+    *  returned in index decsending order i.e. newest ones first)
     */
    void searchHistory(
          String query,  
          long maxEntries,
+         long endIndex,   // exclusive
          ServerRequestCallback<RpcObjectList<HistoryEntry>> requestCallback);
    
    /*
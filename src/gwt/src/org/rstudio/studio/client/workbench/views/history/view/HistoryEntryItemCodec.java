@@ -102,6 +102,16 @@ public class HistoryEntryItemCodec implements ItemCodec<HistoryEntry, String, Lo
       return Long.parseLong(row.getAttribute("data-entry-id"));
    }
 
+   public String getOutputForItem(HistoryEntry entry)
+   {
+      return entry.getCommand();
+   }
+
+   public Long getOutputForItem2(HistoryEntry entry)
+   {
+      return entry.getIndex();
+   }
+
    private long getTimestampForRow(TableRowElement row)
    {
       return Long.parseLong(row.getAttribute("data-timestamp"));
@@ -15,7 +15,6 @@ package org.rstudio.studio.client.workbench.views.history.view;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Style.Unit;
-import com.google.gwt.dom.client.TableRowElement;
 import com.google.gwt.event.dom.client.*;
 import com.google.gwt.event.logical.shared.ValueChangeHandler;
 import com.google.gwt.event.shared.GwtEvent;
@@ -352,18 +351,22 @@ public class HistoryPane extends WorkbenchPane
 
    public void addRecentCommands(ArrayList<HistoryEntry> entries, boolean top)
    {
-      TableRowElement topRow = null;
-      if (top)
-         topRow = commandList_.getTopRow();
+      boolean wasEmpty = commandList_.getItemCount() == 0;
+      int fromBottom = recentScrollPanel_.getElement().getScrollHeight()
+                       - recentScrollPanel_.getScrollPosition();
 
       commandList_.addItems(entries, top);
 
       if (top)
       {
-         if (topRow == null)
+         // keep the previously visible entries where they were (rows
+         // aren't all materialized, so we can't scroll to the old top row)
+         if (wasEmpty)
             recentScrollPanel_.scrollToBottom();
          else
-            recentScrollPanel_.setScrollPosition(topRow.getOffsetTop());
+            recentScrollPanel_.setScrollPosition(
+                  recentScrollPanel_.getElement().getScrollHeight()
+                  - fromBottom);
       }
       else
          recentScrollPanel_.onContentSizeChanged();
@@ -442,6 +445,14 @@ public class HistoryPane extends WorkbenchPane
          searchResults_.highlightRows(0, 1);
    }
 
+   public void addSearchResults(ArrayList<HistoryEntry> entries)
+   {
+      boolean wasEmpty = searchResults_.getItemCount() == 0;
+      searchResults_.addItems(entries, false);
+      if (wasEmpty && entries.size() > 0)
+         searchResults_.highlightRows(0, 1);
+   }
+
    public void dismissContext()
    {
       setMode(Mode.SearchResults);
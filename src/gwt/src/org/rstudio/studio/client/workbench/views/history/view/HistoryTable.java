@@ -49,7 +49,11 @@ public class HistoryTable extends FastSelectTable<HistoryEntry, String, Long>
             true);
 
       searchResult_ = searchResult;
-      
+
+      // history can have tens of thousands of entries, so only the rows
+      // near the visible region are kept in the DOM
+      setVirtualized(true);
+
       applyWidthConstraints();
 
       final Resources res = GWT.create(Resources.class);
@@ -78,6 +78,11 @@ public class HistoryTableWithToolbar extends Composite
       historyTable_.addItems(entries, top);
    }
 
+   public int getItemCount()
+   {
+      return historyTable_.getItemCount();
+   }
+
    public ArrayList<String> getSelectedValues()
    {
       return historyTable_.getSelectedValues();
@@ -0,0 +1,182 @@
+/*
+ * PlotImageCache.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.plots;
+
+import com.google.gwt.user.client.ui.Image;
+import org.rstudio.core.client.Diagnostics;
+import org.rstudio.studio.client.workbench.views.plots.model.PlotsServerOperations;
+import org.rstudio.studio.client.workbench.views.plots.model.PlotsState;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Remembers the image filename of each plot in the history along with the
+ * device size it was rendered at. Plot image filenames are strong named
+ * (the server generates a new one whenever a plot is re-rendered, deleting
+ * the old image) so a cached filename can be shown without asking the
+ * server to replay the plot. There is a single entry per plot which is
+ * replaced whenever the server reports that plot's image, and entries the
+ * server no longer reports as current are dropped, so a filename whose
+ * image the session may have deleted is never served. Images for the plots
+ * adjacent to the active one are prefetched into the browser cache so that
+ * stepping through the history doesn't wait on the graphics request either.
+ */
+class PlotImageCache
+{
+   public PlotImageCache(PlotsServerOperations server)
+   {
+      server_ = server;
+   }
+
+   /**
+    * Record the plot state reported by the server. Removing or clearing
+    * plots shifts the indexes of the history so the cache is discarded
+    * whenever the plot count goes down.
+    */
+   public void update(PlotsState state)
+   {
+      if (state.getPlotCount() < plotCount_)
+         clear();
+
+      plotCount_ = state.getPlotCount();
+      width_ = state.getWidth();
+      height_ = state.getHeight();
+
+      // the server only reports neighbor filenames which are current at
+      // this size (an empty filename means the neighbor would need to be
+      // re-rendered, which deletes any image we have for it)
+      int index = state.getPlotIndex();
+      put(index, state.getFilename());
+      put(index - 1, state.getPreviousFilename());
+      put(index + 1, state.getNextFilename());
+
+      prefetch(index - 1);
+      prefetch(index + 1);
+   }
+
+   /**
+    * Returns the image filename for the plot at the given index rendered
+    * at the current device size, or null if it isn't known.
+    */
+   public String get(int index)
+   {
+      String filename = null;
+      Entry entry = currentEntry(index);
+      if (entry != null)
+      {
+         // keep recently used entries from being evicted
+         entries_.remove(index);
+         entries_.put(index, entry);
+         filename = entry.filename;
+      }
+
+      if (filename != null)
+         hits_++;
+      else
+         misses_++;
+      reportDiagnostics();
+
+      return filename;
+   }
+
+   /**
+    * Load the image for the plot at the given index into the browser cache
+    * (if we know its filename).
+    */
+   public void prefetch(int index)
+   {
+      Entry entry = currentEntry(index);
+      if (entry != null && prefetched_.add(entry.filename))
+         Image.prefetch(server_.getGraphicsUrl(entry.filename));
+   }
+
+   public int getPlotCount()
+   {
+      return plotCount_;
+   }
+
+   public void clear()
+   {
+      entries_.clear();
+      prefetched_.clear();
+   }
+
+   private Entry currentEntry(int index)
+   {
+      if (index < 0 || index >= plotCount_)
+         return null;
+
+      Entry entry = entries_.get(index);
+      if (entry == null || entry.width != width_ || entry.height != height_)
+         return null;
+
+      return entry;
+   }
+
+   private void put(int index, String filename)
+   {
+      if (index < 0 || index >= plotCount_)
+         return;
+
+      Entry previous = entries_.remove(index);
+      if (previous != null)
+         prefetched_.remove(previous.filename);
+
+      if (filename == null || filename.length() == 0 ||
+          filename.startsWith("empty."))
+         return;
+
+      entries_.put(index, new Entry(filename, width_, height_));
+
+      while (entries_.size() > MAX_ENTRIES)
+      {
+         Iterator<Entry> it = entries_.values().iterator();
+         prefetched_.remove(it.next().filename);
+         it.remove();
+      }
+   }
+
+   private void reportDiagnostics()
+   {
+      Diagnostics.report("Plot image cache",
+                         hits_ + " hits, " + misses_ + " misses");
+   }
+
+   private static class Entry
+   {
+      Entry(String filename, int width, int height)
+      {
+         this.filename = filename;
+         this.width = width;
+         this.height = height;
+      }
+
+      final String filename;
+      final int width;
+      final int height;
+   }
+
+   private final PlotsServerOperations server_;
+   private final LinkedHashMap<Integer, Entry> entries_ =
+                                       new LinkedHashMap<Integer, Entry>();
+   private final HashSet<String> prefetched_ = new HashSet<String>();
+   private int plotCount_;
+   private int width_;
+   private int height_;
+   private int hits_;
+   private int misses_;
+
+   private static final int MAX_ENTRIES = 200;
+}
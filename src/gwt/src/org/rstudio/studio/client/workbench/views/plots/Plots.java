@@ -16,6 +16,7 @@ import com.google.gwt.event.logical.shared.HasResizeHandlers;
 import com.google.gwt.event.logical.shared.SelectionEvent;
 import com.google.gwt.event.logical.shared.SelectionHandler;
 import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.HasWidgets;
 import com.google.gwt.user.client.ui.Panel;
@@ -46,6 +47,7 @@ import org.rstudio.studio.client.workbench.views.plots.events.LocatorHandler;
 import org.rstudio.studio.client.workbench.views.plots.events.PlotsChangedEvent;
 import org.rstudio.studio.client.workbench.views.plots.events.PlotsChangedHandler;
 import org.rstudio.studio.client.workbench.views.plots.model.ExportOptions;
+import org.rstudio.studio.client.workbench.views.plots.model.Manipulator;
 import org.rstudio.studio.client.workbench.views.plots.model.PlotsServerOperations;
 import org.rstudio.studio.client.workbench.views.plots.model.PlotsState;
 import org.rstudio.studio.client.workbench.views.plots.model.PrintOptions;
@@ -53,6 +55,7 @@ import org.rstudio.studio.client.workbench.views.plots.ui.ExportDialog;
 import org.rstudio.studio.client.workbench.views.plots.ui.PrintDialog;
 import org.rstudio.studio.client.workbench.views.plots.ui.manipulator.ManipulatorChangedHandler;
 import org.rstudio.studio.client.workbench.views.plots.ui.manipulator.ManipulatorManager;
+import org.rstudio.studio.client.workbench.views.plots.ui.manipulator.ManipulatorUpdateQueue;
 
 public class Plots extends BasePresenter implements PlotsChangedHandler,
                                                     LocatorHandler,
@@ -89,8 +92,10 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
       super(view);
       view_ = view;
       globalDisplay_ = globalDisplay;
+      commands_ = commands;
       server_ = server;
       session_ = session;
+      imageCache_ = new PlotImageCache(server);
       locator_ = new Locator(view.getPlotsParent());
       locator_.addSelectionHandler(new SelectionHandler<Point>()
       {
@@ -106,7 +111,19 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
          }
       });
 
-      // manipulator
+      // manipulator (updates are coalesced so that at most one render
+      // is in flight while the user is dragging a slider)
+      manipulatorUpdates_ = new ManipulatorUpdateQueue(
+         server_,
+         new ManipulatorUpdateQueue.Observer()
+         {
+            public void onUpdateError(ServerError error)
+            {
+               manipulatorManager_.setProgress(false);
+               globalDisplay_.showErrorMessage("Server Error", 
+                                               error.getUserMessage());
+            }
+         });
       manipulatorManager_ = new ManipulatorManager(
          view_.getPlotsSurface(),
          commands,
@@ -115,28 +132,13 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
             @Override
             public void onManipulatorChanged(JSONObject values)
             {
-               // show progress
-               manipulatorManager_.setProgress(true);
-               
                // set values
-               server_.setManipulatorValues(values, 
-                                            new ServerRequestCallback<Void>() {
-                  @Override
-                  public void onResponseReceived(Void response)
-                  {
-                     // we don't clear the progress until the GraphicsOutput
-                     // event is received (enables us to wait for rendering
-                     // to complete before clearing progress)
-                  }
-                  
-                  @Override
-                  public void onError(ServerError error)
-                  {
-                     manipulatorManager_.setProgress(false);
-                     globalDisplay_.showErrorMessage("Server Error", 
-                                                     error.getUserMessage());
-                  }
-               });
+               manipulatorUpdates_.update(values);
+               
+               // show progress (cleared by onPlotsChanged once the last
+               // queued update has been rendered)
+               if (manipulatorUpdates_.isBusy())
+                  manipulatorManager_.setProgress(true);
             }
          });
       
@@ -178,10 +180,33 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
    {
       // get the event
       PlotsState plotsState = event.getPlotsState();
+      
+      // remember the image (and those of its neighbors) for navigation
+      int previousPlotCount = imageCache_.getPlotCount();
+      imageCache_.update(plotsState);
+      
+      // if we've already moved on to another plot from the cache then
+      // this state is stale (the server will catch up once it receives 
+      // the pending index). new plots always take precedence though.
+      if (pendingPlotIndex_ >= 0)
+      {
+         if (plotsState.getPlotCount() == previousPlotCount &&
+             plotsState.getPlotIndex() != pendingPlotIndex_)
+         {
+            PlotsTab.updateNavigationCommands(commands_, 
+                                              plotIndex_,
+                                              previousPlotCount);
+            return;
+         }
+         
+         syncTimer_.cancel();
+         pendingPlotIndex_ = -1;
+      }
+      plotIndex_ = plotsState.getPlotIndex();
         
       // clear progress 
       view_.setProgress(false);
-      manipulatorManager_.setProgress(false);
+      manipulatorManager_.setProgress(manipulatorUpdates_.isBusy());
       
       // if this is the empty plot then clear the display
       // NOTE: we currently return a zero byte PNG as our "empty.png" from
@@ -205,8 +230,12 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
       // update plot size
       plotSize_ = new Size(plotsState.getWidth(), plotsState.getHeight());
 
-      // manipulator
-      manipulatorManager_.setManipulator(plotsState.getManipulator(),
+      // manipulator (values already sent are only remembered for as long
+      // as the same manipulator is active)
+      Manipulator manipulator = plotsState.getManipulator();
+      manipulatorUpdates_.setManipulatorId(
+                        manipulator != null ? manipulator.getID() : null);
+      manipulatorManager_.setManipulator(manipulator,
                                          plotsState.getShowManipulator());
       
       // locator
@@ -216,16 +245,47 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
 
    void onNextPlot()
    {
-      view_.bringToFront();
-      setChangePlotProgress();
-      server_.nextPlot(new PlotRequestCallback());
+      navigateToPlot(plotIndex_ + 1);
    }
 
    void onPreviousPlot()
+   {
+      navigateToPlot(plotIndex_ - 1);
+   }
+   
+   private void navigateToPlot(int index)
    {
       view_.bringToFront();
-      setChangePlotProgress();
-      server_.previousPlot(new PlotRequestCallback());
+      
+      String filename = imageCache_.get(index);
+      if (filename != null)
+      {
+         // show the cached image right away and only ask the server to 
+         // replay the plot once the user stops stepping through history
+         plotIndex_ = index;
+         pendingPlotIndex_ = index;
+         view_.showPlot(server_.getGraphicsUrl(filename));
+         PlotsTab.updateNavigationCommands(commands_, 
+                                           index, 
+                                           imageCache_.getPlotCount());
+         imageCache_.prefetch(index - 1);
+         imageCache_.prefetch(index + 1);
+         
+         // the manipulator belongs to the plot the server has active,
+         // so hide it until the server reports the new plot's state
+         manipulatorUpdates_.reset();
+         manipulatorManager_.setManipulator(null, false);
+         
+         syncTimer_.schedule(SYNC_DELAY_MS);
+      }
+      else
+      {
+         syncTimer_.cancel();
+         pendingPlotIndex_ = index;
+         manipulatorUpdates_.reset();
+         setChangePlotProgress();
+         server_.setActivePlot(index, new PlotRequestCallback());
+      }
    }
 
    void onClearPlots()
@@ -380,6 +440,7 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
       @Override
       public void onError(ServerError error)
       {
+         pendingPlotIndex_ = -1;
          view_.setProgress(false);
          globalDisplay_.showErrorMessage("Server Error", 
                                          error.getUserMessage());
@@ -418,10 +479,12 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
 
    private final Display view_;
    private final GlobalDisplay globalDisplay_;
+   private final Commands commands_;
    private final PlotsServerOperations server_;
    private final Session session_;
    private final Locator locator_;
    private final ManipulatorManager manipulatorManager_;
+   private final ManipulatorUpdateQueue manipulatorUpdates_;
    
    // default export options
    private ExportOptions exportOptions_ = ExportOptions.create(
@@ -431,4 +494,24 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
    
    // size of most recently rendered plot
    Size plotSize_ = null;
+   
+   // cached plot images for history navigation
+   private final PlotImageCache imageCache_;
+   
+   // index of the plot being displayed, and of the plot we've asked
+   // (or are about to ask) the server to make active (-1 if none)
+   private int plotIndex_ = 0;
+   private int pendingPlotIndex_ = -1;
+   
+   private final Timer syncTimer_ = new Timer() {
+      @Override
+      public void run()
+      {
+         if (pendingPlotIndex_ >= 0)
+            server_.setActivePlot(pendingPlotIndex_, 
+                                  new PlotRequestCallback());
+      }
+   };
+   
+   private static final int SYNC_DELAY_MS = 300;
 }
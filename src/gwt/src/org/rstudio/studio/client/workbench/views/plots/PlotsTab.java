@@ -130,31 +130,9 @@ public class PlotsTab extends DelayLoadWorkbenchTab<Plots>
 
       PlotsState plotsState = event.getPlotsState();
 
-      // zero or one plot -- next and previous disabled
-      if (plotsState.getPlotCount() <= 1)
-      {
-         commands_.nextPlot().setEnabled(false);
-         commands_.previousPlot().setEnabled(false);
-      }
-      // first plot (only next is enabled)
-      else if (plotsState.getPlotIndex() == 0)
-      {
-         commands_.nextPlot().setEnabled(true);
-         commands_.previousPlot().setEnabled(false);
-      }
-      // last plot (only back is enabled)
-      else if (plotsState.getPlotIndex() ==
-              (plotsState.getPlotCount() - 1))
-      {
-         commands_.nextPlot().setEnabled(false);
-         commands_.previousPlot().setEnabled(true);
-      }
-      // both enabled
-      else
-      {
-         commands_.nextPlot().setEnabled(true);
-         commands_.previousPlot().setEnabled(true);
-      }
+      updateNavigationCommands(commands_,
+                               plotsState.getPlotIndex(),
+                               plotsState.getPlotCount());
 
       // other commands which are only enabled if there is at least
       // one plot alive
@@ -176,6 +154,36 @@ public class PlotsTab extends DelayLoadWorkbenchTab<Plots>
       }
    }
 
+   static void updateNavigationCommands(Commands commands,
+                                        int plotIndex,
+                                        int plotCount)
+   {
+      // zero or one plot -- next and previous disabled
+      if (plotCount <= 1)
+      {
+         commands.nextPlot().setEnabled(false);
+         commands.previousPlot().setEnabled(false);
+      }
+      // first plot (only next is enabled)
+      else if (plotIndex == 0)
+      {
+         commands.nextPlot().setEnabled(true);
+         commands.previousPlot().setEnabled(false);
+      }
+      // last plot (only back is enabled)
+      else if (plotIndex == (plotCount - 1))
+      {
+         commands.nextPlot().setEnabled(false);
+         commands.previousPlot().setEnabled(true);
+      }
+      // both enabled
+      else
+      {
+         commands.nextPlot().setEnabled(true);
+         commands.previousPlot().setEnabled(true);
+      }
+   }
+
    private final HandlerManager handlers_ = new HandlerManager(this);
    private final PlotsShim shim_;
    private Commands commands_;
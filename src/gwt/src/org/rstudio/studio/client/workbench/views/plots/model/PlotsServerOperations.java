@@ -22,6 +22,9 @@ public interface PlotsServerOperations
 {
    String getGraphicsUrl(String filename);
    
+   void setActivePlot(int index, 
+                      ServerRequestCallback<Void> requestCallback);
+   
    void nextPlot(ServerRequestCallback<Void> requestCallback);
    void previousPlot(ServerRequestCallback<Void> requestCallback);
    
@@ -51,4 +51,14 @@ public class PlotsState extends JavaScriptObject
    public final native boolean getShowManipulator() /*-{
       return this.showManipulator;
    }-*/;
+   
+   // image filenames of the adjacent plots in the history (empty if
+   // they haven't yet been rendered at the current size)
+   public final native String getPreviousFilename() /*-{
+      return this.previousFilename || "";
+   }-*/;
+   
+   public final native String getNextFilename() /*-{
+      return this.nextFilename || "";
+   }-*/;
 }
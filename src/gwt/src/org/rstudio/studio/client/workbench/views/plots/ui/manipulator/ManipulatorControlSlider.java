@@ -88,13 +88,19 @@ public class ManipulatorControlSlider extends ManipulatorControl
          sliderBar_.setNumTicks(1); 
       }
       
-      // update label on change
+      // update label on change (and preview the plot while sliding)
       sliderBar_.addChangeListener(new ChangeListener() {
          @Override
          public void onChange(Widget sender)
          {
             valueLabel.setText(formatLabel(sliderBar_, 
                                            sliderBar_.getCurrentValue()));
+            
+            if (sliderBar_.isSliding())
+            {
+               ManipulatorControlSlider.this.onValueChanged(
+                           new JSONNumber(sliderBar_.getCurrentValue()));
+            }
          } 
       });
       sliderBar_.setCurrentValue(value);
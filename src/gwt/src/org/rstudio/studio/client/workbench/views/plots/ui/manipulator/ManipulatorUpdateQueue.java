@@ -0,0 +1,143 @@
+/*
+ * ManipulatorUpdateQueue.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.plots.ui.manipulator;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.server.Void;
+import org.rstudio.studio.client.workbench.views.plots.model.PlotsServerOperations;
+
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONValue;
+
+/**
+ * Sends manipulator values to the server keeping at most one render in
+ * flight. Values changed while a render is in progress are merged into a
+ * single pending update (later values for a variable supersede earlier
+ * ones), which is sent as soon as the in-flight render completes. Values
+ * which are the same as those last sent for the current manipulator are
+ * dropped (the values sent are forgotten whenever the manipulator changes).
+ */
+public class ManipulatorUpdateQueue
+{
+   public interface Observer
+   {
+      void onUpdateError(ServerError error);
+   }
+
+   public ManipulatorUpdateQueue(PlotsServerOperations server,
+                                 Observer observer)
+   {
+      server_ = server;
+      observer_ = observer;
+   }
+
+   public void update(JSONObject values)
+   {
+      for (String variable : values.keySet())
+      {
+         JSONValue value = values.get(variable);
+
+         // drop values which match what the server already has (or will
+         // have once the in-flight render completes)
+         String sent = sentValues_.get(variable);
+         if (sent != null && sent.equals(value.toString()))
+            pending_.remove(variable);
+         else
+            pending_.put(variable, value);
+      }
+
+      sendPending();
+   }
+
+   /**
+    * Returns true if a render is in flight or an update is pending
+    */
+   public boolean isBusy()
+   {
+      return inFlight_ || !pending_.isEmpty();
+   }
+
+   /**
+    * Notes the manipulator which values are sent for (null if the active
+    * plot has none). A different manipulator (e.g. another plot or a new
+    * call to manipulate) resets the queue.
+    */
+   public void setManipulatorId(String manipulatorId)
+   {
+      boolean changed = (manipulatorId == null) ?
+                              manipulatorId_ != null :
+                              !manipulatorId.equals(manipulatorId_);
+      if (changed)
+      {
+         reset();
+         manipulatorId_ = manipulatorId;
+      }
+   }
+
+   /**
+    * Discard any pending values and forget those already sent (e.g. when
+    * the active plot, and therefore the manipulator, changes)
+    */
+   public void reset()
+   {
+      pending_.clear();
+      sentValues_.clear();
+      manipulatorId_ = null;
+   }
+
+   private void sendPending()
+   {
+      if (inFlight_ || pending_.isEmpty())
+         return;
+
+      JSONObject values = new JSONObject();
+      for (Map.Entry<String, JSONValue> entry : pending_.entrySet())
+      {
+         values.put(entry.getKey(), entry.getValue());
+         sentValues_.put(entry.getKey(), entry.getValue().toString());
+      }
+      pending_.clear();
+
+      inFlight_ = true;
+      server_.setManipulatorValues(values, new ServerRequestCallback<Void>() {
+         @Override
+         public void onResponseReceived(Void response)
+         {
+            inFlight_ = false;
+            sendPending();
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            inFlight_ = false;
+            reset();
+            observer_.onUpdateError(error);
+         }
+      });
+   }
+
+   private final PlotsServerOperations server_;
+   private final Observer observer_;
+   private final LinkedHashMap<String, JSONValue> pending_ =
+                                    new LinkedHashMap<String, JSONValue>();
+   private boolean inFlight_ = false;
+   private String manipulatorId_ = null;
+   private final HashMap<String, String> sentValues_ =
+                                          new HashMap<String, String>();
+}
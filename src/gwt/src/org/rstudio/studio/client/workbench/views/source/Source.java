@@ -25,6 +25,7 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 import org.rstudio.core.client.CommandWithArg;
 import org.rstudio.core.client.Debug;
+import org.rstudio.core.client.SerializedCommand;
 import org.rstudio.core.client.StringUtil;
 import org.rstudio.core.client.command.AppCommand;
 import org.rstudio.core.client.command.Handler;
@@ -51,6 +52,7 @@ import org.rstudio.studio.client.workbench.MRUList;
 import org.rstudio.studio.client.workbench.commands.Commands;
 import org.rstudio.studio.client.workbench.model.RemoteFileSystemContext;
 import org.rstudio.studio.client.workbench.model.Session;
+import org.rstudio.studio.client.workbench.model.SessionStartupQueue;
 import org.rstudio.studio.client.workbench.model.helper.IntStateValue;
 import org.rstudio.studio.client.workbench.views.data.events.ViewDataEvent;
 import org.rstudio.studio.client.workbench.views.data.events.ViewDataHandler;
@@ -63,6 +65,7 @@ import org.rstudio.studio.client.workbench.views.source.editors.text.TextEditing
 import org.rstudio.studio.client.workbench.views.source.events.*;
 import org.rstudio.studio.client.workbench.views.source.model.ContentItem;
 import org.rstudio.studio.client.workbench.views.source.model.DataItem;
+import org.rstudio.studio.client.workbench.views.source.model.DocUpdateSentinel;
 import org.rstudio.studio.client.workbench.views.source.model.SourceDocument;
 import org.rstudio.studio.client.workbench.views.source.model.SourceServerOperations;
 
@@ -122,7 +125,8 @@ public class Source implements InsertSourceHandler,
                  RemoteFileSystemContext fileContext,
                  EventBus events,
                  Session session,
-                 MRUList mruList)
+                 MRUList mruList,
+                 SessionStartupQueue startupQueue)
    {
       commands_ = commands;
       view_ = view;
@@ -202,7 +206,7 @@ public class Source implements InsertSourceHandler,
          }
       });
 
-      restoreDocuments(session);
+      restoreDocuments(session, startupQueue);
 
       new IntStateValue(MODULE_SOURCE, KEY_ACTIVETAB, true,
                         session.getSessionInfo().getClientState())
@@ -214,6 +218,8 @@ public class Source implements InsertSourceHandler,
                return;
             if (value >= 0 && view_.getTabCount() > value)
                view_.selectTab(value);
+            else
+               restoredActiveTab_ = value;
          }
 
          @Override
@@ -255,15 +261,93 @@ public class Source implements InsertSourceHandler,
       return view_.toWidget();
    }
 
-   private void restoreDocuments(final Session session)
+   private void restoreDocuments(final Session session,
+                                 SessionStartupQueue startupQueue)
    {
-      final JsArray<SourceDocument> docs =
-            session.getSessionInfo().getSourceDocuments();
+      if (!session.getSessionInfo().isStaged())
+      {
+         final JsArray<SourceDocument> docs =
+               session.getSessionInfo().getSourceDocuments();
+
+         for (int i = 0; i < docs.length(); i++)
+         {
+            addTab(docs.get(i));
+         }
+         return;
+      }
+
+      // staged init: the source pane starts out hidden and the documents
+      // are fetched once the workbench is up. files opened in the meantime
+      // are held until then (otherwise a file which is being restored
+      // wouldn't be found among the open tabs, and a second document would
+      // be opened for it)
+      pendingOpens_ = new ArrayList<Command>();
+      startupQueue.addFetch(SessionStartupQueue.PRIORITY_NORMAL,
+                            "Source documents",
+                            new SerializedCommand() {
+         public void onExecute(final Command continuation)
+         {
+            server_.listDocuments(
+                     new ServerRequestCallback<JsArray<SourceDocument>>() {
+               @Override
+               public void onResponseReceived(JsArray<SourceDocument> docs)
+               {
+                  boolean restored = false;
+                  for (int i = 0; i < docs.length(); i++)
+                  {
+                     // skip documents created since init (e.g. new
+                     // documents), which already have a tab
+                     if (getEditorIndex(docs.get(i).getId()) >= 0)
+                        continue;
+
+                     if (!restored)
+                     {
+                        ensureVisible(true);
+                        restored = true;
+                     }
+                     addTab(docs.get(i));
+                  }
+
+                  if (restored &&
+                      restoredActiveTab_ >= 0 &&
+                      restoredActiveTab_ < view_.getTabCount())
+                  {
+                     view_.selectTab(restoredActiveTab_);
+                  }
+                  onRestoreFinished();
+                  continuation.execute();
+               }
+
+               @Override
+               public void onError(ServerError error)
+               {
+                  Debug.logError(error);
+                  onRestoreFinished();
+                  continuation.execute();
+               }
+            });
+         }
+      });
+   }
 
-      for (int i = 0; i < docs.length(); i++)
+   private void onRestoreFinished()
+   {
+      restoredActiveTab_ = -1;
+
+      ArrayList<Command> pendingOpens = pendingOpens_;
+      pendingOpens_ = null;
+      for (Command command : pendingOpens)
+         command.execute();
+   }
+
+   private int getEditorIndex(String id)
+   {
+      for (int i = 0; i < editors_.size(); i++)
       {
-         addTab(docs.get(i));
+         if (editors_.get(i).getId().equals(id))
+            return i;
       }
+      return -1;
    }
    
    public void onShowContent(ShowContentEvent event)
@@ -449,18 +533,33 @@ public class Source implements InsertSourceHandler,
 
    public void onOpenSourceFile(final OpenSourceFileEvent event)
    {
-      openFile(event.getFile(), event.getFileType());
+      openFile(event.getFile(), event.getFileType(), event.getLine());
    }
    
    // top-level wrapper for opening files. takes care of:
    //  - making sure the view is visible
    //  - checking whether it is already open and re-selecting its tab
-   //  - prohibit opening very large files (>500KB)
-   //  - confirmation of opening large files (>100KB)
+   //  - prohibit opening very large files
+   //  - confirmation of opening large files
    //  - finally, actually opening the file from the server
-   //    via the call to the lower level openFile method
-   private void openFile(final FileSystemItem file, final TextFileType fileType)
-   {
+   //    via the call to the lower level openFile method (in chunks if
+   //    the file is big enough that loading it all at once would block)
+   //  - moving to the requested line (if any) once the file is open
+   private void openFile(final FileSystemItem file,
+                         final TextFileType fileType,
+                         final int line)
+   {
+      if (pendingOpens_ != null)
+      {
+         pendingOpens_.add(new Command() {
+            public void execute()
+            {
+               openFile(file, fileType, line);
+            }
+         });
+         return;
+      }
+
       ensureVisible(true);
 
       if (file == null)
@@ -479,11 +578,16 @@ public class Source implements InsertSourceHandler,
          {
             view_.selectTab(i);
             mruList_.add(thisPath);
+            if (line > 0)
+               target.navigateToLine(line);
             return;
          }
       }
 
       EditingTarget target = editingTargetSource_.getEditingTarget(fileType);
+      final int chunkSize = file.getLength() > target.getStreamingFileSize()
+                            ? DocUpdateSentinel.CHUNK_SIZE
+                            : 0;
 
       if (file.getLength() > target.getFileSizeLimit())
       {
@@ -494,13 +598,13 @@ public class Source implements InsertSourceHandler,
          confirmOpenLargeFile(file,  new Operation() {
             public void execute()
             {
-               openFileFromServer(file, fileType);
+               openFileFromServer(file, fileType, chunkSize, line);
             }
          });
       }
       else
       {
-         openFileFromServer(file, fileType);
+         openFileFromServer(file, fileType, chunkSize, line);
       }
    }
 
@@ -535,7 +639,9 @@ public class Source implements InsertSourceHandler,
    }
 
    private void openFileFromServer(final FileSystemItem file,
-                                   final TextFileType fileType)
+                                   final TextFileType fileType,
+                                   int chunkSize,
+                                   final int line)
    {
       final Command dismissProgress = globalDisplay_.showProgress(
                                                          "Opening file...");
@@ -543,6 +649,7 @@ public class Source implements InsertSourceHandler,
       server_.openDocument(
             file.getPath(),
             fileType.getTypeId(),
+            chunkSize,
             new ServerRequestCallback<SourceDocument>()
             {
                @Override
@@ -560,7 +667,9 @@ public class Source implements InsertSourceHandler,
                {
                   dismissProgress.execute();
                   mruList_.add(document.getPath());
-                  addTab(document);
+                  EditingTarget target = addTab(document);
+                  if (line > 0)
+                     target.navigateToLine(line);
                }
             });
    }
@@ -831,6 +940,11 @@ public class Source implements InsertSourceHandler,
    private static final String MODULE_SOURCE = "source";
    private static final String KEY_ACTIVETAB = "activeTab";
    private boolean initialized_;
+   // active tab from the client state, applied once a staged init has
+   // fetched the documents
+   private int restoredActiveTab_ = -1;
+   // files opened while a staged init is fetching the documents
+   private ArrayList<Command> pendingOpens_;
 
    // If positive, a new tab is about to be created
    private int newTabPending_;
@@ -42,6 +42,10 @@ public interface EditingTarget extends Widgetable,
    HashSet<AppCommand> getSupportedCommands();
 
    void focus();
+   /**
+    * Move to the start of the given (1-based) line and scroll it into view
+    */
+   void navigateToLine(int line);
    void onActivate();
    void onDeactivate();
    /**
@@ -66,4 +70,10 @@ public interface EditingTarget extends Widgetable,
     * Any bigger than this, and the user should be warned before opening
     */
    long getLargeFileSize();
+
+   /**
+    * Any bigger than this, and the file should be opened in chunks (or
+    * Long.MAX_VALUE if the target doesn't support that)
+    */
+   long getStreamingFileSize();
 }
@@ -24,6 +24,7 @@ import org.rstudio.studio.client.server.ServerError;
 import org.rstudio.studio.client.server.ServerRequestCallback;
 import org.rstudio.studio.client.server.Void;
 import org.rstudio.studio.client.workbench.commands.Commands;
+import org.rstudio.studio.client.workbench.views.data.model.DataServerOperations;
 import org.rstudio.studio.client.workbench.views.source.editors.urlcontent.UrlContentEditingTarget;
 import org.rstudio.studio.client.workbench.views.source.model.DataItem;
 import org.rstudio.studio.client.workbench.views.source.model.SourceServerOperations;
@@ -34,10 +35,12 @@ public class DataEditingTarget extends UrlContentEditingTarget
 {
    @Inject
    public DataEditingTarget(SourceServerOperations server,
+                            DataServerOperations dataServer,
                             Commands commands,
                             GlobalDisplay globalDisplay)
    {
       super(server, commands, globalDisplay);
+      dataServer_ = dataServer;
    }
 
    @Override
@@ -69,6 +72,7 @@ public class DataEditingTarget extends UrlContentEditingTarget
    {
       DataEditingTargetWidget view = new DataEditingTargetWidget(
             commands_,
+            dataServer_,
             getDataItem());
       view.setSize("100%", "100%");
       progressPanel_.setWidget(view);
@@ -148,5 +152,6 @@ public class DataEditingTarget extends UrlContentEditingTarget
             });
    }
 
+   private final DataServerOperations dataServer_;
    private SimplePanelWithProgress progressPanel_;
 }
@@ -14,13 +14,18 @@ package org.rstudio.studio.client.workbench.views.source.editors.data;
 
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.dom.client.KeyUpEvent;
+import com.google.gwt.event.dom.client.KeyUpHandler;
 import com.google.gwt.resources.client.ClientBundle;
 import com.google.gwt.resources.client.CssResource;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.ui.*;
+import org.rstudio.core.client.CommandWithArg;
 import org.rstudio.core.client.StringUtil;
 import org.rstudio.core.client.dom.IFrameElementEx;
 import org.rstudio.core.client.widget.Toolbar;
 import org.rstudio.studio.client.workbench.commands.Commands;
+import org.rstudio.studio.client.workbench.views.data.model.DataServerOperations;
 import org.rstudio.studio.client.workbench.views.source.PanelWithToolbar;
 import org.rstudio.studio.client.workbench.views.source.editors.urlcontent.UrlContentEditingTarget;
 import org.rstudio.studio.client.workbench.views.source.model.DataItem;
@@ -42,6 +47,13 @@ public class DataEditingTargetWidget extends Composite
       String statusBar();
       String statusBarDisplayed();
       String statusBarOmitted();
+
+      String filter();
+
+      String grid();
+      String gridRowNumber();
+      String gridLoading();
+      String gridMessage();
    }
 
    static
@@ -49,19 +61,26 @@ public class DataEditingTargetWidget extends Composite
       resources.styles().ensureInjected();
    }
 
-   public DataEditingTargetWidget(Commands commands, DataItem dataItem)
+   public DataEditingTargetWidget(Commands commands,
+                                  DataServerOperations server,
+                                  DataItem dataItem)
    {
       Styles styles = resources.styles();
 
       commands_ = commands;
+      contentUrl_ = dataItem.getContentUrl();
 
-      frame_ = new Frame(dataItem.getContentUrl());
-      frame_.setSize("100%", "100%");
+      Widget mainWidget;
 
-      Widget mainWidget = frame_;
-
-      if (dataItem.getDisplayedObservations() != dataItem.getTotalObservations())
+      if (dataItem.getCacheKey() != null)
+      {
+         mainWidget = createGrid(server, dataItem, styles);
+      }
+      else if (dataItem.getDisplayedObservations() != dataItem.getTotalObservations())
       {
+         frame_ = new Frame(contentUrl_);
+         frame_.setSize("100%", "100%");
+
          FlowPanel statusBar = new FlowPanel();
          statusBar.setStylePrimaryName(styles.statusBar());
          statusBar.setSize("100%", "100%");
@@ -88,6 +107,12 @@ public class DataEditingTargetWidget extends Composite
          dockPanel.setSize("100%", "100%");
          mainWidget = dockPanel;
       }
+      else
+      {
+         frame_ = new Frame(contentUrl_);
+         frame_.setSize("100%", "100%");
+         mainWidget = frame_;
+      }
 
       PanelWithToolbar panel = new PanelWithToolbar(createToolbar(dataItem,
                                                                   styles),
@@ -97,6 +122,70 @@ public class DataEditingTargetWidget extends Composite
 
    }
 
+   private Widget createGrid(DataServerOperations server,
+                             final DataItem dataItem,
+                             Styles styles)
+   {
+      final Label rowCount = new Label();
+      rowCount.addStyleName(styles.statusBarDisplayed());
+      FlowPanel statusBar = new FlowPanel();
+      statusBar.setStylePrimaryName(styles.statusBar());
+      statusBar.setSize("100%", "100%");
+      statusBar.add(rowCount);
+
+      grid_ = new DataViewGrid(server,
+                               dataItem.getCacheKey(),
+                               dataItem.getTotalObservations(),
+                               styles,
+                               new CommandWithArg<Integer>()
+      {
+         public void execute(Integer rows)
+         {
+            String text = StringUtil.formatGeneralNumber(rows) + " rows";
+            if (rows != dataItem.getTotalObservations())
+            {
+               text += " (filtered from " +
+                       StringUtil.formatGeneralNumber(
+                             dataItem.getTotalObservations()) + ")";
+            }
+            rowCount.setText(text);
+         }
+      });
+      grid_.setSize("100%", "100%");
+
+      DockLayoutPanel dockPanel = new DockLayoutPanel(Unit.PX);
+      dockPanel.addSouth(statusBar, 20);
+      dockPanel.add(grid_);
+      dockPanel.setSize("100%", "100%");
+      return dockPanel;
+   }
+
+   private Widget createFilter(Styles styles)
+   {
+      final TextBox filter = new TextBox();
+      filter.addStyleName(styles.filter());
+      filter.setTitle("Filter rows");
+
+      // wait for a pause in typing before filtering
+      final Timer filterTimer = new Timer()
+      {
+         @Override
+         public void run()
+         {
+            grid_.setFilter(filter.getText().trim());
+         }
+      };
+      filter.addKeyUpHandler(new KeyUpHandler()
+      {
+         public void onKeyUp(KeyUpEvent event)
+         {
+            filterTimer.schedule(FILTER_DELAY_MS);
+         }
+      });
+
+      return filter;
+   }
+
    private Toolbar createToolbar(DataItem dataItem, Styles styles)
    {
       Label description = new Label(
@@ -112,7 +201,10 @@ public class DataEditingTargetWidget extends Composite
                   commands_.printSourceDoc().createToolbarButton(),
                   commands_.popoutDoc().createToolbarButton()
             },
-            new Widget[] {
+            grid_ != null ? new Widget[] {
+                  createFilter(styles),
+                  description
+            } : new Widget[] {
                   description
             });
       return toolbar;
@@ -120,15 +212,46 @@ public class DataEditingTargetWidget extends Composite
 
    public void print()
    {
+      if (frame_ == null)
+      {
+         // the grid can't be printed, so print the head of the data that
+         // was rendered by the server instead
+         frame_ = new Frame();
+         frame_.setSize("0px", "0px");
+         frame_.setVisible(false);
+         RootPanel.get().add(frame_);
+         printWhenLoaded((IFrameElementEx) frame_.getElement().cast());
+         frame_.setUrl(contentUrl_);
+         return;
+      }
+
       IFrameElementEx frameEl = (IFrameElementEx) frame_.getElement().cast();
       frameEl.getContentWindow().print();
    }
 
+   private native void printWhenLoaded(IFrameElementEx frame) /*-{
+      frame.onload = function() {
+         frame.contentWindow.print();
+      };
+   }-*/;
+
+   @Override
+   protected void onUnload()
+   {
+      if (grid_ != null && frame_ != null)
+         frame_.removeFromParent();
+      super.onUnload();
+   }
+
    public Widget toWidget()
    {
       return this;
    }
 
    private final Commands commands_;
+   private final String contentUrl_;
    private Frame frame_;
+   private DataViewGrid grid_;
+
+   private static final int FILTER_DELAY_MS = 400;
 }
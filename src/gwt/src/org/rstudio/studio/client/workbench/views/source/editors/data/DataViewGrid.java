@@ -0,0 +1,332 @@
+/*
+ * DataViewGrid.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.data;
+
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style.Position;
+import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
+import com.google.gwt.user.client.ui.Composite;
+import com.google.gwt.user.client.ui.FlowPanel;
+import com.google.gwt.user.client.ui.HTML;
+import com.google.gwt.user.client.ui.RequiresResize;
+import com.google.gwt.user.client.ui.ScrollPanel;
+import org.rstudio.core.client.CommandWithArg;
+import org.rstudio.core.client.dom.DomUtils;
+import org.rstudio.studio.client.workbench.views.data.model.DataServerOperations;
+import org.rstudio.studio.client.workbench.views.data.model.DataViewRows;
+import org.rstudio.studio.client.workbench.views.source.editors.data.DataEditingTargetWidget.Styles;
+
+/**
+ * Displays all of the rows of a data view, rendering only the rows which
+ * are scrolled into view and fetching them a page at a time as they're
+ * needed. Clicking a column header sorts by that column; both sorting and
+ * filtering are done by the server.
+ *
+ * The rendered rows (and the column headers) are positioned at the top of
+ * the viewport, and a spacer gives the content the height of all of the
+ * rows. Scroll positions are scaled to rows, so the spacer never needs to
+ * be taller than MAX_CONTENT_HEIGHT however many rows there are.
+ */
+public class DataViewGrid extends Composite
+      implements RequiresResize, DataViewPageCache.Observer
+{
+   public DataViewGrid(DataServerOperations server,
+                       String cacheKey,
+                       int totalRows,
+                       Styles styles,
+                       CommandWithArg<Integer> onRowCountChanged)
+   {
+      styles_ = styles;
+      onRowCountChanged_ = onRowCountChanged;
+      cache_ = new DataViewPageCache(server, cacheKey, this);
+
+      rows_ = new HTML();
+      rows_.setStylePrimaryName(styles.grid());
+      rows_.getElement().getStyle().setPosition(Position.ABSOLUTE);
+      rows_.getElement().getStyle().setLeft(0, Unit.PX);
+      rows_.addClickHandler(new ClickHandler()
+      {
+         public void onClick(ClickEvent event)
+         {
+            Element target = Element.as(event.getNativeEvent().getEventTarget());
+            for (; target != null; target = target.getParentElement())
+            {
+               String column = target.getAttribute(COLUMN_ATTRIBUTE);
+               if (column != null && column.length() > 0)
+               {
+                  sortBy(Integer.parseInt(column));
+                  return;
+               }
+            }
+         }
+      });
+
+      content_ = new FlowPanel();
+      content_.getElement().getStyle().setPosition(Position.RELATIVE);
+      content_.add(rows_);
+
+      scrollPanel_ = new ScrollPanel(content_);
+      scrollPanel_.setSize("100%", "100%");
+      scrollPanel_.addScrollHandler(new ScrollHandler()
+      {
+         public void onScroll(ScrollEvent event)
+         {
+            scheduleRender();
+         }
+      });
+
+      initWidget(scrollPanel_);
+
+      setTotalRows(totalRows);
+   }
+
+   public void setFilter(String filter)
+   {
+      if (filter.equals(filter_))
+         return;
+
+      filter_ = filter;
+      reorder(cache_.getSortColumn(), cache_.isSortAscending());
+   }
+
+   public void onResize()
+   {
+      scheduleRender();
+   }
+
+   @Override
+   protected void onLoad()
+   {
+      super.onLoad();
+      scheduleRender();
+   }
+
+   public void onPageLoaded(DataViewRows rows)
+   {
+      errorMessage_ = null;
+
+      if (columnNames_ == null)
+      {
+         columnNames_ = rows.getColumnNames();
+         content_.setWidth(getTableWidth() + "px");
+      }
+
+      if (rows.getTotalRows() != totalRows_)
+         setTotalRows(rows.getTotalRows());
+
+      int page = cache_.getPage(rows.getStartRow());
+      if (page >= cache_.getPage(renderFirst_) &&
+          page <= cache_.getPage(Math.max(renderFirst_, renderLast_ - 1)))
+      {
+         scheduleRender();
+      }
+   }
+
+   public void onError(String message)
+   {
+      errorMessage_ = message;
+      scheduleRender();
+   }
+
+   private void sortBy(int column)
+   {
+      if (column == cache_.getSortColumn())
+         reorder(column, !cache_.isSortAscending());
+      else
+         reorder(column, true);
+   }
+
+   private void reorder(int sortColumn, boolean sortAscending)
+   {
+      cache_.setOrder(sortColumn, sortAscending, filter_);
+      errorMessage_ = null;
+      scrollPanel_.setScrollPosition(0);
+      scheduleRender();
+   }
+
+   private void setTotalRows(int totalRows)
+   {
+      totalRows_ = totalRows;
+      contentHeight_ = (int) Math.min((totalRows + 1L) * ROW_HEIGHT,
+                                      MAX_CONTENT_HEIGHT);
+      content_.setHeight(contentHeight_ + "px");
+      onRowCountChanged_.execute(totalRows);
+   }
+
+   private void scheduleRender()
+   {
+      if (renderPending_)
+         return;
+
+      renderPending_ = true;
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
+      {
+         public void execute()
+         {
+            renderPending_ = false;
+            render();
+         }
+      });
+   }
+
+   private void render()
+   {
+      int viewportHeight = scrollPanel_.getOffsetHeight();
+      if (viewportHeight <= 0)
+         return; // not visible; we'll render once we're resized
+
+      // map the scroll position onto the range of first rows
+      int visibleRows = viewportHeight / ROW_HEIGHT; // includes the header
+      int maxFirst = Math.max(0, totalRows_ - visibleRows + 1);
+      int scrollTop = scrollPanel_.getScrollPosition();
+      int scrollRange = contentHeight_ - viewportHeight;
+      int first = scrollRange <= 0
+                  ? 0
+                  : (int) Math.round((double) scrollTop / scrollRange * maxFirst);
+      first = Math.min(first, maxFirst);
+      int last = Math.min(totalRows_, first + visibleRows);
+
+      renderFirst_ = first;
+      renderLast_ = last;
+
+      StringBuilder html = new StringBuilder();
+      if (errorMessage_ != null)
+      {
+         html.append("<div class=\"" + styles_.gridMessage() + "\">")
+             .append(DomUtils.textToHtml(errorMessage_))
+             .append("</div>");
+      }
+      else if (columnNames_ == null)
+      {
+         // we don't know the columns until the first page arrives
+         cache_.get(cache_.getPage(first));
+         html.append("<div class=\"" + styles_.gridMessage() + "\">")
+             .append("Loading...")
+             .append("</div>");
+      }
+      else
+      {
+         renderTable(html, first, last);
+
+         // fetch the neighbouring pages before they're scrolled into view
+         if (first > 0)
+            cache_.request(cache_.getPage(first - 1));
+         if (last < totalRows_)
+            cache_.request(cache_.getPage(last));
+      }
+
+      rows_.setHTML(html.toString());
+      rows_.getElement().getStyle().setTop(scrollTop, Unit.PX);
+   }
+
+   private void renderTable(StringBuilder html, int first, int last)
+   {
+      int columns = columnNames_.length();
+
+      html.append("<table style=\"width: " + getTableWidth() + "px\">");
+      html.append("<colgroup><col style=\"width: " + ROW_NUMBER_WIDTH + "px\">");
+      for (int col = 0; col < columns; col++)
+         html.append("<col style=\"width: " + COLUMN_WIDTH + "px\">");
+      html.append("</colgroup>");
+
+      html.append("<thead><tr><th class=\"" + styles_.gridRowNumber() + "\">")
+          .append("&nbsp;</th>");
+      for (int col = 0; col < columns; col++)
+      {
+         html.append("<th " + COLUMN_ATTRIBUTE + "=\"" + col + "\">")
+             .append(DomUtils.textToHtml(columnNames_.get(col)));
+         if (col == cache_.getSortColumn())
+            html.append(cache_.isSortAscending() ? " \u25B2" : " \u25BC");
+         html.append("</th>");
+      }
+      html.append("</tr></thead><tbody>");
+
+      DataViewRows page = null;
+      JsArrayInteger rowNumbers = null;
+      JsArrayString[] values = new JsArrayString[columns];
+      for (int row = first; row < last; row++)
+      {
+         if (page == null || row - page.getStartRow() >= PAGE_SIZE)
+         {
+            page = cache_.get(cache_.getPage(row));
+            if (page != null)
+            {
+               rowNumbers = page.getRowNumbers();
+               for (int col = 0; col < columns; col++)
+                  values[col] = page.getColumn(col);
+            }
+         }
+
+         int index = page != null ? row - page.getStartRow() : -1;
+         if (index < 0 || index >= rowNumbers.length())
+         {
+            // not loaded yet
+            page = null;
+            html.append("<tr class=\"" + styles_.gridLoading() + "\">")
+                .append("<td colspan=\"" + (columns + 1) + "\">&nbsp;</td>")
+                .append("</tr>");
+            continue;
+         }
+
+         html.append("<tr><td class=\"" + styles_.gridRowNumber() + "\">")
+             .append(rowNumbers.get(index))
+             .append("</td>");
+         for (int col = 0; col < columns; col++)
+         {
+            html.append("<td>")
+                .append(DomUtils.textToHtml(values[col].get(index)))
+                .append("</td>");
+         }
+         html.append("</tr>");
+      }
+
+      html.append("</tbody></table>");
+   }
+
+   private int getTableWidth()
+   {
+      return ROW_NUMBER_WIDTH + COLUMN_WIDTH * columnNames_.length();
+   }
+
+   private final Styles styles_;
+   private final CommandWithArg<Integer> onRowCountChanged_;
+   private final DataViewPageCache cache_;
+   private final ScrollPanel scrollPanel_;
+   private final FlowPanel content_;
+   private final HTML rows_;
+
+   private String filter_ = "";
+   private JsArrayString columnNames_;
+   private String errorMessage_;
+   private int totalRows_;
+   private int contentHeight_;
+   private int renderFirst_;
+   private int renderLast_;
+   private boolean renderPending_;
+
+   private static final String COLUMN_ATTRIBUTE = "column";
+   private static final int PAGE_SIZE = DataViewPageCache.PAGE_SIZE;
+   private static final int ROW_HEIGHT = 20;
+   private static final int ROW_NUMBER_WIDTH = 60;
+   private static final int COLUMN_WIDTH = 120;
+   // well within the maximum element height of all browsers
+   private static final int MAX_CONTENT_HEIGHT = 1000000;
+}
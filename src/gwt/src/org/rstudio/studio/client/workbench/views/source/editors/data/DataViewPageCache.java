@@ -0,0 +1,153 @@
+/*
+ * DataViewPageCache.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.data;
+
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.workbench.views.data.model.DataServerOperations;
+import org.rstudio.studio.client.workbench.views.data.model.DataViewRows;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Pages of rows of a data view, fetched from the server on demand. The
+ * least recently used pages are evicted once there are more than MAX_PAGES.
+ * Changing the sort order or filter discards all pages (responses to
+ * requests made before the change are ignored).
+ */
+public class DataViewPageCache
+{
+   public interface Observer
+   {
+      void onPageLoaded(DataViewRows rows);
+      void onError(String message);
+   }
+
+   public DataViewPageCache(DataServerOperations server,
+                            String cacheKey,
+                            Observer observer)
+   {
+      server_ = server;
+      cacheKey_ = cacheKey;
+      observer_ = observer;
+   }
+
+   public void setOrder(int sortColumn, boolean sortAscending, String filter)
+   {
+      sortColumn_ = sortColumn;
+      sortAscending_ = sortAscending;
+      filter_ = filter;
+      generation_++;
+      pages_.clear();
+      requested_.clear();
+   }
+
+   public int getSortColumn()
+   {
+      return sortColumn_;
+   }
+
+   public boolean isSortAscending()
+   {
+      return sortAscending_;
+   }
+
+   public int getPage(int row)
+   {
+      return row / PAGE_SIZE;
+   }
+
+   /**
+    * @return The page if it's loaded, otherwise null (in which case it's
+    * requested, and the observer is notified once it has loaded)
+    */
+   public DataViewRows get(int page)
+   {
+      DataViewRows rows = pages_.get(page);
+      if (rows == null)
+         request(page);
+      return rows;
+   }
+
+   /**
+    * Requests the page (if it isn't already loaded or being loaded)
+    * without marking it as recently used
+    */
+   public void request(final int page)
+   {
+      if (pages_.containsKey(page) || requested_.contains(page))
+         return;
+
+      requested_.add(page);
+      final int generation = generation_;
+      server_.getDataViewRows(cacheKey_,
+                              page * PAGE_SIZE,
+                              PAGE_SIZE,
+                              sortColumn_,
+                              sortAscending_,
+                              filter_,
+                              new ServerRequestCallback<DataViewRows>()
+      {
+         @Override
+         public void onResponseReceived(DataViewRows rows)
+         {
+            if (generation != generation_)
+               return;
+
+            requested_.remove(page);
+            put(page, rows);
+            observer_.onPageLoaded(rows);
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            if (generation != generation_)
+               return;
+
+            requested_.remove(page);
+            observer_.onError(error.getUserMessage());
+         }
+      });
+   }
+
+   private void put(int page, DataViewRows rows)
+   {
+      pages_.put(page, rows);
+      while (pages_.size() > MAX_PAGES)
+      {
+         Iterator<Integer> it = pages_.keySet().iterator();
+         it.next();
+         it.remove();
+      }
+   }
+
+   private final DataServerOperations server_;
+   private final String cacheKey_;
+   private final Observer observer_;
+
+   private int sortColumn_ = -1;
+   private boolean sortAscending_ = true;
+   private String filter_ = "";
+   private int generation_;
+
+   // loaded pages, least recently used first
+   private final LinkedHashMap<Integer, DataViewRows> pages_ =
+                     new LinkedHashMap<Integer, DataViewRows>(16, 0.75f, true);
+   private final HashSet<Integer> requested_ = new HashSet<Integer>();
+
+   public static final int PAGE_SIZE = 100;
+   private static final int MAX_PAGES = 20;
+}
@@ -31,6 +31,7 @@ import org.rstudio.core.client.ExternalJavaScriptLoader;
 import org.rstudio.core.client.ExternalJavaScriptLoader.Callback;
 import org.rstudio.core.client.Rectangle;
 import org.rstudio.core.client.dom.IFrameElementEx;
+import org.rstudio.core.client.patch.TextPatch;
 import org.rstudio.core.client.regex.Match;
 import org.rstudio.core.client.regex.Pattern;
 import org.rstudio.core.client.widget.FontSizer.Size;
@@ -169,8 +170,45 @@ public class AceEditor implements DocDisplay, InputEditorDisplay
                                                                       false);
    }
 
+   public String getCode(int start, int end)
+   {
+      return widget_.getEditor().getTextRange(start, end);
+   }
+
+   public int getCodeLength()
+   {
+      return widget_.getEditor().getTextLength();
+   }
+
+   // appended code isn't part of the undo history (it's the document being
+   // loaded rather than an edit) and is appended even if read-only
+   public void appendCode(String code)
+   {
+      EditSession session = getSession();
+      int lastRow = session.getLength() - 1;
+      session.insertWithoutUndo(
+            Position.create(lastRow, session.getLine(lastRow).length()),
+            code);
+   }
+
+   // Ace's read-only mode only applies to the user's commands, so edits
+   // made through this class are also skipped while read-only
+   public void setReadOnly(boolean readOnly)
+   {
+      readOnly_ = readOnly;
+      widget_.getEditor().setReadOnly(readOnly);
+   }
+
+   public boolean isReadOnly()
+   {
+      return readOnly_;
+   }
+
    public void insertCode(String code, boolean blockMode)
    {
+      if (readOnly_)
+         return;
+
       // TODO: implement block mode
       getSession().replace(
             getSession().getSelection().getRange(), code);
@@ -350,6 +388,9 @@ public class AceEditor implements DocDisplay, InputEditorDisplay
 
    public void replaceCode(String code)
    {
+      if (readOnly_)
+         return;
+
       int endRow, endCol;
 
       endRow = getSession().getLength() - 1;
@@ -370,6 +411,9 @@ public class AceEditor implements DocDisplay, InputEditorDisplay
 
    public void replaceSelection(String code)
    {
+      if (readOnly_)
+         return;
+
       Range selRange = getSession().getSelection().getRange();
       Position position = getSession().replace(selRange, code);
       Range range = Range.fromPoints(selRange.getStart(), position);
@@ -396,6 +440,11 @@ public class AceEditor implements DocDisplay, InputEditorDisplay
       return new EventBasedChangeTracker<Void>(this);
    }
 
+   public HandlerRegistration recordChanges(TextPatch patch)
+   {
+      return widget_.getEditor().recordChanges(patch);
+   }
+
    public void fitSelectionToLines(boolean expand)
    {
       Range range = getSession().getSelection().getRange();
@@ -499,6 +548,11 @@ public class AceEditor implements DocDisplay, InputEditorDisplay
       widget_.getEditor().getRenderer().setPrintMarginColumn(column);
    }
 
+   public void navigateToLine(int line)
+   {
+      widget_.getEditor().gotoLine(line);
+   }
+
    public void setFontSize(Size size)
    {
       // No change needed--the AceEditorWidget uses the "normalSize" style
@@ -558,6 +612,7 @@ public class AceEditor implements DocDisplay, InputEditorDisplay
    private CompletionManager completionManager_;
    private CodeToolsServerOperations server_;
    private TextFileType fileType_;
+   private boolean readOnly_;
 
    private static final ExternalJavaScriptLoader aceLoader_ =
          new ExternalJavaScriptLoader(AceResources.INSTANCE.acejs().getUrl());
@@ -16,6 +16,7 @@ import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.JsArrayString;
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.NativeEvent;
 import com.google.gwt.event.dom.client.*;
@@ -42,6 +43,7 @@ import org.rstudio.core.client.events.HasEnsureVisibleHandlers;
 import org.rstudio.core.client.files.FileSystemContext;
 import org.rstudio.core.client.files.FileSystemItem;
 import org.rstudio.core.client.files.FilenameTransform;
+import org.rstudio.core.client.patch.TextPatch;
 import org.rstudio.core.client.regex.Match;
 import org.rstudio.core.client.regex.Pattern;
 import org.rstudio.core.client.widget.*;
@@ -72,6 +74,7 @@ import org.rstudio.studio.client.workbench.views.source.editors.text.events.Publ
 import org.rstudio.studio.client.workbench.views.source.editors.text.events.PublishPdfHandler;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ui.PublishPdfDialog;
 import org.rstudio.studio.client.workbench.views.source.events.SourceFileSavedEvent;
+import org.rstudio.studio.client.workbench.views.source.model.AutoSaveScheduler;
 import org.rstudio.studio.client.workbench.views.source.model.CheckForExternalEditResult;
 import org.rstudio.studio.client.workbench.views.source.model.DocUpdateSentinel;
 import org.rstudio.studio.client.workbench.views.source.model.SourceDocument;
@@ -113,7 +116,11 @@ public class TextEditingTarget implements EditingTarget
 
       void setFileType(TextFileType fileType);
       String getCode();
+      String getCode(int start, int end);
+      int getCodeLength();
       void setCode(String code, boolean preserveCursorPosition);
+      void appendCode(String code);
+      void setReadOnly(boolean readOnly);
       void insertCode(String code, boolean blockMode);
       void focus();
       void print();
@@ -122,6 +129,7 @@ public class TextEditingTarget implements EditingTarget
       void replaceSelection(String code);
       boolean moveSelectionToNextLine();
       ChangeTracker getChangeTracker();
+      HandlerRegistration recordChanges(TextPatch patch);
 
       void fitSelectionToLines(boolean expand);
       int getSelectionOffset(boolean start);
@@ -139,6 +147,7 @@ public class TextEditingTarget implements EditingTarget
       void setTabSize(int tabSize);
       void setShowPrintMargin(boolean on);
       void setPrintMarginColumn(int column);
+      void navigateToLine(int line);
    }
    private class ExplicitSaveProgressIndicator implements ProgressIndicator
    {
@@ -199,7 +208,8 @@ public class TextEditingTarget implements EditingTarget
                             Session session,
                             FontSizeManager fontSizeManager,
                             DocDisplay docDisplay,
-                            UIPrefs prefs)
+                            UIPrefs prefs,
+                            AutoSaveScheduler autoSaveScheduler)
    {
       commands_ = commands;
       server_ = server;
@@ -213,6 +223,7 @@ public class TextEditingTarget implements EditingTarget
 
       docDisplay_ = docDisplay;
       prefs_ = prefs;
+      autoSaveScheduler_ = autoSaveScheduler;
       docDisplay_.addKeyDownHandler(new KeyDownHandler()
       {
          public void onKeyDown(KeyDownEvent event)
@@ -255,6 +266,7 @@ public class TextEditingTarget implements EditingTarget
             document,
             globalDisplay_.getProgressIndicator("Save File"),
             dirtyState_,
+            autoSaveScheduler_,
             events_);
 
       name_.setValue(getNameFromDocument(document, defaultNameProvider), true);
@@ -279,10 +291,14 @@ public class TextEditingTarget implements EditingTarget
       {
          public void onValueChange(ValueChangeEvent<Void> event)
          {
-            dirtyState_.setValue(true, true);
+            if (!docUpdateSentinel_.isLoading())
+               dirtyState_.setValue(true, true);
          }
       });
 
+      if (document.getNextChunkOffset() >= 0)
+         loadRemainingContents();
+
       docDisplay_.addFocusHandler(new FocusHandler()
       {
          public void onFocus(FocusEvent event)
@@ -392,12 +408,79 @@ public class TextEditingTarget implements EditingTarget
 
    public long getFileSizeLimit()
    {
-      return 5 * 1024 * 1024;
+      return 50 * 1024 * 1024;
    }
 
    public long getLargeFileSize()
    {
-      return Desktop.isDesktop() ? 1024 * 1024 : 512 * 1024;
+      return Desktop.isDesktop() ? 10 * 1024 * 1024 : 5 * 1024 * 1024;
+   }
+
+   public long getStreamingFileSize()
+   {
+      return DocUpdateSentinel.CHUNK_SIZE;
+   }
+
+   /**
+    * The document was opened in chunks; the editor shows the first chunk
+    * and is read-only while the rest are appended.
+    */
+   private void loadRemainingContents()
+   {
+      docDisplay_.setReadOnly(true);
+      loadingContents_ = true;
+      docUpdateSentinel_.loadRemainingContents(new ProgressIndicator()
+      {
+         public void onProgress(String message)
+         {
+            view_.showWarningBar(message);
+         }
+
+         public void onCompleted()
+         {
+            view_.hideWarningBar();
+            docDisplay_.setReadOnly(false);
+            onContentsLoaded();
+         }
+
+         public void onError(String message)
+         {
+            view_.showWarningBar("The file couldn't be loaded completely " +
+                                 "and is read-only: " + message);
+            onContentsLoaded();
+         }
+      });
+   }
+
+   private void onContentsLoaded()
+   {
+      loadingContents_ = false;
+      if (pendingLine_ > 0)
+      {
+         docDisplay_.navigateToLine(pendingLine_);
+         pendingLine_ = -1;
+      }
+   }
+
+   public void navigateToLine(final int line)
+   {
+      // the line may not have arrived yet if the file is still loading
+      if (loadingContents_)
+      {
+         pendingLine_ = line;
+         return;
+      }
+
+      // deferred so a newly added tab has been laid out (otherwise the
+      // editor can't tell whether the line needs to be scrolled into view)
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
+      {
+         public void execute()
+         {
+            docDisplay_.navigateToLine(line);
+            docDisplay_.focus();
+         }
+      });
    }
 
    public void insertCode(String source, boolean blockMode)
@@ -443,6 +526,7 @@ public class TextEditingTarget implements EditingTarget
       commandHandlerReg_ = commandBinder.bind(commands_, this);
 
       view_.onActivate();
+      docUpdateSentinel_.setActive(true);
    }
 
    public void onDeactivate()
@@ -451,6 +535,8 @@ public class TextEditingTarget implements EditingTarget
 
       commandHandlerReg_.removeHandler();
       commandHandlerReg_ = null;
+
+      docUpdateSentinel_.setActive(false);
    }
 
    public boolean onBeforeDismiss()
@@ -1016,6 +1102,7 @@ public class TextEditingTarget implements EditingTarget
 
    private DocDisplay docDisplay_;
    private final UIPrefs prefs_;
+   private final AutoSaveScheduler autoSaveScheduler_;
    private Display view_;
    private final Commands commands_;
    private SourceServerOperations server_;
@@ -1038,6 +1125,8 @@ public class TextEditingTarget implements EditingTarget
    private FileSystemContext fileContext_;
    private final Provider<PublishPdf> pPublishPdf_;
    private boolean ignoreDeletes_;
+   private boolean loadingContents_;
+   private int pendingLine_ = -1;
 
    // Allows external edit checks to supercede one another
    private final Invalidation externalEditCheckInvalidation_ =
@@ -155,7 +155,7 @@ public class TextEditingTargetWidget
       if (findReplaceBar_ == null)
       {
          findReplaceBar_ = new FindReplaceBar();
-         new FindReplace((AceEditor)editor_,
+         findReplace_ = new FindReplace((AceEditor)editor_,
                          findReplaceBar_,
                          RStudioGinjector.INSTANCE.getGlobalDisplay());
          panel_.insertNorth(findReplaceBar_,
@@ -178,6 +178,8 @@ public class TextEditingTargetWidget
    {
       if (findReplaceBar_ != null)
       {
+         findReplace_.detach();
+         findReplace_ = null;
          panel_.remove(findReplaceBar_);
          findReplaceBar_ = null;
          findReplaceButton_.setLeftImage(FindReplaceBar.getFindIcon());
@@ -211,6 +213,7 @@ public class TextEditingTargetWidget
    private PanelWithToolbar panel_;
    private WarningBar warningBar_;
    private FindReplaceBar findReplaceBar_;
+   private FindReplace findReplace_;
    private ToolbarButton findReplaceButton_;
    private ToolbarButton codeTransform_;
 }
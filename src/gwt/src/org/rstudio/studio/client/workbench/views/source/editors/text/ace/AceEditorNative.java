@@ -18,6 +18,7 @@ import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.event.shared.HasHandlers;
 import com.google.gwt.user.client.Command;
 import org.rstudio.core.client.CommandWithArg;
+import org.rstudio.core.client.patch.TextPatch;
 
 import java.util.LinkedList;
 
@@ -53,6 +54,10 @@ public class AceEditorNative extends JavaScriptObject {
       this.setHighlightSelectedWord(highlight);
    }-*/;
 
+   public native final void gotoLine(int lineNumber) /*-{
+      this.gotoLine(lineNumber);
+   }-*/;
+
    public native final void focus() /*-{
       this.focus();
    }-*/;
@@ -61,6 +66,10 @@ public class AceEditorNative extends JavaScriptObject {
       this.blur();
    }-*/;
 
+   public native final void setReadOnly(boolean readOnly) /*-{
+      this.setReadOnly(readOnly);
+   }-*/;
+
    public native final void setKeyboardHandler(KeyboardHandler keyboardHandler) /*-{
       this.setKeyboardHandler(keyboardHandler);
    }-*/;
@@ -72,6 +81,121 @@ public class AceEditorNative extends JavaScriptObject {
               }));
    }-*/;
 
+   /**
+    * Reports each change to the document to the patch, converting Ace's
+    * row/column deltas into character offsets. The offset of the most
+    * recently changed row is cached, since successive edits are usually
+    * on the same or nearby rows. Recording stops when the returned
+    * registration is removed.
+    */
+   public final HandlerRegistration recordChanges(TextPatch patch)
+   {
+      final JavaScriptObject listener = addPatchListener(patch);
+      return new HandlerRegistration()
+      {
+         public void removeHandler()
+         {
+            removeChangeListener(listener);
+         }
+      };
+   }
+
+   private native JavaScriptObject addPatchListener(TextPatch patch) /*-{
+      var doc = this.getSession().getDocument();
+      var cacheRow = 0;
+      var cacheOffset = 0;
+
+      var rowOffset = function(row) {
+         // text before the changed row is unaffected by the change, so
+         // the cache is only valid for rows at or after the cached row
+         var nl = doc.getNewLineCharacter().length;
+         if (row < cacheRow) {
+            cacheRow = 0;
+            cacheOffset = 0;
+         }
+         for (; cacheRow < row; cacheRow++)
+            cacheOffset += doc.getLine(cacheRow).length + nl;
+         return cacheOffset;
+      };
+
+      var linesLength = function(lines) {
+         var nl = doc.getNewLineCharacter().length;
+         var length = 0;
+         for (var i = 0; i < lines.length; i++)
+            length += lines[i].length + nl;
+         return length;
+      };
+
+      var listener = $entry(function(e) {
+         var delta = e.data;
+         var start = delta.range.start;
+         var offset = rowOffset(start.row) + start.column;
+         switch (delta.action) {
+            case "insertText":
+               patch.@org.rstudio.core.client.patch.TextPatch::replace(III)(
+                     offset, 0, delta.text.length);
+               break;
+            case "insertLines":
+               patch.@org.rstudio.core.client.patch.TextPatch::replace(III)(
+                     offset, 0, linesLength(delta.lines));
+               break;
+            case "removeText":
+               patch.@org.rstudio.core.client.patch.TextPatch::replace(III)(
+                     offset, delta.text.length, 0);
+               break;
+            case "removeLines":
+               patch.@org.rstudio.core.client.patch.TextPatch::replace(III)(
+                     offset, linesLength(delta.lines), 0);
+               break;
+         }
+      });
+      this.getSession().on("change", listener);
+      return listener;
+   }-*/;
+
+   private native void removeChangeListener(JavaScriptObject listener) /*-{
+      this.getSession().removeEventListener("change", listener);
+   }-*/;
+
+   /**
+    * Returns the text between two character offsets, without building the
+    * text of the whole document.
+    */
+   public native final String getTextRange(int start, int end) /*-{
+      var doc = this.getSession().getDocument();
+      var nl = doc.getNewLineCharacter().length;
+      var rows = doc.getLength();
+
+      var row = 0;
+      var rowOffset = 0;
+      var toPosition = function(offset) {
+         for (; row < rows - 1; row++) {
+            var next = rowOffset + doc.getLine(row).length + nl;
+            if (next > offset)
+               break;
+            rowOffset = next;
+         }
+         return {row: row, column: offset - rowOffset};
+      };
+
+      // positions are found in order, so a single pass over the rows
+      var startPos = toPosition(start);
+      var endPos = toPosition(end);
+      return doc.getTextRange({start: startPos, end: endPos});
+   }-*/;
+
+   /**
+    * Returns the length of the document's text, without building it.
+    */
+   public native final int getTextLength() /*-{
+      var doc = this.getSession().getDocument();
+      var rows = doc.getLength();
+      var length = (rows - 1) * doc.getNewLineCharacter().length;
+      for (var row = 0; row < rows; row++)
+         length += doc.getLine(row).length;
+      return length;
+   }-*/;
+
    public final HandlerRegistration delegateEventsTo(HasHandlers handlers)
    {
       final LinkedList<JavaScriptObject> handles = new LinkedList<JavaScriptObject>();
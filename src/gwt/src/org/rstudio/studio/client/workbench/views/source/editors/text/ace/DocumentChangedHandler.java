@@ -0,0 +1,24 @@
+/*
+ * DocumentChangedHandler.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.text.ace;
+
+/**
+ * Receives the rows touched by each change to an EditSession's document.
+ * For an insert, the text that was on startRow now spans startRow through
+ * endRow; for a removal, the text that spanned startRow through endRow now
+ * fits on startRow.
+ */
+public interface DocumentChangedHandler
+{
+   void onDocumentChanged(boolean insert, int startRow, int endRow);
+}
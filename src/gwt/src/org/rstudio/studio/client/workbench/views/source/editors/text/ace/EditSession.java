@@ -30,6 +30,34 @@ public class EditSession extends JavaScriptObject
       this.insert(position, text);
    }-*/;
 
+   /**
+    * Inserts text without recording it in the undo history, by detaching
+    * the undo manager for the duration of the insert. Detaching discards
+    * edits which haven't yet been passed to the undo manager (it is sent
+    * them in a deferred batch) so this is only for use while the user 
+    * can't edit (e.g. while the document is being loaded).
+    */
+   public native final void insertWithoutUndo(Position position,
+                                              String text) /*-{
+      var undoManager = this.getUndoManager();
+      if (typeof(undoManager.execute) != 'function')
+      {
+         // no undo manager attached (only the default no-op one)
+         this.insert(position, text);
+         return;
+      }
+
+      this.setUndoManager(null);
+      try
+      {
+         this.insert(position, text);
+      }
+      finally
+      {
+         this.setUndoManager(undoManager);
+      }
+   }-*/;
+
    public native final Selection getSelection() /*-{
       return this.getSelection();
    }-*/;
@@ -65,6 +93,30 @@ public class EditSession extends JavaScriptObject
       return this.getLength();
    }-*/;
 
+   /**
+    * Returns the listener, which must be passed to removeChangedHandler
+    */
+   public native final JavaScriptObject addChangedHandler(
+                                       DocumentChangedHandler handler) /*-{
+      var listener = $entry(function(e) {
+         var delta = e.data;
+         var insert = delta.action == "insertText" ||
+                      delta.action == "insertLines";
+         handler.@org.rstudio.studio.client.workbench.views.source.editors.text.ace.DocumentChangedHandler::onDocumentChanged(ZII)(
+               insert, delta.range.start.row, delta.range.end.row);
+      });
+      this.on("change", listener);
+      return listener;
+   }-*/;
+
+   public native final void removeChangedHandler(JavaScriptObject listener) /*-{
+      this.removeEventListener("change", listener);
+   }-*/;
+
+   public native final void removeMarker(int markerId) /*-{
+      this.removeMarker(markerId);
+   }-*/;
+
    public native final void setEditorMode(String parserName,
                                           boolean suppressHighlighting) /*-{
       var Mode = $wnd.require(parserName).Mode;
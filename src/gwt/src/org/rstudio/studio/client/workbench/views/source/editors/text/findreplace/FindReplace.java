@@ -15,9 +15,9 @@ package org.rstudio.studio.client.workbench.views.source.editors.text.findreplac
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
 import com.google.gwt.event.dom.client.HasClickHandlers;
+import com.google.gwt.event.logical.shared.ValueChangeEvent;
+import com.google.gwt.event.logical.shared.ValueChangeHandler;
 import com.google.gwt.user.client.ui.HasValue;
-import org.rstudio.core.client.regex.Match;
-import org.rstudio.core.client.regex.Pattern;
 import org.rstudio.studio.client.common.GlobalDisplay;
 import org.rstudio.studio.client.workbench.views.source.editors.text.AceEditor;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Range;
@@ -37,6 +37,8 @@ public class FindReplace
       HasClickHandlers getFindPrevButton();
       HasClickHandlers getReplace();
       HasClickHandlers getReplaceAll();
+      void setMatchCount(String matchCount);
+      String getMatchHighlightClass();
    }
 
    public FindReplace(AceEditor editor,
@@ -47,6 +49,34 @@ public class FindReplace
       display_ = display;
       globalDisplay_ = globalDisplay;
 
+      matchIndex_ = new MatchIndex(editor.getSession(),
+                                   display.getMatchHighlightClass(),
+                                   new MatchIndex.Observer()
+      {
+         public void onMatchesChanged()
+         {
+            updateMatchCount();
+         }
+      });
+
+      display.getFindValue().addValueChangeHandler(
+                                             new ValueChangeHandler<String>()
+      {
+         public void onValueChange(ValueChangeEvent<String> event)
+         {
+            updateQuery();
+         }
+      });
+
+      display.getCaseSensitive().addValueChangeHandler(
+                                             new ValueChangeHandler<Boolean>()
+      {
+         public void onValueChange(ValueChangeEvent<Boolean> event)
+         {
+            updateQuery();
+         }
+      });
+
       addClickHandler(display.getFindButton(), new ClickHandler()
       {
          public void onClick(ClickEvent event)
@@ -89,6 +119,37 @@ public class FindReplace
       });
    }
 
+   /**
+    * Remove match highlights and stop tracking document changes
+    */
+   public void detach()
+   {
+      matchIndex_.detach();
+   }
+
+   private void updateQuery()
+   {
+      matchIndex_.setQuery(display_.getFindValue().getValue(),
+                           display_.getCaseSensitive().getValue());
+   }
+
+   private void updateMatchCount()
+   {
+      if (!matchIndex_.isEnabled())
+      {
+         display_.setMatchCount("");
+         return;
+      }
+
+      int count = matchIndex_.getMatchCount();
+      int number = matchIndex_.getMatchNumber(
+                     editor_.getSession().getSelection().getRange());
+      if (number > 0)
+         display_.setMatchCount(number + " of " + count);
+      else
+         display_.setMatchCount(count == 1 ? "1 match" : count + " matches");
+   }
+
    private void addClickHandler(HasClickHandlers hasClickHandlers,
                                 ClickHandler clickHandler)
    {
@@ -106,15 +167,26 @@ public class FindReplace
       
       boolean ignoreCase = !display_.getCaseSensitive().getValue();
 
-      Search search = Search.create(searchString,
-                                    findType != FindType.Forward,
-                                    true,
-                                    !ignoreCase,
-                                    false,
-                                    false,
-                                    false);
+      Range range;
+      updateQuery();
+      if (matchIndex_.isEnabled())
+      {
+         range = matchIndex_.find(
+                        editor_.getSession().getSelection().getRange(),
+                        findType != FindType.Forward);
+      }
+      else
+      {
+         Search search = Search.create(searchString,
+                                       findType != FindType.Forward,
+                                       true,
+                                       !ignoreCase,
+                                       false,
+                                       false,
+                                       false);
 
-      Range range = search.find(editor_.getSession());
+         range = search.find(editor_.getSession());
+      }
 
       if (range == null)
       {
@@ -126,12 +198,16 @@ public class FindReplace
       else
       {
          editor_.getSession().getSelection().setSelectionRange(range);
+         updateMatchCount();
          return true;
       }
    }
 
    private void replace()
    {
+      if (isReadOnly())
+         return;
+
       String searchString = display_.getFindValue().getValue();
       if (searchString.length() == 0)
          return;
@@ -149,45 +225,38 @@ public class FindReplace
 
    private void replaceAll()
    {
-      String code = editor_.getCode();
-      boolean caseSensitive = display_.getCaseSensitive().getValue();
-      String find = display_.getFindValue().getValue();
-      String repl = display_.getReplaceValue().getValue();
+      if (isReadOnly())
+         return;
 
-      int occurrences = 0;
-      if (find.length() > 0)
-      {
-         String flags = caseSensitive ? "g" : "ig";
-         Pattern pattern = Pattern.create(Pattern.escape(find), flags);
-         StringBuilder result = new StringBuilder();
-
-         int pos = 0; // pointer into original string
-         for (Match m = pattern.match(code, 0);
-              m != null;
-              m = m.nextMatch())
-         {
-            occurrences++;
+      String repl = display_.getReplaceValue().getValue();
 
-            // Add everything between the end of the last match, and this one
-            int index = m.getIndex();
-            result.append(code, pos, index);
+      // only the matched ranges are edited (rather than replacing the
+      // entire document) so the rest of the document, the undo history,
+      // and the cursor are left alone
+      updateQuery();
+      int occurrences = matchIndex_.replaceAll(repl);
 
-            // Add the replacement value
-            result.append(repl);
+      globalDisplay_.showMessage(GlobalDisplay.MSG_INFO,
+                                 "Find/Replace",
+                                 occurrences + " occurrences replaced.");
+   }
 
-            // Point to the end of this match
-            pos = index + m.getValue().length();
-         }
-         result.append(code, pos, code.length());
+   // the matches are replaced in the edit session directly (bypassing the
+   // editor's read-only check), and the document can't be edited while
+   // read-only (e.g. while it is still being loaded)
+   private boolean isReadOnly()
+   {
+      if (!editor_.isReadOnly())
+         return false;
 
-         editor_.replaceCode(result.toString());
-      }
       globalDisplay_.showMessage(GlobalDisplay.MSG_INFO,
                                  "Find/Replace",
-                                 occurrences + " occurrences replaced.");
+                                 "The document can't be edited right now.");
+      return true;
    }
 
    private final AceEditor editor_;
    private final Display display_;
    private final GlobalDisplay globalDisplay_;
+   private final MatchIndex matchIndex_;
 }
@@ -41,6 +41,8 @@ public class FindReplaceBar extends Composite implements Display, RequiresResize
    {
       String findReplaceBar();
       String closeButton();
+      String matchCount();
+      String findMatch();
    }
 
    public FindReplaceBar()
@@ -53,6 +55,8 @@ public class FindReplaceBar extends Composite implements Display, RequiresResize
       //shelf.addLeftWidget(btnFindPrev_ = new SmallButton("&lt;", true));
       shelf.addLeftWidget(btnFindNext_ = new SmallButton("Find", true));
       shelf.addLeftWidget(chkCaseSensitive_ = new CheckBox("Match case"));
+      shelf.addLeftWidget(lblMatchCount_ = new Label());
+      lblMatchCount_.setStyleName(RES.styles().matchCount());
       shelf.addLeftWidget(txtReplace_ = new FindTextBox("Replace"));
       shelf.addLeftWidget(btnReplace_ = new SmallButton("Replace"));
       shelf.addLeftWidget(btnReplaceAll_ = new SmallButton("All"));
@@ -165,6 +169,16 @@ public class FindReplaceBar extends Composite implements Display, RequiresResize
    }
 
 
+   public void setMatchCount(String matchCount)
+   {
+      lblMatchCount_.setText(matchCount);
+   }
+
+   public String getMatchHighlightClass()
+   {
+      return RES.styles().findMatch();
+   }
+
    public HasClickHandlers getCloseButton()
    {
       return btnClose_;
@@ -225,6 +239,7 @@ public class FindReplaceBar extends Composite implements Display, RequiresResize
    private SmallButton btnReplace_;
    private SmallButton btnReplaceAll_;
    private CheckBox chkCaseSensitive_;
+   private Label lblMatchCount_;
    private Button btnClose_;
    private static Resources RES = GWT.create(Resources.class);
 }
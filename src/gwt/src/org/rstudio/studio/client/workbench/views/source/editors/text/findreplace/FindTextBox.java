@@ -18,6 +18,9 @@ import com.google.gwt.dom.client.Style;
 import com.google.gwt.dom.client.Style.Position;
 import com.google.gwt.dom.client.Style.Unit;
 import com.google.gwt.event.dom.client.KeyDownHandler;
+import com.google.gwt.event.dom.client.KeyUpEvent;
+import com.google.gwt.event.dom.client.KeyUpHandler;
+import com.google.gwt.event.logical.shared.ValueChangeEvent;
 import com.google.gwt.event.logical.shared.ValueChangeHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.uibinder.client.UiBinder;
@@ -42,6 +45,21 @@ public class FindTextBox extends Composite implements HasValue<String>
       Style style = getElement().getStyle();
       style.setPosition(Position.RELATIVE);
       style.setTop(1, Unit.PX);
+
+      // fire value changes as the user types (rather than only on blur)
+      // so listeners can react to the query while it's being entered
+      textBox_.addKeyUpHandler(new KeyUpHandler()
+      {
+         public void onKeyUp(KeyUpEvent event)
+         {
+            String value = getValue();
+            if (!value.equals(lastValue_))
+            {
+               lastValue_ = value;
+               ValueChangeEvent.fire(textBox_, value);
+            }
+         }
+      });
    }
 
    public HandlerRegistration addValueChangeHandler(
@@ -85,6 +103,8 @@ public class FindTextBox extends Composite implements HasValue<String>
       textBox_.selectAll();
    }
 
+   private String lastValue_ = "";
+
    @UiField(provided=true)
    TextBox textBox_;
    @UiField
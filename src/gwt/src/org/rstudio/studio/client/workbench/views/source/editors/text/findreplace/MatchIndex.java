@@ -0,0 +1,421 @@
+/*
+ * MatchIndex.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.text.findreplace;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.DocumentChangedHandler;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.EditSession;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Position;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Range;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps the location of every match of the current (single line, literal)
+ * query in an edit session. Matches are indexed by row, so a change to the
+ * document only rescans the rows it touched. All matches are highlighted
+ * using a single marker that draws just the rows on screen.
+ */
+class MatchIndex implements DocumentChangedHandler
+{
+   public interface Observer
+   {
+      void onMatchesChanged();
+   }
+
+   public MatchIndex(EditSession session, String highlightClass,
+                     Observer observer)
+   {
+      session_ = session;
+      highlightClass_ = highlightClass;
+      observer_ = observer;
+      listener_ = session_.addChangedHandler(this);
+   }
+
+   /**
+    * Set the query to index. Empty queries and queries that span lines
+    * aren't indexed (isEnabled() returns false).
+    */
+   public void setQuery(String query, boolean caseSensitive)
+   {
+      if (query.equals(query_) && caseSensitive == caseSensitive_)
+         return;
+
+      query_ = query;
+      caseSensitive_ = caseSensitive;
+      needle_ = caseSensitive ? query : query.toLowerCase();
+      rebuild();
+   }
+
+   public boolean isEnabled()
+   {
+      return query_.length() > 0 && query_.indexOf('\n') == -1;
+   }
+
+   public int getMatchCount()
+   {
+      return count_;
+   }
+
+   /**
+    * Returns the 1-based position of the given range among all matches or
+    * 0 if the range isn't a match
+    */
+   public int getMatchNumber(Range range)
+   {
+      Position start = range.getStart();
+      Position end = range.getEnd();
+      if (start.getRow() != end.getRow() ||
+          end.getColumn() - start.getColumn() != query_.length() ||
+          start.getRow() >= rows_.size())
+      {
+         return 0;
+      }
+
+      int number = 0;
+      for (int row = 0; row < start.getRow(); row++)
+         number += matchesOnRow(row);
+
+      int[] columns = rows_.get(start.getRow());
+      if (columns != null)
+      {
+         for (int i = 0; i < columns.length; i++)
+         {
+            if (columns[i] == start.getColumn())
+               return number + i + 1;
+         }
+      }
+      return 0;
+   }
+
+   /**
+    * Returns the first match after (or before) the given range, wrapping
+    * around the end of the document, or null if there are no matches
+    */
+   public Range find(Range from, boolean backwards)
+   {
+      if (count_ == 0)
+         return null;
+
+      int rowCount = rows_.size();
+      if (!backwards)
+      {
+         Position pos = from.getEnd();
+         for (int i = 0; i <= rowCount; i++)
+         {
+            int row = (pos.getRow() + i) % rowCount;
+            int[] columns = rows_.get(row);
+            if (columns == null)
+               continue;
+            for (int column : columns)
+            {
+               if (i > 0 || column >= pos.getColumn())
+                  return matchRange(row, column);
+            }
+         }
+      }
+      else
+      {
+         Position pos = from.getStart();
+         for (int i = 0; i <= rowCount; i++)
+         {
+            int row = (pos.getRow() - i + rowCount) % rowCount;
+            int[] columns = rows_.get(row);
+            if (columns == null)
+               continue;
+            for (int j = columns.length - 1; j >= 0; j--)
+            {
+               if (i > 0 || columns[j] + query_.length() <= pos.getColumn())
+                  return matchRange(row, columns[j]);
+            }
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Replace every match. The edits are made last to first (so the ranges
+    * of the remaining matches stay valid) within a single event loop turn,
+    * which Ace records as a single undo step.
+    */
+   public int replaceAll(String replacement)
+   {
+      if (count_ == 0)
+         return 0;
+
+      int replaced = 0;
+      updating_ = true;
+      try
+      {
+         for (int row = rows_.size() - 1; row >= 0; row--)
+         {
+            int[] columns = rows_.get(row);
+            if (columns == null)
+               continue;
+            for (int i = columns.length - 1; i >= 0; i--)
+            {
+               session_.replace(matchRange(row, columns[i]), replacement);
+               replaced++;
+            }
+         }
+      }
+      finally
+      {
+         updating_ = false;
+      }
+
+      // a single line replacement leaves every row where it was so only
+      // the rows which had matches need to be rescanned
+      if (replacement.indexOf('\n') == -1)
+      {
+         for (int row = 0; row < rows_.size(); row++)
+         {
+            if (rows_.get(row) != null)
+               setRow(row, scanRow(row));
+         }
+         onIndexChanged();
+      }
+      else
+      {
+         rebuild();
+      }
+
+      return replaced;
+   }
+
+   public void detach()
+   {
+      detached_ = true;
+      session_.removeChangedHandler(listener_);
+      removeHighlights();
+   }
+
+   public void onDocumentChanged(boolean insert, int startRow, int endRow)
+   {
+      if (updating_ || !isEnabled())
+         return;
+
+      // rows are added or removed just after startRow. (the document has
+      // already changed, so the number of rows added or removed is taken
+      // from its length rather than from endRow, which for whole line
+      // changes can be one past the last row)
+      int delta = session_.getLength() - rows_.size();
+      if (insert && delta >= 0)
+      {
+         for (int i = 0; i < delta; i++)
+            rows_.add(Math.min(startRow + 1, rows_.size()), null);
+         for (int row = startRow;
+              row <= startRow + delta && row < rows_.size();
+              row++)
+         {
+            setRow(row, scanRow(row));
+         }
+      }
+      else if (!insert && delta <= 0)
+      {
+         for (int i = 0; i < -delta && startRow + 1 < rows_.size(); i++)
+         {
+            count_ -= matchesOnRow(startRow + 1);
+            rows_.remove(startRow + 1);
+         }
+         if (startRow < rows_.size())
+            setRow(startRow, scanRow(startRow));
+      }
+      else
+      {
+         rebuild();
+         return;
+      }
+
+      onIndexChanged();
+   }
+
+   private void rebuild()
+   {
+      rows_.clear();
+      count_ = 0;
+
+      if (isEnabled())
+      {
+         int length = session_.getLength();
+         for (int row = 0; row < length; row++)
+         {
+            int[] columns = scanRow(row);
+            rows_.add(columns);
+            count_ += columns != null ? columns.length : 0;
+         }
+      }
+
+      onIndexChanged();
+   }
+
+   private int[] scanRow(int row)
+   {
+      String line = session_.getLine(row);
+      if (line == null)
+         return null;
+      if (!caseSensitive_)
+         line = line.toLowerCase();
+
+      int count = 0;
+      int[] columns = null;
+      int index = line.indexOf(needle_);
+      while (index != -1)
+      {
+         if (columns == null)
+            columns = new int[4];
+         else if (count == columns.length)
+         {
+            int[] grown = new int[count * 2];
+            System.arraycopy(columns, 0, grown, 0, count);
+            columns = grown;
+         }
+         columns[count++] = index;
+         index = line.indexOf(needle_, index + needle_.length());
+      }
+
+      if (columns != null && count < columns.length)
+      {
+         int[] trimmed = new int[count];
+         System.arraycopy(columns, 0, trimmed, 0, count);
+         columns = trimmed;
+      }
+      return columns;
+   }
+
+   private void setRow(int row, int[] columns)
+   {
+      if (row >= rows_.size())
+      {
+         rows_.add(columns);
+      }
+      else
+      {
+         count_ -= matchesOnRow(row);
+         rows_.set(row, columns);
+      }
+      count_ += columns != null ? columns.length : 0;
+   }
+
+   private int matchesOnRow(int row)
+   {
+      int[] columns = rows_.get(row);
+      return columns != null ? columns.length : 0;
+   }
+
+   private Range matchRange(int row, int column)
+   {
+      return Range.fromPoints(Position.create(row, column),
+                              Position.create(row, column + query_.length()));
+   }
+
+   private void onIndexChanged()
+   {
+      observer_.onMatchesChanged();
+
+      // the highlight marker is re-added (at most once per event loop
+      // turn) so that Ace redraws it
+      if (!refreshPending_)
+      {
+         refreshPending_ = true;
+         Scheduler.get().scheduleDeferred(new ScheduledCommand()
+         {
+            public void execute()
+            {
+               refreshPending_ = false;
+               removeHighlights();
+               if (count_ > 0 && !detached_)
+                  markerId_ = addHighlightMarker(session_, highlightClass_);
+            }
+         });
+      }
+   }
+
+   private void removeHighlights()
+   {
+      if (markerId_ != -1)
+      {
+         session_.removeMarker(markerId_);
+         markerId_ = -1;
+      }
+   }
+
+   /**
+    * Called by the marker renderer; returns [row, column, row, column, ...]
+    * for the matches on the given rows
+    */
+   private JsArrayInteger getMatches(int firstRow, int lastRow)
+   {
+      JsArrayInteger matches = JavaScriptObject.createArray().cast();
+      for (int row = firstRow; row <= lastRow && row < rows_.size(); row++)
+      {
+         int[] columns = rows_.get(row);
+         if (columns == null)
+            continue;
+         for (int column : columns)
+         {
+            matches.set(matches.length(), row);
+            matches.set(matches.length(), column);
+         }
+      }
+      return matches;
+   }
+
+   private native int addHighlightMarker(EditSession session,
+                                         String clazz) /*-{
+      var self = this;
+      var Range = $wnd.require('ace/range').Range;
+      var length = this.@org.rstudio.studio.client.workbench.views.source.editors.text.findreplace.MatchIndex::query_.length;
+      var renderer = $entry(function(html, range, left, top, config) {
+         var matches = self.@org.rstudio.studio.client.workbench.views.source.editors.text.findreplace.MatchIndex::getMatches(II)(
+               config.firstRow, config.lastRow);
+         for (var i = 0; i < matches.length; i += 2) {
+            var start = session.documentToScreenPosition(matches[i],
+                                                         matches[i+1]);
+            var end = session.documentToScreenPosition(matches[i],
+                                                       matches[i+1] + length);
+            if (start.row != end.row)
+               continue;
+            html.push(
+               "<div class='", clazz, "' style='",
+               "height:", config.lineHeight, "px;",
+               "width:", Math.round((end.column - start.column) *
+                                    config.characterWidth), "px;",
+               "top:", (start.row - config.firstRowScreen) *
+                       config.lineHeight, "px;",
+               "left:", Math.round(start.column * config.characterWidth),
+               "px;'></div>");
+         }
+      });
+      return session.addMarker(new Range(0, 0, Number.MAX_VALUE, 0),
+                               clazz,
+                               renderer);
+   }-*/;
+
+   private final EditSession session_;
+   private final String highlightClass_;
+   private final Observer observer_;
+   private final JavaScriptObject listener_;
+   private final ArrayList<int[]> rows_ = new ArrayList<int[]>();
+   private String query_ = "";
+   private String needle_ = "";
+   private boolean caseSensitive_;
+   private int count_;
+   private boolean updating_;
+   private boolean refreshPending_;
+   private boolean detached_;
+   private int markerId_ = -1;
+}
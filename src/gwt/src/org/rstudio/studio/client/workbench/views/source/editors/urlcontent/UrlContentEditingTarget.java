@@ -112,6 +112,10 @@ public class UrlContentEditingTarget implements EditingTarget
    {
    }
 
+   public void navigateToLine(int line)
+   {
+   }
+
    public void onActivate()
    {
       if (commandReg_ != null)
@@ -182,6 +186,11 @@ public class UrlContentEditingTarget implements EditingTarget
       return Long.MAX_VALUE;
    }
 
+   public long getStreamingFileSize()
+   {
+      return Long.MAX_VALUE;
+   }
+
    public long getLargeFileSize()
    {
       return Long.MAX_VALUE;
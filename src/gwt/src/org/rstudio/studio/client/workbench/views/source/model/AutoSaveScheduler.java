@@ -0,0 +1,215 @@
+/*
+ * AutoSaveScheduler.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.model;
+
+import com.google.gwt.user.client.Command;
+import com.google.gwt.user.client.Timer;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.rstudio.core.client.Diagnostics;
+import org.rstudio.studio.client.application.events.EventBus;
+import org.rstudio.studio.client.workbench.events.BusyEvent;
+import org.rstudio.studio.client.workbench.events.BusyHandler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Schedules the auto-saves of all open documents. Documents which become
+ * due at around the same time are saved together (in the same event loop
+ * turn, so that their requests can be batched when the user has enabled
+ * request batching), the active document is saved first, and the delay
+ * before saving backs off while R is busy or while saves are slow to
+ * complete.
+ */
+@Singleton
+public class AutoSaveScheduler implements BusyHandler
+{
+   public interface Client
+   {
+      /**
+       * Saves the client's changes (if any), invoking onCompleted when the
+       * save finishes (successfully or not).
+       *
+       * @return False if there was nothing to save, in which case
+       * onCompleted will not be invoked
+       */
+      boolean autoSave(Command onCompleted);
+   }
+
+   @Inject
+   public AutoSaveScheduler(EventBus events)
+   {
+      events.addHandler(BusyEvent.TYPE, this);
+   }
+
+   /**
+    * Request that the client be auto-saved. If it's already scheduled its
+    * existing due time is kept, so changes are saved at most one delay
+    * after they were first made.
+    */
+   public void schedule(Client client)
+   {
+      if (pending_.containsKey(client))
+         return;
+
+      if (saving_.contains(client))
+      {
+         // save again once the current save has completed
+         resave_.add(client);
+         return;
+      }
+
+      pending_.put(client, now() + getDelay(client));
+      reportQueueDepth();
+      updateTimer();
+   }
+
+   public void unschedule(Client client)
+   {
+      pending_.remove(client);
+      resave_.remove(client);
+      if (activeClient_ == client)
+         activeClient_ = null;
+      reportQueueDepth();
+      updateTimer();
+   }
+
+   public void setActive(Client client, boolean active)
+   {
+      if (active)
+         activeClient_ = client;
+      else if (activeClient_ == client)
+         activeClient_ = null;
+   }
+
+   public void onBusy(BusyEvent event)
+   {
+      busy_ = event.isBusy();
+   }
+
+   private int getDelay(Client client)
+   {
+      // slow saves push the delay out (so we don't keep the connection
+      // saturated), as does R being busy unless this is the active document
+      int delay = BASE_DELAY_MS + LATENCY_FACTOR * averageLatency_;
+      if (busy_ && client != activeClient_)
+         delay *= BUSY_FACTOR;
+      return Math.min(delay, MAX_DELAY_MS);
+   }
+
+   private void updateTimer()
+   {
+      timer_.cancel();
+      if (pending_.isEmpty())
+         return;
+
+      long next = Long.MAX_VALUE;
+      for (long due : pending_.values())
+         next = Math.min(next, due);
+      timer_.schedule((int) Math.max(1, next - now()));
+   }
+
+   private void saveDueClients()
+   {
+      // anything that would become due shortly is saved now as well, so
+      // that the saves go out together
+      long cutoff = now() + COALESCE_WINDOW_MS;
+      ArrayList<Client> due = new ArrayList<Client>();
+      for (Map.Entry<Client, Long> entry : pending_.entrySet())
+      {
+         if (entry.getValue() <= cutoff)
+         {
+            if (entry.getKey() == activeClient_)
+               due.add(0, entry.getKey());
+            else
+               due.add(entry.getKey());
+         }
+      }
+
+      for (Client client : due)
+         save(client);
+
+      reportQueueDepth();
+      updateTimer();
+   }
+
+   private void save(final Client client)
+   {
+      pending_.remove(client);
+      saving_.add(client);
+
+      final long start = now();
+      boolean saving = client.autoSave(new Command()
+      {
+         public void execute()
+         {
+            onSaveCompleted(client, (int) (now() - start));
+         }
+      });
+
+      if (!saving)
+         saving_.remove(client);
+   }
+
+   private void onSaveCompleted(Client client, int latency)
+   {
+      saving_.remove(client);
+
+      averageLatency_ = averageLatency_ == 0
+                        ? latency
+                        : (averageLatency_ * 3 + latency) / 4;
+      Diagnostics.reportTime("Autosave latency", latency);
+      Diagnostics.reportTime("Autosave average latency", averageLatency_);
+
+      if (resave_.remove(client))
+         schedule(client);
+   }
+
+   private void reportQueueDepth()
+   {
+      Diagnostics.report("Autosave queue depth",
+                         pending_.size() + " pending, " +
+                         saving_.size() + " in progress");
+   }
+
+   private static long now()
+   {
+      return System.currentTimeMillis();
+   }
+
+   private final LinkedHashMap<Client, Long> pending_ =
+                                          new LinkedHashMap<Client, Long>();
+   private final HashSet<Client> saving_ = new HashSet<Client>();
+   private final HashSet<Client> resave_ = new HashSet<Client>();
+   private Client activeClient_;
+   private boolean busy_;
+   private int averageLatency_;
+
+   private final Timer timer_ = new Timer()
+   {
+      @Override
+      public void run()
+      {
+         saveDueClients();
+      }
+   };
+
+   private static final int BASE_DELAY_MS = 2000;
+   private static final int MAX_DELAY_MS = 30000;
+   private static final int LATENCY_FACTOR = 4;
+   private static final int BUSY_FACTOR = 4;
+   private static final int COALESCE_WINDOW_MS = 1000;
+}
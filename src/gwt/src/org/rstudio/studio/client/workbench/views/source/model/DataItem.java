@@ -65,6 +65,14 @@ public class DataItem extends JavaScriptObject
       return this.contentUrl;
    }-*/;
 
+   /**
+    * @return The key the server keeps the data under for paging through it
+    * (see DataServerOperations#getDataViewRows), or null
+    */
+   public native final String getCacheKey() /*-{
+      return this.cacheKey || null;
+   }-*/;
+
    public final void fillProperties(HashMap<String, String> properties)
    {
       // This has the unfortunate side-effect of converting the numeric values
@@ -76,6 +84,8 @@ public class DataItem extends JavaScriptObject
       properties.put("displayedObservations", getDisplayedObservations() + "");
       properties.put("variables", getVariables() + "");
       properties.put("contentUrl", getContentUrl());
+      if (getCacheKey() != null)
+         properties.put("cacheKey", getCacheKey());
    }
 
    public final void fillProperties(JsObject properties)
@@ -85,5 +95,7 @@ public class DataItem extends JavaScriptObject
       properties.setInteger("displayedObservations", getDisplayedObservations());
       properties.setInteger("variables", getVariables());
       properties.setString("contentUrl", getContentUrl());
+      if (getCacheKey() != null)
+         properties.setString("cacheKey", getCacheKey());
    }
 }
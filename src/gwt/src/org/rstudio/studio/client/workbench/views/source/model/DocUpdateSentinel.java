@@ -15,15 +15,16 @@ package org.rstudio.studio.client.workbench.views.source.model;
 import com.google.gwt.event.logical.shared.ValueChangeEvent;
 import com.google.gwt.event.logical.shared.ValueChangeHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.Window.ClosingEvent;
 import com.google.gwt.user.client.Window.ClosingHandler;
 import com.google.gwt.user.client.ui.HasValue;
 import org.rstudio.core.client.Barrier.Token;
 import org.rstudio.core.client.Debug;
-import org.rstudio.core.client.TimeBufferedCommand;
 import org.rstudio.core.client.js.JsObject;
 import org.rstudio.core.client.patch.SubstringDiff;
+import org.rstudio.core.client.patch.TextPatch;
 import org.rstudio.core.client.widget.ProgressIndicator;
 import org.rstudio.studio.client.application.events.EventBus;
 import org.rstudio.studio.client.common.SimpleRequestCallback;
@@ -35,17 +36,19 @@ import org.rstudio.studio.client.workbench.events.LastChanceSaveHandler;
 import org.rstudio.studio.client.workbench.model.ChangeTracker;
 import org.rstudio.studio.client.workbench.views.source.editors.text.TextEditingTarget.DocDisplay;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
 public class DocUpdateSentinel
-      implements ValueChangeHandler<Void>
+      implements ValueChangeHandler<Void>, AutoSaveScheduler.Client
 {
    public DocUpdateSentinel(SourceServerOperations server,
                             DocDisplay docDisplay,
                             SourceDocument sourceDoc,
                             ProgressIndicator progress,
                             HasValue<Boolean> dirtyState,
+                            AutoSaveScheduler autoSaveScheduler,
                             EventBus events)
    {
       server_ = server;
@@ -54,16 +57,9 @@ public class DocUpdateSentinel
       progress_ = progress;
       dirtyState_ = dirtyState;
       changeTracker_ = docDisplay.getChangeTracker();
+      patchRecordingReg_ = docDisplay_.recordChanges(patch_);
 
-      bufferedCommand_ = new TimeBufferedCommand(2000)
-      {
-         @Override
-         protected void performAction(boolean shouldSchedulePassive)
-         {
-            assert !shouldSchedulePassive;
-            maybeAutoSave();
-         }
-      };
+      autoSaveScheduler_ = autoSaveScheduler;
 
       docDisplay_.addValueChangeHandler(this);
 
@@ -118,11 +114,105 @@ public class DocUpdateSentinel
             });
    }
 
-   private boolean maybeAutoSave()
+   /**
+    * Retrieves the rest of a document which was opened in chunks, appending
+    * each chunk to the editor as it arrives. Nothing is saved until the
+    * whole document has been loaded.
+    */
+   public void loadRemainingContents(final ProgressIndicator progress)
+   {
+      assert sourceDoc_.getNextChunkOffset() >= 0;
+
+      loading_ = true;
+      final StringBuilder contents = new StringBuilder(
+                                                sourceDoc_.getContents());
+      loadChunk(sourceDoc_.getNextChunkOffset(), contents, progress);
+   }
+
+   private void loadChunk(final int offset,
+                          final StringBuilder contents,
+                          final ProgressIndicator progress)
+   {
+      progress.onProgress("Loading " + getPath() + " (" +
+                          (int)(100.0 * offset / sourceDoc_.getSize()) +
+                          "%)...");
+
+      server_.getDocumentChunk(
+            sourceDoc_.getId(),
+            offset,
+            CHUNK_SIZE,
+            new ServerRequestCallback<SourceDocumentChunk>()
+            {
+               @Override
+               public void onResponseReceived(SourceDocumentChunk chunk)
+               {
+                  if (stopped_)
+                     return;
+
+                  contents.append(chunk.getContents());
+                  docDisplay_.appendCode(chunk.getContents());
+
+                  if (chunk.getNextChunkOffset() >= 0)
+                  {
+                     loadChunk(chunk.getNextChunkOffset(), contents, progress);
+                     return;
+                  }
+
+                  // the editor now matches the document on the server
+                  sourceDoc_.setContents(contents.toString());
+                  changeTracker_.reset();
+                  patch_.clear();
+                  patchBaseVersion_ = savedVersion_ = ++lastVersion_;
+                  dirtyState_.setValue(sourceDoc_.isDirty(), true);
+                  loading_ = false;
+                  progress.onCompleted();
+               }
+
+               @Override
+               public void onError(ServerError error)
+               {
+                  // leave loading_ set so the partial contents are never
+                  // saved over the document
+                  Debug.logError(error);
+                  if (!stopped_)
+                     progress.onError(error.getUserMessage());
+               }
+            });
+   }
+
+   public boolean isLoading()
+   {
+      return loading_;
+   }
+
+   public boolean autoSave(final Command onCompleted)
    {
+      // an explicit save is in progress; any changes it doesn't include
+      // are rescheduled once it completes (see onExplicitSaveFinished)
+      if (suspended_)
+         return false;
+
       if (changeTracker_.hasChanged())
       {
-         return doSave(null, null, progress_);
+         return doSave(null, null, new ProgressIndicator()
+         {
+            public void onProgress(String message)
+            {
+               progress_.onProgress(message);
+            }
+
+            public void onCompleted()
+            {
+               onCompleted.execute();
+               progress_.onCompleted();
+            }
+
+            public void onError(String message)
+            {
+               onCompleted.execute();
+               progress_.onError(message);
+            }
+         });
       }
       else
       {
@@ -139,7 +229,13 @@ public class DocUpdateSentinel
       assert path != null;
       if (path == null)
          throw new IllegalArgumentException("Path cannot be null");
-      bufferedCommand_.suspend();
+      if (loading_)
+      {
+         if (progress != null)
+            progress.onError("The document hasn't finished loading yet.");
+         return;
+      }
+      suspended_ = true;
       doSave(path, fileType, new ProgressIndicator()
       {
          public void onProgress(String message)
@@ -150,24 +246,40 @@ public class DocUpdateSentinel
 
          public void onCompleted()
          {
-            bufferedCommand_.resume();
+            onExplicitSaveFinished();
             if (progress != null)
                progress.onCompleted();
          }
 
          public void onError(String message)
          {
-            bufferedCommand_.resume();
+            onExplicitSaveFinished();
             if (progress != null)
                progress.onError(message);
          }
       });
    }
 
+   private void onExplicitSaveFinished()
+   {
+      suspended_ = false;
+
+      // edits made while the save was in flight weren't auto-saved (and
+      // the change tracker is only reset if there weren't any)
+      if (!stopped_ && changeTracker_.hasChanged())
+      {
+         changesPending_ = true;
+         autoSaveScheduler_.schedule(this);
+      }
+   }
+
    private boolean doSave(final String path,
                           final String fileType,
                           final ProgressIndicator progress)
    {
+      if (loading_)
+         return false;
+
       /* We need to fork the change tracker so that we can "mark" the moment
          in history when we took the contents from the source doc, so that
          if the document is edited while the save is in progress we don't
@@ -175,18 +287,61 @@ public class DocUpdateSentinel
          actually sent to the server. */
       final ChangeTracker thisChangeTracker = changeTracker_.fork();
 
-      final String newContents = docDisplay_.getCode();
       String oldContents = sourceDoc_.getContents();
       final String hash = sourceDoc_.getHash();
 
-      //String patch = DiffMatchPatch.diff(oldContents, newContents);
-      SubstringDiff diff = new SubstringDiff(oldContents, newContents);
+      /* The recorded patch can only be used if it's relative to the
+         version that was last saved; otherwise (e.g. a previous save is
+         still in flight or failed) fall back to diffing the contents. Either
+         way, start recording afresh from this version. */
+      final int version = ++lastVersion_;
+      ArrayList<TextPatch.Hunk> hunks = null;
+      String patchedContents = null;
+      SubstringDiff diff = null;
+      if (patchBaseVersion_ == savedVersion_ && !patch_.isOverflowed())
+      {
+         // only the changed ranges are read from the editor; the new
+         // contents are derived from the last saved contents
+         hunks = patch_.getHunks(new TextPatch.Source()
+         {
+            public String getText(int start, int end)
+            {
+               return docDisplay_.getCode(start, end);
+            }
+         });
+         patchedContents = TextPatch.apply(oldContents, hunks);
+
+         // a patch which doesn't reproduce the document (e.g. because a
+         // change was missed) must not be saved. comparing the lengths
+         // catches that without reading the whole document
+         if (patchedContents.length() != docDisplay_.getCodeLength())
+         {
+            Debug.log("Recorded patch doesn't reproduce document contents");
+            hunks = null;
+            patchedContents = null;
+         }
+      }
+
+      final String newContents;
+      if (hunks != null)
+      {
+         newContents = patchedContents;
+      }
+      else
+      {
+         newContents = docDisplay_.getCode();
+         //String patch = DiffMatchPatch.diff(oldContents, newContents);
+         diff = new SubstringDiff(oldContents, newContents);
+      }
+      patch_.clear();
+      patchBaseVersion_ = version;
 
       // Don't auto-save when there are no changes. In addition to being
       // wasteful, it causes the server to think the document is dirty.
-      if (path == null && diff.isEmpty())
+      if (path == null && (hunks != null ? hunks.isEmpty() : diff.isEmpty()))
       {
          changesPending_ = false;
+         savedVersion_ = version;
          return false;
       }
 
@@ -203,58 +358,73 @@ public class DocUpdateSentinel
          return false;
       }
 
-      server_.saveDocumentDiff(
-            sourceDoc_.getId(),
-            path,
-            fileType,
-            diff.getReplacement(),
-            diff.getOffset(),
-            diff.getLength(),
-            hash,
+      ServerRequestCallback<String> callback =
             new ServerRequestCallback<String>()
+      {
+         @Override
+         public void onError(ServerError error)
+         {
+            Debug.logError(error);
+            if (progress != null)
+               progress.onError(error.getUserMessage());
+            changesPending_ = false;
+         }
+
+         @Override
+         public void onResponseReceived(String newHash)
+         {
+            if (newHash != null)
             {
-               @Override
-               public void onError(ServerError error)
-               {
-                  Debug.logError(error);
-                  if (progress != null)
-                     progress.onError(error.getUserMessage());
-                  changesPending_ = false;
-               }
+               // If the document hasn't changed further since the version
+               // we saved, then we know we're all synced up.
+               if (!thisChangeTracker.hasChanged())
+                  changeTracker_.reset();
+
+               onSuccessfulUpdate(newContents, newHash, path, fileType);
+               savedVersion_ = version;
+               if (progress != null)
+                  progress.onCompleted();
+            }
+            else if (!hash.equals(sourceDoc_.getHash()))
+            {
+               // We just hit a race condition where two updates
+               // happened at once. Try again
+               doSave(path, fileType, progress);
+            }
+            else
+            {
+               /*Debug.log("Diff-based save failed--falling back to " +
+                         "snapshot save");*/
+               server_.saveDocument(
+                     sourceDoc_.getId(),
+                     path,
+                     fileType,
+                     newContents,
+                     this);
+            }
+         }
+      };
 
-               @Override
-               public void onResponseReceived(String newHash)
-               {
-                  if (newHash != null)
-                  {
-                     // If the document hasn't changed further since the version
-                     // we saved, then we know we're all synced up.
-                     if (!thisChangeTracker.hasChanged())
-                        changeTracker_.reset();
-
-                     onSuccessfulUpdate(newContents, newHash, path, fileType);
-                     if (progress != null)
-                        progress.onCompleted();
-                  }
-                  else if (!hash.equals(sourceDoc_.getHash()))
-                  {
-                     // We just hit a race condition where two updates
-                     // happened at once. Try again
-                     doSave(path, fileType, progress);
-                  }
-                  else
-                  {
-                     /*Debug.log("Diff-based save failed--falling back to " +
-                               "snapshot save");*/
-                     server_.saveDocument(
-                           sourceDoc_.getId(),
-                           path,
-                           fileType,
-                           newContents,
-                           this);
-                  }
-               }
-            });
+      if (hunks != null)
+      {
+         server_.saveDocumentPatch(sourceDoc_.getId(),
+                                   path,
+                                   fileType,
+                                   hunks,
+                                   hash,
+                                   callback);
+      }
+      else
+      {
+         server_.saveDocumentDiff(sourceDoc_.getId(),
+                                  path,
+                                  fileType,
+                                  diff.getReplacement(),
+                                  diff.getOffset(),
+                                  diff.getLength(),
+                                  hash,
+                                  callback);
+      }
 
       return true;
    }
@@ -374,8 +544,21 @@ public class DocUpdateSentinel
 
    public void onValueChange(ValueChangeEvent<Void> voidValueChangeEvent)
    {
+      // chunks being appended aren't changes
+      if (loading_)
+         return;
+
       changesPending_ = true;
-      bufferedCommand_.nudge();
+      autoSaveScheduler_.schedule(this);
+   }
+
+   /**
+    * Indicates whether this is the document the user is looking at, whose
+    * changes are saved first.
+    */
+   public void setActive(boolean active)
+   {
+      autoSaveScheduler_.setActive(this, active);
    }
 
    public String getPath()
@@ -385,7 +568,10 @@ public class DocUpdateSentinel
 
    public void stop()
    {
-      bufferedCommand_.suspend();
+      stopped_ = true;
+      suspended_ = true;
+      autoSaveScheduler_.unschedule(this);
+      patchRecordingReg_.removeHandler();
       closeHandlerReg_.removeHandler();
       lastChanceSaveHandlerReg_.removeHandler();
    }
@@ -403,6 +589,8 @@ public class DocUpdateSentinel
                {
                   sourceDoc_ = response;
                   docDisplay_.setCode(sourceDoc_.getContents(), true);
+                  patch_.clear();
+                  patchBaseVersion_ = savedVersion_ = ++lastVersion_;
                   dirtyState_.setValue(false, true);
 
                   if (progress_ != null)
@@ -429,13 +617,25 @@ public class DocUpdateSentinel
    }
 
    private boolean changesPending_ = false;
+   // edits since version patchBaseVersion_; the initial version is unknown
+   // (the editor's contents may be set after we start recording)
+   private final TextPatch patch_ = new TextPatch();
+   private int lastVersion_ = 0;
+   private int patchBaseVersion_ = -1;
+   private int savedVersion_ = 0;
    private final ChangeTracker changeTracker_;
    private final SourceServerOperations server_;
    private final DocDisplay docDisplay_;
    private SourceDocument sourceDoc_;
    private final ProgressIndicator progress_;
    private final HasValue<Boolean> dirtyState_;
-   private final TimeBufferedCommand bufferedCommand_;
+   private final AutoSaveScheduler autoSaveScheduler_;
+   private boolean suspended_;
+   private boolean loading_;
+   private boolean stopped_;
+
+   public static final int CHUNK_SIZE = 512 * 1024;
    private final HandlerRegistration closeHandlerReg_;
+   private final HandlerRegistration patchRecordingReg_;
    private HandlerRegistration lastChanceSaveHandlerReg_;
 }
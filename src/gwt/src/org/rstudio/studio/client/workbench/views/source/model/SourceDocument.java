@@ -59,6 +59,23 @@ public class SourceDocument extends JavaScriptObject
       return this.contents;
    }-*/;
 
+   /**
+    * If the document was opened in chunks, gets the offset of the next chunk
+    * of contents (to be retrieved with getDocumentChunk), or -1 if the
+    * contents are complete.
+    */
+   public native final int getNextChunkOffset() /*-{
+      return this.next_chunk_offset != null ? this.next_chunk_offset : -1;
+   }-*/;
+
+   /**
+    * If the document was opened in chunks, gets the full size (in bytes) of
+    * its contents.
+    */
+   public native final int getSize() /*-{
+      return this.size || 0;
+   }-*/;
+
    public native final void setContents(String contents) /*-{
       this.contents = contents;
    }-*/;
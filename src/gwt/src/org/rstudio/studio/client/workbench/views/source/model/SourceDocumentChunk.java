@@ -0,0 +1,44 @@
+/*
+ * SourceDocumentChunk.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.model;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * A chunk of the contents of a document which is being opened in chunks
+ * (see SourceServerOperations.getDocumentChunk)
+ */
+public class SourceDocumentChunk extends JavaScriptObject
+{
+   protected SourceDocumentChunk()
+   {
+   }
+
+   public native final String getContents() /*-{
+      return this.contents;
+   }-*/;
+
+   /**
+    * The offset of the next chunk, or -1 if this is the last chunk
+    */
+   public native final int getNextChunkOffset() /*-{
+      return this.next_chunk_offset != null ? this.next_chunk_offset : -1;
+   }-*/;
+
+   /**
+    * The size (in bytes) of the document's contents
+    */
+   public native final int getSize() /*-{
+      return this.size;
+   }-*/;
+}
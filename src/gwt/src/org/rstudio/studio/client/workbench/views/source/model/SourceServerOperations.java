@@ -15,9 +15,11 @@ package org.rstudio.studio.client.workbench.views.source.model;
 import com.google.gwt.core.client.JsArray;
 import com.google.gwt.core.client.JsArrayString;
 import org.rstudio.core.client.js.JsObject;
+import org.rstudio.core.client.patch.TextPatch;
 import org.rstudio.studio.client.server.ServerRequestCallback;
 import org.rstudio.studio.client.server.Void;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
@@ -47,6 +49,26 @@ public interface SourceServerOperations
                      String fileType,
                      ServerRequestCallback<SourceDocument> requestCallback);
 
+   /**
+    * Opens a document, returning only the first chunk (of at most chunkSize
+    * bytes) of its contents if it's larger than that. The remaining chunks
+    * can then be retrieved with getDocumentChunk.
+    */
+   void openDocument(String path,
+                     String fileType,
+                     int chunkSize,
+                     ServerRequestCallback<SourceDocument> requestCallback);
+
+   /**
+    * Retrieves the chunk of a document's contents at offset (as returned
+    * by openDocument or the previous chunk), of at most chunkSize bytes.
+    */
+   void getDocumentChunk(
+         String id,
+         int offset,
+         int chunkSize,
+         ServerRequestCallback<SourceDocumentChunk> requestCallback);
+
    /**
     * Retrieves the current working list. This will be called once, when the
     * source module is loaded.
@@ -93,6 +115,18 @@ public interface SourceServerOperations
                          String hash,
                          ServerRequestCallback<String> requestCallback);
 
+   /**
+    * Like saveDocumentDiff, but applies several hunks (sorted by offset and
+    * non-overlapping, with offsets and lengths relative to the version of
+    * the document identified by hash).
+    */
+   void saveDocumentPatch(String id,
+                          String path,
+                          String fileType,
+                          ArrayList<TextPatch.Hunk> hunks,
+                          String hash,
+                          ServerRequestCallback<String> requestCallback);
+
    void checkForExternalEdit(
          String id,
          ServerRequestCallback<CheckForExternalEditResult> requestCallback);
@@ -14,9 +14,12 @@ package org.rstudio.studio.client.workbench.views.workspace;
 
 
 import com.gargoylesoftware.htmlunit.util.StringUtils;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.http.client.URL;
 import com.google.gwt.user.client.Command;
 import com.google.inject.Inject;
+import org.rstudio.core.client.Diagnostics;
 import org.rstudio.core.client.StringUtil;
 import org.rstudio.core.client.command.CommandBinder;
 import org.rstudio.core.client.command.Handler;
@@ -50,6 +53,8 @@ import org.rstudio.studio.client.workbench.views.workspace.table.WorkspaceObject
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class Workspace
       extends BasePresenter
@@ -133,12 +138,55 @@ public class Workspace
    {
       WorkspaceObjectInfo objectInfo = event.getObjectInfo();
       if (!objectInfo.isHidden())
-         objects_.updateObject(objectInfo);
+         queueObjectChange(objectInfo.getName(), objectInfo);
    }
 
    public void onWorkspaceObjectRemoved(WorkspaceObjectRemovedEvent event)
    {
-      objects_.removeObject(event.getObjectName());
+      queueObjectChange(event.getObjectName(), null);
+   }
+
+   // assignments and removals which arrive together (e.g. from a single
+   // console command) are applied to the table in one deferred batch, with
+   // only the last change for each name being applied
+   private void queueObjectChange(String name, WorkspaceObjectInfo objectInfo)
+   {
+      pendingChanges_.put(name, objectInfo);
+
+      // the listing for a refresh which is in flight may not reflect this
+      // change so it has to be reapplied once the listing arrives
+      if (refreshesInFlight_ > 0)
+         changesDuringRefresh_.put(name, objectInfo);
+
+      if (!changesScheduled_)
+      {
+         changesScheduled_ = true;
+         Scheduler.get().scheduleDeferred(new ScheduledCommand()
+         {
+            public void execute()
+            {
+               applyPendingChanges();
+            }
+         });
+      }
+   }
+
+   private void applyPendingChanges()
+   {
+      changesScheduled_ = false;
+      applyChanges(pendingChanges_);
+      pendingChanges_.clear();
+   }
+
+   private void applyChanges(LinkedHashMap<String, WorkspaceObjectInfo> changes)
+   {
+      for (Map.Entry<String, WorkspaceObjectInfo> change : changes.entrySet())
+      {
+         if (change.getValue() != null)
+            objects_.updateObject(change.getValue());
+         else
+            objects_.removeObject(change.getKey());
+      }
    }
 
    public void editObject(String objectName)
@@ -515,16 +563,21 @@ public class Workspace
       final boolean showProgress = reset;
       if (showProgress)
          view_.setProgress(true);
+
+      // only the response to the most recent request is applied (an older
+      // listing could otherwise overwrite a newer one)
+      final int refreshId = ++lastRefreshId_;
+      refreshesInFlight_++;
       
-      // clean out existing if we doing a reseta 
-      if (reset)
-         objects_.clearObjects();
-       
       server_.listObjects(new ServerRequestCallback<RpcObjectList<WorkspaceObjectInfo>>()
       {
          @Override
          public void onError(ServerError error)
          {
+            refreshesInFlight_--;
+            if (refreshId == lastRefreshId_)
+               changesDuringRefresh_.clear();
+
             globalDisplay_.showErrorMessage("Error Listing Objects",
                                            error.getUserMessage());
             
@@ -536,29 +589,43 @@ public class Workspace
          @Override
          public void onResponseReceived(RpcObjectList<WorkspaceObjectInfo> response)
          {
-            // if this is not a full reset then we need to perform the 
-            // deletes manually because we never cleared the existing
-            // object table. this state is here so we can implement "silent"
-            // refreshes of the workspace that don't flash and reset the
-            // user's scroll position
-            if (!reset)
+            refreshesInFlight_--;
+            if (refreshId != lastRefreshId_)
             {
-               ArrayList<String> objectNames = objects_.getObjectNames();
-               for (int i=0; i<objectNames.size(); i++)
-               {
-                  String objectName = objectNames.get(i);
-                  if (!containsObject(response, objectName))
-                     objects_.removeObject(objectName);
-               }
+               if (showProgress)
+                  view_.setProgress(false);
+               return;
             }
-            
-            // perform updates (will add or update as necessary)
+
+            long start = System.currentTimeMillis();
+
+            // changes queued before the listing are superseded by it
+            applyPendingChanges();
+
+            // a reset rebuilds every row; otherwise diff against the
+            // existing table so that refreshes don't flash and reset the
+            // user's scroll position (and only changed rows are touched)
+            if (reset)
+               objects_.clearObjects();
+            ArrayList<WorkspaceObjectInfo> objects =
+                                       new ArrayList<WorkspaceObjectInfo>();
             for (int i = 0; i < response.length(); i++)
             {
                WorkspaceObjectInfo objectInfo = response.get(i);
                if (!objectInfo.isHidden())
-                  objects_.updateObject(objectInfo);
-            } 
+                  objects.add(objectInfo);
+            }
+            objects_.setObjects(objects);
+
+            // changes which arrived while the listing was in flight may
+            // be newer than it
+            applyChanges(changesDuringRefresh_);
+            changesDuringRefresh_.clear();
+
+            Diagnostics.report(
+                  "Workspace refresh",
+                  (System.currentTimeMillis() - start) + " ms (" +
+                  objects.size() + " objects)");
             
             if (showProgress)
                view_.setProgress(false);
@@ -566,19 +633,6 @@ public class Workspace
       });
    }
    
-   public boolean containsObject(RpcObjectList<WorkspaceObjectInfo> objects,
-                                 String name)
-   {
-      for (int i=0; i<objects.length(); i++)
-      {
-         if (objects.get(i).getName().equals(name))
-            return true;
-      }
-      
-      // didn't find it
-      return false;
-   }
-
    private final Workspace.Display view_ ;
    private final WorkspaceServerOperations server_;
    private final GlobalDisplay globalDisplay_ ;
@@ -587,4 +641,11 @@ public class Workspace
    private final RemoteFileSystemContext fsContext_;
    private String lastWorkspaceFileName_;
    private final FileDialogs fileDialogs_;
+   private final LinkedHashMap<String, WorkspaceObjectInfo> pendingChanges_ =
+                        new LinkedHashMap<String, WorkspaceObjectInfo>();
+   private boolean changesScheduled_;
+   private final LinkedHashMap<String, WorkspaceObjectInfo> changesDuringRefresh_ =
+                        new LinkedHashMap<String, WorkspaceObjectInfo>();
+   private int lastRefreshId_ = 0;
+   private int refreshesInFlight_ = 0;
 }
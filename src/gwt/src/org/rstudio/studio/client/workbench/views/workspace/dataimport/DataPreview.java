@@ -0,0 +1,351 @@
+/*
+ * DataPreview.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.workspace.dataimport;
+
+import org.rstudio.core.client.CsvReader;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * The data frame that read.table would produce from the head of a data
+ * file, so that the import preview can be updated locally as the settings
+ * change. Follows read.table's defaults: lines starting with # and blank
+ * lines are skipped, "NA" is missing, a header with one field fewer than
+ * the data names the row names column, and each column is converted to the
+ * simplest type that can represent all of its values.
+ */
+public class DataPreview
+{
+   public static final int LOGICAL = 0;
+   public static final int INTEGER = 1;
+   public static final int NUMERIC = 2;
+   public static final int CHARACTER = 3;
+
+   /**
+    * @param separator The field separator, or "" for any whitespace
+    * @param quote The quote character, or "" for none
+    */
+   public static DataPreview parse(String input,
+                                   boolean header,
+                                   String separator,
+                                   String quote)
+   {
+      ArrayList<String[]> lines = splitLines(input, separator, quote);
+
+      String[] names = null;
+      if (header && !lines.isEmpty())
+         names = lines.remove(0);
+
+      int columns = lines.isEmpty() ? 0 : lines.get(0).length;
+      if (names != null)
+         columns = Math.max(columns, names.length);
+
+      // the row names column doesn't have a header
+      int firstColumn = names != null && names.length == columns - 1 ? 1 : 0;
+
+      for (int i = 0; i < lines.size(); i++)
+      {
+         if (lines.get(i).length != columns)
+         {
+            int line = i + 1 + (header ? 1 : 0);
+            return error("line " + line + " did not have " + columns +
+                         " elements");
+         }
+      }
+
+      DataPreview preview = new DataPreview();
+      for (int col = firstColumn; col < columns; col++)
+      {
+         String[] values = new String[lines.size()];
+         for (int row = 0; row < values.length; row++)
+            values[row] = lines.get(row)[col];
+
+         String name = names != null ? names[col - firstColumn]
+                                     : "V" + (col - firstColumn + 1);
+         preview.addColumn(name, values);
+      }
+      preview.makeNamesUnique(names != null);
+      return preview;
+   }
+
+   public int getColumnCount()
+   {
+      return names_.size();
+   }
+
+   public int getRowCount()
+   {
+      return columns_.isEmpty() ? 0 : columns_.get(0).length;
+   }
+
+   public String getColumnName(int col)
+   {
+      return names_.get(col);
+   }
+
+   public int getColumnType(int col)
+   {
+      return types_.get(col);
+   }
+
+   /**
+    * @return The value formatted as R would print it
+    */
+   public String getValue(int row, int col)
+   {
+      return columns_.get(col)[row];
+   }
+
+   private static DataPreview error(String message)
+   {
+      DataPreview preview = new DataPreview();
+      preview.names_.add("Error");
+      preview.types_.add(CHARACTER);
+      preview.columns_.add(new String[] {message});
+      return preview;
+   }
+
+   private static ArrayList<String[]> splitLines(String input,
+                                                 String separator,
+                                                 String quote)
+   {
+      final ArrayList<String[]> lines = new ArrayList<String[]>();
+      char quoteChar = quote.length() > 0 ? quote.charAt(0) : 0;
+
+      if (separator.length() == 0)
+      {
+         for (String line : input.split("\r?\n"))
+         {
+            if (!isSkipped(line))
+               lines.add(splitWhitespace(line, quoteChar));
+         }
+      }
+      else
+      {
+         CsvReader reader = new CsvReader(separator.charAt(0), quoteChar);
+         CsvReader.RowHandler handler = new CsvReader.RowHandler()
+         {
+            public boolean onRow(CsvReader.Row row)
+            {
+               boolean skipped = row.getFieldCount() == 1
+                                 ? isSkipped(row.getField(0))
+                                 : row.getField(0).startsWith("#");
+               if (!skipped)
+                  lines.add(row.toArray());
+               return true;
+            }
+         };
+         reader.parse(input, handler);
+         reader.finish(handler);
+      }
+
+      return lines;
+   }
+
+   private static boolean isSkipped(String line)
+   {
+      return line.trim().length() == 0 || line.startsWith("#");
+   }
+
+   private static String[] splitWhitespace(String line, char quote)
+   {
+      ArrayList<String> fields = new ArrayList<String>();
+      int pos = 0;
+      int end = line.length();
+      while (true)
+      {
+         while (pos < end && isWhitespace(line.charAt(pos)))
+            pos++;
+         if (pos >= end)
+            break;
+
+         int start = pos;
+         if (quote != 0 && line.charAt(pos) == quote)
+         {
+            int close = line.indexOf(quote, pos + 1);
+            if (close < 0)
+               close = end;
+            fields.add(line.substring(pos + 1, close));
+            pos = close + 1;
+         }
+         else
+         {
+            while (pos < end && !isWhitespace(line.charAt(pos)))
+               pos++;
+            fields.add(line.substring(start, pos));
+         }
+      }
+      return fields.toArray(new String[fields.size()]);
+   }
+
+   private static boolean isWhitespace(char c)
+   {
+      return c == ' ' || c == '\t';
+   }
+
+   private void addColumn(String name, String[] values)
+   {
+      int type = inferType(values);
+      int decimals = type == NUMERIC ? getDecimals(values) : 0;
+      for (int i = 0; i < values.length; i++)
+         values[i] = format(values[i], type, decimals);
+
+      names_.add(name);
+      types_.add(type);
+      columns_.add(values);
+   }
+
+   private static int inferType(String[] values)
+   {
+      int type = LOGICAL;
+      for (String value : values)
+      {
+         value = value.trim();
+         if (isMissing(value, type))
+            continue;
+
+         while (type != CHARACTER && !isOfType(value, type))
+            type++;
+      }
+      return type;
+   }
+
+   private static boolean isMissing(String value, int type)
+   {
+      // blank fields are only missing in logical and numeric columns
+      return value.equals(NA) || (type != CHARACTER && value.length() == 0);
+   }
+
+   private static boolean isOfType(String value, int type)
+   {
+      switch (type)
+      {
+         case LOGICAL:
+            return LOGICAL_VALUES.contains(value);
+         case INTEGER:
+            if (!value.matches("[-+]?[0-9]+"))
+               return false;
+            try
+            {
+               Integer.parseInt(value.startsWith("+") ? value.substring(1)
+                                                      : value);
+               return true;
+            }
+            catch (NumberFormatException e)
+            {
+               return false;
+            }
+         case NUMERIC:
+            return value.matches(
+                  "[-+]?(([0-9]+\\.?[0-9]*|\\.[0-9]+)([eE][-+]?[0-9]+)?|Inf|NaN)");
+         default:
+            return true;
+      }
+   }
+
+   // numbers are shown with the same number of decimal places, as format()
+   // would (ignoring its limit on significant digits)
+   private static int getDecimals(String[] values)
+   {
+      int decimals = 0;
+      for (String value : values)
+      {
+         value = value.trim();
+         int point = value.indexOf('.');
+         if (point >= 0 && value.indexOf('e') < 0 && value.indexOf('E') < 0)
+            decimals = Math.max(decimals, value.length() - point - 1);
+      }
+      return Math.min(decimals, MAX_DECIMALS);
+   }
+
+   private static String format(String value, int type, int decimals)
+   {
+      if (type != CHARACTER)
+         value = value.trim();
+
+      if (isMissing(value, type))
+         return type == CHARACTER ? "<NA>" : NA;
+
+      switch (type)
+      {
+         case LOGICAL:
+            return value.startsWith("T") || value.startsWith("t") ? "TRUE"
+                                                                  : "FALSE";
+         case INTEGER:
+            return value.startsWith("+") ? value.substring(1) : value;
+         case NUMERIC:
+            if (decimals == 0 || value.indexOf('e') >= 0 ||
+                value.indexOf('E') >= 0 || !Character.isDigit(
+                                          value.charAt(value.length() - 1)))
+            {
+               return value;
+            }
+            int point = value.indexOf('.');
+            StringBuilder result = new StringBuilder(value);
+            if (point < 0)
+            {
+               result.append('.');
+               point = value.length();
+            }
+            else if (point == 0)
+            {
+               result.insert(0, '0');
+               point++;
+            }
+            for (int i = result.length() - point - 1; i < decimals; i++)
+               result.append('0');
+            return result.substring(0, point + 1 + decimals);
+         default:
+            return value;
+      }
+   }
+
+   // make.names(unique = TRUE)
+   private void makeNamesUnique(boolean fromHeader)
+   {
+      HashSet<String> used = new HashSet<String>();
+      for (int i = 0; i < names_.size(); i++)
+      {
+         String name = names_.get(i);
+         if (fromHeader)
+         {
+            name = name.replaceAll("[^A-Za-z0-9._]", ".");
+            if (!name.matches("([A-Za-z]|\\.[^0-9]|\\.$).*"))
+               name = "X" + name;
+         }
+
+         String unique = name;
+         for (int n = 1; used.contains(unique); n++)
+            unique = name + "." + n;
+         used.add(unique);
+         names_.set(i, unique);
+      }
+   }
+
+   private final ArrayList<String> names_ = new ArrayList<String>();
+   private final ArrayList<Integer> types_ = new ArrayList<Integer>();
+   private final ArrayList<String[]> columns_ = new ArrayList<String[]>();
+
+   private static final String NA = "NA";
+   private static final int MAX_DECIMALS = 7;
+   private static final HashSet<String> LOGICAL_VALUES = new HashSet<String>();
+   static
+   {
+      for (String value : new String[] {"T", "F", "TRUE", "FALSE",
+                                        "true", "false", "True", "False"})
+      {
+         LOGICAL_VALUES.add(value);
+      }
+   }
+}
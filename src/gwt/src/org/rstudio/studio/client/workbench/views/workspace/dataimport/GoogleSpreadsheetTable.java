@@ -75,6 +75,16 @@ public class GoogleSpreadsheetTable
          return row.getAttribute("docName");
       }
 
+      public String getOutputForItem(GoogleSpreadsheetInfo entry)
+      {
+         return entry.getResourceId();
+      }
+
+      public String getOutputForItem2(GoogleSpreadsheetInfo entry)
+      {
+         return entry.getTitle();
+      }
+
       public boolean isValueRow(TableRowElement row)
       {
          return true;
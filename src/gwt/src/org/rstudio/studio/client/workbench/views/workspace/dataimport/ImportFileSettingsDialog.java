@@ -13,8 +13,6 @@
 package org.rstudio.studio.client.workbench.views.workspace.dataimport;
 
 import com.google.gwt.core.client.GWT;
-import com.google.gwt.core.client.JsArray;
-import com.google.gwt.core.client.JsArrayString;
 import com.google.gwt.dom.client.TextAreaElement;
 import com.google.gwt.event.dom.client.ChangeEvent;
 import com.google.gwt.event.dom.client.ChangeHandler;
@@ -28,7 +26,6 @@ import com.google.gwt.user.client.ui.*;
 import org.rstudio.core.client.Invalidation;
 import org.rstudio.core.client.Invalidation.Token;
 import org.rstudio.core.client.files.FileSystemItem;
-import org.rstudio.core.client.js.JsObject;
 import org.rstudio.core.client.widget.ModalDialog;
 import org.rstudio.core.client.widget.OperationWithInput;
 import org.rstudio.core.client.widget.ProgressIndicator;
@@ -54,6 +51,7 @@ public class ImportFileSettingsDialog extends ModalDialog<ImportFileSettings>
       String inputLabel();
       String outputLabel();
       String header();
+      String numeric();
       String leftPanel();
       String list();
    }
@@ -139,42 +137,18 @@ public class ImportFileSettingsDialog extends ModalDialog<ImportFileSettings>
 
    private void updateOutput()
    {
-      if (separator_.getSelectedIndex() < 0 || quote_.getSelectedIndex() < 0)
+      if (inputLines_ == null ||
+          separator_.getSelectedIndex() < 0 || quote_.getSelectedIndex() < 0)
+      {
          return;
+      }
 
-      updateRequest_.invalidate();
-      final Token invalidationToken = updateRequest_.getInvalidationToken();
-
-      progress_.onProgress("Updating preview");
-      server_.getOutputPreview(
-            dataFile_.getPath(),
+      // parsed locally, so there's no need to go back to the server
+      populateOutput(DataPreview.parse(
+            inputLines_,
             headingYes_.getValue().booleanValue(),
             separator_.getValue(separator_.getSelectedIndex()),
-            quote_.getValue(quote_.getSelectedIndex()),
-            new ServerRequestCallback<DataPreviewResult>()
-            {
-               @Override
-               public void onResponseReceived(DataPreviewResult response)
-               {
-                  if (invalidationToken.isInvalid())
-                     return;
-
-                  progress_.onProgress(null);
-                  populateOutput(response);
-               }
-
-               @Override
-               public void onError(ServerError error)
-               {
-                  if (invalidationToken.isInvalid())
-                     return;
-
-                  progress_.onProgress(null);
-                  globalDisplay_.showErrorMessage(
-                        "Error",
-                        error.getUserMessage());
-               }
-            });
+            quote_.getValue(quote_.getSelectedIndex())));
    }
 
    private void loadData()
@@ -195,7 +169,7 @@ public class ImportFileSettingsDialog extends ModalDialog<ImportFileSettings>
                      return;
                   
                   progress_.onProgress(null);
-                  populateOutput(response);
+                  inputLines_ = response.getInputLines();
                   if (response.hasHeader())
                      headingYes_.setValue(true);
                   else
@@ -203,6 +177,7 @@ public class ImportFileSettingsDialog extends ModalDialog<ImportFileSettings>
 
                   selectByValue(separator_, response.getSeparator());
                   selectByValue(quote_, response.getQuote());
+                  updateOutput();
                }
 
                @Override
@@ -241,28 +216,25 @@ public class ImportFileSettingsDialog extends ModalDialog<ImportFileSettings>
       return v1.equals(v2);
    }
 
-   private void populateOutput(DataPreviewResult result)
+   private void populateOutput(DataPreview preview)
    {
-      JsArray<JsObject> output = result.getOutput();
-      JsArrayString names = result.getOutputNames();
-
-      int rows = output.length();
-      int cols = names.length();
+      int rows = preview.getRowCount();
+      int cols = preview.getColumnCount();
       Grid grid = new Grid(rows + 1, cols);
       grid.setCellPadding(0);
       grid.setCellSpacing(0);
       grid.getRowFormatter().addStyleName(0, styles_.header());
       for (int col = 0; col < cols; col++)
-         grid.setText(0, col, names.get(col));
-
-      for (int row = 0; row < rows; row++)
       {
-         for (int col = 0; col < cols; col++)
+         grid.setText(0, col, preview.getColumnName(col));
+         for (int row = 0; row < rows; row++)
+            grid.setText(row + 1, col, preview.getValue(row, col));
+
+         // right align everything but strings, as R prints them
+         if (preview.getColumnType(col) != DataPreview.CHARACTER)
          {
-            String val = output.get(row).getString(names.get(col), true);
-            if (val == null)
-               val = "NA";
-            grid.setText(row + 1, col, val);
+            for (int row = 0; row <= rows; row++)
+               grid.getCellFormatter().addStyleName(row, col, styles_.numeric());
          }
       }
 
@@ -340,5 +312,6 @@ public class ImportFileSettingsDialog extends ModalDialog<ImportFileSettings>
    private final GlobalDisplay globalDisplay_;
    private ProgressIndicator progress_;
    private final Invalidation updateRequest_ = new Invalidation();
+   private String inputLines_;
    private final Styles styles_;
 }
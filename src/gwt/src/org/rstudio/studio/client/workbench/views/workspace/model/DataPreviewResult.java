@@ -13,9 +13,6 @@
 package org.rstudio.studio.client.workbench.views.workspace.model;
 
 import com.google.gwt.core.client.JavaScriptObject;
-import com.google.gwt.core.client.JsArray;
-import com.google.gwt.core.client.JsArrayString;
-import org.rstudio.core.client.js.JsObject;
 
 public class DataPreviewResult extends JavaScriptObject
 {
@@ -27,14 +24,6 @@ public class DataPreviewResult extends JavaScriptObject
       return this.inputLines[0];
    }-*/;
 
-   public final native JsArray<JsObject> getOutput() /*-{
-      return this.output;
-   }-*/;
-
-   public final native JsArrayString getOutputNames() /*-{
-      return this.outputNames;
-   }-*/;
-
    public final native boolean hasHeader() /*-{
       return this.header[0];
    }-*/;
@@ -25,6 +25,20 @@ public class WorkspaceObjectInfo extends JavaScriptObject
       return getName().startsWith(".");
    }
    
+   public final boolean isEquivalentTo(WorkspaceObjectInfo other)
+   {
+      return getName().equals(other.getName())
+             && equalStrings(getType(), other.getType())
+             && getLength() == other.getLength()
+             && equalStrings(getValue(), other.getValue())
+             && equalStrings(getExtra(), other.getExtra());
+   }
+
+   private static boolean equalStrings(String a, String b)
+   {
+      return a == null ? b == null : a.equals(b);
+   }
+
    public final native String getName() /*-{
       return this.name;
    }-*/;
@@ -54,11 +54,4 @@ public interface WorkspaceServerOperations
    void getDataPreview(
          String dataFilePath,
          ServerRequestCallback<DataPreviewResult> requestCallback);
-
-   void getOutputPreview(
-         String dataFilePath,
-         boolean heading,
-         String separator,
-         String quote,
-         ServerRequestCallback<DataPreviewResult> requestCallback);
 }
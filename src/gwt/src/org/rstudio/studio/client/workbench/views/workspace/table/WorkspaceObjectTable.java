@@ -52,7 +52,8 @@ public class WorkspaceObjectTable
     * has one heading row followed by zero or more value rows.
     * 
     * Each element of the sections_ field is a sorted list of names
-    * that appear in that section. 
+    * that appear in that section. The section each name currently
+    * appears in is tracked in sectionOf_.
     */
    private class RowManager
    {
@@ -66,6 +67,7 @@ public class WorkspaceObjectTable
          while (table_.getRowCount() > 0)
             table_.removeRow(0) ;
          sections_.clear() ;
+         sectionOf_.clear() ;
          
          for (int i = 0; i < SECTION_NAMES.length; i++)
          {
@@ -90,17 +92,24 @@ public class WorkspaceObjectTable
          int sectionId = chooseSection(obj) ;
          
          ArrayList<String> section = sections_.get(sectionId) ;
-         int index = Collections.binarySearch(section, obj.getName()) ;
-         if (index >= 0)
-            return index + getSectionStart(sectionId) ;
+         Integer currentSection = sectionOf_.get(obj.getName()) ;
+         if (currentSection != null && currentSection == sectionId)
+         {
+            rowsUpdated_++ ;
+            return Collections.binarySearch(section, obj.getName())
+                   + getSectionStart(sectionId) ;
+         }
          
-         // Just in case this name already exists but in a different section
-         removeRow(obj.getName()) ;
+         // The name already exists but in a different section
+         if (currentSection != null)
+            removeRow(obj.getName()) ;
          
-         index = -(index+1) ;
+         int index = -(Collections.binarySearch(section, obj.getName()) + 1) ;
          section.add(index, obj.getName()) ;
+         sectionOf_.put(obj.getName(), sectionId) ;
          int tableIndex = index + getSectionStart(sectionId) ;
          table_.insertRow(tableIndex) ;
+         rowsInserted_++ ;
          table_.getRowFormatter().setStylePrimaryName(
                tableIndex,
                ThemeResources.INSTANCE.themeStyles().workspaceDataRow());
@@ -113,18 +122,16 @@ public class WorkspaceObjectTable
       
       public boolean removeRow(String name)
       {
-         for (int i = 0; i < sections_.size(); i++)
-         {
-            int index = Collections.binarySearch(sections_.get(i), name) ;
-            if (index >= 0)
-            {
-               table_.removeRow(getSectionStart(i) + index) ;
-               sections_.get(i).remove(index) ;
-               manageHeadingVisibility(i);
-               return true ;
-            }
-         }
-         return false ;
+         Integer section = sectionOf_.remove(name) ;
+         if (section == null)
+            return false ;
+
+         int index = Collections.binarySearch(sections_.get(section), name) ;
+         table_.removeRow(getSectionStart(section) + index) ;
+         rowsRemoved_++ ;
+         sections_.get(section).remove(index) ;
+         manageHeadingVisibility(section);
+         return true ;
       }
       
       public ArrayList<String> getObjectNames()
@@ -195,6 +202,8 @@ public class WorkspaceObjectTable
 
       private final ArrayList<ArrayList<String>> sections_
                                           = new ArrayList<ArrayList<String>>();
+      private final HashMap<String, Integer> sectionOf_
+                                          = new HashMap<String, Integer>();
       private static final int SEC_DATA = 0 ;
       private static final int SEC_VAL = 1 ;
       private static final int SEC_FUNC = 2 ;
@@ -297,12 +306,14 @@ public class WorkspaceObjectTable
    public void clearObjects()
    {
       editHandlers_.clear();
+      objectInfos_.clear();
       rowManager_.clearTable() ;
    }
 
    public void removeObject(String name)
    {
       editHandlers_.remove(name);
+      objectInfos_.remove(name);
       rowManager_.removeRow(name) ;
    }
    
@@ -310,9 +321,35 @@ public class WorkspaceObjectTable
    {
       return rowManager_.getObjectNames();
    }
+
+   /**
+    * Brings the table in line with the given list of objects, touching
+    * only the rows for objects which were added, changed, or removed.
+    */
+   public void setObjects(ArrayList<WorkspaceObjectInfo> objects)
+   {
+      HashSet<String> names = new HashSet<String>();
+      for (WorkspaceObjectInfo object : objects)
+         names.add(object.getName());
+
+      for (String name : new ArrayList<String>(objectInfos_.keySet()))
+      {
+         if (!names.contains(name))
+            removeObject(name);
+      }
+
+      for (WorkspaceObjectInfo object : objects)
+         updateObject(object);
+   }
    
    public void updateObject(WorkspaceObjectInfo object)
    {
+      // nothing to do if the row already reflects this value
+      WorkspaceObjectInfo existing = objectInfos_.get(object.getName());
+      if (existing != null && existing.isEquivalentTo(object))
+         return;
+      objectInfos_.put(object.getName(), object);
+
       editHandlers_.remove(object.getName());
 
       int index = rowManager_.getRowIndex(object) ;
@@ -359,6 +396,26 @@ public class WorkspaceObjectTable
       }
    }
 
+   /**
+    * The number of object rows inserted, rewritten in place and removed
+    * since the table was created (rows dropped by clearObjects aren't
+    * counted as removed)
+    */
+   int getRowsInserted()
+   {
+      return rowsInserted_;
+   }
+
+   int getRowsUpdated()
+   {
+      return rowsUpdated_;
+   }
+
+   int getRowsRemoved()
+   {
+      return rowsRemoved_;
+   }
+
    public void fireEvent(GwtEvent<?> gwtEvent)
    {
       handlerManager_.fireEvent(gwtEvent);
@@ -405,6 +462,8 @@ public class WorkspaceObjectTable
    private final HandlerManager handlerManager_ = new HandlerManager(null);
    private final HashMap<String, ClickHandler> editHandlers_ =
                                             new HashMap<String, ClickHandler>(); 
+   private final HashMap<String, WorkspaceObjectInfo> objectInfos_ =
+                                    new HashMap<String, WorkspaceObjectInfo>();
    private final InlineEditorFactory inlineEditorFactory_;
    private final GlobalDisplay globalDisplay_ ;
    private final FlexTableEx table_;
@@ -422,4 +481,7 @@ public class WorkspaceObjectTable
    }
 
    private Observer observer_;
+   private int rowsInserted_ = 0;
+   private int rowsUpdated_ = 0;
+   private int rowsRemoved_ = 0;
 }
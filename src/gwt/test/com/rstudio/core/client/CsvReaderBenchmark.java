@@ -0,0 +1,77 @@
+/*
+ * CsvReaderBenchmark.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client;
+
+import junit.framework.Assert ;
+
+import com.google.gwt.junit.client.GWTTestCase ;
+
+// Reports how long CsvReader takes to stream 100 MB of typical rows, and a
+// single 100 MB quoted field, in 64 KB chunks. This takes a while, so it
+// isn't one of the *Tests suites; run it explicitly when changing the
+// parser (CsvReaderTests checks that pending input isn't rescanned).
+public class CsvReaderBenchmark extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.core.Core" ;
+   }
+
+   public void testStreaming()
+   {
+      StringBuilder rows = new StringBuilder() ;
+      while (rows.length() < CHUNK_SIZE)
+         rows.append("1234,\"Smith, John\",2011-03-18,\"say \"\"hi\"\"\",0.5\r\n") ;
+      String chunk = rows.substring(0, CHUNK_SIZE) ;
+
+      RowCounter counter = new RowCounter() ;
+      CsvReader reader = new CsvReader(',', '"') ;
+      long start = System.currentTimeMillis() ;
+      for (int i = 0; i < CHUNK_COUNT; i++)
+         reader.parse(chunk, counter) ;
+      reader.finish(counter) ;
+      long rowsMs = System.currentTimeMillis() - start ;
+      Assert.assertTrue(counter.rows_ > CHUNK_COUNT) ;
+
+      String field = chunk.replace('"', ' ') ;
+      counter = new RowCounter() ;
+      reader = new CsvReader(',', '"') ;
+      start = System.currentTimeMillis() ;
+      reader.parse("\"", counter) ;
+      for (int i = 0; i < CHUNK_COUNT; i++)
+         reader.parse(field, counter) ;
+      reader.parse("\"\n", counter) ;
+      reader.finish(counter) ;
+      long fieldMs = System.currentTimeMillis() - start ;
+      Assert.assertEquals(1, counter.rows_) ;
+
+      System.out.println("CsvReader, " + CHUNK_COUNT + " chunks of " +
+                         CHUNK_SIZE + " chars: rows " + rowsMs + "ms, " +
+                         "single field " + fieldMs + "ms") ;
+   }
+
+   private static class RowCounter implements CsvReader.RowHandler
+   {
+      public boolean onRow(CsvReader.Row row)
+      {
+         rows_++ ;
+         return true ;
+      }
+
+      int rows_ = 0 ;
+   }
+
+   private static final int CHUNK_SIZE = 64 * 1024 ;
+   private static final int CHUNK_COUNT = 1600 ;
+}
@@ -0,0 +1,210 @@
+/*
+ * CsvReaderTests.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client;
+
+import junit.framework.Assert ;
+
+import com.google.gwt.junit.client.GWTTestCase ;
+
+import java.util.ArrayList ;
+
+public class CsvReaderTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.core.Core" ;
+   }
+
+   public void testComma()
+   {
+      assertRows("a,b,c\n1,,3\n",
+                 ',', '"',
+                 new String[][] {{"a", "b", "c"}, {"1", "", "3"}}) ;
+   }
+
+   public void testQuoted()
+   {
+      assertRows("\"a,b\",\"say \"\"hi\"\"\",c\n",
+                 ',', '"',
+                 new String[][] {{"a,b", "say \"hi\"", "c"}}) ;
+   }
+
+   public void testTabsWithoutQuoting()
+   {
+      assertRows("a\t\"b\"\tc\n",
+                 '\t', (char) 0,
+                 new String[][] {{"a", "\"b\"", "c"}}) ;
+   }
+
+   public void testSemicolonsWithSingleQuotes()
+   {
+      assertRows("'x;y';'it''s'\nz;w\n",
+                 ';', '\'',
+                 new String[][] {{"x;y", "it's"}, {"z", "w"}}) ;
+   }
+
+   public void testLineEndings()
+   {
+      String[][] expected = {{"a", "b"}, {"c", "d"}, {"e", "f"}} ;
+      assertRows("a,b\r\nc,d\r\ne,f\r\n", ',', '"', expected) ;
+      assertRows("a,b\rc,d\re,f\r", ',', '"', expected) ;
+      assertRows("a,b\nc,d\r\ne,f", ',', '"', expected) ;
+   }
+
+   public void testQuotedLineBreaks()
+   {
+      assertRows("\"line 1\nline 2\",x\r\n\"a\r\nb\",y\n",
+                 ',', '"',
+                 new String[][] {{"line 1\nline 2", "x"},
+                                 {"a\r\nb", "y"}}) ;
+   }
+
+   public void testStopParsing()
+   {
+      CsvReader reader = new CsvReader(',', '"') ;
+      final ArrayList<String[]> rows = new ArrayList<String[]>() ;
+      CsvReader.RowHandler handler = new CsvReader.RowHandler()
+      {
+         public boolean onRow(CsvReader.Row row)
+         {
+            rows.add(row.toArray()) ;
+            return rows.size() < 2 ;
+         }
+      } ;
+      Assert.assertFalse(reader.parse("1\n2\n3\n", handler)) ;
+      Assert.assertEquals(2, rows.size()) ;
+   }
+
+   // every input is also parsed split at every position, and a character
+   // at a time, so rows (and quotes, doubled quotes and CRLFs) straddle
+   // chunk boundaries
+   private void assertRows(String data,
+                           char separator,
+                           char quote,
+                           String[][] expected)
+   {
+      ArrayList<String[]> iterated = new ArrayList<String[]>() ;
+      for (String[] row : new CsvReader(data, separator, quote))
+         iterated.add(row) ;
+      assertEquals(expected, iterated) ;
+
+      for (int split = 0; split <= data.length(); split++)
+      {
+         assertEquals(expected, stream(separator, quote,
+                                       data.substring(0, split),
+                                       data.substring(split))) ;
+      }
+
+      String[] chars = new String[data.length()] ;
+      for (int i = 0; i < data.length(); i++)
+         chars[i] = data.substring(i, i + 1) ;
+      assertEquals(expected, stream(separator, quote, chars)) ;
+   }
+
+   private static ArrayList<String[]> stream(char separator,
+                                             char quote,
+                                             String... chunks)
+   {
+      final ArrayList<String[]> rows = new ArrayList<String[]>() ;
+      CsvReader.RowHandler handler = new CsvReader.RowHandler()
+      {
+         public boolean onRow(CsvReader.Row row)
+         {
+            rows.add(row.toArray()) ;
+            return true ;
+         }
+      } ;
+
+      CsvReader reader = new CsvReader(separator, quote) ;
+      for (String chunk : chunks)
+         reader.parse(chunk, handler) ;
+      reader.finish(handler) ;
+      return rows ;
+   }
+
+   private static void assertEquals(String[][] expected,
+                                    ArrayList<String[]> actual)
+   {
+      Assert.assertEquals(expected.length, actual.size()) ;
+      for (int i = 0; i < expected.length; i++)
+      {
+         Assert.assertEquals(expected[i].length, actual.get(i).length) ;
+         for (int j = 0; j < expected[i].length; j++)
+            Assert.assertEquals(expected[i][j], actual.get(i)[j]) ;
+      }
+   }
+
+   // input is scanned for the end of a row as it arrives, and the row is
+   // parsed once that end arrives, so no character is examined more than
+   // a few times however many chunks its row spans
+   public void testPendingInputNotRescanned()
+   {
+      // typical rows, streamed in chunks which split rows
+      StringBuilder rows = new StringBuilder() ;
+      while (rows.length() < CHUNK_SIZE)
+         rows.append(ROW) ;
+      String chunk = rows.substring(0, CHUNK_SIZE) ;
+
+      Counter counter = new Counter() ;
+      CsvReader reader = new CsvReader(',', '"') ;
+      for (int i = 0; i < CHUNK_COUNT; i++)
+         reader.parse(chunk, counter) ;
+      reader.finish(counter) ;
+      Assert.assertTrue(counter.rows_ > CHUNK_COUNT) ;
+
+      // rows are scanned and parsed once, except for the incomplete row
+      // at the end of each chunk, which is scanned and parsed again
+      long input = (long) CHUNK_COUNT * CHUNK_SIZE ;
+      Assert.assertTrue(reader.getScannedCount() + " of " + input,
+                        reader.getScannedCount() <=
+                        2 * input + 2 * CHUNK_COUNT * ROW.length()) ;
+
+      // a single quoted field spanning every chunk: each chunk is scanned
+      // once on arrival, and the row is parsed once when it ends
+      String field = chunk.replace('"', ' ') ;
+      counter = new Counter() ;
+      reader = new CsvReader(',', '"') ;
+      reader.parse("\"", counter) ;
+      for (int i = 0; i < CHUNK_COUNT; i++)
+      {
+         long scanned = reader.getScannedCount() ;
+         reader.parse(field, counter) ;
+         Assert.assertEquals(CHUNK_SIZE, reader.getScannedCount() - scanned) ;
+      }
+      reader.parse("\"\n", counter) ;
+      reader.finish(counter) ;
+      Assert.assertEquals(1, counter.rows_) ;
+      Assert.assertEquals(input, counter.chars_) ;
+      Assert.assertEquals(2 * (input + 3), reader.getScannedCount()) ;
+   }
+
+   private static class Counter implements CsvReader.RowHandler
+   {
+      public boolean onRow(CsvReader.Row row)
+      {
+         rows_++ ;
+         for (int i = 0; i < row.getFieldCount(); i++)
+            chars_ += row.getFieldLength(i) ;
+         return true ;
+      }
+
+      int rows_ = 0 ;
+      long chars_ = 0 ;
+   }
+
+   private static final String ROW =
+         "1234,\"Smith, John\",2011-03-18,\"say \"\"hi\"\"\",0.5\r\n" ;
+   private static final int CHUNK_SIZE = 4 * 1024 ;
+   private static final int CHUNK_COUNT = 200 ;
+}
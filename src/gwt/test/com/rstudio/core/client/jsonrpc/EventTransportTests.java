@@ -0,0 +1,174 @@
+/*
+ * EventTransportTests.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client.jsonrpc;
+
+import junit.framework.Assert ;
+
+import com.google.gwt.core.client.GWT ;
+import com.google.gwt.core.client.JavaScriptObject ;
+import com.google.gwt.core.client.JsArray ;
+import com.google.gwt.json.client.JSONArray ;
+import com.google.gwt.json.client.JSONBoolean ;
+import com.google.gwt.json.client.JSONNumber ;
+import com.google.gwt.junit.client.GWTTestCase ;
+
+// Compares event delivery latency of long-polling (RpcRequest) against
+// streaming (RpcStreamingRequest) using StandInEventsServlet, which makes
+// EVENT_COUNT events available INTERVAL_MS apart. Delivery over each of
+// the event transports is checked by EventTransportFallbackTests.
+public class EventTransportTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.core.CoreTests" ;
+   }
+
+   public void testLatencyComparison()
+   {
+      delayTestFinish(2 * TIMEOUT_MS) ;
+      final Receiver polled = new Receiver() ;
+      final Receiver streamed = new Receiver() ;
+      longPoll(-1, polled, new Runnable() {
+         public void run()
+         {
+            stream(streamed, new Runnable() {
+               public void run()
+               {
+                  polled.verify() ;
+                  streamed.verify() ;
+                  
+                  // streaming delivers every event over one request (long-
+                  // polling needs a request per batch) and is no slower
+                  Assert.assertEquals(1, streamed.requests_) ;
+                  Assert.assertTrue(polled.requests_ > 1) ;
+                  Assert.assertTrue(streamed.meanLatency() <= 
+                                    polled.meanLatency() + LATENCY_SLACK_MS) ;
+                  finishTest() ;
+               }
+            }) ;
+         }
+      }) ;
+   }
+
+   private void longPoll(int lastEventId,
+                         final Receiver receiver,
+                         final Runnable onDone)
+   {
+      JSONArray params = new JSONArray() ;
+      params.set(0, new JSONNumber(lastEventId)) ;
+      RpcRequest request = new RpcRequest(EVENTS_URL,
+                                          "get_events",
+                                          params,
+                                          null,
+                                          null,
+                                          0) ;
+      receiver.requests_++ ;
+      request.send(new RpcRequestCallback() {
+         public void onError(RpcRequest request, RpcError error)
+         {
+            fail(error.getMessage()) ;
+         }
+
+         public void onResponseReceived(RpcRequest request,
+                                        RpcResponse response)
+         {
+            receiver.onEvents(response.<JsArray<JavaScriptObject>>getResult()) ;
+            if (receiver.received_ < EVENT_COUNT)
+               longPoll(receiver.lastId_, receiver, onDone) ;
+            else
+               onDone.run() ;
+         }
+      }) ;
+   }
+
+   private void stream(final Receiver receiver, final Runnable onDone)
+   {
+      JSONArray params = new JSONArray() ;
+      params.set(0, new JSONNumber(-1)) ;
+      params.set(1, JSONBoolean.getInstance(true)) ;
+      RpcStreamingRequest request = new RpcStreamingRequest(EVENTS_URL,
+                                                            "get_events",
+                                                            params,
+                                                            null,
+                                                            0) ;
+      receiver.requests_++ ;
+      request.send(new RpcStreamingRequestCallback() {
+         public void onError(RpcStreamingRequest request, RpcError error)
+         {
+            fail(error.getMessage()) ;
+         }
+
+         public void onResponseReceived(RpcStreamingRequest request,
+                                        RpcResponse response)
+         {
+            receiver.onEvents(response.<JsArray<JavaScriptObject>>getResult()) ;
+         }
+
+         public void onCompleted(RpcStreamingRequest request)
+         {
+            onDone.run() ;
+         }
+      }) ;
+   }
+
+   private static class Receiver
+   {
+      public void onEvents(JsArray<JavaScriptObject> events)
+      {
+         long now = System.currentTimeMillis() ;
+         for (int i = 0; i < events.length(); i++)
+         {
+            int id = getId(events.get(i)) ;
+            Assert.assertEquals(lastId_ + 1, id) ;
+            lastId_ = id ;
+            received_++ ;
+
+            long latency = now - (long) getSent(events.get(i)) ;
+            totalLatency_ += latency ;
+         }
+      }
+
+      public void verify()
+      {
+         Assert.assertEquals(EVENT_COUNT, received_) ;
+         Assert.assertEquals(EVENT_COUNT - 1, lastId_) ;
+      }
+
+      public long meanLatency()
+      {
+         return received_ > 0 ? totalLatency_ / received_ : 0 ;
+      }
+
+      private static native int getId(JavaScriptObject event) /*-{
+         return event.id ;
+      }-*/;
+
+      private static native double getSent(JavaScriptObject event) /*-{
+         return event.data.sent ;
+      }-*/;
+
+      private int lastId_ = -1 ;
+      private int received_ = 0 ;
+      private int requests_ = 0 ;
+      private long totalLatency_ = 0 ;
+   }
+
+   // keep in sync with StandInEventsServlet
+   private static final int EVENT_COUNT = 50 ;
+   private static final int TIMEOUT_MS = 20000 ;
+   // allowance for timer jitter when comparing mean latencies
+   private static final int LATENCY_SLACK_MS = 50 ;
+   private static final String EVENTS_URL =
+                                 GWT.getModuleBaseURL() + "events/get_events" ;
+}
@@ -0,0 +1,153 @@
+/*
+ * TextPatchTests.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client.patch;
+
+import junit.framework.Assert ;
+
+import com.google.gwt.junit.client.GWTTestCase ;
+
+import java.util.ArrayList ;
+
+public class TextPatchTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.core.Core" ;
+   }
+
+   public void testInsert()
+   {
+      Editor editor = new Editor("hello world") ;
+      editor.replace(5, 0, ",") ;
+      ArrayList<TextPatch.Hunk> hunks = editor.verify() ;
+      Assert.assertEquals(1, hunks.size()) ;
+      Assert.assertEquals(5, hunks.get(0).getOffset()) ;
+      Assert.assertEquals(0, hunks.get(0).getLength()) ;
+      Assert.assertEquals(",", hunks.get(0).getReplacement()) ;
+   }
+
+   public void testDelete()
+   {
+      Editor editor = new Editor("hello cruel world") ;
+      editor.replace(5, 6, "") ;
+      ArrayList<TextPatch.Hunk> hunks = editor.verify() ;
+      Assert.assertEquals(1, hunks.size()) ;
+      Assert.assertEquals(5, hunks.get(0).getOffset()) ;
+      Assert.assertEquals(6, hunks.get(0).getLength()) ;
+      Assert.assertEquals("", hunks.get(0).getReplacement()) ;
+   }
+
+   public void testReplace()
+   {
+      Editor editor = new Editor("x <- 1\ny <- 2\n") ;
+      editor.replace(5, 1, "100") ;
+      editor.verify() ;
+   }
+
+   public void testTypingMergesIntoOneHunk()
+   {
+      Editor editor = new Editor("f()") ;
+      String typed = "x, y = 2" ;
+      for (int i = 0; i < typed.length(); i++)
+         editor.replace(2 + i, 0, typed.substring(i, i + 1)) ;
+      editor.replace(2 + typed.length() - 1, 1, "") ; // backspace
+      Assert.assertEquals(1, editor.verify().size()) ;
+   }
+
+   public void testMultiLine()
+   {
+      Editor editor = new Editor("a\nb\nc\nd\n") ;
+      // insert lines, then remove lines spanning an earlier edit
+      editor.replace(2, 0, "b0\nb1\n") ;
+      editor.replace(0, 4, "") ;
+      editor.replace(editor.text_.length(), 0, "e\nf\n") ;
+      editor.verify() ;
+   }
+
+   public void testSeparateHunks()
+   {
+      Editor editor = new Editor("one two three four five") ;
+      editor.replace(19, 4, "FIVE") ;
+      editor.replace(0, 3, "ONE") ;
+      editor.replace(8, 5, "3") ;
+      ArrayList<TextPatch.Hunk> hunks = editor.verify() ;
+      Assert.assertEquals(3, hunks.size()) ;
+
+      // hunks are sorted and relative to the base version
+      Assert.assertEquals(0, hunks.get(0).getOffset()) ;
+      Assert.assertEquals(8, hunks.get(1).getOffset()) ;
+      Assert.assertEquals(19, hunks.get(2).getOffset()) ;
+   }
+
+   public void testAdjacentEditsMerge()
+   {
+      Editor editor = new Editor("abcdef") ;
+      editor.replace(1, 1, "B") ;
+      editor.replace(3, 1, "D") ;
+      editor.replace(2, 1, "C") ;
+      Assert.assertEquals(1, editor.verify().size()) ;
+   }
+
+   public void testOverflow()
+   {
+      StringBuilder base = new StringBuilder() ;
+      for (int i = 0; i < 500; i++)
+         base.append("line ").append(i).append('\n') ;
+      Editor editor = new Editor(base.toString()) ;
+      for (int i = 0; i < 200; i++)
+         editor.replace(i * 8, 1, "L") ;
+      Assert.assertTrue(editor.patch_.isOverflowed()) ;
+      Assert.assertFalse(editor.patch_.isEmpty()) ;
+      try
+      {
+         editor.patch_.getHunks(null) ;
+         Assert.fail("Hunks returned for an overflowed patch") ;
+      }
+      catch (IllegalStateException e)
+      {
+      }
+
+      editor.patch_.clear() ;
+      Assert.assertTrue(editor.patch_.isEmpty()) ;
+   }
+
+   // applies edits to a string and reports them to a patch the same way
+   // the editor does
+   private static class Editor
+   {
+      Editor(String text)
+      {
+         base_ = text_ = text ;
+      }
+
+      void replace(int offset, int removed, String inserted)
+      {
+         text_ = text_.substring(0, offset) + inserted + 
+                 text_.substring(offset + removed) ;
+         patch_.replace(offset, removed, inserted.length()) ;
+      }
+
+      ArrayList<TextPatch.Hunk> verify()
+      {
+         Assert.assertFalse(patch_.isOverflowed()) ;
+         ArrayList<TextPatch.Hunk> hunks = patch_.getHunks(text_) ;
+         Assert.assertEquals(text_, TextPatch.apply(base_, hunks)) ;
+         return hunks ;
+      }
+
+      final String base_ ;
+      String text_ ;
+      final TextPatch patch_ = new TextPatch() ;
+   }
+}
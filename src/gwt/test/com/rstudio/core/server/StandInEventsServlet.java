@@ -0,0 +1,140 @@
+/*
+ * StandInEventsServlet.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+// Stand-in for the session's get_events endpoint. Events become available
+// at a fixed interval starting from the first request of a run (a request
+// with lastEventId -1). Long-poll requests are held until at least one
+// event is available and then return every available event; streaming
+// requests (second param true) write each event as its own newline
+// terminated json-rpc response as soon as it becomes available. Each
+// event's data carries the time it became available so the client can
+// measure delivery latency.
+public class StandInEventsServlet extends HttpServlet
+{
+   public static final int EVENT_COUNT = 50;
+   public static final int INTERVAL_MS = 20;
+
+   @Override
+   protected void doPost(HttpServletRequest request,
+                         HttpServletResponse response)
+                                                throws IOException
+   {
+      String body = readBody(request);
+      Matcher matcher = PARAMS.matcher(body);
+      if (!matcher.find())
+      {
+         response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+         return;
+      }
+      int lastEventId = Integer.parseInt(matcher.group(1));
+      boolean stream = "true".equals(matcher.group(2));
+
+      long start;
+      synchronized(this)
+      {
+         if (lastEventId < 0 || startTime_ == 0)
+            startTime_ = System.currentTimeMillis();
+         start = startTime_;
+      }
+
+      response.setContentType("application/json");
+      PrintWriter writer = response.getWriter();
+      int next = lastEventId + 1;
+      if (stream)
+      {
+         for (int id = next; id < EVENT_COUNT; id++)
+         {
+            waitUntil(availableAt(start, id));
+            writer.print("{\"result\":[" + event(start, id) + "]}\n");
+            writer.flush();
+            response.flushBuffer();
+         }
+      }
+      else
+      {
+         StringBuilder events = new StringBuilder();
+         if (next < EVENT_COUNT)
+         {
+            waitUntil(availableAt(start, next));
+            long now = System.currentTimeMillis();
+            for (int id = next;
+                 id < EVENT_COUNT && availableAt(start, id) <= now;
+                 id++)
+            {
+               if (events.length() > 0)
+                  events.append(",");
+               events.append(event(start, id));
+            }
+         }
+         writer.print("{\"result\":[" + events + "]}");
+      }
+   }
+
+   private static long availableAt(long start, int id)
+   {
+      return start + (id + 1) * INTERVAL_MS;
+   }
+
+   private static String event(long start, int id)
+   {
+      return "{\"id\":" + id + "," +
+             "\"type\":\"console_output\"," +
+             "\"data\":{\"sent\":" + availableAt(start, id) + "}}";
+   }
+
+   private static void waitUntil(long time)
+   {
+      long delay;
+      while ((delay = time - System.currentTimeMillis()) > 0)
+      {
+         try
+         {
+            Thread.sleep(delay);
+         }
+         catch(InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            return;
+         }
+      }
+   }
+
+   private static String readBody(HttpServletRequest request)
+                                                      throws IOException
+   {
+      StringBuilder body = new StringBuilder();
+      BufferedReader reader = request.getReader();
+      String line;
+      while ((line = reader.readLine()) != null)
+         body.append(line);
+      return body.toString();
+   }
+
+   private static final Pattern PARAMS = Pattern.compile(
+               "\"params\"\\s*:\\s*\\[\\s*(-?\\d+)\\s*(?:,\\s*(true|false))?");
+
+   private long startTime_ = 0;
+
+   private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,133 @@
+/*
+ * StandInUploadServlet.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.zip.CRC32;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+// Stand-in for the session's chunk_upload endpoint (handleUploadChunkRequest
+// in SessionFiles.cpp). Chunks are posted with id, index and checksum query
+// params and answered the same way: always with status 200, with the number
+// of chunks received so far as the json-rpc result, or a json-rpc error
+// (ParamInvalid for an unknown upload or chunk index, and an execution error
+// wrapping EILSEQ for a chunk whose length or CRC32 doesn't match).
+//
+// The uploads themselves are begun by a json-rpc method this doesn't stand
+// in for, so any id starting with "upload-" is taken to be an upload of
+// UPLOAD_SIZE bytes in chunks of CHUNK_SIZE.
+public class StandInUploadServlet extends HttpServlet
+{
+   public static final int CHUNK_SIZE = 1024;
+   public static final int UPLOAD_SIZE = 2 * CHUNK_SIZE + 452;
+
+   @Override
+   protected void doPost(HttpServletRequest request,
+                         HttpServletResponse response)
+                                                throws IOException
+   {
+      byte[] contents = readBody(request);
+
+      String id = request.getParameter("id");
+      String checksum = request.getParameter("checksum");
+      int index = -1;
+      try
+      {
+         index = Integer.parseInt(request.getParameter("index"));
+      }
+      catch(NumberFormatException e)
+      {
+      }
+
+      String result;
+      synchronized(this)
+      {
+         result = postChunk(id, index, checksum, contents);
+      }
+
+      response.setStatus(HttpServletResponse.SC_OK);
+      response.setContentType("application/json");
+      response.getWriter().print(result);
+   }
+
+   private String postChunk(String id,
+                            int index,
+                            String checksum,
+                            byte[] contents)
+   {
+      if (id == null || !id.startsWith("upload-") ||
+          index < 0 || index >= chunkCount())
+      {
+         return "{\"error\":{\"code\":10," +
+                "\"message\":\"Parameter value invalid\"," +
+                "\"error\":null}}";
+      }
+
+      // verify the chunk arrived intact (the client resends it if not)
+      CRC32 crc = new CRC32();
+      crc.update(contents);
+      if (contents.length != chunkLength(index) ||
+          !String.valueOf(crc.getValue()).equals(checksum))
+      {
+         return "{\"error\":{\"code\":100," +
+                "\"message\":\"Error occurred while executing method\"," +
+                "\"error\":{\"code\":84,\"category\":\"system\"," +
+                "\"message\":\"Invalid or incomplete multibyte or wide " +
+                "character\"}}}";
+      }
+
+      HashSet<Integer> received = received_.get(id);
+      if (received == null)
+      {
+         received = new HashSet<Integer>();
+         received_.put(id, received);
+      }
+      received.add(index);
+      return "{\"result\":" + received.size() + "}";
+   }
+
+   private static int chunkCount()
+   {
+      return (UPLOAD_SIZE + CHUNK_SIZE - 1) / CHUNK_SIZE;
+   }
+
+   private static int chunkLength(int index)
+   {
+      return Math.min(CHUNK_SIZE, UPLOAD_SIZE - index * CHUNK_SIZE);
+   }
+
+   private static byte[] readBody(HttpServletRequest request)
+                                                      throws IOException
+   {
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      InputStream input = request.getInputStream();
+      byte[] buffer = new byte[8192];
+      int count;
+      while ((count = input.read(buffer)) > 0)
+         body.write(buffer, 0, count);
+      return body.toByteArray();
+   }
+
+   // the indexes of the chunks received for each upload
+   private final HashMap<String, HashSet<Integer>> received_ =
+                                    new HashMap<String, HashSet<Integer>>();
+
+   private static final long serialVersionUID = 1L;
+}
@@ -12,6 +12,8 @@
  */
 package org.rstudio.studio.client.common.r;
 
+import java.util.ArrayList ;
+
 import junit.framework.Assert ;
 
 import com.google.gwt.junit.client.GWTTestCase ;
@@ -106,6 +108,80 @@ public class RTokenizerTests extends GWTTestCase
       }) ;
    }
    
+   public void testUOperatorSpanningLines()
+   {
+      ArrayList<RToken> tokens = RTokenizer.asTokens("%a\nb%") ;
+      Assert.assertEquals(RToken.ERROR, tokens.get(0).getTokenType()) ;
+      Assert.assertEquals(1, tokens.get(0).getLength()) ;
+   }
+
+   public void testAdvance()
+   {
+      String code = SAMPLE ;
+      ArrayList<RToken> tokens = RTokenizer.asTokens(code) ;
+      RTokenizer rt = new RTokenizer(code) ;
+      for (RToken token : tokens)
+      {
+         Assert.assertTrue(rt.advance()) ;
+         Assert.assertEquals(token.getTokenType(), rt.getTokenType()) ;
+         Assert.assertEquals(token.getOffset(), rt.getTokenOffset()) ;
+         Assert.assertEquals(token.getLength(), rt.getTokenLength()) ;
+      }
+      Assert.assertFalse(rt.advance()) ;
+   }
+
+   public void testIncremental()
+   {
+      IncrementalRTokenizer tokenizer = new IncrementalRTokenizer() ;
+      String[] versions = new String[] {
+            SAMPLE,
+            SAMPLE + "x",
+            SAMPLE + "x <- 1",
+            SAMPLE.replace("mean", "median"),
+            SAMPLE.replace("y <- ", "y <- \"open\n"),
+            SAMPLE.replace("y <- ", "y <- %op\n"),
+            SAMPLE.replace("y <- ", "y <- %op%"),
+            "",
+            SAMPLE
+      } ;
+      for (String code : versions)
+      {
+         Assert.assertEquals(RTokenizer.asTokens(code),
+                             tokenizer.tokenize(code)) ;
+      }
+   }
+
+   // re-tokenizing after an edit at the end of a large file should only
+   // rescan the edited line
+   public void testEditAtEndRescansLastLine()
+   {
+      StringBuilder code = new StringBuilder() ;
+      for (int i = 0; i < 2000; i++)
+         code.append(SAMPLE) ;
+      String data = code.toString() ;
+
+      IncrementalRTokenizer tokenizer = new IncrementalRTokenizer() ;
+      int total = tokenizer.tokenize(data).size() ;
+      Assert.assertEquals(total, tokenizer.getRescannedCount()) ;
+
+      tokenizer.tokenize(data) ;
+      Assert.assertEquals(0, tokenizer.getRescannedCount()) ;
+
+      for (int i = 0; i < EDIT_COUNT; i++)
+      {
+         data = data + (char)('a' + (i % 26)) ;
+         tokenizer.tokenize(data) ;
+
+         // the tokens on the last line, plus the newline token which ends
+         // where it starts
+         String lastLine = data.substring(data.lastIndexOf('\n') + 1) ;
+         Assert.assertTrue(tokenizer.getRescannedCount() + " rescanned",
+                           tokenizer.getRescannedCount() <=
+                           RTokenizer.asTokens(lastLine).size() + 1) ;
+      }
+      Assert.assertEquals(RTokenizer.asTokens(data), tokenizer.tokenize(data)) ;
+   }
+
    protected void verify(String data,
                          int tokenType,
                          String content)
@@ -119,6 +195,14 @@ public class RTokenizerTests extends GWTTestCase
       Assert.assertEquals(content, token.getContent()) ;
    }
    
+   private static final String SAMPLE =
+         "f <- function(x, ...) {\n" +
+         "   y <- x[[1]] %in% c('a', \"b\\\"c\")\n" +
+         "   if (y >= 1e-3L && !is.null(x$z)) mean(x[y]) else 0x1F\n" +
+         "}\n" ;
+
+   private static final int EDIT_COUNT = 100 ;
+
    class Verifier
    {
       private final int defaultTokenType ;
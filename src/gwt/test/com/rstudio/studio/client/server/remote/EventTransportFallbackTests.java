@@ -0,0 +1,419 @@
+/*
+ * EventTransportFallbackTests.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import junit.framework.Assert ;
+
+import com.google.gwt.core.client.GWT ;
+import com.google.gwt.core.client.JavaScriptObject ;
+import com.google.gwt.core.client.JsArray ;
+import com.google.gwt.json.client.JSONArray ;
+import com.google.gwt.json.client.JSONBoolean ;
+import com.google.gwt.json.client.JSONNumber ;
+import com.google.gwt.junit.client.GWTTestCase ;
+import com.google.gwt.user.client.Timer ;
+
+import org.rstudio.core.client.jsonrpc.RpcError ;
+import org.rstudio.core.client.jsonrpc.RpcRequest ;
+import org.rstudio.core.client.jsonrpc.RpcRequestCallback ;
+import org.rstudio.core.client.jsonrpc.RpcResponse ;
+import org.rstudio.core.client.jsonrpc.RpcStreamingRequest ;
+import org.rstudio.core.client.jsonrpc.RpcStreamingRequestCallback ;
+import org.rstudio.studio.client.server.ServerError ;
+import org.rstudio.studio.client.server.ServerRequestCallback ;
+import org.rstudio.studio.client.server.Void ;
+import org.rstudio.studio.client.server.remote.RemoteServerEventListener.ClientEvent ;
+
+// Receives events from StandInEventsServlet with the streaming and
+// long-poll transports, and checks that FallbackEventTransport falls back
+// to long-polling when streaming fails (and tries streaming again later)
+public class EventTransportFallbackTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.core.CoreTests" ;
+   }
+
+   public void testStreamingTransport()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      final Receiver receiver = new Receiver() ;
+      new StreamingEventTransport(new StandInEventServer()).listen(
+            -1,
+            new ReceivingHandler(receiver) {
+               public void onCompleted()
+               {
+                  // the stand-in ends the stream after the last event
+                  receiver.verify() ;
+                  finishTest() ;
+               }
+            },
+            null) ;
+   }
+
+   public void testLongPollTransport()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      final Receiver receiver = new Receiver() ;
+      final EventTransport transport =
+                        new LongPollEventTransport(new StandInEventServer()) ;
+      transport.listen(-1, new ReceivingHandler(receiver) {
+         public void onCompleted()
+         {
+            if (receiver.lastId_ < EVENT_COUNT - 1)
+            {
+               transport.listen(receiver.lastId_, this, null) ;
+            }
+            else
+            {
+               receiver.verify() ;
+               finishTest() ;
+            }
+         }
+      }, null) ;
+   }
+
+   public void testCancelStreaming()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      final Receiver receiver = new Receiver() ;
+      final EventTransport transport =
+                     new StreamingEventTransport(new StandInEventServer()) ;
+      transport.listen(-1, new ReceivingHandler(receiver) {
+         @Override
+         public void onEvents(JsArray<ClientEvent> events)
+         {
+            super.onEvents(events) ;
+            if (receiver.received_ == EVENT_COUNT / 2)
+            {
+               transport.cancel() ;
+               new Timer() {
+                  @Override
+                  public void run()
+                  {
+                     Assert.assertEquals(EVENT_COUNT / 2,
+                                         receiver.received_) ;
+                     finishTest() ;
+                  }
+               }.schedule(SETTLE_MS) ;
+            }
+         }
+
+         public void onCompleted()
+         {
+            Assert.fail("Cancelled stream completed") ;
+         }
+      }, null) ;
+   }
+
+   public void testFallbackAfterStreamingError()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      final FakeTransport streaming = new FakeTransport() ;
+      final FakeTransport longPoll = new FakeTransport() ;
+      final FallbackEventTransport transport = new FallbackEventTransport(
+                                                      streaming,
+                                                      longPoll,
+                                                      RETRY_DELAY_MS,
+                                                      MAX_RETRY_DELAY_MS) ;
+      final CountingHandler handler = new CountingHandler() ;
+
+      streaming.fail_ = true ;
+      transport.listen(0, handler, null) ;
+      Assert.assertEquals(1, streaming.listens_) ;
+      Assert.assertEquals(1, handler.errors_) ;
+
+      // long-poll until the retry delay has passed
+      streaming.fail_ = false ;
+      transport.listen(0, handler, null) ;
+      Assert.assertEquals(1, streaming.listens_) ;
+      Assert.assertEquals(1, longPoll.listens_) ;
+      Assert.assertEquals(1, handler.completions_) ;
+
+      new Timer() {
+         @Override
+         public void run()
+         {
+            transport.listen(0, handler, null) ;
+            Assert.assertEquals(2, streaming.listens_) ;
+            Assert.assertEquals(1, longPoll.listens_) ;
+            finishTest() ;
+         }
+      }.schedule(RETRY_DELAY_MS + SETTLE_MS) ;
+   }
+
+   public void testRetryDelayBacksOffAndResets()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      final FakeTransport streaming = new FakeTransport() ;
+      final FakeTransport longPoll = new FakeTransport() ;
+      final FallbackEventTransport transport = new FallbackEventTransport(
+                                                      streaming,
+                                                      longPoll,
+                                                      RETRY_DELAY_MS,
+                                                      MAX_RETRY_DELAY_MS) ;
+      final CountingHandler handler = new CountingHandler() ;
+
+      // two consecutive failures: the second retry waits twice as long
+      streaming.fail_ = true ;
+      transport.listen(0, handler, null) ;
+      after(RETRY_DELAY_MS + SETTLE_MS, new Runnable() {
+         public void run()
+         {
+            transport.listen(0, handler, null) ;
+            Assert.assertEquals(2, streaming.listens_) ;
+            after(RETRY_DELAY_MS + SETTLE_MS, new Runnable() {
+               public void run()
+               {
+                  transport.listen(0, handler, null) ;
+                  Assert.assertEquals(2, streaming.listens_) ;
+                  Assert.assertEquals(1, longPoll.listens_) ;
+                  after(RETRY_DELAY_MS, new Runnable() {
+                     public void run()
+                     {
+                        onBackedOff(transport, streaming, longPoll, handler) ;
+                     }
+                  }) ;
+               }
+            }) ;
+         }
+      }) ;
+   }
+
+   // streaming succeeds once the doubled delay has passed, after which a
+   // failure only waits the initial delay again
+   private void onBackedOff(final FallbackEventTransport transport,
+                            final FakeTransport streaming,
+                            final FakeTransport longPoll,
+                            final CountingHandler handler)
+   {
+      streaming.fail_ = false ;
+      transport.listen(0, handler, null) ;
+      Assert.assertEquals(3, streaming.listens_) ;
+
+      streaming.fail_ = true ;
+      transport.listen(0, handler, null) ;
+      Assert.assertEquals(4, streaming.listens_) ;
+      after(RETRY_DELAY_MS + SETTLE_MS, new Runnable() {
+         public void run()
+         {
+            transport.listen(0, handler, null) ;
+            Assert.assertEquals(5, streaming.listens_) ;
+            Assert.assertEquals(1, longPoll.listens_) ;
+            finishTest() ;
+         }
+      }) ;
+   }
+
+   public void testCancelCancelsActiveTransport()
+   {
+      FakeTransport streaming = new FakeTransport() ;
+      FakeTransport longPoll = new FakeTransport() ;
+      FallbackEventTransport transport = new FallbackEventTransport(
+                                                      streaming,
+                                                      longPoll,
+                                                      RETRY_DELAY_MS,
+                                                      MAX_RETRY_DELAY_MS) ;
+      streaming.complete_ = false ;
+      transport.listen(0, new CountingHandler(), null) ;
+      transport.cancel() ;
+      Assert.assertEquals(1, streaming.cancels_) ;
+      Assert.assertEquals(0, longPoll.cancels_) ;
+   }
+
+   private static void after(int delayMs, final Runnable runnable)
+   {
+      new Timer() {
+         @Override
+         public void run()
+         {
+            runnable.run() ;
+         }
+      }.schedule(delayMs) ;
+   }
+
+   // completes (or fails) each listen request immediately
+   private static class FakeTransport implements EventTransport
+   {
+      public void listen(int lastEventId,
+                         Handler handler,
+                         RetryHandler retryHandler)
+      {
+         listens_++ ;
+         if (fail_)
+         {
+            handler.onError(new RemoteServerError(
+                  RpcError.create(RpcError.CONNECTION_ERROR, "Dropped"))) ;
+         }
+         else if (complete_)
+         {
+            handler.onEvents(JavaScriptObject.createArray()
+                                          .<JsArray<ClientEvent>>cast()) ;
+            handler.onCompleted() ;
+         }
+      }
+
+      public void cancel()
+      {
+         cancels_++ ;
+      }
+
+      boolean fail_ = false ;
+      boolean complete_ = true ;
+      int listens_ = 0 ;
+      int cancels_ = 0 ;
+   }
+
+   private static class CountingHandler implements EventTransport.Handler
+   {
+      public void onEvents(JsArray<ClientEvent> events)
+      {
+      }
+
+      public void onCompleted()
+      {
+         completions_++ ;
+      }
+
+      public void onError(ServerError error)
+      {
+         errors_++ ;
+      }
+
+      int completions_ = 0 ;
+      int errors_ = 0 ;
+   }
+
+   // checks that events arrive in order
+   private abstract static class ReceivingHandler
+                                          implements EventTransport.Handler
+   {
+      ReceivingHandler(Receiver receiver)
+      {
+         receiver_ = receiver ;
+      }
+
+      public void onEvents(JsArray<ClientEvent> events)
+      {
+         for (int i = 0; i < events.length(); i++)
+         {
+            int id = events.get(i).getId() ;
+            Assert.assertEquals(receiver_.lastId_ + 1, id) ;
+            receiver_.lastId_ = id ;
+            receiver_.received_++ ;
+         }
+      }
+
+      public void onError(ServerError error)
+      {
+         Assert.fail(error.getUserMessage()) ;
+      }
+
+      private final Receiver receiver_ ;
+   }
+
+   private static class Receiver
+   {
+      void verify()
+      {
+         Assert.assertEquals(EVENT_COUNT, received_) ;
+         Assert.assertEquals(EVENT_COUNT - 1, lastId_) ;
+      }
+
+      int lastId_ = -1 ;
+      int received_ = 0 ;
+   }
+
+   // makes the same get_events requests as RemoteServer (without the
+   // client id, error resolution and retries)
+   private static class StandInEventServer implements EventServer
+   {
+      public RpcRequest getEvents(
+                  int lastEventId,
+                  final ServerRequestCallback<JsArray<ClientEvent>> requestCallback,
+                  RetryHandler retryHandler)
+      {
+         JSONArray params = new JSONArray() ;
+         params.set(0, new JSONNumber(lastEventId)) ;
+         RpcRequest request = new RpcRequest(EVENTS_URL,
+                                             "get_events",
+                                             params,
+                                             null,
+                                             null,
+                                             0) ;
+         request.send(new RpcRequestCallback() {
+            public void onError(RpcRequest request, RpcError error)
+            {
+               requestCallback.onError(new RemoteServerError(error)) ;
+            }
+
+            public void onResponseReceived(RpcRequest request,
+                                           RpcResponse response)
+            {
+               requestCallback.onResponseReceived(
+                     response.<JsArray<ClientEvent>>getResult()) ;
+            }
+         }) ;
+         return request ;
+      }
+
+      public RpcStreamingRequest streamEvents(
+                  int lastEventId,
+                  final ServerRequestCallback<JsArray<ClientEvent>> eventsCallback,
+                  final ServerRequestCallback<Void> completedCallback,
+                  RetryHandler retryHandler)
+      {
+         JSONArray params = new JSONArray() ;
+         params.set(0, new JSONNumber(lastEventId)) ;
+         params.set(1, JSONBoolean.getInstance(true)) ;
+         RpcStreamingRequest request = new RpcStreamingRequest(EVENTS_URL,
+                                                               "get_events",
+                                                               params,
+                                                               null,
+                                                               0) ;
+         request.send(new RpcStreamingRequestCallback() {
+            public void onError(RpcStreamingRequest request, RpcError error)
+            {
+               if (!completedCallback.cancelled())
+                  completedCallback.onError(new RemoteServerError(error)) ;
+            }
+
+            public void onResponseReceived(RpcStreamingRequest request,
+                                           RpcResponse response)
+            {
+               if (!eventsCallback.cancelled())
+                  eventsCallback.onResponseReceived(
+                        response.<JsArray<ClientEvent>>getResult()) ;
+            }
+
+            public void onCompleted(RpcStreamingRequest request)
+            {
+               if (!completedCallback.cancelled())
+                  completedCallback.onResponseReceived(null) ;
+            }
+         }) ;
+         return request ;
+      }
+   }
+
+   // keep in sync with StandInEventsServlet
+   private static final int EVENT_COUNT = 50 ;
+
+   private static final int RETRY_DELAY_MS = 200 ;
+   private static final int MAX_RETRY_DELAY_MS = 1000 ;
+   private static final int SETTLE_MS = 100 ;
+   private static final int TIMEOUT_MS = 20000 ;
+   private static final String EVENTS_URL =
+                                 GWT.getModuleBaseURL() + "events/get_events" ;
+}
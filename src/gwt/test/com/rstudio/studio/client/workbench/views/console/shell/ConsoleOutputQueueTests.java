@@ -0,0 +1,199 @@
+/*
+ * ConsoleOutputQueueTests.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.console.shell;
+
+import junit.framework.Assert ;
+
+import com.google.gwt.dom.client.Document ;
+import com.google.gwt.dom.client.PreElement ;
+import com.google.gwt.junit.client.GWTTestCase ;
+
+// Writes through ConsoleOutputQueue into PlainOutput (the sink which
+// ShellPane writes into in non-virtualized mode)
+public class ConsoleOutputQueueTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.core.Core" ;
+   }
+
+   @Override
+   protected void gwtSetUp()
+   {
+      pre_ = Document.get().createPreElement() ;
+      Document.get().getBody().appendChild(pre_) ;
+   }
+
+   @Override
+   protected void gwtTearDown()
+   {
+      pre_.removeFromParent() ;
+   }
+
+   public void testMergesConsecutiveChunks()
+   {
+      RecordingSink sink = new RecordingSink(new PlainOutput(pre_, OUTPUT)) ;
+      ConsoleOutputQueue queue = new ConsoleOutputQueue(sink, BUDGET_MS) ;
+      queue.add("a", OUTPUT) ;
+      queue.add("b\n", OUTPUT) ;
+      queue.add("oops\n", ERROR) ;
+      queue.add("c\n", OUTPUT) ;
+      queue.flush() ;
+
+      Assert.assertTrue(queue.isEmpty()) ;
+      Assert.assertEquals(3, sink.writes_) ;
+      Assert.assertEquals(1, sink.flushes_) ;
+      Assert.assertEquals("ab\noops\nc\n", pre_.getInnerText()) ;
+      Assert.assertEquals(3, pre_.getChildCount()) ;
+   }
+
+   public void testTrimsOncePerFlush()
+   {
+      PlainOutput output = new PlainOutput(pre_, OUTPUT) ;
+      output.setMaxLines(10) ;
+      ConsoleOutputQueue queue = new ConsoleOutputQueue(output, BUDGET_MS) ;
+      queue.add(lines(0, 100), OUTPUT) ;
+      queue.flush() ;
+
+      Assert.assertEquals(lines(90, 100), pre_.getInnerText()) ;
+   }
+
+   public void testBudgetedFlush()
+   {
+      final RecordingSink sink = 
+                        new RecordingSink(new PlainOutput(pre_, OUTPUT)) ;
+      final ConsoleOutputQueue queue = new ConsoleOutputQueue(sink, BUDGET_MS) ;
+      final String data = lines(0, LINE_COUNT) ;
+      queue.add(data, OUTPUT) ;
+
+      delayTestFinish(30000) ;
+      sink.onDone_ = new Runnable() {
+         public void run()
+         {
+            Assert.assertEquals(data, pre_.getInnerText()) ;
+            Assert.assertTrue(sink.flushes_ > 1) ;
+
+            // a pass can overrun the budget by at most one slice
+            Assert.assertTrue("longest pass " + sink.longestPass_ + "ms",
+                              sink.longestPass_ < BUDGET_MS + 100) ;
+            finishTest() ;
+         }
+      } ;
+      sink.expectedLength_ = data.length() ;
+   }
+
+   // output arriving a line at a time (e.g. R printing within a loop) is
+   // written faster through the queue than by writing (and trimming) each
+   // line as it arrives, which is what ShellPane did before the queue
+   public void testThroughput()
+   {
+      PlainOutput unbatched = new PlainOutput(pre_, OUTPUT) ;
+      unbatched.setMaxLines(MAX_LINES) ;
+      long start = System.currentTimeMillis() ;
+      for (int i = 0; i < THROUGHPUT_LINE_COUNT; i++)
+      {
+         unbatched.append(line(i), classNameForLine(i), false) ;
+         unbatched.trimExcess() ;
+      }
+      long unbatchedMs = System.currentTimeMillis() - start ;
+      String unbatchedText = pre_.getInnerText() ;
+
+      pre_.setInnerText("") ;
+      PlainOutput output = new PlainOutput(pre_, OUTPUT) ;
+      output.setMaxLines(MAX_LINES) ;
+      RecordingSink sink = new RecordingSink(output) ;
+      ConsoleOutputQueue queue = new ConsoleOutputQueue(sink, BUDGET_MS) ;
+      start = System.currentTimeMillis() ;
+      for (int i = 0; i < THROUGHPUT_LINE_COUNT; i++)
+         queue.add(line(i), classNameForLine(i)) ;
+      queue.flush() ;
+      long batchedMs = System.currentTimeMillis() - start ;
+
+      Assert.assertTrue(queue.isEmpty()) ;
+      Assert.assertEquals(unbatchedText, pre_.getInnerText()) ;
+      Assert.assertTrue(sink.writes_ < THROUGHPUT_LINE_COUNT / 50) ;
+      Assert.assertTrue("batched " + batchedMs + "ms, unbatched " +
+                        unbatchedMs + "ms",
+                        batchedMs < unbatchedMs) ;
+   }
+
+   private static String line(int i)
+   {
+      return "[" + i + "] " + LINE ;
+   }
+
+   private static String lines(int from, int to)
+   {
+      StringBuilder data = new StringBuilder() ;
+      for (int i = from; i < to; i++)
+         data.append(line(i)) ;
+      return data.toString() ;
+   }
+
+   // every hundredth line is an error
+   private static String classNameForLine(int i)
+   {
+      return i % 100 == 0 ? ERROR : OUTPUT ;
+   }
+
+   // passes writes through to PlainOutput, counting writes and flushes and
+   // timing each write pass
+   private static class RecordingSink implements ConsoleOutputQueue.Sink
+   {
+      RecordingSink(PlainOutput output)
+      {
+         output_ = output ;
+      }
+
+      public void write(String text, String className)
+      {
+         if (passStart_ == 0)
+            passStart_ = System.currentTimeMillis() ;
+         writes_++ ;
+         written_ += text.length() ;
+         output_.write(text, className) ;
+      }
+
+      public void onFlushed()
+      {
+         output_.onFlushed() ;
+         flushes_++ ;
+         longestPass_ = Math.max(longestPass_,
+                                 System.currentTimeMillis() - passStart_) ;
+         passStart_ = 0 ;
+         if (onDone_ != null && written_ >= expectedLength_)
+            onDone_.run() ;
+      }
+
+      private final PlainOutput output_ ;
+      int writes_ = 0 ;
+      int flushes_ = 0 ;
+      long written_ = 0 ;
+      long expectedLength_ = 0 ;
+      long passStart_ = 0 ;
+      long longestPass_ = 0 ;
+      Runnable onDone_ ;
+   }
+
+   private PreElement pre_ ;
+
+   private static final String OUTPUT = "output" ;
+   private static final String ERROR = "error" ;
+   private static final int BUDGET_MS = 20 ;
+   private static final int LINE_COUNT = 100000 ;
+   private static final int THROUGHPUT_LINE_COUNT = 20000 ;
+   private static final int MAX_LINES = 1000 ;
+   private static final String LINE =
+         "the quick brown fox jumps over the lazy dog 0123456789\n" ;
+}
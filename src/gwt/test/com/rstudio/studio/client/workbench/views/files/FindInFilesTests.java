@@ -0,0 +1,481 @@
+/*
+ * FindInFilesTests.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files;
+
+import junit.framework.Assert ;
+
+import com.google.gwt.core.client.JavaScriptObject ;
+import com.google.gwt.core.client.JsArrayInteger ;
+import com.google.gwt.core.client.JsArrayString ;
+import com.google.gwt.core.client.Scheduler ;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand ;
+import com.google.gwt.junit.client.GWTTestCase ;
+
+import org.rstudio.core.client.files.FileSystemItem ;
+import org.rstudio.studio.client.application.events.EventBus ;
+import org.rstudio.studio.client.common.filetypes.FileTypeRegistry ;
+import org.rstudio.studio.client.common.filetypes.events.OpenSourceFileEvent ;
+import org.rstudio.studio.client.common.filetypes.events.OpenSourceFileHandler ;
+import org.rstudio.studio.client.server.ServerRequestCallback ;
+import org.rstudio.studio.client.server.Void ;
+import org.rstudio.studio.client.workbench.views.files.events.FindResultEvent ;
+import org.rstudio.studio.client.workbench.views.files.model.FindResult ;
+import org.rstudio.studio.client.workbench.views.files.model.FindResults ;
+import org.rstudio.studio.client.workbench.views.files.model.FindServerOperations ;
+import org.rstudio.studio.client.workbench.views.files.ui.FindInFilesDialog ;
+
+import java.util.ArrayList ;
+import java.util.HashSet ;
+
+// Drives the FindInFiles presenter with StandInFindServer, which searches
+// a synthetic tree and delivers its results as find_result batches over
+// the event bus the same way SessionFind does
+public class FindInFilesTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.core.Core" ;
+   }
+
+   @Override
+   protected void gwtSetUp()
+   {
+      eventBus_ = new EventBus() ;
+      server_ = new StandInFindServer() ;
+      display_ = new RecordingDisplay() ;
+      findInFiles_ = new FindInFiles(eventBus_,
+                                     server_,
+                                     null,
+                                     new FileTypeRegistry(eventBus_),
+                                     new FindInFiles.DisplayFactory() {
+         public FindInFiles.Display create(FindInFilesDialog.Observer observer)
+         {
+            observer_ = observer ;
+            return display_ ;
+         }
+      }) ;
+      findInFiles_.execute(FileSystemItem.createDir(ROOT)) ;
+   }
+
+   public void testResultsArriveInBatches()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      server_.onComplete_ = new Runnable() {
+         public void run()
+         {
+            // each batch is shown as it arrives
+            Assert.assertEquals(server_.batchesSent_, display_.batches_) ;
+            Assert.assertTrue(display_.batches_ > 1) ;
+            Assert.assertTrue(display_.largestBatch_ <= BATCH_SIZE) ;
+
+            Assert.assertEquals(needleCount(), display_.results_.size()) ;
+            for (FindResult result : display_.results_)
+            {
+               Assert.assertTrue(result.getFile().endsWith(".R")) ;
+               Assert.assertEquals(lineValue(result.getFile(),
+                                             result.getLine()),
+                                   result.getLineValue()) ;
+            }
+
+            Assert.assertFalse(display_.searching_) ;
+            Assert.assertEquals(needleCount() + " matches in " +
+                                (DIR_COUNT * FILE_COUNT) + " files",
+                                display_.status_) ;
+            finishTest() ;
+         }
+      } ;
+      observer_.onFind("needle", false, false, "*.R") ;
+   }
+
+   public void testResultCap()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      server_.onComplete_ = new Runnable() {
+         public void run()
+         {
+            Assert.assertEquals(MAX_RESULTS, display_.results_.size()) ;
+            Assert.assertTrue(display_.largestBatch_ <= BATCH_SIZE) ;
+            Assert.assertTrue(display_.status_,
+                              display_.status_.indexOf(
+                                    "maximum number of results") >= 0) ;
+            Assert.assertFalse(display_.searching_) ;
+            finishTest() ;
+         }
+      } ;
+      observer_.onFind("<-", false, false, "") ;
+   }
+
+   public void testNoResultsAfterStop()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      server_.onBatch_ = new Runnable() {
+         public void run()
+         {
+            // (a batch in the second turn, after the handle is known)
+            if (server_.batchesSent_ != FILES_PER_TURN + 3)
+               return ;
+
+            final int shown = display_.results_.size() ;
+            server_.afterStop_ = new Runnable() {
+               public void run()
+               {
+                  // the batch which was on its way when we stopped
+                  // isn't shown
+                  Assert.assertEquals(shown, display_.results_.size()) ;
+                  Assert.assertEquals(1, server_.stopped_.size()) ;
+                  Assert.assertFalse(display_.searching_) ;
+                  Assert.assertTrue(display_.status_.endsWith(
+                                                   "(search stopped)")) ;
+                  finishTest() ;
+               }
+            } ;
+            observer_.onStop() ;
+         }
+      } ;
+      server_.onComplete_ = new Runnable() {
+         public void run()
+         {
+            Assert.fail("Stopped search completed") ;
+         }
+      } ;
+      observer_.onFind("<-", false, false, "") ;
+   }
+
+   public void testSupersededSearchIgnored()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      server_.onComplete_ = new Runnable() {
+         public void run()
+         {
+            Assert.assertEquals(1, server_.stopped_.size()) ;
+            Assert.assertEquals(needleCount(), display_.results_.size()) ;
+            for (FindResult result : display_.results_)
+               Assert.assertTrue(result.getLineValue().indexOf("needle") >= 0) ;
+            finishTest() ;
+         }
+      } ;
+
+      // the first search's handle arrives after it has been replaced (and
+      // its first batch arrives before either handle)
+      observer_.onFind("<-", false, false, "") ;
+      observer_.onFind("needle", false, false, "") ;
+   }
+
+   public void testOpenResultNavigatesToLine()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      final ArrayList<OpenSourceFileEvent> opened =
+                                       new ArrayList<OpenSourceFileEvent>() ;
+      eventBus_.addHandler(OpenSourceFileEvent.TYPE,
+                           new OpenSourceFileHandler() {
+         public void onOpenSourceFile(OpenSourceFileEvent event)
+         {
+            opened.add(event) ;
+         }
+      }) ;
+
+      server_.onComplete_ = new Runnable() {
+         public void run()
+         {
+            FindResult result = display_.results_.get(
+                                          display_.results_.size() / 2) ;
+            observer_.onOpenResult(result) ;
+
+            Assert.assertEquals(1, opened.size()) ;
+            Assert.assertEquals(result.getFile(),
+                                opened.get(0).getFile().getPath()) ;
+            Assert.assertEquals(result.getLine(), opened.get(0).getLine()) ;
+            finishTest() ;
+         }
+      } ;
+      observer_.onFind("needle", false, false, "*.R") ;
+   }
+
+   // the synthetic tree: DIR_COUNT directories of FILE_COUNT files, each
+   // LINE_COUNT lines long. every line contains "<-" and some contain
+   // "needle"
+   private static String path(int dir, int file)
+   {
+      return ROOT + "/dir" + dir + "/file" + file + ".R" ;
+   }
+
+   private static boolean isMatch(int dir, int file, int line)
+   {
+      return (dir + file + line) % 13 == 0 ;
+   }
+
+   private static String line(int dir, int file, int line)
+   {
+      return isMatch(dir, file, line) ? "x <- find(\"needle\", " + line + ")"
+                                      : "y <- " + line + " + 1" ;
+   }
+
+   private static String lineValue(String path, int line)
+   {
+      for (int dir = 0; dir < DIR_COUNT; dir++)
+         for (int file = 0; file < FILE_COUNT; file++)
+            if (path(dir, file).equals(path))
+               return line(dir, file, line) ;
+      return null ;
+   }
+
+   private static int needleCount()
+   {
+      int count = 0 ;
+      for (int dir = 0; dir < DIR_COUNT; dir++)
+         for (int file = 0; file < FILE_COUNT; file++)
+            for (int line = 1; line <= LINE_COUNT; line++)
+               if (isMatch(dir, file, line))
+                  count++ ;
+      return count ;
+   }
+
+   private static void defer(final Runnable runnable)
+   {
+      Scheduler.get().scheduleDeferred(new ScheduledCommand() {
+         public void execute()
+         {
+            runnable.run() ;
+         }
+      }) ;
+   }
+
+   private static class RecordingDisplay implements FindInFiles.Display
+   {
+      public void setDirectory(FileSystemItem directory)
+      {
+      }
+
+      public void showModal()
+      {
+      }
+
+      public void clearResults()
+      {
+         results_.clear() ;
+      }
+
+      public void addResults(ArrayList<FindResult> results)
+      {
+         batches_++ ;
+         largestBatch_ = Math.max(largestBatch_, results.size()) ;
+         results_.addAll(results) ;
+      }
+
+      public void setStatus(String status)
+      {
+         status_ = status ;
+      }
+
+      public void setSearching(boolean searching)
+      {
+         searching_ = searching ;
+      }
+
+      final ArrayList<FindResult> results_ = new ArrayList<FindResult>() ;
+      int batches_ = 0 ;
+      int largestBatch_ = 0 ;
+      String status_ ;
+      boolean searching_ ;
+   }
+
+   // searches the synthetic tree FILES_PER_TURN files at a time (literal,
+   // case sensitive queries only). like SessionFind, results are sent in
+   // batches of at most BATCH_SIZE (and whatever has been found at the end
+   // of each turn, which stands in for the batch interval), and a search
+   // stops at MAX_RESULTS. the first batch is sent before begin_find
+   // returns and one more batch is sent after a search is stopped, as
+   // either can happen with the real server
+   private class StandInFindServer implements FindServerOperations
+   {
+      public void beginFind(String searchString,
+                            boolean isRegex,
+                            boolean ignoreCase,
+                            FileSystemItem directory,
+                            String filePattern,
+                            final ServerRequestCallback<String> requestCallback)
+      {
+         final Search search = new Search("find" + (++lastHandle_),
+                                          searchString) ;
+         running_.add(search.handle_) ;
+         defer(new Runnable() {
+            public void run()
+            {
+               search.searchSome() ;
+               requestCallback.onResponseReceived(search.handle_) ;
+            }
+         }) ;
+      }
+
+      public void stopFind(final String handle,
+                           final ServerRequestCallback<Void> requestCallback)
+      {
+         running_.remove(handle) ;
+         stopped_.add(handle) ;
+         defer(new Runnable() {
+            public void run()
+            {
+               Search inFlight = new Search(handle, "") ;
+               inFlight.add(ROOT + "/late.R", 1, "late <- TRUE") ;
+               inFlight.send(false, false) ;
+               requestCallback.onResponseReceived(null) ;
+               if (afterStop_ != null)
+                  afterStop_.run() ;
+            }
+         }) ;
+      }
+
+      private class Search
+      {
+         Search(String handle, String query)
+         {
+            handle_ = handle ;
+            query_ = query ;
+         }
+
+         void searchSome()
+         {
+            for (int i = 0; i < FILES_PER_TURN; i++, file_++)
+            {
+               if (!running_.contains(handle_))
+                  return ;
+
+               if (file_ == DIR_COUNT * FILE_COUNT)
+               {
+                  finish(false) ;
+                  return ;
+               }
+
+               int dir = file_ / FILE_COUNT ;
+               int file = file_ % FILE_COUNT ;
+               for (int line = 1; line <= LINE_COUNT; line++)
+               {
+                  String value = line(dir, file, line) ;
+                  if (value.indexOf(query_) < 0)
+                     continue ;
+
+                  add(path(dir, file), line, value) ;
+                  if (count_ == MAX_RESULTS)
+                  {
+                     filesSearched_++ ;
+                     finish(true) ;
+                     return ;
+                  }
+                  if (lines_.length() == BATCH_SIZE)
+                     send(false, false) ;
+               }
+               filesSearched_++ ;
+            }
+
+            if (lines_.length() > 0)
+               send(false, false) ;
+            defer(new Runnable() {
+               public void run()
+               {
+                  searchSome() ;
+               }
+            }) ;
+         }
+
+         void add(String file, int line, String value)
+         {
+            files_.push(file) ;
+            lines_.push(line) ;
+            values_.push(value) ;
+            count_++ ;
+         }
+
+         void finish(boolean truncated)
+         {
+            running_.remove(handle_) ;
+            send(true, truncated) ;
+            if (onComplete_ != null)
+               onComplete_.run() ;
+         }
+
+         void send(boolean complete, boolean truncated)
+         {
+            FindResults results = createResults(handle_,
+                                                filesSearched_,
+                                                complete,
+                                                truncated,
+                                                files_,
+                                                lines_,
+                                                values_) ;
+            files_ = JavaScriptObject.createArray().cast() ;
+            lines_ = JavaScriptObject.createArray().cast() ;
+            values_ = JavaScriptObject.createArray().cast() ;
+
+            batchesSent_++ ;
+            eventBus_.fireEvent(new FindResultEvent(results)) ;
+            if (onBatch_ != null)
+               onBatch_.run() ;
+         }
+
+         private final String handle_ ;
+         private final String query_ ;
+         private int file_ = 0 ;
+         private int filesSearched_ = 0 ;
+         private int count_ = 0 ;
+         private JsArrayString files_ =
+                              JavaScriptObject.createArray().cast() ;
+         private JsArrayInteger lines_ =
+                              JavaScriptObject.createArray().cast() ;
+         private JsArrayString values_ =
+                              JavaScriptObject.createArray().cast() ;
+      }
+
+      private int lastHandle_ = 0 ;
+      private final HashSet<String> running_ = new HashSet<String>() ;
+      final HashSet<String> stopped_ = new HashSet<String>() ;
+      int batchesSent_ = 0 ;
+      Runnable onBatch_ ;
+      Runnable onComplete_ ;
+      Runnable afterStop_ ;
+   }
+
+   private static native FindResults createResults(String handle,
+                                                   int filesSearched,
+                                                   boolean complete,
+                                                   boolean truncated,
+                                                   JsArrayString files,
+                                                   JsArrayInteger lines,
+                                                   JsArrayString values) /*-{
+      return {
+         handle: handle,
+         files_searched: filesSearched,
+         complete: complete,
+         truncated: truncated,
+         results: { file: files, line: lines, line_value: values }
+      } ;
+   }-*/;
+
+   private EventBus eventBus_ ;
+   private StandInFindServer server_ ;
+   private RecordingDisplay display_ ;
+   private FindInFiles findInFiles_ ;
+   private FindInFilesDialog.Observer observer_ ;
+
+   private static final String ROOT = "~/tree" ;
+   private static final int DIR_COUNT = 10 ;
+   private static final int FILE_COUNT = 20 ;
+   private static final int LINE_COUNT = 50 ;
+   private static final int FILES_PER_TURN = 10 ;
+
+   // as in SessionFind.cpp
+   private static final int BATCH_SIZE = 50 ;
+   private static final int MAX_RESULTS = 1000 ;
+
+   private static final int TIMEOUT_MS = 10000 ;
+}
@@ -0,0 +1,558 @@
+/*
+ * ChunkedFileUploaderTests.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.ui;
+
+import junit.framework.Assert ;
+
+import com.google.gwt.core.client.JavaScriptObject ;
+import com.google.gwt.core.client.JsArrayInteger ;
+import com.google.gwt.core.client.JsArrayString ;
+import com.google.gwt.core.client.Scheduler ;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand ;
+import com.google.gwt.junit.client.GWTTestCase ;
+import com.google.gwt.user.client.Timer ;
+
+import org.rstudio.core.client.files.FileSystemItem ;
+import org.rstudio.studio.client.server.ServerRequestCallback ;
+import org.rstudio.studio.client.server.Void ;
+import org.rstudio.studio.client.workbench.views.files.model.ChunkedUploadServerOperations ;
+import org.rstudio.studio.client.workbench.views.files.model.ChunkedUploadStatus ;
+import org.rstudio.studio.client.workbench.views.files.model.PendingFileUpload ;
+
+import java.util.HashMap ;
+import java.util.TreeMap ;
+
+// Drives the uploader's chunk scheduling, retries and resuming against an
+// in-memory file and server. Reading the file and posting chunks go
+// through ChunkedFileUploader's Source and Sender, so the browser-only
+// parts (FileApiUploadSource and XhrChunkSender) aren't involved
+public class ChunkedFileUploaderTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.core.Core" ;
+   }
+
+   @Override
+   protected void gwtSetUp()
+   {
+      server_ = new MemoryServer() ;
+      sender_ = new MemorySender() ;
+      uploader_ = new ChunkedFileUploader(server_, sender_) ;
+      uploader_.setRetryDelay(1) ;
+   }
+
+   public void testUpload()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      final String contents = createContents(1) ;
+      uploader_.start(new MemorySource(contents, 1000), DIRECTORY,
+                      new Observer() {
+         public void onCompleted(PendingFileUpload pendingUpload)
+         {
+            Assert.assertEquals(contents, server_.completed_) ;
+            Assert.assertEquals(CHUNK_COUNT, sender_.posts_) ;
+            Assert.assertEquals(MAX_IN_FLIGHT, sender_.maxInFlight_) ;
+            Assert.assertEquals(SIZE, bytesSent_, 0) ;
+            finishTest() ;
+         }
+      }) ;
+   }
+
+   public void testFailedChunksRetried()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      final String contents = createContents(2) ;
+      sender_.failures_.put(2, 2) ;
+      sender_.failures_.put(7, 1) ;
+      uploader_.start(new MemorySource(contents, 2000), DIRECTORY,
+                      new Observer() {
+         public void onCompleted(PendingFileUpload pendingUpload)
+         {
+            Assert.assertEquals(contents, server_.completed_) ;
+            Assert.assertEquals(CHUNK_COUNT + 3, sender_.posts_) ;
+            finishTest() ;
+         }
+      }) ;
+   }
+
+   public void testCorruptedChunksResent()
+   {
+      // the server rejects chunks which don't match their checksum
+      delayTestFinish(TIMEOUT_MS) ;
+      final String contents = createContents(3) ;
+      sender_.corruptions_.put(0, 1) ;
+      sender_.corruptions_.put(CHUNK_COUNT - 1, 2) ;
+      uploader_.start(new MemorySource(contents, 3000), DIRECTORY,
+                      new Observer() {
+         public void onCompleted(PendingFileUpload pendingUpload)
+         {
+            Assert.assertEquals(contents, server_.completed_) ;
+            Assert.assertEquals(CHUNK_COUNT + 3, sender_.posts_) ;
+            finishTest() ;
+         }
+      }) ;
+   }
+
+   public void testStopsAfterRepeatedFailures()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      sender_.failures_.put(FAILING_CHUNK, MAX_ATTEMPTS) ;
+      uploader_.start(new MemorySource(createContents(4), 4000), DIRECTORY,
+                      new Observer() {
+         public void onCompleted(PendingFileUpload pendingUpload)
+         {
+            fail("Upload completed despite a failing chunk") ;
+         }
+
+         @Override
+         public void onError(String message)
+         {
+            Assert.assertEquals(MAX_ATTEMPTS,
+                                sender_.chunkPosts_.get(FAILING_CHUNK)
+                                                              .intValue()) ;
+            Assert.assertNull(server_.completed_) ;
+            Assert.assertEquals(0, sender_.inFlight_) ;
+            finishTest() ;
+         }
+      }) ;
+   }
+
+   public void testResumeSameFile()
+   {
+      // the chunks received before the interruption match, so they
+      // aren't sent again
+      String contents = createContents(5) ;
+      testResume(new MemorySource(contents, 5000),
+                 new MemorySource(contents, 5000),
+                 true,
+                 false) ;
+   }
+
+   public void testResumeChangedContents()
+   {
+      // same name, size and modification time, but every chunk differs so
+      // the chunks received before the interruption are all sent again
+      testResume(new MemorySource(createContents(6), 6000),
+                 new MemorySource(createContents(7), 6000),
+                 true,
+                 true) ;
+   }
+
+   public void testNoResumeWhenModified()
+   {
+      testResume(new MemorySource(createContents(8), 8000),
+                 new MemorySource(createContents(8), 9000),
+                 false,
+                 true) ;
+   }
+
+   public void testCancel()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      sender_.onPosted_ = new Runnable() {
+         public void run()
+         {
+            if (sender_.posts_ != CHUNK_COUNT / 2)
+               return ;
+
+            // cancel part way through (with chunks in flight)
+            defer(new Runnable() {
+               public void run()
+               {
+                  uploader_.cancel() ;
+                  onCancelled(sender_.posts_) ;
+               }
+            }) ;
+         }
+      } ;
+      uploader_.start(new MemorySource(createContents(9), 9000), DIRECTORY,
+                      new Observer() {
+         public void onCompleted(PendingFileUpload pendingUpload)
+         {
+            fail("Cancelled upload completed") ;
+         }
+      }) ;
+   }
+
+   private void onCancelled(final int posts)
+   {
+      new Timer() {
+         @Override
+         public void run()
+         {
+            Assert.assertEquals(posts, sender_.posts_) ;
+            Assert.assertEquals(0, sender_.inFlight_) ;
+            Assert.assertTrue(server_.uploads_.isEmpty()) ;
+            Assert.assertNull(server_.completed_) ;
+            finishTest() ;
+         }
+      }.schedule(SETTLE_MS) ;
+   }
+
+   // uploads the first source until a chunk fails too often, then uploads
+   // the second one
+   private void testResume(MemorySource first,
+                           final MemorySource second,
+                           final boolean expectResume,
+                           final boolean expectResend)
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      sender_.failures_.put(FAILING_CHUNK, MAX_ATTEMPTS) ;
+      uploader_.start(first, DIRECTORY, new Observer() {
+         public void onCompleted(PendingFileUpload pendingUpload)
+         {
+            fail("Interrupted upload completed") ;
+         }
+
+         @Override
+         public void onError(String message)
+         {
+            final String firstId = server_.lastId_ ;
+            final int received = server_.getUpload(firstId).chunks_.size() ;
+            Assert.assertTrue(received > 0) ;
+
+            sender_.posts_ = 0 ;
+            uploader_.start(second, DIRECTORY, new Observer() {
+               public void onCompleted(PendingFileUpload pendingUpload)
+               {
+                  Assert.assertEquals(expectResume,
+                                      firstId.equals(server_.lastId_)) ;
+                  Assert.assertEquals(second.contents_, server_.completed_) ;
+                  Assert.assertEquals(expectResend
+                                          ? CHUNK_COUNT
+                                          : CHUNK_COUNT - received,
+                                      sender_.posts_) ;
+                  finishTest() ;
+               }
+            }) ;
+         }
+      }) ;
+   }
+
+   private static String createContents(int seed)
+   {
+      StringBuilder contents = new StringBuilder() ;
+      for (int i = 0; i < SIZE; i++)
+         contents.append((char) ('a' + (i + seed) % 26)) ;
+      return contents.toString() ;
+   }
+
+   private static String checksum(String data)
+   {
+      return Integer.toString(data.hashCode()) ;
+   }
+
+   private static void defer(final Runnable runnable)
+   {
+      Scheduler.get().scheduleDeferred(new ScheduledCommand() {
+         public void execute()
+         {
+            runnable.run() ;
+         }
+      }) ;
+   }
+
+   private static native JavaScriptObject createData(String text) /*-{
+      return { text: text } ;
+   }-*/;
+
+   private static native String getText(JavaScriptObject data) /*-{
+      return data.text ;
+   }-*/;
+
+   private static native ChunkedUploadStatus createStatus(
+                                          String id,
+                                          int chunkSize,
+                                          JsArrayInteger received,
+                                          JsArrayString checksums) /*-{
+      return {
+         id: id,
+         chunk_size: chunkSize,
+         received: received,
+         checksums: checksums
+      } ;
+   }-*/;
+
+   private static native PendingFileUpload createPendingUpload() /*-{
+      return { token: {}, overwrites: [] } ;
+   }-*/;
+
+   private abstract class Observer implements ChunkedFileUploader.Observer
+   {
+      public void onProgress(double bytesSent, double totalBytes)
+      {
+         Assert.assertTrue(bytesSent <= totalBytes) ;
+         bytesSent_ = bytesSent ;
+      }
+
+      public void onError(String message)
+      {
+         fail(message) ;
+      }
+   }
+
+   private static class MemorySource implements ChunkedFileUploader.Source
+   {
+      MemorySource(String contents, double lastModified)
+      {
+         contents_ = contents ;
+         lastModified_ = lastModified ;
+      }
+
+      public String getName()
+      {
+         return FILENAME ;
+      }
+
+      public double getSize()
+      {
+         return contents_.length() ;
+      }
+
+      public double getLastModified()
+      {
+         return lastModified_ ;
+      }
+
+      public void read(double start,
+                       double end,
+                       final ChunkedFileUploader.ReadCallback callback)
+      {
+         final String text = contents_.substring((int) start, (int) end) ;
+         defer(new Runnable() {
+            public void run()
+            {
+               callback.onRead(createData(text), checksum(text)) ;
+            }
+         }) ;
+      }
+
+      final String contents_ ;
+      private final double lastModified_ ;
+   }
+
+   private static class Upload
+   {
+      Upload(String id)
+      {
+         id_ = id ;
+      }
+
+      String getContents()
+      {
+         StringBuilder contents = new StringBuilder() ;
+         for (String chunk : chunks_.values())
+            contents.append(chunk) ;
+         return contents.toString() ;
+      }
+
+      final String id_ ;
+      final TreeMap<Integer, String> chunks_ = new TreeMap<Integer, String>() ;
+   }
+
+   // keeps uploads keyed the way the session does (target, name, size and
+   // modification time) and verifies chunks against their checksums
+   private class MemoryServer implements ChunkedUploadServerOperations
+   {
+      public void beginChunkedUpload(
+                  String filename,
+                  FileSystemItem targetDirectory,
+                  double size,
+                  double lastModified,
+                  final ServerRequestCallback<ChunkedUploadStatus> requestCallback)
+      {
+         String key = targetDirectory.completePath(filename) + ":" +
+                      size + ":" + lastModified ;
+         Upload upload = uploads_.get(key) ;
+         if (upload == null)
+         {
+            upload = new Upload("upload" + (++nextId_)) ;
+            uploads_.put(key, upload) ;
+         }
+         lastId_ = upload.id_ ;
+
+         JsArrayInteger received = JavaScriptObject.createArray().cast() ;
+         JsArrayString checksums = JavaScriptObject.createArray().cast() ;
+         for (Integer index : upload.chunks_.keySet())
+         {
+            received.push(index) ;
+            checksums.push(checksum(upload.chunks_.get(index))) ;
+         }
+         final ChunkedUploadStatus status = createStatus(upload.id_,
+                                                         CHUNK_SIZE,
+                                                         received,
+                                                         checksums) ;
+         defer(new Runnable() {
+            public void run()
+            {
+               requestCallback.onResponseReceived(status) ;
+            }
+         }) ;
+      }
+
+      public String getFileUploadChunkUrl(String id, int index, String checksum)
+      {
+         return id + "/" + index + "/" + checksum ;
+      }
+
+      public void completeChunkedUpload(
+                  final String id,
+                  final ServerRequestCallback<PendingFileUpload> requestCallback)
+      {
+         defer(new Runnable() {
+            public void run()
+            {
+               completed_ = removeUpload(id).getContents() ;
+               requestCallback.onResponseReceived(createPendingUpload()) ;
+            }
+         }) ;
+      }
+
+      public void cancelChunkedUpload(
+                  String id,
+                  ServerRequestCallback<Void> requestCallback)
+      {
+         removeUpload(id) ;
+      }
+
+      // returns the response text for a chunk posted to the url
+      String receive(String url, String text)
+      {
+         String[] parts = url.split("/") ;
+         Upload upload = getUpload(parts[0]) ;
+         if (upload == null)
+            return "{\"error\": {\"code\": 1, \"message\": \"No upload\"}}" ;
+         if (!checksum(text).equals(parts[2]))
+            return "{\"error\": {\"code\": 1, \"message\": \"Checksum\"}}" ;
+
+         upload.chunks_.put(Integer.parseInt(parts[1]), text) ;
+         return "{\"result\": null}" ;
+      }
+
+      Upload getUpload(String id)
+      {
+         for (Upload upload : uploads_.values())
+         {
+            if (upload.id_.equals(id))
+               return upload ;
+         }
+         return null ;
+      }
+
+      private Upload removeUpload(String id)
+      {
+         Upload upload = getUpload(id) ;
+         uploads_.values().remove(upload) ;
+         return upload ;
+      }
+
+      final HashMap<String, Upload> uploads_ = new HashMap<String, Upload>() ;
+      String lastId_ ;
+      String completed_ ;
+      private int nextId_ ;
+   }
+
+   // delivers chunks to the MemoryServer, failing (with a 500) or
+   // corrupting the posts of chunks as requested
+   private class MemorySender implements ChunkedFileUploader.Sender
+   {
+      public ChunkedFileUploader.Post post(
+                                 final String url,
+                                 JavaScriptObject data,
+                                 final ChunkedFileUploader.PostCallback callback)
+      {
+         final int index = Integer.parseInt(url.split("/")[1]) ;
+         final String text = getText(data) ;
+         final boolean[] aborted = new boolean[] { false } ;
+
+         posts_++ ;
+         Integer chunkPosts = chunkPosts_.get(index) ;
+         chunkPosts_.put(index, chunkPosts == null ? 1 : chunkPosts + 1) ;
+         inFlight_++ ;
+         maxInFlight_ = Math.max(maxInFlight_, inFlight_) ;
+         if (onPosted_ != null)
+            onPosted_.run() ;
+
+         defer(new Runnable() {
+            public void run()
+            {
+               if (aborted[0])
+                  return ;
+               inFlight_-- ;
+
+               if (take(failures_, index))
+               {
+                  callback.onResponse(500, "") ;
+                  return ;
+               }
+
+               String sent = take(corruptions_, index) ? text + "?" : text ;
+               callback.onProgress(sent.length()) ;
+               callback.onResponse(200, server_.receive(url, sent)) ;
+            }
+         }) ;
+
+         return new ChunkedFileUploader.Post() {
+            public void abort()
+            {
+               if (!aborted[0])
+               {
+                  aborted[0] = true ;
+                  inFlight_-- ;
+               }
+            }
+         } ;
+      }
+
+      private boolean take(HashMap<Integer, Integer> counts, int index)
+      {
+         Integer count = counts.get(index) ;
+         if (count == null || count == 0)
+            return false ;
+         counts.put(index, count - 1) ;
+         return true ;
+      }
+
+      final HashMap<Integer, Integer> failures_ =
+                                       new HashMap<Integer, Integer>() ;
+      final HashMap<Integer, Integer> corruptions_ =
+                                       new HashMap<Integer, Integer>() ;
+      final HashMap<Integer, Integer> chunkPosts_ =
+                                       new HashMap<Integer, Integer>() ;
+      Runnable onPosted_ ;
+      int posts_ ;
+      int inFlight_ ;
+      int maxInFlight_ ;
+   }
+
+   private MemoryServer server_ ;
+   private MemorySender sender_ ;
+   private ChunkedFileUploader uploader_ ;
+   private double bytesSent_ ;
+
+   // keep in sync with ChunkedFileUploader
+   private static final int MAX_IN_FLIGHT = 3 ;
+   private static final int MAX_ATTEMPTS = 5 ;
+
+   private static final int CHUNK_SIZE = 100 ;
+   private static final int CHUNK_COUNT = 20 ;
+   private static final int SIZE = (CHUNK_COUNT - 1) * CHUNK_SIZE + 37 ;
+   private static final int FAILING_CHUNK = CHUNK_COUNT / 2 ;
+   private static final String FILENAME = "data.bin" ;
+   private static final FileSystemItem DIRECTORY =
+                                    FileSystemItem.createDir("~/uploads") ;
+   private static final int SETTLE_MS = 200 ;
+   private static final int TIMEOUT_MS = 10000 ;
+}
@@ -0,0 +1,423 @@
+/*
+ * XhrChunkSenderTests.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.files.ui;
+
+import junit.framework.Assert ;
+
+import com.google.gwt.core.client.GWT ;
+import com.google.gwt.core.client.JavaScriptObject ;
+import com.google.gwt.core.client.JsArrayInteger ;
+import com.google.gwt.core.client.JsArrayString ;
+import com.google.gwt.core.client.Scheduler ;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand ;
+import com.google.gwt.junit.client.GWTTestCase ;
+
+import org.rstudio.core.client.files.FileSystemItem ;
+import org.rstudio.core.client.jsonrpc.RpcError ;
+import org.rstudio.core.client.jsonrpc.RpcResponse ;
+import org.rstudio.studio.client.server.ServerRequestCallback ;
+import org.rstudio.studio.client.server.Void ;
+import org.rstudio.studio.client.server.remote.RemoteServer ;
+import org.rstudio.studio.client.workbench.views.files.model.ChunkedUploadServerOperations ;
+import org.rstudio.studio.client.workbench.views.files.model.ChunkedUploadStatus ;
+import org.rstudio.studio.client.workbench.views.files.model.PendingFileUpload ;
+
+import java.util.ArrayList ;
+import java.util.HashMap ;
+
+// Posts chunks with XhrChunkSender to StandInUploadServlet, which answers
+// them the way handleUploadChunkRequest does, to check the chunk_upload
+// contract: the id, index and checksum query params built by RemoteServer,
+// the status codes, and the json-rpc results and errors ChunkedFileUploader
+// reads from the responses
+public class XhrChunkSenderTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.core.CoreTests" ;
+   }
+
+   @Override
+   protected void gwtSetUp()
+   {
+      id_ = "upload-" + getName() ;
+      contents_ = createContents() ;
+   }
+
+   public void testChunksAccepted()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      post(id_, 0, chunk(0), checksum(chunk(0)), new ResponseHandler() {
+         public void onResponse(int status, RpcResponse response)
+         {
+            Assert.assertEquals(200, status) ;
+            Assert.assertNull(response.getError()) ;
+            Assert.assertEquals(1, getIntResult(response)) ;
+
+            // the last chunk is shorter
+            String last = chunk(CHUNK_COUNT - 1) ;
+            Assert.assertTrue(last.length() < CHUNK_SIZE) ;
+            post(id_, CHUNK_COUNT - 1, last, checksum(last),
+                 new ResponseHandler() {
+               public void onResponse(int status, RpcResponse response)
+               {
+                  Assert.assertEquals(200, status) ;
+                  Assert.assertNull(response.getError()) ;
+                  Assert.assertEquals(2, getIntResult(response)) ;
+                  finishTest() ;
+               }
+            }) ;
+         }
+      }) ;
+   }
+
+   public void testCorruptChunk()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      String chunk = chunk(1) ;
+      String corrupt = "?" + chunk.substring(1) ;
+      post(id_, 1, corrupt, checksum(chunk), new ResponseHandler() {
+         public void onResponse(int status, RpcResponse response)
+         {
+            assertCorrupt(status, response) ;
+
+            // a chunk of the wrong length is corrupt too, even if its
+            // checksum matches what was sent
+            String truncated = chunk(1).substring(1) ;
+            post(id_, 1, truncated, checksum(truncated),
+                 new ResponseHandler() {
+               public void onResponse(int status, RpcResponse response)
+               {
+                  assertCorrupt(status, response) ;
+                  finishTest() ;
+               }
+            }) ;
+         }
+      }) ;
+   }
+
+   public void testInvalidChunk()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      String chunk = chunk(0) ;
+      post("unknown", 0, chunk, checksum(chunk), new ResponseHandler() {
+         public void onResponse(int status, RpcResponse response)
+         {
+            assertInvalid(status, response) ;
+
+            String chunk = chunk(0) ;
+            post(id_, CHUNK_COUNT, chunk, checksum(chunk),
+                 new ResponseHandler() {
+               public void onResponse(int status, RpcResponse response)
+               {
+                  assertInvalid(status, response) ;
+                  finishTest() ;
+               }
+            }) ;
+         }
+      }) ;
+   }
+
+   // the uploader resends a chunk the endpoint reports as corrupted
+   public void testUploaderResendsCorruptChunk()
+   {
+      delayTestFinish(TIMEOUT_MS) ;
+      final RecordingSender sender = new RecordingSender() ;
+      final StringSource source = new StringSource() ;
+      source.corrupt_ = CORRUPT_CHUNK ;
+      ChunkedFileUploader uploader = new ChunkedFileUploader(
+                                             new StandInServer(), sender) ;
+      uploader.setRetryDelay(1) ;
+      uploader.start(source, DIRECTORY, new ChunkedFileUploader.Observer() {
+         public void onProgress(double bytesSent, double totalBytes)
+         {
+            Assert.assertTrue(bytesSent <= totalBytes) ;
+         }
+
+         public void onCompleted(PendingFileUpload pendingUpload)
+         {
+            Assert.assertEquals(2, (int) source.reads_.get(CORRUPT_CHUNK)) ;
+            Assert.assertEquals(CHUNK_COUNT + 1, sender.responses_.size()) ;
+
+            int errors = 0 ;
+            int received = 0 ;
+            for (RpcResponse response : sender.responses_)
+            {
+               if (response.getError() != null)
+                  errors++ ;
+               else
+                  received = Math.max(received, getIntResult(response)) ;
+            }
+            Assert.assertEquals(1, errors) ;
+            Assert.assertEquals(CHUNK_COUNT, received) ;
+            finishTest() ;
+         }
+
+         public void onError(String message)
+         {
+            Assert.fail(message) ;
+         }
+      }) ;
+   }
+
+   private static void assertCorrupt(int status, RpcResponse response)
+   {
+      // errors are reported in the json-rpc response, not the status
+      Assert.assertEquals(200, status) ;
+      RpcError error = response.getError() ;
+      Assert.assertNotNull(error) ;
+      Assert.assertEquals(RpcError.EXECUTION_ERROR, error.getCode()) ;
+      Assert.assertNotNull(error.getError()) ;
+      Assert.assertEquals(error.getError().getMessage(),
+                          error.getEndUserMessage()) ;
+   }
+
+   private static void assertInvalid(int status, RpcResponse response)
+   {
+      Assert.assertEquals(200, status) ;
+      Assert.assertNotNull(response.getError()) ;
+      Assert.assertEquals(RpcError.PARAM_INVALID,
+                          response.getError().getCode()) ;
+   }
+
+   private interface ResponseHandler
+   {
+      void onResponse(int status, RpcResponse response) ;
+   }
+
+   private void post(String id,
+                     int index,
+                     String text,
+                     String checksum,
+                     final ResponseHandler handler)
+   {
+      new XhrChunkSender().post(chunkUrl(id, index, checksum),
+                                createData(text),
+                                new ChunkedFileUploader.PostCallback() {
+         public void onProgress(double loaded)
+         {
+         }
+
+         public void onResponse(int status, String responseText)
+         {
+            RpcResponse response = RpcResponse.parse(responseText) ;
+            Assert.assertNotNull(responseText, response) ;
+            handler.onResponse(status, response) ;
+         }
+      }) ;
+   }
+
+   private static String chunkUrl(String id, int index, String checksum)
+   {
+      return RemoteServer.getFileUploadChunkUrl(
+                  GWT.getModuleBaseURL() + "chunk_upload", id, index, checksum) ;
+   }
+
+   private String chunk(int index)
+   {
+      int start = index * CHUNK_SIZE ;
+      return contents_.substring(start,
+                                 Math.min(start + CHUNK_SIZE, UPLOAD_SIZE)) ;
+   }
+
+   private static String createContents()
+   {
+      StringBuilder contents = new StringBuilder() ;
+      for (int i = 0; i < UPLOAD_SIZE; i++)
+         contents.append((char) ('a' + i % 26)) ;
+      return contents.toString() ;
+   }
+
+   // CRC32 of the (ASCII) text as an unsigned decimal string, as computed
+   // by FileApiUploadSource and the session
+   private static String checksum(String text)
+   {
+      int crc = 0xFFFFFFFF ;
+      for (int i = 0; i < text.length(); i++)
+      {
+         crc ^= text.charAt(i) & 0xFF ;
+         for (int k = 0; k < 8; k++)
+            crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xEDB88320 : crc >>> 1 ;
+      }
+      return Long.toString(~crc & 0xFFFFFFFFL) ;
+   }
+
+   private static void defer(final Runnable runnable)
+   {
+      Scheduler.get().scheduleDeferred(new ScheduledCommand() {
+         public void execute()
+         {
+            runnable.run() ;
+         }
+      }) ;
+   }
+
+   // XMLHttpRequest.send posts the string value of objects it doesn't
+   // otherwise know how to send
+   private static native JavaScriptObject createData(String text) /*-{
+      return { toString: function() { return text ; } } ;
+   }-*/;
+
+   private static native int getIntResult(RpcResponse response) /*-{
+      return response.result ;
+   }-*/;
+
+   private static native ChunkedUploadStatus createStatus(
+                                          String id,
+                                          int chunkSize,
+                                          JsArrayInteger received,
+                                          JsArrayString checksums) /*-{
+      return {
+         id: id,
+         chunk_size: chunkSize,
+         received: received,
+         checksums: checksums
+      } ;
+   }-*/;
+
+   private static native PendingFileUpload createPendingUpload() /*-{
+      return { token: {}, overwrites: [] } ;
+   }-*/;
+
+   // reads chunks of contents_, sending the first read of chunk corrupt_
+   // with a changed character (but the checksum of the original)
+   private class StringSource implements ChunkedFileUploader.Source
+   {
+      public String getName()
+      {
+         return "data.bin" ;
+      }
+
+      public double getSize()
+      {
+         return UPLOAD_SIZE ;
+      }
+
+      public double getLastModified()
+      {
+         return 0 ;
+      }
+
+      public void read(double start,
+                       double end,
+                       final ChunkedFileUploader.ReadCallback callback)
+      {
+         int index = (int) start / CHUNK_SIZE ;
+         Integer reads = reads_.get(index) ;
+         reads_.put(index, reads == null ? 1 : reads + 1) ;
+
+         final String text = contents_.substring((int) start, (int) end) ;
+         final String sent = index == corrupt_ && reads == null
+                             ? "?" + text.substring(1)
+                             : text ;
+         defer(new Runnable() {
+            public void run()
+            {
+               callback.onRead(createData(sent), checksum(text)) ;
+            }
+         }) ;
+      }
+
+      int corrupt_ = -1 ;
+      final HashMap<Integer, Integer> reads_ =
+                                       new HashMap<Integer, Integer>() ;
+   }
+
+   // begins and completes uploads in memory, and posts chunks to the
+   // stand-in's url
+   private class StandInServer implements ChunkedUploadServerOperations
+   {
+      public void beginChunkedUpload(
+                  String filename,
+                  FileSystemItem targetDirectory,
+                  double size,
+                  double lastModified,
+                  final ServerRequestCallback<ChunkedUploadStatus> requestCallback)
+      {
+         defer(new Runnable() {
+            public void run()
+            {
+               requestCallback.onResponseReceived(createStatus(
+                     id_,
+                     CHUNK_SIZE,
+                     JavaScriptObject.createArray().<JsArrayInteger>cast(),
+                     JavaScriptObject.createArray().<JsArrayString>cast())) ;
+            }
+         }) ;
+      }
+
+      public String getFileUploadChunkUrl(String id, int index, String checksum)
+      {
+         return chunkUrl(id, index, checksum) ;
+      }
+
+      public void completeChunkedUpload(
+                  String id,
+                  final ServerRequestCallback<PendingFileUpload> requestCallback)
+      {
+         defer(new Runnable() {
+            public void run()
+            {
+               requestCallback.onResponseReceived(createPendingUpload()) ;
+            }
+         }) ;
+      }
+
+      public void cancelChunkedUpload(
+                  String id,
+                  ServerRequestCallback<Void> requestCallback)
+      {
+      }
+   }
+
+   // posts with XhrChunkSender, keeping the responses
+   private static class RecordingSender implements ChunkedFileUploader.Sender
+   {
+      public ChunkedFileUploader.Post post(
+                                 String url,
+                                 JavaScriptObject data,
+                                 final ChunkedFileUploader.PostCallback callback)
+      {
+         return sender_.post(url, data, new ChunkedFileUploader.PostCallback() {
+            public void onProgress(double loaded)
+            {
+               callback.onProgress(loaded) ;
+            }
+
+            public void onResponse(int status, String responseText)
+            {
+               Assert.assertEquals(200, status) ;
+               responses_.add(RpcResponse.parse(responseText)) ;
+               callback.onResponse(status, responseText) ;
+            }
+         }) ;
+      }
+
+      private final XhrChunkSender sender_ = new XhrChunkSender() ;
+      final ArrayList<RpcResponse> responses_ = new ArrayList<RpcResponse>() ;
+   }
+
+   private String id_ ;
+   private String contents_ ;
+
+   // keep in sync with StandInUploadServlet
+   private static final int CHUNK_SIZE = 1024 ;
+   private static final int UPLOAD_SIZE = 2 * CHUNK_SIZE + 452 ;
+
+   private static final int CHUNK_COUNT = 3 ;
+   private static final int CORRUPT_CHUNK = 1 ;
+   private static final FileSystemItem DIRECTORY =
+                                    FileSystemItem.createDir("~/uploads") ;
+   private static final int TIMEOUT_MS = 10000 ;
+}
@@ -0,0 +1,163 @@
+/*
+ * HistoryIndexTests.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.history.model;
+
+import junit.framework.Assert ;
+
+import com.google.gwt.junit.client.GWTTestCase ;
+
+import java.util.ArrayList ;
+
+// Checks search results of HistoryIndex, and that search-as-you-type over
+// ENTRY_COUNT entries only checks the commands of candidate entries
+public class HistoryIndexTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.core.Core" ;
+   }
+
+   public void testSearchMatchesEveryTerm()
+   {
+      HistoryIndex index = new HistoryIndex() ;
+      index.addEntries(entries("x <- 1",
+                               "plot(x)",
+                               "summary(x)",
+                               "plot(y, x)")) ;
+
+      assertIndexes(index.search("plot x", 10), 3, 1) ;
+      assertIndexes(index.search("plot(y", 10), 3) ;
+      assertIndexes(index.search("x", 1), 3) ;
+      assertIndexes(index.search("lm", 10)) ;
+   }
+
+   public void testAddsAdjacentEntries()
+   {
+      HistoryIndex index = new HistoryIndex() ;
+      index.addEntries(entries(10, "b()", "c()")) ;
+      index.addEntries(entries(8, "a()", "a2()")) ;
+      index.addEntries(entries(12, "d()")) ;
+      Assert.assertEquals(8, index.getStartIndex()) ;
+      Assert.assertEquals(13, index.getEndIndex()) ;
+      assertIndexes(index.search("()", 10), 12, 11, 10, 9, 8) ;
+
+      // older entries which leave a gap are dropped
+      index.addEntries(entries(0, "gap()")) ;
+      Assert.assertEquals(8, index.getStartIndex()) ;
+      assertIndexes(index.search("gap", 10)) ;
+   }
+
+   public void testSearchAsYouTypeScansCandidatesOnly()
+   {
+      String[] commands = new String[ENTRY_COUNT] ;
+      for (int i = 0; i < ENTRY_COUNT; i++)
+         commands[i] = command(i) ;
+      HistoryIndex index = new HistoryIndex() ;
+      index.addEntries(entries(commands)) ;
+
+      int withFirstTrigram = countContaining(commands,
+                                             QUERY.substring(0, 3)) ;
+      for (int length = 1; length <= QUERY.length(); length++)
+      {
+         String query = QUERY.substring(0, length) ;
+         ArrayList<HistoryEntry> results = index.search(query, MAX_RESULTS) ;
+         int scanned = index.getScannedCount() ;
+
+         // never more than checking every entry newest first would
+         Assert.assertTrue(query + ": " + scanned,
+                           scanned <= linearScanCount(results)) ;
+
+         // once the query has a trigram, only entries containing it are
+         // checked
+         if (length >= 3)
+            Assert.assertTrue(query + ": " + scanned,
+                              scanned <= withFirstTrigram) ;
+      }
+
+      // a trigram which isn't in the index rules out every entry
+      for (int length = 3; length <= MISSING_QUERY.length(); length++)
+      {
+         String query = MISSING_QUERY.substring(0, length) ;
+         Assert.assertEquals(0, index.search(query, MAX_RESULTS).size()) ;
+         Assert.assertEquals(query, 0, index.getScannedCount()) ;
+      }
+   }
+
+   // the number of entries a newest first scan checks to find results
+   private static int linearScanCount(ArrayList<HistoryEntry> results)
+   {
+      if (results.size() < MAX_RESULTS)
+         return ENTRY_COUNT ;
+      return ENTRY_COUNT - (int)results.get(results.size() - 1).getIndex() ;
+   }
+
+   private static int countContaining(String[] commands, String text)
+   {
+      int count = 0 ;
+      for (String command : commands)
+      {
+         if (command.indexOf(text) >= 0)
+            count++ ;
+      }
+      return count ;
+   }
+
+   private static void assertIndexes(ArrayList<HistoryEntry> entries,
+                                     long... indexes)
+   {
+      Assert.assertEquals(indexes.length, entries.size()) ;
+      for (int i = 0; i < indexes.length; i++)
+         Assert.assertEquals(indexes[i], entries.get(i).getIndex()) ;
+   }
+
+   private static ArrayList<HistoryEntry> entries(String... commands)
+   {
+      return entries(0, commands) ;
+   }
+
+   private static ArrayList<HistoryEntry> entries(int first,
+                                                  String... commands)
+   {
+      ArrayList<HistoryEntry> entries = new ArrayList<HistoryEntry>() ;
+      for (int i = 0; i < commands.length; i++)
+         entries.add(create(first + i, commands[i])) ;
+      return entries ;
+   }
+
+   // a mix of assignments, model fits and plots over a few dozen variables
+   private static String command(int i)
+   {
+      String var = "var" + (i % 37) ;
+      switch (i % 4)
+      {
+         case 0:
+            return var + " <- rnorm(" + i + ")" ;
+         case 1:
+            return "summary(lm(y ~ " + var + ", data = df" + (i % 11) + "))" ;
+         case 2:
+            return "plot(" + var + ", main = \"run " + i + "\")" ;
+         default:
+            return "df" + (i % 11) + "$" + var + " <- NULL" ;
+      }
+   }
+
+   private static native HistoryEntry create(int index, String command) /*-{
+      return {index: index, timestamp: 0, command: command} ;
+   }-*/;
+
+   private static final int ENTRY_COUNT = 20000 ;
+   private static final int MAX_RESULTS = 300 ;
+   private static final String QUERY = "summary(lm(y ~ var3" ;
+   private static final String MISSING_QUERY = "glm(z" ;
+}
@@ -0,0 +1,172 @@
+/*
+ * DataPreviewTests.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.workspace.dataimport;
+
+import junit.framework.Assert ;
+
+import com.google.gwt.junit.client.GWTTestCase ;
+
+// Checks that DataPreview gives the data frame read.table would for the
+// import dialog's settings
+public class DataPreviewTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.core.Core" ;
+   }
+
+   public void testHeader()
+   {
+      String input = "a,b\n1,2\n3,4\n" ;
+
+      DataPreview preview = DataPreview.parse(input, true, ",", "\"") ;
+      assertNames(preview, "a", "b") ;
+      assertColumn(preview, 0, DataPreview.INTEGER, "1", "3") ;
+      assertColumn(preview, 1, DataPreview.INTEGER, "2", "4") ;
+
+      preview = DataPreview.parse(input, false, ",", "\"") ;
+      assertNames(preview, "V1", "V2") ;
+      assertColumn(preview, 0, DataPreview.CHARACTER, "a", "1", "3") ;
+      assertColumn(preview, 1, DataPreview.CHARACTER, "b", "2", "4") ;
+   }
+
+   // a header with one field fewer than the data names the row names
+   // column, which isn't part of the data frame
+   public void testRowNames()
+   {
+      DataPreview preview = DataPreview.parse("a,b\nr1,1,x\nr2,2,y\n",
+                                              true, ",", "\"") ;
+      assertNames(preview, "a", "b") ;
+      assertColumn(preview, 0, DataPreview.INTEGER, "1", "2") ;
+      assertColumn(preview, 1, DataPreview.CHARACTER, "x", "y") ;
+   }
+
+   public void testSeparatorsAndQuotes()
+   {
+      // "" is any whitespace
+      for (String separator : new String[] {",", ";", "\t", ""})
+      {
+         String sep = separator.length() > 0 ? separator : "  " ;
+         for (String quote : new String[] {"\"", "'", ""})
+         {
+            String message = "separator '" + separator + "', " +
+                             "quote '" + quote + "'" ;
+            String input ;
+            String[] expected ;
+            if (quote.length() > 0)
+            {
+               // quoted fields can contain the separator (and the other
+               // quote character)
+               input = "name" + sep + "n\n" +
+                       quote + "x" + sep + "y" + quote + sep + "1\n" +
+                       "it's" + sep + "2\n" ;
+               expected = new String[] {"x" + sep + "y", "it's"} ;
+            }
+            else
+            {
+               // without quoting, quote characters are part of the value
+               input = "name" + sep + "n\n" +
+                       "\"x\"" + sep + "1\n" +
+                       "'y'" + sep + "2\n" ;
+               expected = new String[] {"\"x\"", "'y'"} ;
+            }
+
+            DataPreview preview = DataPreview.parse(input, true, separator,
+                                                    quote) ;
+            Assert.assertEquals(message, 2, preview.getColumnCount()) ;
+            assertNames(preview, "name", "n") ;
+            assertColumn(preview, 0, DataPreview.CHARACTER, expected) ;
+            assertColumn(preview, 1, DataPreview.INTEGER, "1", "2") ;
+         }
+      }
+   }
+
+   public void testTypeInference()
+   {
+      DataPreview preview = DataPreview.parse(
+            "l,i,n,c\n" +
+            "TRUE,1,1.5,a\n" +
+            "NA,NA,NA,NA\n" +
+            "F,-2,2,NA\n",
+            true, ",", "\"") ;
+      assertColumn(preview, 0, DataPreview.LOGICAL, "TRUE", "NA", "FALSE") ;
+      assertColumn(preview, 1, DataPreview.INTEGER, "1", "NA", "-2") ;
+      assertColumn(preview, 2, DataPreview.NUMERIC, "1.5", "NA", "2.0") ;
+      assertColumn(preview, 3, DataPreview.CHARACTER, "a", "<NA>", "<NA>") ;
+   }
+
+   // blank fields are missing in logical and numeric columns, but are
+   // empty strings in character columns
+   public void testBlankFields()
+   {
+      DataPreview preview = DataPreview.parse("x,y,z\n1,,\n,b,\n",
+                                              true, ",", "\"") ;
+      assertColumn(preview, 0, DataPreview.INTEGER, "1", "NA") ;
+      assertColumn(preview, 1, DataPreview.CHARACTER, "", "b") ;
+      assertColumn(preview, 2, DataPreview.LOGICAL, "NA", "NA") ;
+   }
+
+   // as make.names(unique = TRUE)
+   public void testColumnNames()
+   {
+      DataPreview preview = DataPreview.parse(
+            "a,a,1x,my col,,a,.2,.b\n1,2,3,4,5,6,7,8\n",
+            true, ",", "\"") ;
+      assertNames(preview,
+                  "a", "a.1", "X1x", "my.col", "X", "a.2", "X.2", ".b") ;
+   }
+
+   public void testFinalRowWithoutNewline()
+   {
+      DataPreview preview = DataPreview.parse("a,b\n1,2\n3,4",
+                                              true, ",", "\"") ;
+      assertColumn(preview, 0, DataPreview.INTEGER, "1", "3") ;
+      assertColumn(preview, 1, DataPreview.INTEGER, "2", "4") ;
+   }
+
+   public void testRaggedRows()
+   {
+      assertError(DataPreview.parse("a,b\n1,2\n3\n", true, ",", "\""), 2) ;
+      assertError(DataPreview.parse("1 2\n3 4\n5\n", false, "", "\""), 2) ;
+      assertError(DataPreview.parse("a;b\n1;2;3\n4;5\n", true, ";", ""), 3) ;
+   }
+
+   private static void assertError(DataPreview preview, int columns)
+   {
+      assertNames(preview, "Error") ;
+      Assert.assertEquals(1, preview.getRowCount()) ;
+      String message = preview.getValue(0, 0) ;
+      Assert.assertTrue(message,
+                        message.endsWith("did not have " + columns +
+                                         " elements")) ;
+   }
+
+   private static void assertNames(DataPreview preview, String... names)
+   {
+      Assert.assertEquals(names.length, preview.getColumnCount()) ;
+      for (int i = 0; i < names.length; i++)
+         Assert.assertEquals(names[i], preview.getColumnName(i)) ;
+   }
+
+   private static void assertColumn(DataPreview preview,
+                                    int col,
+                                    int type,
+                                    String... values)
+   {
+      Assert.assertEquals(type, preview.getColumnType(col)) ;
+      Assert.assertEquals(values.length, preview.getRowCount()) ;
+      for (int row = 0; row < values.length; row++)
+         Assert.assertEquals(values[row], preview.getValue(row, col)) ;
+   }
+}
@@ -0,0 +1,186 @@
+/*
+ * WorkspaceObjectTableTests.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.workspace.table;
+
+import junit.framework.Assert ;
+
+import com.google.gwt.junit.client.GWTTestCase ;
+import org.rstudio.studio.client.workbench.views.workspace.model.WorkspaceObjectInfo ;
+
+import java.util.ArrayList ;
+
+// Checks the row operations applied when populating and refreshing the
+// workspace table with OBJECT_COUNT objects (mostly vectors, with a scalar
+// and a data frame every so often), and reports how long they take
+public class WorkspaceObjectTableTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.core.Core" ;
+   }
+
+   @Override
+   protected void gwtSetUp()
+   {
+      table_ = new WorkspaceObjectTable(new InlineEditorFactory(null,
+                                                                null,
+                                                                null),
+                                        null) ;
+   }
+
+   public void testDiffRemovesAndAdds()
+   {
+      table_.setObjects(objects(0, 10, 0)) ;
+      RowCounts counts = new RowCounts() ;
+      ArrayList<WorkspaceObjectInfo> objects = objects(5, 10, 0) ;
+      table_.setObjects(objects) ;
+
+      ArrayList<String> names = table_.getObjectNames() ;
+      Assert.assertEquals(10, names.size()) ;
+      Assert.assertFalse(names.contains(name(0))) ;
+      Assert.assertTrue(names.contains(name(14))) ;
+      counts.assertApplied(5, 0, 5) ;
+   }
+
+   // refreshes only touch the rows which changed
+   public void testRefreshTouchesChangedRows()
+   {
+      RowCounts counts = new RowCounts() ;
+      table_.setObjects(objects(0, OBJECT_COUNT, 0)) ;
+      Assert.assertEquals(OBJECT_COUNT, table_.getObjectNames().size()) ;
+      counts.assertApplied(OBJECT_COUNT, 0, 0) ;
+
+      // nothing changed
+      counts = new RowCounts() ;
+      table_.setObjects(objects(0, OBJECT_COUNT, 0)) ;
+      counts.assertApplied(0, 0, 0) ;
+
+      // every 100th object changed
+      counts = new RowCounts() ;
+      table_.setObjects(objects(0, OBJECT_COUNT, 100)) ;
+      counts.assertApplied(0, OBJECT_COUNT / 100, 0) ;
+
+      // full reset (what an explicit refresh does)
+      table_.clearObjects() ;
+      counts = new RowCounts() ;
+      table_.setObjects(objects(0, OBJECT_COUNT, 0)) ;
+      Assert.assertEquals(OBJECT_COUNT, table_.getObjectNames().size()) ;
+      counts.assertApplied(OBJECT_COUNT, 0, 0) ;
+   }
+
+   // an object whose type puts it in another section moves to that section
+   public void testChangedSectionMovesRow()
+   {
+      table_.setObjects(objects(1, 3, 0)) ;
+      RowCounts counts = new RowCounts() ;
+      ArrayList<WorkspaceObjectInfo> objects = objects(1, 3, 0) ;
+      objects.set(1, create(name(2), "data.frame", 1, "",
+                            "10 obs. of 2 variables")) ;
+      table_.setObjects(objects) ;
+
+      counts.assertApplied(1, 0, 1) ;
+      Assert.assertEquals(name(2), table_.getObjectNames().get(0)) ;
+   }
+
+   // reports (without asserting on) the time taken to populate, refresh
+   // and reset a table of OBJECT_COUNT objects
+   public void testBenchmark()
+   {
+      long start = System.currentTimeMillis() ;
+      table_.setObjects(objects(0, OBJECT_COUNT, 0)) ;
+      long populate = System.currentTimeMillis() - start ;
+
+      start = System.currentTimeMillis() ;
+      table_.setObjects(objects(0, OBJECT_COUNT, 0)) ;
+      long unchanged = System.currentTimeMillis() - start ;
+
+      start = System.currentTimeMillis() ;
+      table_.setObjects(objects(0, OBJECT_COUNT, 100)) ;
+      long changed = System.currentTimeMillis() - start ;
+
+      start = System.currentTimeMillis() ;
+      table_.clearObjects() ;
+      table_.setObjects(objects(0, OBJECT_COUNT, 0)) ;
+      long reset = System.currentTimeMillis() - start ;
+
+      System.out.println("WorkspaceObjectTable, " + OBJECT_COUNT +
+                         " objects: populate " + populate + "ms, " +
+                         "unchanged refresh " + unchanged + "ms, " +
+                         "1% changed refresh " + changed + "ms, " +
+                         "reset " + reset + "ms") ;
+   }
+
+   // the table's row operation counts when created, for checking the
+   // operations applied since
+   private class RowCounts
+   {
+      RowCounts()
+      {
+         inserted_ = table_.getRowsInserted() ;
+         updated_ = table_.getRowsUpdated() ;
+         removed_ = table_.getRowsRemoved() ;
+      }
+
+      void assertApplied(int inserted, int updated, int removed)
+      {
+         Assert.assertEquals(inserted, table_.getRowsInserted() - inserted_) ;
+         Assert.assertEquals(updated, table_.getRowsUpdated() - updated_) ;
+         Assert.assertEquals(removed, table_.getRowsRemoved() - removed_) ;
+      }
+
+      private final int inserted_ ;
+      private final int updated_ ;
+      private final int removed_ ;
+   }
+
+   // objects named first..first+count-1; when changeEvery > 0 every
+   // changeEvery'th object gets a different value
+   private static ArrayList<WorkspaceObjectInfo> objects(int first,
+                                                         int count,
+                                                         int changeEvery)
+   {
+      ArrayList<WorkspaceObjectInfo> objects =
+                                       new ArrayList<WorkspaceObjectInfo>() ;
+      for (int i = first; i < first + count; i++)
+      {
+         String suffix = changeEvery > 0 && i % changeEvery == 0 ? "1" : "" ;
+         if (i % 50 == 0)
+            objects.add(create(name(i), "data.frame", 1, "", 
+                               "100 obs. of 5 variables" + suffix)) ;
+         else if (i % 10 == 0)
+            objects.add(create(name(i), "numeric", 1, i + suffix, "")) ;
+         else
+            objects.add(create(name(i), "numeric", 100 + suffix.length(), 
+                               "NO_VALUE", "")) ;
+      }
+      return objects ;
+   }
+
+   private static String name(int i)
+   {
+      return "object" + i ;
+   }
+
+   private static native WorkspaceObjectInfo create(String name,
+                                                    String type,
+                                                    int len,
+                                                    String value,
+                                                    String extra) /*-{
+      return {name: name, type: type, len: len, value: value, extra: extra} ;
+   }-*/;
+
+   private WorkspaceObjectTable table_ ;
+
+   private static final int OBJECT_COUNT = 10000 ;
+}